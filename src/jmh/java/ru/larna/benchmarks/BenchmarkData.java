@@ -0,0 +1,65 @@
+package ru.larna.benchmarks;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Генерация входных данных бенчмарков.
+ * Каждая строка содержит от 1 до 4 email, каждый email с вероятностью overlap берется из уже встреченных,
+ * иначе создается новый, поэтому overlap задает долю повторяющихся email и, соответственно, кол-во слияний.
+ * Данные детерминированы для одинаковых параметров.
+ */
+final class BenchmarkData {
+    private static final long SEED = 42;
+    private static final int MAX_EMAILS_PER_USER = 4;
+
+    private BenchmarkData() {
+    }
+
+    /**
+     * Сгенерировать строки пользователей
+     *
+     * @param usersCount кол-во строк
+     * @param overlap    доля повторяющихся email от 0 до 1
+     * @return возвращает строки в формате user1 -> xxx@ya.ru, foo@gmail.com
+     */
+    static List<String> lines(int usersCount, double overlap) {
+        Random random = new Random(SEED);
+        List<String> emails = new ArrayList<>();
+        List<String> lines = new ArrayList<>(usersCount);
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < usersCount; i++) {
+            sb.setLength(0);
+            sb.append("user").append(i).append(" -> ");
+            int count = 1 + random.nextInt(MAX_EMAILS_PER_USER);
+            for (int j = 0; j < count; j++) {
+                String email;
+                if (!emails.isEmpty() && random.nextDouble() < overlap) {
+                    email = emails.get(random.nextInt(emails.size()));
+                } else {
+                    email = "mail" + emails.size() + "@domain" + random.nextInt(100) + ".com";
+                    emails.add(email);
+                }
+                if (j > 0)
+                    sb.append(", ");
+                sb.append(email);
+            }
+            lines.add(sb.toString());
+        }
+        return lines;
+    }
+
+    /**
+     * Собрать входные данные в том виде, в котором они приходят на стандартный ввод
+     *
+     * @param lines строки пользователей
+     * @return возвращает байты входных данных с завершающей пустой строкой
+     */
+    static byte[] input(List<String> lines) {
+        StringBuilder sb = new StringBuilder();
+        lines.forEach(line -> sb.append(line).append('\n'));
+        return sb.append('\n').toString().getBytes(StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,61 @@
+package ru.larna.benchmarks;
+
+import org.openjdk.jmh.annotations.*;
+import ru.larna.commands.MigrationOptions;
+import ru.larna.services.IOService;
+import ru.larna.services.IOServiceImpl;
+import ru.larna.services.Migration;
+import ru.larna.util.generator.FakeDataSettings;
+import ru.larna.util.generator.FakeUsersDataGenerator;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.OutputStream;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Полная миграция на данных FakeUsersDataGenerator с разной формой кластеров:
+ * перекос размеров кластеров (zipf), длина цепочек (chain) и перемешивание цепочек, дающее максимум слияний
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ClusterShapeBenchmark {
+    @Param({"100000"})
+    private long usersCount;
+    @Param({"0.0", "1.5"})
+    private double zipf;
+    @Param({"1", "10000"})
+    private int chain;
+    @Param({"false", "true"})
+    private boolean interleave;
+    @Param({"--mode=default", "--mode=union-find"})
+    private String options;
+
+    private byte[] input;
+    private MigrationOptions migrationOptions;
+
+    @Setup
+    public void setup() {
+        FakeDataSettings settings = FakeDataSettings.builder().usersCount(usersCount).zipfExponent(zipf)
+                .maxClusterSize(10_000).chainLength(chain).interleaveChains(interleave).build();
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try (IOService ioService = new IOServiceImpl(new ByteArrayInputStream(new byte[0]), out)) {
+            new FakeUsersDataGenerator(settings, ioService).generate();
+        }
+        input = out.toByteArray();
+        migrationOptions = MigrationOptions.parse(options.split(" "));
+    }
+
+    @Benchmark
+    public Integer migrate() {
+        try (IOService ioService = new IOServiceImpl(new ByteArrayInputStream(input), OutputStream.nullOutputStream())) {
+            Migration migration = migrationOptions.createMigration(ioService, migrationOptions.createParser());
+            migration.migrate();
+            return migration.getActualUsersCount();
+        }
+    }
+}
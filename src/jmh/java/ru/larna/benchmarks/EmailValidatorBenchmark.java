@@ -0,0 +1,58 @@
+package ru.larna.benchmarks;
+
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+import ru.larna.util.validators.EmailValidator;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Проверка email: время и аллокации на один адрес
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class EmailValidatorBenchmark {
+    private static final int EMAILS_COUNT = 10_000;
+
+    private final EmailValidator validator = EmailValidator.getInstance();
+    private String[] emails;
+    private byte[][] emailBytes;
+
+    @Setup
+    public void setup() {
+        emails = BenchmarkData.lines(EMAILS_COUNT, 0.0).stream()
+                .flatMap(line -> Arrays.stream(line.substring(line.indexOf("->") + 3).split(", ")))
+                .limit(EMAILS_COUNT)
+                .toArray(String[]::new);
+        emailBytes = Arrays.stream(emails)
+                .map(email -> email.getBytes(StandardCharsets.US_ASCII))
+                .toArray(byte[][]::new);
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(EMAILS_COUNT)
+    public void validate(Blackhole blackhole) {
+        for (String email : emails)
+            blackhole.consume(validator.validate(email));
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(EMAILS_COUNT)
+    public void isValid(Blackhole blackhole) {
+        for (String email : emails)
+            blackhole.consume(validator.isValid(email));
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(EMAILS_COUNT)
+    public void isValidBytes(Blackhole blackhole) {
+        for (byte[] email : emailBytes)
+            blackhole.consume(validator.isValid(email, 0, email.length));
+    }
+}
@@ -0,0 +1,55 @@
+package ru.larna.benchmarks;
+
+import org.openjdk.jmh.annotations.*;
+import ru.larna.model.User;
+import ru.larna.services.*;
+import ru.larna.util.parsers.UserParser;
+import ru.larna.util.parsers.UserParserImpl;
+
+import java.io.ByteArrayInputStream;
+import java.io.OutputStream;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+/**
+ * Слияние заранее разобранных пользователей: разбор строк не входит в измерение,
+ * результат выводится в поток, отбрасывающий данные
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class MergeBenchmark {
+    @Param({"10000", "100000"})
+    private int usersCount;
+    @Param({"0.0", "0.3", "0.9"})
+    private double overlap;
+    @Param({"default", "union-find"})
+    private String mode;
+
+    private List<User> users;
+    private UserParser parser;
+
+    @Setup
+    public void setup() {
+        parser = new UserParserImpl();
+        users = BenchmarkData.lines(usersCount, overlap).stream()
+                .map(parser::parse)
+                .collect(Collectors.toList());
+    }
+
+    @Benchmark
+    public Integer merge() {
+        UserSource source = (ioService, userParser, consumer) -> users.forEach(consumer);
+        try (IOService ioService = new IOServiceImpl(new ByteArrayInputStream(new byte[0]), OutputStream.nullOutputStream())) {
+            Migration migration = "union-find".equals(mode)
+                    ? new UnionFindUserMigration(ioService, parser, source)
+                    : new UserMigration(ioService, parser, source);
+            migration.migrate();
+            return migration.getActualUsersCount();
+        }
+    }
+}
@@ -0,0 +1,48 @@
+package ru.larna.benchmarks;
+
+import org.openjdk.jmh.annotations.*;
+import ru.larna.commands.MigrationOptions;
+import ru.larna.services.IOService;
+import ru.larna.services.IOServiceImpl;
+import ru.larna.services.Migration;
+
+import java.io.ByteArrayInputStream;
+import java.io.OutputStream;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Полная миграция из потока в поток: чтение, разбор, слияние и вывод результата.
+ * Режим, парсер и прочие параметры задаются аргументами командной строки приложения через @Param options.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class MigrationBenchmark {
+    @Param({"10000", "100000"})
+    private int usersCount;
+    @Param({"0.0", "0.3", "0.9"})
+    private double overlap;
+    @Param({"--mode=default", "--mode=union-find --parser=scanner"})
+    private String options;
+
+    private byte[] input;
+    private MigrationOptions migrationOptions;
+
+    @Setup
+    public void setup() {
+        input = BenchmarkData.input(BenchmarkData.lines(usersCount, overlap));
+        migrationOptions = MigrationOptions.parse(options.split(" "));
+    }
+
+    @Benchmark
+    public Integer migrate() {
+        try (IOService ioService = new IOServiceImpl(new ByteArrayInputStream(input), OutputStream.nullOutputStream())) {
+            Migration migration = migrationOptions.createMigration(ioService, migrationOptions.createParser());
+            migration.migrate();
+            return migration.getActualUsersCount();
+        }
+    }
+}
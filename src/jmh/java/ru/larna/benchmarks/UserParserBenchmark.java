@@ -0,0 +1,60 @@
+package ru.larna.benchmarks;
+
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+import ru.larna.commands.ParserType;
+import ru.larna.services.LineSlice;
+import ru.larna.util.parsers.UserParser;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Разбор строки пользователя: время и аллокации на одну строку, переданную строкой String
+ * и участком буфера вне кучи, как строки отображенного в память файла
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class UserParserBenchmark {
+    private static final int LINES_COUNT = 10_000;
+
+    @Param({"regex", "scanner", "swar"})
+    private String parser;
+    @Param({"0.0", "0.5"})
+    private double overlap;
+
+    private UserParser userParser;
+    private String[] lines;
+    private LineSlice[] slices;
+
+    @Setup
+    public void setup() {
+        userParser = ParserType.of(parser).createParser();
+        lines = BenchmarkData.lines(LINES_COUNT, overlap).toArray(new String[0]);
+        String text = String.join("\n", lines);
+        ByteBuffer buffer = ByteBuffer.allocateDirect(text.length());
+        buffer.put(text.getBytes(StandardCharsets.US_ASCII));
+        slices = new LineSlice[lines.length];
+        for (int i = 0, offset = 0; i < lines.length; offset += lines[i].length() + 1, i++)
+            slices[i] = new LineSlice(buffer, offset, lines[i].length());
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(LINES_COUNT)
+    public void parse(Blackhole blackhole) {
+        for (String line : lines)
+            blackhole.consume(userParser.parse(line));
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(LINES_COUNT)
+    public void parseBuffer(Blackhole blackhole) {
+        for (LineSlice slice : slices)
+            blackhole.consume(userParser.parse(slice));
+    }
+}
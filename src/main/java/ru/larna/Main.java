@@ -1,7 +1,9 @@
 package ru.larna;
 
 import ru.larna.commands.FakeDataCommand;
+import ru.larna.commands.FakeDataOptions;
 import ru.larna.commands.MigrationCommand;
+import ru.larna.commands.MigrationOptions;
 
 import java.util.Arrays;
 
@@ -9,11 +11,12 @@ public class Main {
     private final static String FAKE_DATA_COMMAND = "--fake-data";
 
     public static void main(String[] args) {
+        MigrationOptions options = MigrationOptions.parse(args);
         if (isFakeDataArg(args)) {
-            FakeDataCommand.getInstance().execute();
+            FakeDataCommand.getInstance(options, FakeDataOptions.parse(args)).execute();
             return;
         }
-        MigrationCommand.getInstance().execute();
+        MigrationCommand.getInstance(options).execute();
     }
 
     private static Boolean isFakeDataArg(String... args) {
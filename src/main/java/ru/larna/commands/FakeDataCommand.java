@@ -3,18 +3,19 @@ package ru.larna.commands;
 import lombok.extern.slf4j.Slf4j;
 import ru.larna.services.IOService;
 import ru.larna.services.IOServiceImpl;
-import ru.larna.services.UserMigration;
+import ru.larna.services.MappedFileIOService;
+import ru.larna.services.Migration;
 import ru.larna.util.generator.FakeUsersDataGenerator;
 import ru.larna.util.parsers.UserParser;
-import ru.larna.util.parsers.UserParserImpl;
 
+import java.io.BufferedOutputStream;
+import java.io.FileOutputStream;
 import java.io.IOException;
-import java.io.InputStream;
 import java.io.OutputStream;
-import java.io.PrintStream;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.util.stream.IntStream;
+import java.util.stream.LongStream;
 
 /**
  * Обработка аргументов командной строки
@@ -25,25 +26,35 @@ public class FakeDataCommand {
     private final static String FILENAME_TEMPLATE = "fakeData-N%d.txt";
     private final static String FILE_OUTPUT_TEMPLATE = "out-N%d.txt";
 
-    private FakeDataCommand() {
+    private final static int GENERATE_BUFFER_SIZE = 1 << 16;
+
+    private final MigrationOptions options;
+    private final FakeDataOptions fakeDataOptions;
+
+    private FakeDataCommand(MigrationOptions options, FakeDataOptions fakeDataOptions) {
+        this.options = options;
+        this.fakeDataOptions = fakeDataOptions;
     }
 
-    public static FakeDataCommand getInstance() {
-        return new FakeDataCommand();
+    public static FakeDataCommand getInstance(MigrationOptions options, FakeDataOptions fakeDataOptions) {
+        return new FakeDataCommand(options, fakeDataOptions);
     }
 
     /**
-     * Метод производит генерацию фейковых данных для 10,100,1000,10000...пользователей и проверяет алгоритм слияния на них
+     * Метод производит генерацию фейковых данных для 10,100,1000,10000...пользователей и проверяет алгоритм слияния на них,
+     * либо для кол-ва пользователей, заданного аргументом --fake-users
      * При генерации данные сбрасываются в соответствующий файл fakeData-N%d.txt
      * Метод проверки производит чтение из соответствующего файла и сбрасывает свой результат в файл out-N...txt
      */
     public void execute() {
-        final UserParser parser = new UserParserImpl();
-        IntStream.rangeClosed(1, 6).map(i -> (int) Math.pow(10, i))
-                .forEach(usersCount -> {
-                    generate(usersCount);
-                    checkOnFakeData(usersCount, parser);
-                });
+        final UserParser parser = options.createParser();
+        LongStream counts = fakeDataOptions.getUsersCount() != null
+                ? LongStream.of(fakeDataOptions.getUsersCount())
+                : IntStream.rangeClosed(1, 6).mapToLong(i -> (long) Math.pow(10, i));
+        counts.forEach(usersCount -> {
+            generate(usersCount);
+            checkOnFakeData(usersCount, parser);
+        });
     }
 
     /**
@@ -51,11 +62,11 @@ public class FakeDataCommand {
      *
      * @param usersCount ожидаемое кол-во пользователей
      */
-    private void generate(Integer usersCount) {
+    private void generate(long usersCount) {
         String filename = String.format(FILENAME_TEMPLATE, usersCount);
-        try (OutputStream out = Files.newOutputStream(Path.of(filename));
-             IOService ioService = new IOServiceImpl(System.in, new PrintStream(out))) {
-            FakeUsersDataGenerator generator = new FakeUsersDataGenerator(usersCount, ioService);
+        try (OutputStream out = new BufferedOutputStream(Files.newOutputStream(Path.of(filename)), GENERATE_BUFFER_SIZE);
+             IOService ioService = new IOServiceImpl(System.in, out)) {
+            FakeUsersDataGenerator generator = new FakeUsersDataGenerator(fakeDataOptions.createSettings(usersCount), ioService);
             generator.generate();
         } catch (IOException e) {
             log.error("Generate fake data for {} error", usersCount, e);
@@ -68,20 +79,19 @@ public class FakeDataCommand {
      * @param userCount - кол-во пользователей
      * @param parser    - парсер строки в объект пользователя
      */
-    private void checkOnFakeData(Integer userCount, UserParser parser) {
+    private void checkOnFakeData(long userCount, UserParser parser) {
         try {
             String inFilename = String.format(FILENAME_TEMPLATE, userCount);
             String outFilename = String.format(FILE_OUTPUT_TEMPLATE, userCount);
 
-            try (InputStream in = Files.newInputStream(Path.of(inFilename));
-                 OutputStream out = Files.newOutputStream(Path.of(outFilename));
-                 IOService ioService = new IOServiceImpl(in, out)) {
+            try (OutputStream out = new FileOutputStream(outFilename);
+                 IOService ioService = new MappedFileIOService(Path.of(inFilename), out)) {
                 log.info("**************************************");
-                log.info("migrate userCount {} ", userCount);
+                log.info("migrate userCount {} mode {}", userCount, options.getMode().getArgument());
 
                 long start = System.currentTimeMillis();
 
-                UserMigration migration = new UserMigration(ioService, parser);
+                Migration migration = options.createMigration(ioService, parser);
                 migration.migrate();
 
                 long stop = System.currentTimeMillis();
@@ -0,0 +1,103 @@
+package ru.larna.commands;
+
+import ru.larna.util.generator.FakeDataSettings;
+
+/**
+ * Параметры генерации фейковых данных, полученные из аргументов командной строки.
+ * Поддерживаемые аргументы:
+ * --fake-users=N            - кол-во строк, по умолчанию генерируются наборы из 10, 100 ... 10^6 строк
+ * --seed=N                  - начальное значение генератора случайных чисел
+ * --emails-per-user=MIN-MAX - кол-во email в строке
+ * --zipf=S                  - показатель распределения Ципфа размеров кластеров, 0 - равномерное
+ * --max-cluster=N           - максимальный размер кластера в строках
+ * --chain=N                 - длина цепочек строк, связанных общими email
+ * --interleave-chains       - выводить строки цепочек так, чтобы получить максимум слияний
+ * --invalid-share=P         - доля некорректных строк от 0 до 1
+ */
+public class FakeDataOptions {
+    private static final String USERS_OPTION = "--fake-users=";
+    private static final String SEED_OPTION = "--seed=";
+    private static final String EMAILS_OPTION = "--emails-per-user=";
+    private static final String ZIPF_OPTION = "--zipf=";
+    private static final String MAX_CLUSTER_OPTION = "--max-cluster=";
+    private static final String CHAIN_OPTION = "--chain=";
+    private static final String INTERLEAVE_OPTION = "--interleave-chains";
+    private static final String INVALID_SHARE_OPTION = "--invalid-share=";
+
+    private final FakeDataSettings.FakeDataSettingsBuilder settings = FakeDataSettings.builder();
+    private Long usersCount;
+
+    private FakeDataOptions() {
+    }
+
+    /**
+     * Разобрать аргументы командной строки. Аргументы, не относящиеся к генерации данных, пропускаются.
+     *
+     * @param args аргументы командной строки
+     * @return возвращает параметры генерации
+     * @throws IllegalArgumentException в случае некорректного значения аргумента
+     */
+    public static FakeDataOptions parse(String... args) {
+        FakeDataOptions options = new FakeDataOptions();
+        if (args == null)
+            return options;
+
+        try {
+            for (String arg : args) {
+                if (arg.startsWith(USERS_OPTION))
+                    options.usersCount = Long.parseLong(value(arg, USERS_OPTION));
+                else if (arg.startsWith(SEED_OPTION))
+                    options.settings.seed(Long.parseLong(value(arg, SEED_OPTION)));
+                else if (arg.startsWith(EMAILS_OPTION))
+                    options.parseEmailsPerUser(value(arg, EMAILS_OPTION));
+                else if (arg.startsWith(ZIPF_OPTION))
+                    options.settings.zipfExponent(Double.parseDouble(value(arg, ZIPF_OPTION)));
+                else if (arg.startsWith(MAX_CLUSTER_OPTION))
+                    options.settings.maxClusterSize(Integer.parseInt(value(arg, MAX_CLUSTER_OPTION)));
+                else if (arg.startsWith(CHAIN_OPTION))
+                    options.settings.chainLength(Integer.parseInt(value(arg, CHAIN_OPTION)));
+                else if (arg.equals(INTERLEAVE_OPTION))
+                    options.settings.interleaveChains(true);
+                else if (arg.startsWith(INVALID_SHARE_OPTION))
+                    options.settings.invalidLineShare(Double.parseDouble(value(arg, INVALID_SHARE_OPTION)));
+            }
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Wrong value of option - " + e.getMessage(), e);
+        }
+        return options;
+    }
+
+    /**
+     * Кол-во строк, заданное аргументом --fake-users
+     *
+     * @return возвращает кол-во строк или null, если аргумент не задан
+     */
+    public Long getUsersCount() {
+        return usersCount;
+    }
+
+    /**
+     * Получить параметры генерации для заданного кол-ва строк
+     *
+     * @param usersCount кол-во строк
+     * @return возвращает параметры генерации
+     */
+    public FakeDataSettings createSettings(long usersCount) {
+        return settings.usersCount(usersCount).build();
+    }
+
+    private void parseEmailsPerUser(String value) {
+        int separator = value.indexOf('-');
+        if (separator < 0) {
+            int count = Integer.parseInt(value);
+            settings.minEmailsPerUser(count).maxEmailsPerUser(count);
+        } else {
+            settings.minEmailsPerUser(Integer.parseInt(value.substring(0, separator)))
+                    .maxEmailsPerUser(Integer.parseInt(value.substring(separator + 1)));
+        }
+    }
+
+    private static String value(String arg, String option) {
+        return arg.substring(option.length());
+    }
+}
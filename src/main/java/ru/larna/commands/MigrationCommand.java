@@ -1,11 +1,18 @@
 package ru.larna.commands;
 
 import lombok.extern.slf4j.Slf4j;
+import ru.larna.services.ColumnarUserReader;
 import ru.larna.services.IOService;
-import ru.larna.services.IOServiceImpl;
+import ru.larna.services.MeteredIOService;
+import ru.larna.services.Migration;
 import ru.larna.services.UserMigration;
+import ru.larna.util.metrics.MigrationMetrics;
+import ru.larna.util.metrics.ProgressReporter;
+import ru.larna.util.parsers.MeteredUserParser;
 import ru.larna.util.parsers.UserParser;
-import ru.larna.util.parsers.UserParserImpl;
+
+import java.io.IOException;
+import java.io.OutputStream;
 
 /**
  * Обработка аргументов командной строки
@@ -13,20 +20,69 @@ import ru.larna.util.parsers.UserParserImpl;
  */
 @Slf4j
 public class MigrationCommand {
-    private MigrationCommand() {
+    private final MigrationOptions options;
+
+    private MigrationCommand(MigrationOptions options) {
+        this.options = options;
     }
 
-    public static MigrationCommand getInstance() {
-        return new MigrationCommand();
+    public static MigrationCommand getInstance(MigrationOptions options) {
+        return new MigrationCommand(options);
     }
 
     /**
      * Запустить процесс слияния пользователей
      */
     public void execute() {
-        final UserParser parser = new UserParserImpl();
-        try (IOService ioService = new IOServiceImpl(System.in, System.out)) {
-            new UserMigration(ioService, parser).migrate();
+        if (options.getColumnarFile() != null) {
+            convertToText();
+            return;
+        }
+        final UserParser parser = options.createParser();
+        try (IOService ioService = options.createIOService()) {
+            if (options.isMetrics())
+                migrateWithMetrics(ioService, parser);
+            else
+                options.createMigration(ioService, parser).migrate();
+        } catch (IOException e) {
+            log.error("Open input error", e);
+        }
+    }
+
+    /**
+     * Преобразовать файл колоночного формата в текстовый формат
+     */
+    private void convertToText() {
+        try (OutputStream out = options.createOutputStream()) {
+            ColumnarUserReader.toText(options.getColumnarFile(), out);
+        } catch (IOException e) {
+            log.error("Convert columnar file error", e);
+        }
+    }
+
+    /**
+     * Запустить слияние со сбором метрик: чтение, разбор и слияние учитываются в метриках, метрики публикуются
+     * в JMX на время слияния, строка прогресса периодически выводится в stderr
+     */
+    private void migrateWithMetrics(IOService ioService, UserParser parser) {
+        MigrationMetrics metrics = new MigrationMetrics();
+        Migration migration = options.createMigration(new MeteredIOService(ioService, metrics),
+                new MeteredUserParser(parser, metrics), metrics);
+        metrics.setClustersCount(migration::getActualUsersCount);
+        if (migration instanceof UserMigration) {
+            UserMigration userMigration = (UserMigration) migration;
+            metrics.setLargestClusterSize(userMigration::getLargestClusterSize);
+            metrics.setEmailDictionaryLoadFactor(userMigration::getEmailDictionaryLoadFactor);
+            metrics.setEmailPrefilterFalsePositiveRate(userMigration::getEmailPrefilterFalsePositiveRate);
+        }
+
+        metrics.register();
+        ProgressReporter reporter = new ProgressReporter(metrics, System.err, options.getProgressInterval());
+        try {
+            migration.migrate();
+        } finally {
+            reporter.close();
+            metrics.unregister();
         }
     }
 }
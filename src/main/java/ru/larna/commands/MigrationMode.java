@@ -0,0 +1,61 @@
+package ru.larna.commands;
+
+import java.util.Arrays;
+
+/**
+ * Режим (алгоритм) слияния пользователей, выбираемый аргументом командной строки --mode
+ */
+public enum MigrationMode {
+    /**
+     * Слияние в пользователя с наименьшим идентификатором, UserMigration
+     */
+    DEFAULT("default"),
+    /**
+     * Слияние на основе системы непересекающихся множеств, UnionFindUserMigration
+     */
+    UNION_FIND("union-find"),
+    /**
+     * Слияние в два прохода с временным файлом для данных, не помещающихся в память, TwoPassUserMigration
+     */
+    TWO_PASS("two-pass"),
+    /**
+     * Параллельное слияние порций строк с последующим объединением результатов, ShardedUserMigration
+     */
+    SHARDED("sharded"),
+    /**
+     * Инкрементальное слияние новых строк с постоянным индексом на диске, IncrementalUserMigration
+     */
+    INCREMENTAL("incremental"),
+    /**
+     * Потоковое слияние строк по мере поступления через Flow.Publisher, StreamingUserMigration
+     */
+    STREAMING("streaming"),
+    /**
+     * Слияние с ограниченной памятью на основе внешней сортировки, ExternalSortUserMigration
+     */
+    EXTERNAL_SORT("external-sort");
+
+    private final String argument;
+
+    MigrationMode(String argument) {
+        this.argument = argument;
+    }
+
+    public String getArgument() {
+        return argument;
+    }
+
+    /**
+     * Получить режим по значению аргумента командной строки
+     *
+     * @param argument значение аргумента
+     * @return возвращает режим слияния
+     * @throws IllegalArgumentException если режим с таким названием не существует
+     */
+    public static MigrationMode of(String argument) {
+        return Arrays.stream(values())
+                .filter(mode -> mode.argument.equals(argument))
+                .findFirst()
+                .orElseThrow(() -> new IllegalArgumentException("Unknown migration mode - " + argument));
+    }
+}
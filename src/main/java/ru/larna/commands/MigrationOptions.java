@@ -0,0 +1,509 @@
+package ru.larna.commands;
+
+import ru.larna.services.*;
+import ru.larna.util.canonicalizers.EmailCanonicalizer;
+import ru.larna.util.canonicalizers.ProviderRule;
+import ru.larna.util.metrics.MigrationMetrics;
+import ru.larna.util.parsers.CanonicalizingUserParser;
+import ru.larna.util.parsers.UserParser;
+
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * Параметры запуска, полученные из аргументов командной строки.
+ * Поддерживаемые аргументы:
+ * --mode=default|union-find|two-pass|sharded|incremental|streaming|external-sort - алгоритм слияния пользователей,
+ *                          в режиме sharded email пользователя выводятся в порядке первого появления, а не слияния
+ * --spill-dir=path       - каталог временных файлов режимов two-pass и external-sort
+ * --memory-limit=N       - объем памяти в Мб на сортировку режима external-sort
+ * --index-dir=path       - каталог постоянного индекса режима incremental
+ * --parser=regex|scanner|swar - реализация парсера строки пользователя
+ * --pipeline             - разбор строк пулом потоков параллельно со слиянием
+ * --threads=N            - кол-во потоков разбора и режима sharded, по умолчанию кол-во процессоров
+ * --input=path[,path...] - входные файлы или шаблоны glob, по умолчанию стандартный ввод. Один несжатый файл
+ *                          читается через отображение в память, несколько файлов и файлы .gz - параллельно в --threads потоков
+ * --output=path          - файл результата, пишется через FileChannel, по умолчанию стандартный вывод
+ * --snapshot=path        - файл снимка состояния режима default для продолжения прерванного запуска, требует --input,
+ *                          не совместим с --pipeline
+ * --checkpoint-lines=N   - кол-во строк между сохранениями снимка
+ * --email-prefilter=P    - доля ложных ответов фильтра Блума перед словарем email (режим default),
+ *                          по умолчанию 0 - без фильтра
+ * --stop-email=ADDR      - email, исключаемый из слияния (режим default): адрес целиком или локальная часть
+ *                          с '@' в любом домене, например noreply@. Аргумент можно повторять
+ * --stop-list=path       - файл списка исключаемых email, элемент на строку
+ * --max-email-degree=N   - email, встреченный более чем в N строках, исключается из дальнейшего слияния (режим default)
+ * --guard-report=path    - файл отчета об исключенных email и их степенях
+ * --canonicalize         - слияние по каноническому виду email (режим default) с правилами провайдеров по умолчанию
+ * --canonical-rule=DOMAIN[=CANONICAL_DOMAIN][:dots][:plus][:lower] - правило провайдера вместо правил по умолчанию,
+ *                          аргумент можно повторять
+ * --canonical-cache=N    - размер кэша канонического вида доменов
+ * --metrics              - сбор метрик слияния: публикация в JMX и строка прогресса в stderr
+ * --progress-interval=N  - период вывода строки прогресса в секундах
+ * --reject-file=path     - пропуск некорректных строк с записью в файл вместо прекращения слияния
+ * --max-rejects=N        - допустимое кол-во отклоненных строк, при превышении слияние прекращается
+ * --output-format=text|columnar - формат вывода, колоночный формат требует --output
+ * --columnar-to-text=path - преобразование файла колоночного формата в текст вместо слияния
+ */
+public class MigrationOptions {
+    private static final String MODE_OPTION = "--mode=";
+    private static final String SPILL_DIR_OPTION = "--spill-dir=";
+    private static final String INDEX_DIR_OPTION = "--index-dir=";
+    private static final String MEMORY_LIMIT_OPTION = "--memory-limit=";
+    private static final String DEFAULT_INDEX_DIR = "migration-index";
+    private static final String PARSER_OPTION = "--parser=";
+    private static final String PIPELINE_OPTION = "--pipeline";
+    private static final String THREADS_OPTION = "--threads=";
+    private static final String INPUT_OPTION = "--input=";
+    private static final String GLOB_CHARS = "*?[{";
+    private static final String OUTPUT_OPTION = "--output=";
+    private static final String SNAPSHOT_OPTION = "--snapshot=";
+    private static final String CHECKPOINT_LINES_OPTION = "--checkpoint-lines=";
+    private static final String EMAIL_PREFILTER_OPTION = "--email-prefilter=";
+    private static final String STOP_EMAIL_OPTION = "--stop-email=";
+    private static final String STOP_LIST_OPTION = "--stop-list=";
+    private static final String MAX_EMAIL_DEGREE_OPTION = "--max-email-degree=";
+    private static final String GUARD_REPORT_OPTION = "--guard-report=";
+    private static final String CANONICALIZE_OPTION = "--canonicalize";
+    private static final String CANONICAL_RULE_OPTION = "--canonical-rule=";
+    private static final String CANONICAL_CACHE_OPTION = "--canonical-cache=";
+    private static final String METRICS_OPTION = "--metrics";
+    private static final String PROGRESS_INTERVAL_OPTION = "--progress-interval=";
+    private static final int DEFAULT_PROGRESS_INTERVAL = 10;
+    private static final String REJECT_FILE_OPTION = "--reject-file=";
+    private static final String MAX_REJECTS_OPTION = "--max-rejects=";
+    private static final String OUTPUT_FORMAT_OPTION = "--output-format=";
+    private static final String COLUMNAR_TO_TEXT_OPTION = "--columnar-to-text=";
+
+    private MigrationMode mode = MigrationMode.DEFAULT;
+    private Path spillDirectory = Path.of(System.getProperty("java.io.tmpdir"));
+    private Path indexDirectory = Path.of(DEFAULT_INDEX_DIR);
+    private long memoryLimit = ExternalSortUserMigration.DEFAULT_MEMORY_LIMIT;
+    private ParserType parserType = ParserType.REGEX;
+    private boolean pipeline;
+    private int threads = Runtime.getRuntime().availableProcessors();
+    private final List<String> inputs = new ArrayList<>();
+    private Path outputFile;
+    private Path snapshotFile;
+    private int checkpointLines = UserMigration.DEFAULT_CHECKPOINT_INTERVAL;
+    private double emailPrefilterRate = UserMigration.DEFAULT_PREFILTER_FALSE_POSITIVE_RATE;
+    private final List<String> stopList = new ArrayList<>();
+    private int maxEmailDegree = ClusterGuard.UNLIMITED_DEGREE;
+    private Path guardReportFile;
+    private boolean canonicalize;
+    private final List<ProviderRule> canonicalRules = new ArrayList<>();
+    private int canonicalCacheSize = EmailCanonicalizer.DEFAULT_CACHE_SIZE;
+    private boolean metrics;
+    private int progressInterval = DEFAULT_PROGRESS_INTERVAL;
+    private Path rejectFile;
+    private long maxRejects = TolerantUserSource.UNLIMITED;
+    private OutputFormat outputFormat = OutputFormat.TEXT;
+    private Path columnarFile;
+
+    private MigrationOptions() {
+    }
+
+    /**
+     * Разобрать аргументы командной строки. Аргументы, не относящиеся к параметрам слияния, пропускаются.
+     *
+     * @param args аргументы командной строки
+     * @return возвращает параметры запуска
+     * @throws IllegalArgumentException в случае некорректного значения аргумента
+     */
+    public static MigrationOptions parse(String... args) {
+        MigrationOptions options = new MigrationOptions();
+        if (args == null)
+            return options;
+
+        for (String arg : args) {
+            if (arg.startsWith(MODE_OPTION))
+                options.mode = MigrationMode.of(arg.substring(MODE_OPTION.length()));
+            else if (arg.startsWith(SPILL_DIR_OPTION))
+                options.spillDirectory = Path.of(arg.substring(SPILL_DIR_OPTION.length()));
+            else if (arg.startsWith(INDEX_DIR_OPTION))
+                options.indexDirectory = Path.of(arg.substring(INDEX_DIR_OPTION.length()));
+            else if (arg.startsWith(MEMORY_LIMIT_OPTION))
+                options.memoryLimit = (long) parsePositive(arg, MEMORY_LIMIT_OPTION) << 20;
+            else if (arg.startsWith(PARSER_OPTION))
+                options.parserType = ParserType.of(arg.substring(PARSER_OPTION.length()));
+            else if (arg.equals(PIPELINE_OPTION))
+                options.pipeline = true;
+            else if (arg.startsWith(THREADS_OPTION))
+                options.threads = parsePositive(arg, THREADS_OPTION);
+            else if (arg.startsWith(INPUT_OPTION))
+                options.inputs.addAll(List.of(arg.substring(INPUT_OPTION.length()).split(",")));
+            else if (arg.startsWith(OUTPUT_OPTION))
+                options.outputFile = Path.of(arg.substring(OUTPUT_OPTION.length()));
+            else if (arg.startsWith(SNAPSHOT_OPTION))
+                options.snapshotFile = Path.of(arg.substring(SNAPSHOT_OPTION.length()));
+            else if (arg.startsWith(CHECKPOINT_LINES_OPTION))
+                options.checkpointLines = parsePositive(arg, CHECKPOINT_LINES_OPTION);
+            else if (arg.startsWith(EMAIL_PREFILTER_OPTION))
+                options.emailPrefilterRate = parseRate(arg, EMAIL_PREFILTER_OPTION);
+            else if (arg.startsWith(STOP_EMAIL_OPTION))
+                options.stopList.add(arg.substring(STOP_EMAIL_OPTION.length()));
+            else if (arg.startsWith(STOP_LIST_OPTION))
+                options.stopList.addAll(readStopList(arg));
+            else if (arg.startsWith(MAX_EMAIL_DEGREE_OPTION))
+                options.maxEmailDegree = parsePositive(arg, MAX_EMAIL_DEGREE_OPTION);
+            else if (arg.startsWith(GUARD_REPORT_OPTION))
+                options.guardReportFile = Path.of(arg.substring(GUARD_REPORT_OPTION.length()));
+            else if (arg.equals(CANONICALIZE_OPTION))
+                options.canonicalize = true;
+            else if (arg.startsWith(CANONICAL_RULE_OPTION)) {
+                options.canonicalize = true;
+                options.canonicalRules.add(parseRule(arg));
+            } else if (arg.startsWith(CANONICAL_CACHE_OPTION))
+                options.canonicalCacheSize = parsePositive(arg, CANONICAL_CACHE_OPTION);
+            else if (arg.equals(METRICS_OPTION))
+                options.metrics = true;
+            else if (arg.startsWith(PROGRESS_INTERVAL_OPTION))
+                options.progressInterval = parsePositive(arg, PROGRESS_INTERVAL_OPTION);
+            else if (arg.startsWith(REJECT_FILE_OPTION))
+                options.rejectFile = Path.of(arg.substring(REJECT_FILE_OPTION.length()));
+            else if (arg.startsWith(MAX_REJECTS_OPTION))
+                options.maxRejects = parsePositive(arg, MAX_REJECTS_OPTION);
+            else if (arg.startsWith(OUTPUT_FORMAT_OPTION))
+                options.outputFormat = OutputFormat.of(arg.substring(OUTPUT_FORMAT_OPTION.length()));
+            else if (arg.startsWith(COLUMNAR_TO_TEXT_OPTION))
+                options.columnarFile = Path.of(arg.substring(COLUMNAR_TO_TEXT_OPTION.length()));
+        }
+        if (options.canonicalize && options.mode != MigrationMode.DEFAULT)
+            throw new IllegalArgumentException("Email canonicalization is supported only in default mode");
+        if (options.snapshotFile != null && options.mode != MigrationMode.DEFAULT)
+            throw new IllegalArgumentException("Snapshots are supported only in default mode");
+        if (options.snapshotFile != null && options.pipeline)
+            throw new IllegalArgumentException("Snapshots are not supported with --pipeline");
+        if (options.emailPrefilterRate != UserMigration.DEFAULT_PREFILTER_FALSE_POSITIVE_RATE
+                && options.mode != MigrationMode.DEFAULT)
+            throw new IllegalArgumentException("Email prefilter is supported only in default mode");
+        if (options.isClusterGuard() && options.mode != MigrationMode.DEFAULT)
+            throw new IllegalArgumentException("Shared email exclusion is supported only in default mode");
+        if (options.rejectFile != null && (options.mode == MigrationMode.SHARDED || options.mode == MigrationMode.STREAMING))
+            throw new IllegalArgumentException("Reject file is not supported in " + options.mode.getArgument() + " mode");
+        if (options.outputFormat == OutputFormat.COLUMNAR && options.outputFile == null)
+            throw new IllegalArgumentException("Columnar output format requires --output");
+        return options;
+    }
+
+    public MigrationMode getMode() {
+        return mode;
+    }
+
+    public Path getSpillDirectory() {
+        return spillDirectory;
+    }
+
+    public Path getIndexDirectory() {
+        return indexDirectory;
+    }
+
+    public long getMemoryLimit() {
+        return memoryLimit;
+    }
+
+    public boolean isPipeline() {
+        return pipeline;
+    }
+
+    public int getThreads() {
+        return threads;
+    }
+
+    public ParserType getParserType() {
+        return parserType;
+    }
+
+    /**
+     * Получить входные файлы: шаблоны glob раскрываются в файлы, упорядоченные по имени
+     *
+     * @return возвращает входные файлы в порядке чтения, пустой список - чтение стандартного ввода
+     * @throws IOException в случае ошибки чтения каталога или если шаблону не соответствует ни один файл
+     */
+    public List<Path> getInputFiles() throws IOException {
+        List<Path> files = new ArrayList<>();
+        for (String input : inputs)
+            files.addAll(resolveInput(input));
+        return files;
+    }
+
+    public Path getOutputFile() {
+        return outputFile;
+    }
+
+    public Path getSnapshotFile() {
+        return snapshotFile;
+    }
+
+    public int getCheckpointLines() {
+        return checkpointLines;
+    }
+
+    public double getEmailPrefilterRate() {
+        return emailPrefilterRate;
+    }
+
+    public List<String> getStopList() {
+        return stopList;
+    }
+
+    public int getMaxEmailDegree() {
+        return maxEmailDegree;
+    }
+
+    public Path getGuardReportFile() {
+        return guardReportFile;
+    }
+
+    /**
+     * Проверка: Задана ли защита от гигантского пользователя?
+     *
+     * @return возвращает true, если задан список исключений, допустимая степень email или файл отчета
+     */
+    public boolean isClusterGuard() {
+        return !stopList.isEmpty() || maxEmailDegree != ClusterGuard.UNLIMITED_DEGREE || guardReportFile != null;
+    }
+
+    public boolean isCanonicalize() {
+        return canonicalize;
+    }
+
+    public boolean isMetrics() {
+        return metrics;
+    }
+
+    public int getProgressInterval() {
+        return progressInterval;
+    }
+
+    public Path getRejectFile() {
+        return rejectFile;
+    }
+
+    public long getMaxRejects() {
+        return maxRejects;
+    }
+
+    public OutputFormat getOutputFormat() {
+        return outputFormat;
+    }
+
+    public Path getColumnarFile() {
+        return columnarFile;
+    }
+
+    /**
+     * Создать сервис ввода/вывода: чтение входного файла через отображение в память, если указан --input,
+     * иначе чтение стандартного ввода. Результат выводится в файл, если указан --output, иначе в стандартный вывод.
+     * В колоночном формате результат выводится в файл --output через ColumnarIOService.
+     *
+     * @return возвращает сервис ввода/вывода
+     * @throws IOException в случае ошибки открытия входного или выходного файла
+     */
+    public IOService createIOService() throws IOException {
+        if (outputFormat == OutputFormat.COLUMNAR)
+            return new ColumnarIOService(createIOService(System.out), outputFile);
+        return createIOService(createOutputStream());
+    }
+
+    /**
+     * Создать вывод текста: в файл, если указан --output, иначе в стандартный вывод
+     *
+     * @return возвращает поток вывода
+     * @throws IOException в случае ошибки открытия выходного файла
+     */
+    public OutputStream createOutputStream() throws IOException {
+        return outputFile != null ? new FileOutputStream(outputFile.toFile()) : System.out;
+    }
+
+    private IOService createIOService(OutputStream out) throws IOException {
+        try {
+            List<Path> inputFiles = getInputFiles();
+            if (inputFiles.isEmpty())
+                return new IOServiceImpl(System.in, out);
+            if (inputFiles.size() == 1 && !inputFiles.get(0).toString().endsWith(".gz"))
+                return new MappedFileIOService(inputFiles.get(0), out);
+            return new MultiFileIOService(inputFiles, out, threads);
+        } catch (IOException e) {
+            out.close();
+            throw e;
+        }
+    }
+
+    /**
+     * Создать парсер строки пользователя выбранной реализации, с канонизацией email, если указан --canonicalize.
+     * Перед канонизацией в email допускаются заглавные буквы и '+'.
+     *
+     * @return возвращает парсер
+     */
+    public UserParser createParser() {
+        UserParser parser = parserType.createParser(canonicalize);
+        if (!canonicalize)
+            return parser;
+        List<ProviderRule> rules = canonicalRules.isEmpty() ? EmailCanonicalizer.defaultRules() : canonicalRules;
+        return new CanonicalizingUserParser(parser, new EmailCanonicalizer(rules, canonicalCacheSize));
+    }
+
+    /**
+     * Создать процесс слияния в соответствии с выбранным режимом.
+     * Со снимками состояния строки читаются последовательно, чтобы смещение снимка соответствовало
+     * последней учтенной строке.
+     *
+     * @param ioService сервис ввода/вывода
+     * @param parser    парсер строки пользователя
+     * @return возвращает процесс слияния
+     */
+    public Migration createMigration(IOService ioService, UserParser parser) {
+        return createMigration(ioService, parser, null);
+    }
+
+    /**
+     * Создать процесс слияния, учитывающий операции слияния в метриках. Режимы sharded и streaming
+     * получают пользователей не через UserSource, поэтому для них слияние в метриках не учитывается.
+     *
+     * @param ioService сервис ввода/вывода
+     * @param parser    парсер строки пользователя
+     * @param metrics   метрики или null, если метрики не собираются
+     * @return возвращает процесс слияния
+     */
+    public Migration createMigration(IOService ioService, UserParser parser, MigrationMetrics metrics) {
+        UserSource userSource = tolerate(meter(createUserSource(), metrics));
+        switch (mode) {
+            case UNION_FIND:
+                return new UnionFindUserMigration(ioService, parser, userSource);
+            case TWO_PASS:
+                return new TwoPassUserMigration(ioService, parser, userSource, spillDirectory);
+            case SHARDED:
+                return new ShardedUserMigration(ioService, parser, threads);
+            case INCREMENTAL:
+                return new IncrementalUserMigration(ioService, parser, userSource, indexDirectory);
+            case STREAMING:
+                return new StreamingUserMigration(ioService, parser);
+            case EXTERNAL_SORT:
+                return new ExternalSortUserMigration(ioService, parser, userSource, spillDirectory, memoryLimit);
+            case DEFAULT:
+            default:
+                return new UserMigration(ioService, parser, userSource, snapshotFile, checkpointLines,
+                        emailPrefilterRate, createClusterGuard());
+        }
+    }
+
+    /**
+     * Создать защиту от гигантского пользователя, если она задана
+     *
+     * @return возвращает защиту или null
+     */
+    public ClusterGuard createClusterGuard() {
+        return isClusterGuard() ? new ClusterGuard(stopList, maxEmailDegree, guardReportFile) : null;
+    }
+
+    /**
+     * Создать источник пользователей: конвейерный, если указан --pipeline, иначе последовательный
+     *
+     * @return возвращает источник пользователей
+     */
+    public UserSource createUserSource() {
+        return pipeline ? new PipelinedUserSource(threads) : new SequentialUserSource();
+    }
+
+    /**
+     * Разобрать правило провайдера: DOMAIN[=CANONICAL_DOMAIN][:dots][:plus][:lower]
+     */
+    private static ProviderRule parseRule(String arg) {
+        String[] parts = arg.substring(CANONICAL_RULE_OPTION.length()).split(":");
+        String[] domains = parts[0].split("=", 2);
+        if (domains[0].isEmpty())
+            throw new IllegalArgumentException("Wrong value of option - " + arg);
+        ProviderRule.ProviderRuleBuilder rule = ProviderRule.builder()
+                .domain(domains[0])
+                .canonicalDomain(domains.length > 1 ? domains[1] : null);
+        for (int i = 1; i < parts.length; i++) {
+            switch (parts[i]) {
+                case "dots":
+                    rule.stripDots(true);
+                    break;
+                case "plus":
+                    rule.stripPlusTag(true);
+                    break;
+                case "lower":
+                    rule.lowercaseLocalPart(true);
+                    break;
+                default:
+                    throw new IllegalArgumentException("Wrong value of option - " + arg);
+            }
+        }
+        return rule.build();
+    }
+
+    private static List<String> readStopList(String arg) {
+        Path file = Path.of(arg.substring(STOP_LIST_OPTION.length()));
+        try {
+            return ClusterGuard.readStopList(file);
+        } catch (IOException e) {
+            throw new IllegalArgumentException("Can't read stop list - " + file, e);
+        }
+    }
+
+    private UserSource tolerate(UserSource userSource) {
+        return rejectFile == null ? userSource : new TolerantUserSource(userSource, rejectFile, maxRejects);
+    }
+
+    /**
+     * Раскрыть шаблон glob (символы *?[{ в имени файла) в файлы каталога, упорядоченные по имени
+     */
+    private static List<Path> resolveInput(String input) throws IOException {
+        Path path = Path.of(input);
+        String pattern = path.getFileName().toString();
+        if (pattern.chars().noneMatch(c -> GLOB_CHARS.indexOf(c) >= 0))
+            return List.of(path);
+        Path directory = path.getParent() != null ? path.getParent() : Path.of("");
+        List<Path> files = new ArrayList<>();
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(directory.toAbsolutePath(), pattern)) {
+            for (Path file : stream) {
+                if (Files.isRegularFile(file))
+                    files.add(directory.resolve(file.getFileName()));
+            }
+        }
+        if (files.isEmpty())
+            throw new NoSuchFileException(input, null, "No files match the input pattern");
+        files.sort(Comparator.comparing(Path::toString));
+        return files;
+    }
+
+    private static UserSource meter(UserSource userSource, MigrationMetrics metrics) {
+        return metrics == null ? userSource : new MeteredUserSource(userSource, metrics);
+    }
+
+    private static int parsePositive(String arg, String option) {
+        try {
+            int value = Integer.parseInt(arg.substring(option.length()));
+            if (value > 0)
+                return value;
+        } catch (NumberFormatException e) {
+            // сообщение об ошибке ниже
+        }
+        throw new IllegalArgumentException("Wrong value of option - " + arg);
+    }
+
+    /**
+     * Разобрать долю: 0 или число больше 0 и меньше 1
+     */
+    private static double parseRate(String arg, String option) {
+        try {
+            double value = Double.parseDouble(arg.substring(option.length()));
+            if (value >= 0 && value < 1)
+                return value;
+        } catch (NumberFormatException e) {
+            // сообщение об ошибке ниже
+        }
+        throw new IllegalArgumentException("Wrong value of option - " + arg);
+    }
+}
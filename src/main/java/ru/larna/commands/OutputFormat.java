@@ -0,0 +1,41 @@
+package ru.larna.commands;
+
+import java.util.Arrays;
+
+/**
+ * Формат вывода объединенных пользователей, выбираемый аргументом командной строки --output-format
+ */
+public enum OutputFormat {
+    /**
+     * Текстовый формат name -> email1, email2
+     */
+    TEXT("text"),
+    /**
+     * Двоичный колоночный формат, ColumnarUserWriter
+     */
+    COLUMNAR("columnar");
+
+    private final String argument;
+
+    OutputFormat(String argument) {
+        this.argument = argument;
+    }
+
+    public String getArgument() {
+        return argument;
+    }
+
+    /**
+     * Получить формат по значению аргумента командной строки
+     *
+     * @param argument значение аргумента
+     * @return возвращает формат вывода
+     * @throws IllegalArgumentException если формата с таким названием не существует
+     */
+    public static OutputFormat of(String argument) {
+        return Arrays.stream(values())
+                .filter(format -> format.argument.equals(argument))
+                .findFirst()
+                .orElseThrow(() -> new IllegalArgumentException("Unknown output format - " + argument));
+    }
+}
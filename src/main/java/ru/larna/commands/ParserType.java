@@ -0,0 +1,72 @@
+package ru.larna.commands;
+
+import ru.larna.util.parsers.ScanningUserParser;
+import ru.larna.util.parsers.SwarUserParser;
+import ru.larna.util.parsers.UserParser;
+import ru.larna.util.parsers.UserParserImpl;
+
+import java.util.Arrays;
+import java.util.function.Function;
+
+/**
+ * Реализация парсера строки пользователя, выбираемая аргументом командной строки --parser
+ */
+public enum ParserType {
+    /**
+     * Разбор регулярным выражением, UserParserImpl
+     */
+    REGEX("regex", UserParserImpl::new),
+    /**
+     * Разбор однопроходным сканированием строки, ScanningUserParser
+     */
+    SCANNER("scanner", ScanningUserParser::new),
+    /**
+     * Разбор по индексу разделителей, найденных по 8 байт за раз, SwarUserParser
+     */
+    SWAR("swar", SwarUserParser::new);
+
+    private final String argument;
+    private final Function<Boolean, UserParser> factory;
+
+    ParserType(String argument, Function<Boolean, UserParser> factory) {
+        this.argument = argument;
+        this.factory = factory;
+    }
+
+    public String getArgument() {
+        return argument;
+    }
+
+    /**
+     * Создать парсер
+     *
+     * @return возвращает новый объект парсера
+     */
+    public UserParser createParser() {
+        return createParser(false);
+    }
+
+    /**
+     * Создать парсер
+     *
+     * @param relaxedEmails допускать в email заглавные буквы и '+', используется перед канонизацией email
+     * @return возвращает новый объект парсера
+     */
+    public UserParser createParser(boolean relaxedEmails) {
+        return factory.apply(relaxedEmails);
+    }
+
+    /**
+     * Получить реализацию парсера по значению аргумента командной строки
+     *
+     * @param argument значение аргумента
+     * @return возвращает реализацию парсера
+     * @throws IllegalArgumentException если парсера с таким названием не существует
+     */
+    public static ParserType of(String argument) {
+        return Arrays.stream(values())
+                .filter(type -> type.argument.equals(argument))
+                .findFirst()
+                .orElseThrow(() -> new IllegalArgumentException("Unknown parser - " + argument));
+    }
+}
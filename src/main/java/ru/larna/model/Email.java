@@ -1,14 +1,30 @@
 package ru.larna.model;
 
+import lombok.EqualsAndHashCode;
 import lombok.Value;
 
 /**
  * Класс описывающий email.
+ * Email сравниваются по ключу: каноническому виду адреса, если адрес прошел канонизацию, иначе по самому адресу.
  */
 @Value
+@EqualsAndHashCode(of = "key")
 public class Email {
     /**
-     * Строка email адреса
+     * Строка email адреса в исходном написании
      */
     private final String email;
+    /**
+     * Ключ слияния: канонический вид адреса
+     */
+    private final String key;
+
+    public Email(String email) {
+        this(email, email);
+    }
+
+    public Email(String email, String key) {
+        this.email = email;
+        this.key = key;
+    }
 }
@@ -0,0 +1,73 @@
+package ru.larna.services;
+
+import lombok.extern.slf4j.Slf4j;
+import ru.larna.model.User;
+import ru.larna.util.parsers.UserParser;
+import ru.larna.util.parsers.UserWrongFormatException;
+
+import java.io.IOException;
+
+/**
+ * Базовый класс процесса слияния: пользователи получаются из UserSource и по одному передаются на слияние
+ * в порядке следования строк, после чего выводится результат. В случае ошибки ввода/вывода или некорректной строки
+ * результат не выводится.
+ */
+@Slf4j
+public abstract class AbstractUserMigration implements Migration {
+    /**
+     * Сервис ввода/вывода
+     */
+    protected final IOService ioService;
+    /**
+     * Парсер строки пользователя
+     */
+    protected final UserParser userParser;
+    /**
+     * Источник пользователей
+     */
+    private final UserSource userSource;
+
+    protected AbstractUserMigration(IOService ioService, UserParser userParser, UserSource userSource) {
+        this.ioService = ioService;
+        this.userParser = userParser;
+        this.userSource = userSource;
+    }
+
+    /**
+     * Метод миграции/ слияния пользователей
+     */
+    @Override
+    public void migrate() {
+        try {
+            merge();
+            saveResult();
+        } catch (IOException e) {
+            log.error("Migration IOError", e);
+        } catch (UserWrongFormatException e) {
+            log.error("Migration wrong format", e);
+        }
+    }
+
+    /**
+     * Произвести слияние данных о пользователях
+     *
+     * @throws IOException в случае IO ошибки выбрасывает исключение
+     */
+    protected void merge() throws IOException {
+        userSource.readUsers(ioService, userParser, this::mergeUser);
+    }
+
+    /**
+     * Учесть очередного пользователя
+     *
+     * @param user пользователь
+     */
+    protected abstract void mergeUser(User user);
+
+    /**
+     * Сохранить/Вывести результат
+     *
+     * @throws IOException в случае IO ошибки выбрасывает исключение
+     */
+    protected abstract void saveResult() throws IOException;
+}
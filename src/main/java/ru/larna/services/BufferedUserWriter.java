@@ -0,0 +1,122 @@
+package ru.larna.services;
+
+import ru.larna.util.structures.EmailDictionary;
+
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Пакетный вывод пользователей: имя и email копируются байтами прямо в переиспользуемый буфер,
+ * который передается в канал крупными порциями при заполнении и при flush.
+ * На пользователя не создается ни одной строки, email копируются из арены EmailDictionary.
+ * Строки разделяются System.lineSeparator(), как в PrintStream.println.
+ */
+public class BufferedUserWriter implements UserWriter {
+    public static final int DEFAULT_BUFFER_SIZE = 1 << 16;
+    public static final int DEFAULT_DIRECT_BUFFER_SIZE = 1 << 20;
+    private static final byte[] NAME_SEPARATOR = " -> ".getBytes(StandardCharsets.US_ASCII);
+    private static final byte[] EMAIL_SEPARATOR = ", ".getBytes(StandardCharsets.US_ASCII);
+    private static final byte[] LINE_SEPARATOR = System.lineSeparator().getBytes(StandardCharsets.US_ASCII);
+
+    private final WritableByteChannel channel;
+    private final ByteBuffer buffer;
+    private boolean firstEmail;
+
+    public BufferedUserWriter(WritableByteChannel channel, ByteBuffer buffer) {
+        this.channel = channel;
+        this.buffer = buffer;
+    }
+
+    /**
+     * Создать вывод в поток. Для файла вывод выполняется через его FileChannel с буфером вне кучи,
+     * для остальных потоков - с буфером в куче.
+     *
+     * @param out поток вывода
+     * @return возвращает вывод пользователей
+     * @throws IOException в случае ошибки передачи ранее записанных в поток данных
+     */
+    public static BufferedUserWriter of(OutputStream out) throws IOException {
+        out.flush();
+        if (out instanceof FileOutputStream)
+            return new BufferedUserWriter(((FileOutputStream) out).getChannel(),
+                    ByteBuffer.allocateDirect(DEFAULT_DIRECT_BUFFER_SIZE));
+        return new BufferedUserWriter(Channels.newChannel(out), ByteBuffer.allocate(DEFAULT_BUFFER_SIZE));
+    }
+
+    @Override
+    public void startUser(String name) throws IOException {
+        put(name);
+        put(NAME_SEPARATOR);
+        firstEmail = true;
+    }
+
+    @Override
+    public void writeEmail(EmailDictionary dictionary, int emailId) throws IOException {
+        if (!firstEmail)
+            put(EMAIL_SEPARATOR);
+        firstEmail = false;
+        int length = dictionary.length(emailId);
+        for (int from = 0; from < length; ) {
+            if (!buffer.hasRemaining())
+                flushBuffer();
+            from += dictionary.writeTo(emailId, from, buffer);
+        }
+    }
+
+    @Override
+    public void writeEmail(CharSequence email) throws IOException {
+        if (!firstEmail)
+            put(EMAIL_SEPARATOR);
+        firstEmail = false;
+        put(email);
+    }
+
+    @Override
+    public void endUser() throws IOException {
+        put(LINE_SEPARATOR);
+    }
+
+    @Override
+    public void flush() throws IOException {
+        flushBuffer();
+    }
+
+    /**
+     * Вывести строку: ASCII символы копируются в буфер напрямую, остаток строки после первого не ASCII символа
+     * кодируется в UTF-8
+     */
+    private void put(CharSequence str) throws IOException {
+        for (int i = 0, length = str.length(); i < length; i++) {
+            char c = str.charAt(i);
+            if (c >= 0x80) {
+                put(str.subSequence(i, length).toString().getBytes(StandardCharsets.UTF_8));
+                break;
+            }
+            if (!buffer.hasRemaining())
+                flushBuffer();
+            buffer.put((byte) c);
+        }
+    }
+
+    private void put(byte[] bytes) throws IOException {
+        for (int from = 0; from < bytes.length; ) {
+            if (!buffer.hasRemaining())
+                flushBuffer();
+            int count = Math.min(buffer.remaining(), bytes.length - from);
+            buffer.put(bytes, from, count);
+            from += count;
+        }
+    }
+
+    private void flushBuffer() throws IOException {
+        buffer.flip();
+        while (buffer.hasRemaining())
+            channel.write(buffer);
+        buffer.clear();
+    }
+}
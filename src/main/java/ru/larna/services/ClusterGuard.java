@@ -0,0 +1,206 @@
+package ru.larna.services;
+
+import lombok.extern.slf4j.Slf4j;
+import ru.larna.util.structures.EmailDictionary;
+import ru.larna.util.structures.IntArrayList;
+
+import java.io.BufferedWriter;
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.*;
+
+/**
+ * Защита от гигантского пользователя: общий адрес (noreply@, test@) может связать в одного пользователя миллионы
+ * строк. Такие email исключаются из слияния: строка не сливается с другими пользователями по исключенному email,
+ * но сам email остается в результате у пользователя своей строки. Строка, все email которой исключены, становится
+ * отдельным пользователем.
+ * <p>
+ * Email исключается, если он есть в списке исключений (stop-list) или если его степень - кол-во строк, в которых
+ * он встречен, - превысила допустимую. Элемент списка исключений, оканчивающийся на '@', задает локальную часть
+ * адреса в любом домене, остальные элементы - адрес целиком. Email, превысивший допустимую степень, остается
+ * у пользователя, с которым был слит до превышения, а в следующих строках больше не связывает пользователей.
+ * <p>
+ * Исключенные email и их степени выводятся в отчет: email, степень и причина исключения (stop-list или fan-out),
+ * разделенные табуляцией. Объект не потокобезопасен, используется этапом слияния.
+ */
+@Slf4j
+public class ClusterGuard {
+    public static final int UNLIMITED_DEGREE = Integer.MAX_VALUE;
+    private static final String STOP_LIST = "stop-list";
+    private static final String FAN_OUT = "fan-out";
+    private static final char LOCAL_PART_END = '@';
+    private static final char COMMENT = '#';
+
+    /**
+     * Адреса списка исключений
+     */
+    private final Set<String> stopAddresses = new HashSet<>();
+    /**
+     * Локальные части списка исключений вместе с '@'
+     */
+    private final List<String> stopLocalParts = new ArrayList<>();
+    private final int maxEmailDegree;
+    private final Path reportFile;
+    /**
+     * Степень email по идентификатору email
+     */
+    private final IntArrayList degrees = new IntArrayList();
+    /**
+     * Идентификаторы email списка исключений в порядке первой встречи
+     */
+    private final IntArrayList stopListedIds = new IntArrayList();
+    /**
+     * Идентификаторы email, превысивших допустимую степень, в порядке исключения
+     */
+    private final IntArrayList fanOutIds = new IntArrayList();
+    private final BitSet excluded = new BitSet();
+
+    /**
+     * @param stopList       список исключений: адреса и локальные части, оканчивающиеся на '@'
+     * @param maxEmailDegree допустимая степень email, UNLIMITED_DEGREE - без ограничения
+     * @param reportFile     файл отчета об исключенных email, null - отчет только в лог
+     */
+    public ClusterGuard(Collection<String> stopList, int maxEmailDegree, Path reportFile) {
+        if (maxEmailDegree < 1)
+            throw new IllegalArgumentException("Max email degree must be positive");
+        for (String entry : stopList) {
+            if (entry.indexOf(LOCAL_PART_END) == entry.length() - 1)
+                stopLocalParts.add(entry);
+            else
+                stopAddresses.add(entry);
+        }
+        this.maxEmailDegree = maxEmailDegree;
+        this.reportFile = reportFile;
+    }
+
+    /**
+     * Прочитать список исключений: элемент на строку, пустые строки и строки комментариев (#) пропускаются
+     *
+     * @param file файл списка исключений
+     * @return возвращает элементы списка исключений
+     * @throws IOException в случае ошибки чтения файла
+     */
+    public static List<String> readStopList(Path file) throws IOException {
+        List<String> stopList = new ArrayList<>();
+        for (String line : Files.readAllLines(file, StandardCharsets.UTF_8)) {
+            String entry = line.trim();
+            if (!entry.isEmpty() && entry.charAt(0) != COMMENT)
+                stopList.add(entry);
+        }
+        return stopList;
+    }
+
+    /**
+     * Учесть встречу email в строке. Вызывается для каждого email строки, новые email - в порядке выдачи
+     * идентификаторов. Список исключений проверяется при первой встрече email.
+     *
+     * @param emailId идентификатор email
+     * @param key     ключ email
+     * @return возвращает true - email участвует в слиянии, false - email исключен из слияния
+     */
+    public boolean countOccurrence(int emailId, String key) {
+        if (emailId == degrees.size()) {
+            degrees.add(1);
+            if (!isStopListed(key))
+                return true;
+            excluded.set(emailId);
+            stopListedIds.add(emailId);
+            return false;
+        }
+        int degree = degrees.get(emailId) + 1;
+        degrees.set(emailId, degree);
+        if (excluded.get(emailId))
+            return false;
+        if (degree <= maxEmailDegree)
+            return true;
+        excluded.set(emailId);
+        fanOutIds.add(emailId);
+        return false;
+    }
+
+    /**
+     * Получить кол-во исключенных email
+     *
+     * @return возвращает кол-во встреченных email списка исключений и email, превысивших допустимую степень
+     */
+    public int getExcludedCount() {
+        return stopListedIds.size() + fanOutIds.size();
+    }
+
+    /**
+     * Вывести отчет об исключенных email в лог и в файл отчета, если он задан
+     *
+     * @param dictionary  словарь написаний email
+     * @param largestSize кол-во email крупнейшего пользователя
+     * @throws IOException в случае ошибки записи файла отчета
+     */
+    public void report(EmailDictionary dictionary, int largestSize) throws IOException {
+        if (getExcludedCount() > 0)
+            log.warn("Excluded {} shared emails from merging, largest user has {} emails",
+                    getExcludedCount(), largestSize);
+        else
+            log.info("No shared emails excluded, largest user has {} emails", largestSize);
+        if (reportFile == null)
+            return;
+        try (BufferedWriter writer = Files.newBufferedWriter(reportFile, StandardCharsets.UTF_8)) {
+            writeReportLines(writer, dictionary, stopListedIds, STOP_LIST);
+            writeReportLines(writer, dictionary, fanOutIds, FAN_OUT);
+        }
+    }
+
+    /**
+     * Записать состояние в снимок
+     *
+     * @param out поток снимка
+     * @throws IOException в случае ошибки записи
+     */
+    public void writeTo(DataOutput out) throws IOException {
+        degrees.writeTo(out);
+        stopListedIds.writeTo(out);
+        fanOutIds.writeTo(out);
+    }
+
+    /**
+     * Восстановить состояние из снимка
+     *
+     * @param in поток снимка
+     * @throws IOException в случае ошибки чтения
+     */
+    public void readFrom(DataInput in) throws IOException {
+        degrees.readFrom(in);
+        stopListedIds.readFrom(in);
+        fanOutIds.readFrom(in);
+        excluded.clear();
+        for (int i = 0; i < stopListedIds.size(); i++)
+            excluded.set(stopListedIds.get(i));
+        for (int i = 0; i < fanOutIds.size(); i++)
+            excluded.set(fanOutIds.get(i));
+    }
+
+    private boolean isStopListed(String key) {
+        if (stopAddresses.contains(key))
+            return true;
+        for (String localPart : stopLocalParts) {
+            if (key.startsWith(localPart) && key.lastIndexOf(LOCAL_PART_END) == localPart.length() - 1)
+                return true;
+        }
+        return false;
+    }
+
+    private void writeReportLines(BufferedWriter writer, EmailDictionary dictionary, IntArrayList emailIds,
+                                  String reason) throws IOException {
+        for (int i = 0; i < emailIds.size(); i++) {
+            int emailId = emailIds.get(i);
+            writer.write(dictionary.get(emailId));
+            writer.write('\t');
+            writer.write(Integer.toString(degrees.get(emailId)));
+            writer.write('\t');
+            writer.write(reason);
+            writer.newLine();
+        }
+    }
+}
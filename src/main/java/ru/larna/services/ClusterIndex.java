@@ -0,0 +1,771 @@
+package ru.larna.services;
+
+import ru.larna.util.structures.EmailDictionary;
+import ru.larna.util.structures.IntArrayList;
+import ru.larna.util.structures.MappedFile;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.Arrays;
+
+/**
+ * Постоянный индекс слияния пользователей на диске для инкрементального режима.
+ * Индекс хранится в каталоге в файлах, отображенных в память:
+ * emails.bin   - записи email по идентификатору: смещение и длина адреса, хеш, кластер, следующий email кластера;
+ * table.bin    - хеш-таблица с открытой адресацией: идентификатор email + 1 по хешу адреса;
+ * clusters.bin - записи кластеров по порядковому номеру: имя, родительский кластер, первый и последний email;
+ * bytes.bin    - байты адресов и имен;
+ * manifest.bin - кол-ва записей всех файлов последнего commit и признак целостности хеш-таблицы;
+ * journal.bin  - журнал фиксируемых изменений, существует только во время commit.
+ * Открытие индекса не читает его содержимое, поэтому время обработки зависит от объема новых строк, а не от истории.
+ * <p>
+ * Правила слияния те же, что в EmailClusters: кластеры склеиваются в кластер с наименьшим порядковым номером,
+ * списки email присоединяются в порядке возрастания номеров, новые email добавляются в конец.
+ * Поглощенный кластер ссылается на поглотивший через родительский кластер, ссылки сжимаются при поиске.
+ * <p>
+ * Записи, зафиксированные последним commit, до следующего commit на диске не изменяются: их новые значения
+ * хранятся в памяти. Новые записи дописываются в файлы за границей зафиксированных кол-в, поэтому не видны
+ * до commit. Хеш-таблица изменяется на месте, перед первым ее изменением манифест помечает ее как
+ * неполную, и при открытии она перестраивается по зафиксированным email.
+ * <p>
+ * Commit сначала записывает новые кол-ва записей и новые значения зафиксированных записей в журнал, сбрасывает
+ * его на диск и атомарно переименовывает, затем применяет журнал к файлам, сбрасывает их на диск и атомарно
+ * заменяет манифест. Если процесс прерван до замены журнала, при открытии индекс остается в состоянии прежнего
+ * commit, если после - журнал применяется повторно при открытии. Rollback отбрасывает изменения в памяти и
+ * возвращает индекс в состояние последнего commit.
+ */
+public class ClusterIndex implements Closeable {
+    public static final int NO_EMAIL = -1;
+
+    private static final int MAGIC = 0x4C524E58;
+    private static final int VERSION = 2;
+    private static final long HEADER_SIZE = 64;
+    private static final long MAGIC_OFFSET = 0;
+    private static final long VERSION_OFFSET = 4;
+    private static final String MANIFEST_FILE = "manifest.bin";
+    private static final String JOURNAL_FILE = "journal.bin";
+    private static final String TEMP_SUFFIX = ".tmp";
+    private static final int JOURNAL_BUFFER_SIZE = 1 << 16;
+    /**
+     * Номера файлов записей в журнале
+     */
+    private static final byte EMAILS_FILE = 0;
+    private static final byte CLUSTERS_FILE = 1;
+
+    /**
+     * Запись email: смещение адреса (long), длина (int), хеш (int), кластер (int), следующий email (int)
+     */
+    private static final int EMAIL_ENTRY_SIZE = 24;
+    private static final int EMAIL_LENGTH = 8;
+    private static final int EMAIL_HASH = 12;
+    private static final int EMAIL_ORDINAL = 16;
+    private static final int EMAIL_NEXT = 20;
+    /**
+     * Запись кластера: смещение имени (long), длина имени (int), родительский кластер (int), первый и последний email (int)
+     */
+    private static final int CLUSTER_ENTRY_SIZE = 24;
+    private static final int CLUSTER_NAME_LENGTH = 8;
+    private static final int CLUSTER_PARENT = 12;
+    private static final int CLUSTER_HEAD = 16;
+    private static final int CLUSTER_TAIL = 20;
+
+    private static final int INITIAL_TABLE_CAPACITY = 1 << 16;
+    private static final long INITIAL_FILE_SIZE = 1 << 20;
+
+    private final MappedFile emails;
+    private final MappedFile table;
+    private final MappedFile clusters;
+    private final MappedFile bytes;
+    private final Path manifestFile;
+    private final Path journalFile;
+    /**
+     * Новые значения полей зафиксированных записей email и кластеров по позиции в файле
+     */
+    private final Overlay emailChanges = new Overlay();
+    private final Overlay clusterChanges = new Overlay();
+
+    private int emailsCount;
+    private int clustersCount;
+    private int actualCount;
+    private long bytesSize;
+    private int tableCapacity;
+    /**
+     * Хеш-таблица на диске изменена после последнего commit
+     */
+    private boolean tableChanged;
+
+    private int committedEmailsCount;
+    private int committedClustersCount;
+    private int committedActualCount;
+    private long committedBytesSize;
+    private int committedTableCapacity;
+
+    /**
+     * Идентификаторы новых email текущего пользователя
+     */
+    private final IntArrayList newEmailIds = new IntArrayList();
+    /**
+     * Кластеры, с которыми пересекается текущий пользователь
+     */
+    private final IntArrayList crossingOrdinals = new IntArrayList();
+    /**
+     * Кластеры, измененные после последнего commit
+     */
+    private final IntArrayList changedOrdinals = new IntArrayList();
+    private int knownEmailsCount;
+    private byte[] scratch = new byte[64];
+
+    private ClusterIndex(Path directory) throws IOException {
+        this.emails = new MappedFile(directory.resolve("emails.bin"), INITIAL_FILE_SIZE);
+        this.table = new MappedFile(directory.resolve("table.bin"), HEADER_SIZE + INITIAL_TABLE_CAPACITY * 4L);
+        this.clusters = new MappedFile(directory.resolve("clusters.bin"), INITIAL_FILE_SIZE);
+        this.bytes = new MappedFile(directory.resolve("bytes.bin"), INITIAL_FILE_SIZE);
+        this.manifestFile = directory.resolve(MANIFEST_FILE);
+        this.journalFile = directory.resolve(JOURNAL_FILE);
+    }
+
+    /**
+     * Открыть индекс, создав пустой индекс, если каталог не содержит индекса
+     *
+     * @param directory каталог индекса
+     * @return возвращает индекс
+     * @throws IOException в случае ошибки открытия файлов или повреждения индекса
+     */
+    public static ClusterIndex open(Path directory) throws IOException {
+        Files.createDirectories(directory);
+        ClusterIndex index = new ClusterIndex(directory);
+        try {
+            index.load();
+        } catch (IOException e) {
+            index.close();
+            throw e;
+        }
+        return index;
+    }
+
+    /**
+     * Начать обработку пользователя
+     */
+    public void startUser() {
+        knownEmailsCount = emailsCount;
+        newEmailIds.clear();
+        crossingOrdinals.clear();
+    }
+
+    /**
+     * Учесть email текущего пользователя. Повторный email в пределах пользователя пропускается.
+     *
+     * @param email адрес
+     * @throws IOException в случае ошибки расширения файлов индекса
+     */
+    public void addEmail(CharSequence email) throws IOException {
+        int length = toBytes(email);
+        int hash = EmailDictionary.hash(scratch, 0, length);
+        int mask = tableCapacity - 1;
+        int slot = hash & mask;
+        int emailId;
+        while ((emailId = table.getInt(slotPosition(slot)) - 1) >= 0) {
+            if (emails.getInt(emailPosition(emailId) + EMAIL_HASH) == hash && equalsAt(emailId, length))
+                break;
+            slot = (slot + 1) & mask;
+        }
+
+        if (emailId < 0) {
+            newEmailIds.add(appendEmail(hash, length, slot));
+        } else if (emailId < knownEmailsCount) {
+            int ordinal = findEmailOrdinal(emailId);
+            if (!crossingOrdinals.contains(ordinal))
+                crossingOrdinals.add(ordinal);
+        }
+    }
+
+    /**
+     * Завершить обработку пользователя: склеить все кластеры, с которыми пересекаются его email,
+     * в кластер с наименьшим порядковым номером и добавить к нему новые email.
+     *
+     * @param name имя пользователя, используется, если пользователь образует новый кластер
+     * @return возвращает порядковый номер кластера, в который попал пользователь
+     * @throws IOException в случае ошибки расширения файлов индекса
+     */
+    public int finishUser(String name) throws IOException {
+        if (crossingOrdinals.isEmpty() && newEmailIds.isEmpty())
+            throw new IllegalStateException("User without emails");
+
+        int target;
+        if (crossingOrdinals.isEmpty()) {
+            target = appendCluster(name);
+        } else {
+            crossingOrdinals.sort();
+            target = crossingOrdinals.get(0);
+            for (int i = 1; i < crossingOrdinals.size(); i++) {
+                int absorbedOrdinal = crossingOrdinals.get(i);
+                setEmailNext(getTail(target), getHead(absorbedOrdinal));
+                setCluster(target, CLUSTER_TAIL, getTail(absorbedOrdinal));
+                setCluster(absorbedOrdinal, CLUSTER_HEAD, NO_EMAIL);
+                setCluster(absorbedOrdinal, CLUSTER_TAIL, NO_EMAIL);
+                setCluster(absorbedOrdinal, CLUSTER_PARENT, target);
+                actualCount--;
+            }
+        }
+
+        for (int i = 0; i < newEmailIds.size(); i++) {
+            int emailId = newEmailIds.get(i);
+            setEmail(emailId, EMAIL_ORDINAL, target);
+            if (getHead(target) == NO_EMAIL)
+                setCluster(target, CLUSTER_HEAD, emailId);
+            else
+                setEmailNext(getTail(target), emailId);
+            setCluster(target, CLUSTER_TAIL, emailId);
+        }
+        changedOrdinals.add(target);
+        return target;
+    }
+
+    /**
+     * Получить кластеры, измененные после последнего commit
+     *
+     * @return возвращает порядковые номера актуальных измененных кластеров по возрастанию
+     */
+    public IntArrayList getChangedClusters() {
+        IntArrayList roots = new IntArrayList();
+        for (int i = 0; i < changedOrdinals.size(); i++)
+            roots.add(find(changedOrdinals.get(i)));
+        roots.sort();
+        IntArrayList result = new IntArrayList();
+        for (int i = 0; i < roots.size(); i++) {
+            if (i == 0 || roots.get(i) != roots.get(i - 1))
+                result.add(roots.get(i));
+        }
+        return result;
+    }
+
+    /**
+     * Получить кол-во актуальных (не поглощенных) кластеров
+     *
+     * @return возвращает кол-во уникальных пользователей в индексе
+     */
+    public int getActualCount() {
+        return actualCount;
+    }
+
+    /**
+     * Получить кол-во кластеров, включая поглощенные
+     *
+     * @return возвращает кол-во порядковых номеров, выданных кластерам
+     */
+    public int getClustersCount() {
+        return clustersCount;
+    }
+
+    /**
+     * Получить имя пользователя кластера
+     *
+     * @param ordinal порядковый номер кластера
+     * @return возвращает имя
+     */
+    public String getName(int ordinal) {
+        long position = clusterPosition(ordinal);
+        return readString(clusters.getLong(position), clusters.getInt(position + CLUSTER_NAME_LENGTH));
+    }
+
+    /**
+     * Вывести email кластера в порядке их следования
+     *
+     * @param ordinal порядковый номер кластера
+     * @param writer  вывод пользователей
+     * @throws IOException в случае ошибки вывода
+     */
+    public void writeEmails(int ordinal, UserWriter writer) throws IOException {
+        for (int emailId = getHead(ordinal); emailId != NO_EMAIL; emailId = getEmail(emailId, EMAIL_NEXT)) {
+            long position = emailPosition(emailId);
+            writer.writeEmail(readString(emails.getLong(position), emails.getInt(position + EMAIL_LENGTH)));
+        }
+    }
+
+    /**
+     * Зафиксировать изменения через журнал и манифест
+     *
+     * @throws IOException в случае ошибки записи журнала или манифеста
+     */
+    public void commit() throws IOException {
+        forceFiles();
+        writeJournal();
+        applyChanges();
+        forceFiles();
+        markCommitted();
+        writeManifest(true);
+        Files.delete(journalFile);
+    }
+
+    /**
+     * Отменить изменения после последнего commit
+     */
+    public void rollback() {
+        emailChanges.clear();
+        clusterChanges.clear();
+        emailsCount = committedEmailsCount;
+        clustersCount = committedClustersCount;
+        actualCount = committedActualCount;
+        bytesSize = committedBytesSize;
+        if (tableChanged)
+            rebuildTable(committedTableCapacity);
+        changedOrdinals.clear();
+    }
+
+    @Override
+    public void close() throws IOException {
+        emails.close();
+        table.close();
+        clusters.close();
+        bytes.close();
+    }
+
+    /**
+     * Записать журнал фиксируемых изменений: новые кол-ва записей и новые значения зафиксированных записей.
+     * Журнал пишется во временный файл, который после сброса на диск атомарно переименовывается,
+     * после этого commit считается состоявшимся. Новые записи к этому моменту уже сброшены на диск.
+     *
+     * @throws IOException в случае ошибки записи журнала
+     */
+    void writeJournal() throws IOException {
+        Path tempFile = journalFile.resolveSibling(JOURNAL_FILE + TEMP_SUFFIX);
+        try (FileOutputStream file = new FileOutputStream(tempFile.toFile());
+             DataOutputStream out = new DataOutputStream(new BufferedOutputStream(file, JOURNAL_BUFFER_SIZE))) {
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            writeCounts(out, emailsCount, clustersCount, actualCount, bytesSize, tableCapacity);
+            out.writeInt(emailChanges.size() + clusterChanges.size());
+            emailChanges.writeTo(out, EMAILS_FILE);
+            clusterChanges.writeTo(out, CLUSTERS_FILE);
+            out.writeInt(MAGIC);
+            out.flush();
+            file.getFD().sync();
+        }
+        Files.move(tempFile, journalFile, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    private void load() throws IOException {
+        if (!Files.exists(manifestFile)) {
+            if (table.getInt(MAGIC_OFFSET) != 0)
+                throw new IOException("Wrong index format");
+            for (MappedFile file : Arrays.asList(emails, table, clusters, bytes)) {
+                file.putInt(MAGIC_OFFSET, MAGIC);
+                file.putInt(VERSION_OFFSET, VERSION);
+            }
+            emailsCount = 0;
+            clustersCount = 0;
+            actualCount = 0;
+            bytesSize = 0;
+            tableCapacity = INITIAL_TABLE_CAPACITY;
+            forceFiles();
+            markCommitted();
+            writeManifest(true);
+            return;
+        }
+        for (MappedFile file : Arrays.asList(emails, table, clusters, bytes)) {
+            if (file.getInt(MAGIC_OFFSET) != MAGIC || file.getInt(VERSION_OFFSET) != VERSION)
+                throw new IOException("Wrong index format");
+        }
+        if (Files.exists(journalFile)) {
+            replayJournal();
+            return;
+        }
+        boolean tableValid;
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(manifestFile)))) {
+            if (in.readInt() != MAGIC || in.readInt() != VERSION)
+                throw new IOException("Wrong index manifest - " + manifestFile);
+            readCounts(in);
+            tableValid = in.readBoolean();
+        }
+        markCommitted();
+        if (!tableValid) {
+            rebuildTable(tableCapacity);
+            table.force();
+            writeManifest(true);
+        }
+    }
+
+    /**
+     * Повторно применить журнал commit, прерванного после записи журнала, и перестроить хеш-таблицу
+     *
+     * @throws IOException в случае ошибки чтения журнала или некорректного журнала
+     */
+    private void replayJournal() throws IOException {
+        try (DataInputStream in = new DataInputStream(
+                new BufferedInputStream(Files.newInputStream(journalFile), JOURNAL_BUFFER_SIZE))) {
+            if (in.readInt() != MAGIC || in.readInt() != VERSION)
+                throw new IOException("Wrong index journal - " + journalFile);
+            readCounts(in);
+            for (int i = in.readInt(); i > 0; i--) {
+                MappedFile file = in.readByte() == EMAILS_FILE ? emails : clusters;
+                file.putInt(in.readLong(), in.readInt());
+            }
+            if (in.readInt() != MAGIC)
+                throw new IOException("Wrong index journal - " + journalFile);
+        }
+        rebuildTable(tableCapacity);
+        forceFiles();
+        markCommitted();
+        writeManifest(true);
+        Files.delete(journalFile);
+    }
+
+    /**
+     * Записать манифест с кол-вами записей последнего commit: сначала во временный файл, который после сброса
+     * на диск атомарно заменяет прежний
+     *
+     * @param tableValid хеш-таблица на диске соответствует кол-вам записей манифеста
+     * @throws IOException в случае ошибки записи манифеста
+     */
+    private void writeManifest(boolean tableValid) throws IOException {
+        Path tempFile = manifestFile.resolveSibling(MANIFEST_FILE + TEMP_SUFFIX);
+        try (FileOutputStream file = new FileOutputStream(tempFile.toFile());
+             DataOutputStream out = new DataOutputStream(new BufferedOutputStream(file))) {
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            writeCounts(out, committedEmailsCount, committedClustersCount, committedActualCount,
+                    committedBytesSize, committedTableCapacity);
+            out.writeBoolean(tableValid);
+            out.flush();
+            file.getFD().sync();
+        }
+        Files.move(tempFile, manifestFile, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    private static void writeCounts(DataOutputStream out, int emailsCount, int clustersCount, int actualCount,
+                                    long bytesSize, int tableCapacity) throws IOException {
+        out.writeInt(emailsCount);
+        out.writeInt(clustersCount);
+        out.writeInt(actualCount);
+        out.writeLong(bytesSize);
+        out.writeInt(tableCapacity);
+    }
+
+    private void readCounts(DataInputStream in) throws IOException {
+        emailsCount = in.readInt();
+        clustersCount = in.readInt();
+        actualCount = in.readInt();
+        bytesSize = in.readLong();
+        tableCapacity = in.readInt();
+    }
+
+    private void applyChanges() {
+        emailChanges.applyTo(emails);
+        clusterChanges.applyTo(clusters);
+    }
+
+    private void forceFiles() {
+        emails.force();
+        clusters.force();
+        bytes.force();
+        table.force();
+    }
+
+    /**
+     * Принять текущее состояние за зафиксированное
+     */
+    private void markCommitted() {
+        committedEmailsCount = emailsCount;
+        committedClustersCount = clustersCount;
+        committedActualCount = actualCount;
+        committedBytesSize = bytesSize;
+        committedTableCapacity = tableCapacity;
+        tableChanged = false;
+        emailChanges.clear();
+        clusterChanges.clear();
+        changedOrdinals.clear();
+    }
+
+    private int appendEmail(int hash, int length, int slot) throws IOException {
+        int emailId = emailsCount++;
+        long position = emailPosition(emailId);
+        emails.ensureCapacity(position + EMAIL_ENTRY_SIZE);
+        emails.putLong(position, appendBytes(scratch, length));
+        emails.putInt(position + EMAIL_LENGTH, length);
+        emails.putInt(position + EMAIL_HASH, hash);
+        emails.putInt(position + EMAIL_ORDINAL, NO_EMAIL);
+        emails.putInt(position + EMAIL_NEXT, NO_EMAIL);
+        markTableChanged();
+        table.putInt(slotPosition(slot), emailId + 1);
+
+        if (emailsCount > tableCapacity / 2) {
+            table.ensureCapacity(slotPosition(tableCapacity << 1));
+            rebuildTable(tableCapacity << 1);
+        }
+        return emailId;
+    }
+
+    private int appendCluster(String name) throws IOException {
+        int ordinal = clustersCount++;
+        long position = clusterPosition(ordinal);
+        clusters.ensureCapacity(position + CLUSTER_ENTRY_SIZE);
+        byte[] nameBytes = name.getBytes(StandardCharsets.UTF_8);
+        clusters.putLong(position, appendBytes(nameBytes, nameBytes.length));
+        clusters.putInt(position + CLUSTER_NAME_LENGTH, nameBytes.length);
+        clusters.putInt(position + CLUSTER_PARENT, ordinal);
+        clusters.putInt(position + CLUSTER_HEAD, NO_EMAIL);
+        clusters.putInt(position + CLUSTER_TAIL, NO_EMAIL);
+        actualCount++;
+        return ordinal;
+    }
+
+    private long appendBytes(byte[] source, int length) throws IOException {
+        long offset = HEADER_SIZE + bytesSize;
+        bytes.ensureCapacity(offset + length);
+        for (int i = 0; i < length; i++)
+            bytes.putByte(offset + i, source[i]);
+        bytesSize += length;
+        return offset;
+    }
+
+    /**
+     * Перед первым изменением хеш-таблицы после commit пометить ее в манифесте как неполную
+     *
+     * @throws IOException в случае ошибки записи манифеста
+     */
+    private void markTableChanged() throws IOException {
+        if (tableChanged)
+            return;
+        writeManifest(false);
+        tableChanged = true;
+    }
+
+    private void rebuildTable(int capacity) {
+        for (int slot = 0; slot < capacity; slot++)
+            table.putInt(slotPosition(slot), 0);
+        int mask = capacity - 1;
+        for (int emailId = 0; emailId < emailsCount; emailId++) {
+            int slot = emails.getInt(emailPosition(emailId) + EMAIL_HASH) & mask;
+            while (table.getInt(slotPosition(slot)) != 0)
+                slot = (slot + 1) & mask;
+            table.putInt(slotPosition(slot), emailId + 1);
+        }
+        tableCapacity = capacity;
+    }
+
+    /**
+     * Найти актуальный кластер, которому принадлежит email, сжимая ссылку email на кластер
+     */
+    private int findEmailOrdinal(int emailId) {
+        int ordinal = getEmail(emailId, EMAIL_ORDINAL);
+        int root = find(ordinal);
+        if (root != ordinal)
+            setEmail(emailId, EMAIL_ORDINAL, root);
+        return root;
+    }
+
+    /**
+     * Найти актуальный кластер по цепочке родительских кластеров со сжатием пути
+     */
+    private int find(int ordinal) {
+        int root = ordinal;
+        for (int parent = getParent(root); parent != root; parent = getParent(root))
+            root = parent;
+        while (ordinal != root) {
+            int parent = getParent(ordinal);
+            setCluster(ordinal, CLUSTER_PARENT, root);
+            ordinal = parent;
+        }
+        return root;
+    }
+
+    private boolean equalsAt(int emailId, int length) {
+        long position = emailPosition(emailId);
+        if (emails.getInt(position + EMAIL_LENGTH) != length)
+            return false;
+        long offset = emails.getLong(position);
+        for (int i = 0; i < length; i++) {
+            if (bytes.getByte(offset + i) != scratch[i])
+                return false;
+        }
+        return true;
+    }
+
+    /**
+     * Записать байты адреса в scratch: ASCII символы копируются, иначе адрес кодируется в UTF-8
+     *
+     * @return возвращает длину адреса в байтах
+     */
+    private int toBytes(CharSequence email) {
+        int length = email.length();
+        if (scratch.length < length)
+            scratch = new byte[Math.max(length, scratch.length << 1)];
+        for (int i = 0; i < length; i++) {
+            char c = email.charAt(i);
+            if (c >= 0x80) {
+                scratch = email.toString().getBytes(StandardCharsets.UTF_8);
+                return scratch.length;
+            }
+            scratch[i] = (byte) c;
+        }
+        return length;
+    }
+
+    private String readString(long offset, int length) {
+        byte[] result = new byte[length];
+        for (int i = 0; i < length; i++)
+            result[i] = bytes.getByte(offset + i);
+        return new String(result, StandardCharsets.UTF_8);
+    }
+
+    private int getHead(int ordinal) {
+        return getCluster(ordinal, CLUSTER_HEAD);
+    }
+
+    private int getTail(int ordinal) {
+        return getCluster(ordinal, CLUSTER_TAIL);
+    }
+
+    private int getParent(int ordinal) {
+        return getCluster(ordinal, CLUSTER_PARENT);
+    }
+
+    private int getCluster(int ordinal, int field) {
+        long position = clusterPosition(ordinal) + field;
+        return ordinal < committedClustersCount
+                ? clusterChanges.get(position, clusters) : clusters.getInt(position);
+    }
+
+    private int getEmail(int emailId, int field) {
+        long position = emailPosition(emailId) + field;
+        return emailId < committedEmailsCount ? emailChanges.get(position, emails) : emails.getInt(position);
+    }
+
+    private void setCluster(int ordinal, int field, int value) {
+        long position = clusterPosition(ordinal) + field;
+        if (ordinal < committedClustersCount)
+            clusterChanges.put(position, value);
+        else
+            clusters.putInt(position, value);
+    }
+
+    private void setEmail(int emailId, int field, int value) {
+        long position = emailPosition(emailId) + field;
+        if (emailId < committedEmailsCount)
+            emailChanges.put(position, value);
+        else
+            emails.putInt(position, value);
+    }
+
+    private void setEmailNext(int emailId, int next) {
+        setEmail(emailId, EMAIL_NEXT, next);
+    }
+
+    private static long emailPosition(int emailId) {
+        return HEADER_SIZE + (long) emailId * EMAIL_ENTRY_SIZE;
+    }
+
+    private static long clusterPosition(int ordinal) {
+        return HEADER_SIZE + (long) ordinal * CLUSTER_ENTRY_SIZE;
+    }
+
+    private static long slotPosition(int slot) {
+        return HEADER_SIZE + (long) slot * Integer.BYTES;
+    }
+
+    /**
+     * Новые значения полей зафиксированных записей: хеш-таблица с открытой адресацией по позиции в файле
+     */
+    private static class Overlay {
+        private static final long EMPTY = -1;
+        private static final int INITIAL_CAPACITY = 64;
+
+        private long[] positions = newPositions(INITIAL_CAPACITY);
+        private int[] values = new int[INITIAL_CAPACITY];
+        private int size;
+
+        private int size() {
+            return size;
+        }
+
+        /**
+         * Получить новое значение поля или значение из файла, если поле не изменялось
+         */
+        private int get(long position, MappedFile file) {
+            if (size == 0)
+                return file.getInt(position);
+            int mask = positions.length - 1;
+            for (int slot = slot(position, mask); positions[slot] != EMPTY; slot = (slot + 1) & mask) {
+                if (positions[slot] == position)
+                    return values[slot];
+            }
+            return file.getInt(position);
+        }
+
+        private void put(long position, int value) {
+            if (size >= positions.length / 2)
+                resize(positions.length << 1);
+            int mask = positions.length - 1;
+            int slot = slot(position, mask);
+            while (positions[slot] != EMPTY && positions[slot] != position)
+                slot = (slot + 1) & mask;
+            if (positions[slot] == EMPTY) {
+                positions[slot] = position;
+                size++;
+            }
+            values[slot] = value;
+        }
+
+        private void applyTo(MappedFile file) {
+            for (int slot = 0; slot < positions.length; slot++) {
+                if (positions[slot] != EMPTY)
+                    file.putInt(positions[slot], values[slot]);
+            }
+        }
+
+        private void writeTo(DataOutputStream out, byte fileNumber) throws IOException {
+            for (int slot = 0; slot < positions.length; slot++) {
+                if (positions[slot] != EMPTY) {
+                    out.writeByte(fileNumber);
+                    out.writeLong(positions[slot]);
+                    out.writeInt(values[slot]);
+                }
+            }
+        }
+
+        private void clear() {
+            if (size == 0)
+                return;
+            positions = newPositions(INITIAL_CAPACITY);
+            values = new int[INITIAL_CAPACITY];
+            size = 0;
+        }
+
+        private void resize(int capacity) {
+            long[] oldPositions = positions;
+            int[] oldValues = values;
+            positions = newPositions(capacity);
+            values = new int[capacity];
+            int mask = capacity - 1;
+            for (int i = 0; i < oldPositions.length; i++) {
+                if (oldPositions[i] == EMPTY)
+                    continue;
+                int slot = slot(oldPositions[i], mask);
+                while (positions[slot] != EMPTY)
+                    slot = (slot + 1) & mask;
+                positions[slot] = oldPositions[i];
+                values[slot] = oldValues[i];
+            }
+        }
+
+        private static int slot(long position, int mask) {
+            long hash = position * 0x9E3779B97F4A7C15L;
+            return (int) (hash ^ (hash >>> 32)) & mask;
+        }
+
+        private static long[] newPositions(int capacity) {
+            long[] positions = new long[capacity];
+            Arrays.fill(positions, EMPTY);
+            return positions;
+        }
+    }
+}
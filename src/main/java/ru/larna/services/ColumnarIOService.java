@@ -0,0 +1,80 @@
+package ru.larna.services;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.IOException;
+import java.nio.file.Path;
+
+/**
+ * Сервис ввода/вывода, выводящий объединенных пользователей в файл двоичного колоночного формата
+ * (см. ColumnarUserWriter). Чтение и вывод сообщений выполняет исходный сервис.
+ */
+@Slf4j
+public class ColumnarIOService implements IOService {
+    private final IOService ioService;
+    private final Path outputFile;
+    private ColumnarUserWriter userWriter;
+
+    public ColumnarIOService(IOService ioService, Path outputFile) {
+        this.ioService = ioService;
+        this.outputFile = outputFile;
+    }
+
+    @Override
+    public String read() throws IOException {
+        return ioService.read();
+    }
+
+    @Override
+    public CharSequence readLine() throws IOException {
+        return ioService.readLine();
+    }
+
+    @Override
+    public long getPosition() {
+        return ioService.getPosition();
+    }
+
+    @Override
+    public void seek(long position) throws IOException {
+        ioService.seek(position);
+    }
+
+    @Override
+    public void write(String message) {
+        ioService.write(message);
+    }
+
+    /**
+     * Получить вывод пользователей в колоночный файл, файл перезаписывается при каждом вызове
+     *
+     * @return возвращает вывод пользователей
+     * @throws IOException в случае ошибки создания файла
+     */
+    @Override
+    public UserWriter getUserWriter() throws IOException {
+        closeUserWriter();
+        userWriter = new ColumnarUserWriter(outputFile);
+        return userWriter;
+    }
+
+    /**
+     * Закрытие исходного сервиса и незавершенного вывода пользователей
+     */
+    @Override
+    public void close() {
+        closeUserWriter();
+        ioService.close();
+    }
+
+    private void closeUserWriter() {
+        if (userWriter == null)
+            return;
+        try {
+            userWriter.close();
+        } catch (IOException e) {
+            log.error("Close error", e);
+        }
+        userWriter = null;
+    }
+}
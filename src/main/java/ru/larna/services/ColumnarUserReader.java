@@ -0,0 +1,262 @@
+package ru.larna.services;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Чтение файла двоичного колоночного формата (см. ColumnarUserWriter) через отображение в память.
+ * Пользователи обходятся курсором без создания объектов User: next переходит к следующему пользователю,
+ * getName возвращает его имя, nextEmail и getEmail - его email. Имя и email возвращаются участками отображенного
+ * файла, которые переиспользуются и действительны только до следующего перехода курсора.
+ * Файл отображается сегментами по 1 Гб, поэтому его размер не ограничен 2 Гб.
+ * <p>
+ * writeTo преобразует файл обратно в текстовый формат name -> email1, email2.
+ */
+public class ColumnarUserReader implements Closeable {
+    private static final int SEGMENT_SHIFT = 30;
+    private static final long SEGMENT_SIZE = 1L << SEGMENT_SHIFT;
+    private static final long SEGMENT_MASK = SEGMENT_SIZE - 1;
+
+    private final FileChannel channel;
+    private final List<MappedByteBuffer> segments = new ArrayList<>();
+    private final long clustersCount;
+    private final long emailsCount;
+    private final long emailBlockOffset;
+    private final long namesOffset;
+    private final long clusterOffsetsOffset;
+    private final long nameOffsetsOffset;
+    private final Slice name = new Slice();
+    private final Slice email = new Slice();
+    /**
+     * Порядковый номер текущего пользователя
+     */
+    private long cluster = -1;
+    /**
+     * Смещение следующего email текущего пользователя и конец его email в файле
+     */
+    private long emailPosition;
+    private long emailsEnd;
+
+    /**
+     * Открыть файл и прочитать заголовок
+     *
+     * @param file файл колоночного формата
+     * @throws IOException в случае ошибки чтения или если файл не является завершенным файлом колоночного формата
+     */
+    public ColumnarUserReader(Path file) throws IOException {
+        this.channel = FileChannel.open(file, StandardOpenOption.READ);
+        try {
+            long size = channel.size();
+            if (size < ColumnarUserWriter.HEADER_SIZE)
+                throw new IOException("Not a columnar users file - " + file);
+            for (long start = 0; start < size; start += SEGMENT_SIZE)
+                segments.add(channel.map(FileChannel.MapMode.READ_ONLY, start, Math.min(SEGMENT_SIZE, size - start)));
+
+            ByteBuffer header = segments.get(0);
+            if (header.getInt(0) != ColumnarUserWriter.MAGIC)
+                throw new IOException("Not a columnar users file - " + file);
+            if (header.getInt(4) != ColumnarUserWriter.VERSION)
+                throw new IOException("Unsupported columnar users file version - " + header.getInt(4));
+            this.clustersCount = header.getLong(8);
+            this.emailsCount = header.getLong(16);
+            this.emailBlockOffset = header.getLong(24);
+            this.namesOffset = header.getLong(32);
+            this.clusterOffsetsOffset = header.getLong(40);
+            this.nameOffsetsOffset = header.getLong(48);
+        } catch (IOException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    /**
+     * Преобразовать файл колоночного формата в текстовый формат
+     *
+     * @param file файл колоночного формата
+     * @param out  поток вывода текста
+     * @throws IOException в случае ошибки чтения или вывода
+     */
+    public static void toText(Path file, OutputStream out) throws IOException {
+        try (ColumnarUserReader reader = new ColumnarUserReader(file)) {
+            reader.writeTo(BufferedUserWriter.of(out));
+        }
+    }
+
+    public long getClustersCount() {
+        return clustersCount;
+    }
+
+    public long getEmailsCount() {
+        return emailsCount;
+    }
+
+    /**
+     * Перейти к следующему пользователю
+     *
+     * @return возвращает true - курсор на следующем пользователе, false - пользователи закончились
+     */
+    public boolean next() {
+        if (cluster + 1 >= clustersCount) {
+            cluster = clustersCount;
+            return false;
+        }
+        moveTo(cluster + 1);
+        return true;
+    }
+
+    /**
+     * Перейти к пользователю с заданным порядковым номером
+     *
+     * @param index порядковый номер пользователя
+     * @throws IndexOutOfBoundsException если пользователя с таким номером нет
+     */
+    public void seek(long index) {
+        if (index < 0 || index >= clustersCount)
+            throw new IndexOutOfBoundsException("Cluster " + index + " out of bounds for count " + clustersCount);
+        moveTo(index);
+    }
+
+    /**
+     * Получить имя текущего пользователя
+     *
+     * @return возвращает имя
+     */
+    public CharSequence getName() {
+        checkCursor();
+        return name;
+    }
+
+    /**
+     * Перейти к следующему email текущего пользователя
+     *
+     * @return возвращает true - курсор на следующем email, false - email пользователя закончились
+     */
+    public boolean nextEmail() {
+        checkCursor();
+        if (emailPosition >= emailsEnd)
+            return false;
+        emailPosition = readSlice(emailPosition, email);
+        return true;
+    }
+
+    /**
+     * Получить текущий email текущего пользователя
+     *
+     * @return возвращает email
+     */
+    public CharSequence getEmail() {
+        return email;
+    }
+
+    /**
+     * Вывести всех пользователей, начиная с первого
+     *
+     * @param writer вывод пользователей
+     * @throws IOException в случае ошибки вывода
+     */
+    public void writeTo(UserWriter writer) throws IOException {
+        cluster = -1;
+        while (next()) {
+            writer.startUser(name.toString());
+            while (nextEmail())
+                writer.writeEmail(email);
+            writer.endUser();
+        }
+        writer.flush();
+    }
+
+    @Override
+    public void close() throws IOException {
+        segments.clear();
+        channel.close();
+    }
+
+    private void moveTo(long index) {
+        cluster = index;
+        emailPosition = emailBlockOffset + getLong(clusterOffsetsOffset + index * Long.BYTES);
+        emailsEnd = emailBlockOffset + getLong(clusterOffsetsOffset + (index + 1) * Long.BYTES);
+        readSlice(namesOffset + getLong(nameOffsetsOffset + index * Long.BYTES), name);
+    }
+
+    private void checkCursor() {
+        if (cluster < 0 || cluster >= clustersCount)
+            throw new IllegalStateException("Cursor is not on a cluster");
+    }
+
+    /**
+     * Прочитать длину (varint) и указать участок файла
+     *
+     * @return возвращает смещение следующего за участком значения
+     */
+    private long readSlice(long position, Slice slice) {
+        int length = 0;
+        for (int shift = 0; ; shift += 7) {
+            byte b = getByte(position++);
+            length |= (b & 0x7F) << shift;
+            if (b >= 0)
+                break;
+        }
+        slice.set(position, length);
+        return position + length;
+    }
+
+    private byte getByte(long position) {
+        return segments.get((int) (position >>> SEGMENT_SHIFT)).get((int) (position & SEGMENT_MASK));
+    }
+
+    private long getLong(long position) {
+        return segments.get((int) (position >>> SEGMENT_SHIFT)).getLong((int) (position & SEGMENT_MASK));
+    }
+
+    /**
+     * Участок отображенного файла. Символы читаются по одному байту, поэтому представление корректно для ASCII,
+     * toString декодирует участок из UTF-8.
+     */
+    private class Slice implements CharSequence {
+        private long position;
+        private int length;
+
+        private void set(long position, int length) {
+            this.position = position;
+            this.length = length;
+        }
+
+        @Override
+        public int length() {
+            return length;
+        }
+
+        @Override
+        public char charAt(int index) {
+            if (index < 0 || index >= length)
+                throw new IndexOutOfBoundsException("Index " + index + " out of bounds for length " + length);
+            return (char) (getByte(position + index) & 0xFF);
+        }
+
+        @Override
+        public CharSequence subSequence(int start, int end) {
+            if (start < 0 || end > length || start > end)
+                throw new IndexOutOfBoundsException("Range [" + start + ", " + end + ") out of bounds for length " + length);
+            Slice slice = new Slice();
+            slice.set(position + start, end - start);
+            return slice;
+        }
+
+        @Override
+        public String toString() {
+            byte[] bytes = new byte[length];
+            for (int i = 0; i < length; i++)
+                bytes[i] = getByte(position + i);
+            return new String(bytes, StandardCharsets.UTF_8);
+        }
+    }
+}
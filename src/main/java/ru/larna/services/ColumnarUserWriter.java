@@ -0,0 +1,229 @@
+package ru.larna.services;
+
+import ru.larna.util.structures.EmailDictionary;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Вывод объединенных пользователей в двоичном колоночном формате, который читатель может отобразить в память
+ * и обойти без разбора текста (см. ColumnarUserReader). Числа записываются в порядке big-endian.
+ * <pre>
+ * заголовок (HEADER_SIZE байт):
+ *   int MAGIC, int VERSION, long кол-во пользователей, long кол-во email,
+ *   long смещение блока email, long смещение колонки имен,
+ *   long смещение массива смещений пользователей, long смещение массива смещений имен
+ * блок email:   email всех пользователей подряд, каждый - длина (varint) и байты UTF-8
+ * колонка имен: имена пользователей, каждое - длина (varint) и байты UTF-8
+ * смещения пользователей: long[кол-во пользователей + 1] - начало email пользователя в блоке email
+ * смещения имен:          long[кол-во пользователей + 1] - начало имени пользователя в колонке имен
+ * </pre>
+ * Email разных пользователей не пересекаются, поэтому каждый email хранится в блоке один раз, а порядковый номер
+ * email в блоке служит его идентификатором: пользователь ссылается на непрерывный диапазон словаря email,
+ * заданный массивом смещений. Массивы выровнены по 8 байт.
+ * <p>
+ * Блок email пишется в файл по мере вывода, имена и смещения - во временные файлы рядом с файлом результата,
+ * которые дописываются в конец файла при flush. Поэтому память не зависит от кол-ва пользователей.
+ * Файл завершается при flush, после чего вывод закрыт.
+ */
+public class ColumnarUserWriter implements UserWriter, Closeable {
+    public static final int MAGIC = 0x4C524E43;
+    public static final int VERSION = 1;
+    public static final int HEADER_SIZE = 64;
+    private static final int BUFFER_SIZE = 1 << 16;
+    private static final int MAX_VARINT_LENGTH = 5;
+
+    private final FileChannel channel;
+    private final ByteBuffer buffer;
+    private final Path namesFile;
+    private final Path clusterOffsetsFile;
+    private final Path nameOffsetsFile;
+    private final DataOutputStream names;
+    private final DataOutputStream clusterOffsets;
+    private final DataOutputStream nameOffsets;
+    private long clustersCount;
+    private long emailsCount;
+    private long emailBlockSize;
+    private long namesSize;
+    private boolean closed;
+
+    /**
+     * Создать вывод в файл, существующий файл перезаписывается
+     *
+     * @param file файл результата
+     * @throws IOException в случае ошибки создания файла или временных файлов
+     */
+    public ColumnarUserWriter(Path file) throws IOException {
+        Path directory = file.toAbsolutePath().getParent();
+        String prefix = file.getFileName().toString();
+        this.channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING);
+        this.buffer = ByteBuffer.allocate(BUFFER_SIZE);
+        this.namesFile = Files.createTempFile(directory, prefix, ".names");
+        this.clusterOffsetsFile = Files.createTempFile(directory, prefix, ".clusters");
+        this.nameOffsetsFile = Files.createTempFile(directory, prefix, ".name-offsets");
+        this.names = open(namesFile);
+        this.clusterOffsets = open(clusterOffsetsFile);
+        this.nameOffsets = open(nameOffsetsFile);
+        channel.position(HEADER_SIZE);
+    }
+
+    @Override
+    public void startUser(String name) throws IOException {
+        clusterOffsets.writeLong(emailBlockSize);
+        nameOffsets.writeLong(namesSize);
+        byte[] bytes = name.getBytes(StandardCharsets.UTF_8);
+        namesSize += writeVarint(names, bytes.length) + bytes.length;
+        names.write(bytes);
+        clustersCount++;
+    }
+
+    @Override
+    public void writeEmail(EmailDictionary dictionary, int emailId) throws IOException {
+        int length = dictionary.length(emailId);
+        putLength(length);
+        for (int from = 0; from < length; ) {
+            if (!buffer.hasRemaining())
+                flushBuffer();
+            from += dictionary.writeTo(emailId, from, buffer);
+        }
+        emailBlockSize += length;
+        emailsCount++;
+    }
+
+    @Override
+    public void writeEmail(CharSequence email) throws IOException {
+        byte[] bytes = email.toString().getBytes(StandardCharsets.UTF_8);
+        putLength(bytes.length);
+        for (int from = 0; from < bytes.length; ) {
+            if (!buffer.hasRemaining())
+                flushBuffer();
+            int count = Math.min(buffer.remaining(), bytes.length - from);
+            buffer.put(bytes, from, count);
+            from += count;
+        }
+        emailBlockSize += bytes.length;
+        emailsCount++;
+    }
+
+    @Override
+    public void endUser() {
+        // границы пользователей задаются массивом смещений
+    }
+
+    /**
+     * Завершить файл: дописать колонку имен, массивы смещений и заголовок
+     *
+     * @throws IOException в случае ошибки вывода
+     */
+    @Override
+    public void flush() throws IOException {
+        if (closed)
+            throw new IOException("Columnar output is already finished");
+        flushBuffer();
+        clusterOffsets.writeLong(emailBlockSize);
+        nameOffsets.writeLong(namesSize);
+        names.close();
+        clusterOffsets.close();
+        nameOffsets.close();
+
+        long namesOffset = append(namesFile);
+        long clusterOffsetsOffset = append(clusterOffsetsFile);
+        long nameOffsetsOffset = append(nameOffsetsFile);
+        channel.truncate(channel.position());
+
+        ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE)
+                .putInt(MAGIC)
+                .putInt(VERSION)
+                .putLong(clustersCount)
+                .putLong(emailsCount)
+                .putLong(HEADER_SIZE)
+                .putLong(namesOffset)
+                .putLong(clusterOffsetsOffset)
+                .putLong(nameOffsetsOffset)
+                .flip();
+        for (long position = 0; header.hasRemaining(); )
+            position += channel.write(header, position);
+        close();
+    }
+
+    /**
+     * Закрыть файл и удалить временные файлы. Если файл не был завершен, он остается без заголовка
+     * и не читается ColumnarUserReader.
+     *
+     * @throws IOException в случае ошибки закрытия файла
+     */
+    @Override
+    public void close() throws IOException {
+        if (closed)
+            return;
+        closed = true;
+        try {
+            names.close();
+            clusterOffsets.close();
+            nameOffsets.close();
+            channel.close();
+        } finally {
+            Files.deleteIfExists(namesFile);
+            Files.deleteIfExists(clusterOffsetsFile);
+            Files.deleteIfExists(nameOffsetsFile);
+        }
+    }
+
+    /**
+     * Дописать временный файл в конец файла результата с выравниванием по 8 байт
+     *
+     * @return возвращает смещение дописанных данных
+     */
+    private long append(Path file) throws IOException {
+        long offset = (channel.position() + Long.BYTES - 1) & -Long.BYTES;
+        channel.position(offset);
+        try (FileChannel source = FileChannel.open(file, StandardOpenOption.READ)) {
+            long size = source.size();
+            for (long transferred = 0; transferred < size; )
+                transferred += source.transferTo(transferred, size - transferred, channel);
+            channel.position(offset + size);
+        }
+        return offset;
+    }
+
+    private void putLength(int length) throws IOException {
+        if (buffer.remaining() < MAX_VARINT_LENGTH)
+            flushBuffer();
+        int size = 0;
+        while ((length & ~0x7F) != 0) {
+            buffer.put((byte) ((length & 0x7F) | 0x80));
+            length >>>= 7;
+            size++;
+        }
+        buffer.put((byte) length);
+        emailBlockSize += size + 1;
+    }
+
+    private static int writeVarint(DataOutput out, int value) throws IOException {
+        int size = 1;
+        while ((value & ~0x7F) != 0) {
+            out.writeByte((value & 0x7F) | 0x80);
+            value >>>= 7;
+            size++;
+        }
+        out.writeByte(value);
+        return size;
+    }
+
+    private void flushBuffer() throws IOException {
+        buffer.flip();
+        while (buffer.hasRemaining())
+            channel.write(buffer);
+        buffer.clear();
+    }
+
+    private static DataOutputStream open(Path file) throws IOException {
+        return new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(file), BUFFER_SIZE));
+    }
+}
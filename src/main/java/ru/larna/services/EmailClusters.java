@@ -0,0 +1,243 @@
+package ru.larna.services;
+
+import ru.larna.util.structures.DisjointSet;
+import ru.larna.util.structures.EmailDictionary;
+import ru.larna.util.structures.IntArrayList;
+
+import java.io.IOException;
+import java.util.BitSet;
+
+/**
+ * Состояние слияния пользователей на основе системы непересекающихся множеств.
+ * Каждому встреченному email словарь EmailDictionary назначает идентификатор, который одновременно является
+ * элементом леса непересекающихся множеств, email одного пользователя объединяются в одно множество.
+ * Объединение выполняется по размеру со сжатием путей, поэтому email поглощаемых пользователей
+ * не переназначаются повторно, а списки email склеиваются за константное время.
+ * <p>
+ * Пользователи (кластеры) нумеруются порядковыми номерами в порядке появления. При слиянии кластеры склеиваются
+ * в кластер с наименьшим порядковым номером, их списки email присоединяются в порядке возрастания номеров,
+ * новые email добавляются в конец. Таким образом порядок пользователей и email совпадает с UserMigration.
+ * Имена пользователей не хранятся, их учитывает вызывающая сторона по порядковому номеру нового кластера.
+ * <p>
+ * Пользователь добавляется в три шага: startUser, addEmail для каждого email, finishUser.
+ */
+public class EmailClusters {
+    /**
+     * Признак конца списка email
+     */
+    public static final int NO_EMAIL = -1;
+
+    private final EmailDictionary emailDictionary;
+    private final DisjointSet disjointSet;
+    /**
+     * Следующий email в списке email кластера
+     */
+    private final IntArrayList nextEmail;
+    /**
+     * Порядковый номер кластера для каждого корня леса, для остальных элементов значение не актуально
+     */
+    private final IntArrayList rootOrdinal;
+    /**
+     * Первый email кластера по порядковому номеру кластера
+     */
+    private final IntArrayList head;
+    /**
+     * Последний email кластера по порядковому номеру кластера
+     */
+    private final IntArrayList tail;
+    /**
+     * Поглощенные кластеры
+     */
+    private final BitSet absorbed;
+    /**
+     * Идентификаторы новых email текущего пользователя
+     */
+    private final IntArrayList newEmailIds;
+    /**
+     * Порядковые номера кластеров, с которыми пересекается текущий пользователь
+     */
+    private final IntArrayList crossingOrdinals;
+    /**
+     * Кол-во email в словаре до начала обработки текущего пользователя
+     */
+    private int knownEmailsCount;
+    private int actualCount;
+
+    public EmailClusters() {
+        this.emailDictionary = new EmailDictionary();
+        this.disjointSet = new DisjointSet();
+        this.nextEmail = new IntArrayList();
+        this.rootOrdinal = new IntArrayList();
+        this.head = new IntArrayList();
+        this.tail = new IntArrayList();
+        this.absorbed = new BitSet();
+        this.newEmailIds = new IntArrayList();
+        this.crossingOrdinals = new IntArrayList();
+    }
+
+    /**
+     * Начать обработку пользователя
+     */
+    public void startUser() {
+        knownEmailsCount = emailDictionary.size();
+        newEmailIds.clear();
+        crossingOrdinals.clear();
+    }
+
+    /**
+     * Учесть email текущего пользователя. Повторный email в пределах пользователя пропускается.
+     *
+     * @param email адрес
+     */
+    public void addEmail(CharSequence email) {
+        addEmailId(emailDictionary.intern(email));
+    }
+
+    /**
+     * Учесть email текущего пользователя. Повторный email в пределах пользователя пропускается.
+     *
+     * @param bytes  массив, содержащий адрес
+     * @param offset смещение адреса в массиве
+     * @param length длина адреса в байтах
+     */
+    public void addEmail(byte[] bytes, int offset, int length) {
+        addEmailId(emailDictionary.intern(bytes, offset, length));
+    }
+
+    /**
+     * Завершить обработку пользователя: склеить все кластеры, с которыми пересекаются его email,
+     * в кластер с наименьшим порядковым номером и добавить к нему новые email.
+     *
+     * @return возвращает порядковый номер кластера, в который попал пользователь. Если номер равен кол-ву кластеров
+     * до вызова, значит пользователь образовал новый кластер.
+     */
+    public int finishUser() {
+        if (crossingOrdinals.isEmpty() && newEmailIds.isEmpty())
+            throw new IllegalStateException("User without emails");
+
+        int target;
+        int root;
+        if (crossingOrdinals.isEmpty()) {
+            target = head.size();
+            head.add(NO_EMAIL);
+            tail.add(NO_EMAIL);
+            actualCount++;
+            root = -1;
+        } else {
+            crossingOrdinals.sort();
+            target = crossingOrdinals.get(0);
+            root = disjointSet.find(head.get(target));
+            for (int i = 1; i < crossingOrdinals.size(); i++) {
+                int absorbedOrdinal = crossingOrdinals.get(i);
+                root = disjointSet.union(root, head.get(absorbedOrdinal));
+                nextEmail.set(tail.get(target), head.get(absorbedOrdinal));
+                tail.set(target, tail.get(absorbedOrdinal));
+                head.set(absorbedOrdinal, NO_EMAIL);
+                tail.set(absorbedOrdinal, NO_EMAIL);
+                absorbed.set(absorbedOrdinal);
+                actualCount--;
+            }
+        }
+
+        for (int i = 0; i < newEmailIds.size(); i++) {
+            int emailId = newEmailIds.get(i);
+            disjointSet.makeSet();
+            nextEmail.add(NO_EMAIL);
+            rootOrdinal.add(target);
+            if (root < 0) {
+                root = emailId;
+                head.set(target, emailId);
+            } else {
+                root = disjointSet.union(root, emailId);
+                nextEmail.set(tail.get(target), emailId);
+            }
+            tail.set(target, emailId);
+        }
+        rootOrdinal.set(root, target);
+        return target;
+    }
+
+    /**
+     * Получить кол-во кластеров, включая поглощенные
+     *
+     * @return возвращает кол-во порядковых номеров, выданных кластерам
+     */
+    public int getClustersCount() {
+        return head.size();
+    }
+
+    /**
+     * Получить кол-во актуальных (не поглощенных) кластеров
+     *
+     * @return возвращает кол-во уникальных пользователей
+     */
+    public int getActualCount() {
+        return actualCount;
+    }
+
+    /**
+     * Проверка: Поглощен ли кластер другим кластером?
+     *
+     * @param ordinal порядковый номер кластера
+     * @return true - кластер поглощен, false - кластер актуален
+     */
+    public boolean isAbsorbed(int ordinal) {
+        return absorbed.get(ordinal);
+    }
+
+    /**
+     * Получить первый email кластера
+     *
+     * @param ordinal порядковый номер кластера
+     * @return возвращает идентификатор email или NO_EMAIL для поглощенного кластера
+     */
+    public int getHead(int ordinal) {
+        return head.get(ordinal);
+    }
+
+    /**
+     * Получить следующий email в списке email кластера
+     *
+     * @param emailId идентификатор email
+     * @return возвращает идентификатор следующего email или NO_EMAIL, если email последний
+     */
+    public int getNextEmail(int emailId) {
+        return nextEmail.get(emailId);
+    }
+
+    /**
+     * Получить порядковый номер кластера, которому принадлежит email
+     *
+     * @param emailId идентификатор email
+     * @return возвращает порядковый номер кластера
+     */
+    public int getOrdinal(int emailId) {
+        return rootOrdinal.get(disjointSet.find(emailId));
+    }
+
+    /**
+     * Вывести email кластера в порядке их следования
+     *
+     * @param ordinal порядковый номер кластера
+     * @param writer  вывод пользователей
+     * @throws IOException в случае ошибки вывода
+     */
+    public void writeEmails(int ordinal, UserWriter writer) throws IOException {
+        for (int emailId = head.get(ordinal); emailId != NO_EMAIL; emailId = nextEmail.get(emailId))
+            writer.writeEmail(emailDictionary, emailId);
+    }
+
+    public EmailDictionary getEmailDictionary() {
+        return emailDictionary;
+    }
+
+    private void addEmailId(int emailId) {
+        if (emailId >= knownEmailsCount + newEmailIds.size()) {
+            newEmailIds.add(emailId);
+        } else if (emailId < knownEmailsCount) {
+            int ordinal = rootOrdinal.get(disjointSet.find(emailId));
+            if (!crossingOrdinals.contains(ordinal))
+                crossingOrdinals.add(ordinal);
+        }
+    }
+}
@@ -0,0 +1,475 @@
+package ru.larna.services;
+
+import lombok.extern.slf4j.Slf4j;
+import ru.larna.model.Email;
+import ru.larna.model.User;
+import ru.larna.util.parsers.UserParser;
+import ru.larna.util.structures.ExternalPairSorter;
+import ru.larna.util.structures.IntArrayList;
+import ru.larna.util.structures.MappedFile;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+
+/**
+ * Сервис слияния пользователей с ограниченной памятью на основе внешней сортировки, для входных данных,
+ * в которых в память не помещается даже словарь уникальных email. Объем кучи задается memoryLimit и не зависит
+ * от объема входных данных, все промежуточные данные хранятся во временных файлах каталога spillDirectory.
+ * <ol>
+ * <li>Чтение: строки сбрасываются во временный файл, для каждого email строки во внешнюю сортировку
+ * (см. ExternalPairSorter) добавляется пара: 64-битный хеш ключа email и значение из второго, независимого
+ * 32-битного хеша ключа и номера строки.</li>
+ * <li>Поиск повторов: пары с одинаковым 64-битным хешем идут подряд в порядке строк, внутри серии email
+ * различаются по второму хешу. Каждое повторное вхождение email запоминается в сортировке по строкам
+ * ссылкой (номер строки, первая строка email) с хешем email.</li>
+ * <li>Воспроизведение: строки проходятся по порядку, как в UserMigration. Пользователи, на первые строки email
+ * которых ссылается строка, находятся в системе непересекающихся множеств над отображенным в память файлом
+ * связей строк и склеиваются в пользователя с наименьшим номером первой строки: его список присоединяет
+ * списки остальных пользователей по возрастанию их номеров, а затем саму строку. Из строки удаляются
+ * повторные вхождения email, и она сбрасывается в файл, список пользователя - список таких строк.</li>
+ * <li>Вывод: пользователи выводятся в порядке первых строк, строки пользователя читаются по его списку,
+ * пользователь получает имя своей первой строки.</li>
+ * </ol>
+ * Пользователи, их имена, порядок и порядок email совпадают с UserMigration. Email сравниваются по 64-битному
+ * и 32-битному хешам ключа, вероятность слияния пользователей из-за совпадения обоих хешей разных email порядка
+ * n^2 / 2^97 для n уникальных email.
+ */
+@Slf4j
+public class ExternalSortUserMigration extends AbstractUserMigration {
+    public static final long DEFAULT_MEMORY_LIMIT = 64L << 20;
+    private static final String SPILL_FILE_PREFIX = "migration-external-";
+    private static final int SPILL_BUFFER_SIZE = 1 << 16;
+    private static final int NO_LINE = -1;
+    /**
+     * Связи строки в файле связей: родитель в системе непересекающихся множеств, первая и последняя строки
+     * списка пользователя, следующая строка списка (int) и смещение записи строки в файле строк без повторов (long)
+     */
+    private static final int LINK_ENTRY_SIZE = 24;
+    private static final int LINK_PARENT = 0;
+    private static final int LINK_HEAD = 4;
+    private static final int LINK_TAIL = 8;
+    private static final int LINK_NEXT = 12;
+    private static final int LINK_OFFSET = 16;
+
+    private final Path spillDirectory;
+    /**
+     * Объем памяти на каждую из одновременно работающих сортировок
+     */
+    private final long sorterMemory;
+    private Path linesFile;
+    private Path filteredFile;
+    private Path linksFile;
+    private DataOutputStream lines;
+    private ExternalPairSorter emailPairs;
+    private int linesCount;
+    private int actualUsersCount;
+
+    public ExternalSortUserMigration(IOService ioService, UserParser userParser, Path spillDirectory) {
+        this(ioService, userParser, new SequentialUserSource(), spillDirectory, DEFAULT_MEMORY_LIMIT);
+    }
+
+    public ExternalSortUserMigration(IOService ioService, UserParser userParser, UserSource userSource,
+                                     Path spillDirectory, long memoryLimit) {
+        super(ioService, userParser, userSource);
+        if (memoryLimit <= 0)
+            throw new IllegalArgumentException("Memory limit must be positive");
+        this.spillDirectory = spillDirectory;
+        this.sorterMemory = memoryLimit / 2;
+    }
+
+    /**
+     * Получить кол-во актуальных пользователей
+     *
+     * @return возвращает кол-во уникальных пользователей, известное после слияния серий
+     */
+    @Override
+    public Integer getActualUsersCount() {
+        return actualUsersCount;
+    }
+
+    /**
+     * Метод миграции/ слияния пользователей, временные файлы удаляются по завершении
+     */
+    @Override
+    public void migrate() {
+        try {
+            super.migrate();
+        } finally {
+            deleteSpillFiles();
+        }
+    }
+
+    /**
+     * Чтение: сбросить строки во временный файл и добавить пары (хеш email, второй хеш и номер строки) в сортировку
+     *
+     * @throws IOException в случае IO ошибки выбрасывает исключение
+     */
+    @Override
+    protected void merge() throws IOException {
+        linesFile = Files.createTempFile(spillDirectory, SPILL_FILE_PREFIX, ".lines");
+        emailPairs = new ExternalPairSorter(spillDirectory, sorterMemory);
+        try (DataOutputStream out = open(linesFile)) {
+            lines = out;
+            super.merge();
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        } finally {
+            lines = null;
+        }
+    }
+
+    @Override
+    protected void mergeUser(User user) {
+        if (linesCount == Integer.MAX_VALUE)
+            throw new UncheckedIOException(new IOException("Too many lines for external sort migration"));
+        try {
+            writeString(lines, user.getName());
+            lines.writeInt(user.getEmails().size());
+            for (Email email : user.getEmails()) {
+                long hash = hash(email.getKey());
+                lines.writeLong(hash);
+                writeString(lines, email.getEmail());
+                emailPairs.add(hash, ((long) secondHash(email.getKey()) << Integer.SIZE) | linesCount);
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        linesCount++;
+    }
+
+    /**
+     * Найти пользователей и вывести результат
+     *
+     * @throws IOException в случае IO ошибки выбрасывает исключение
+     */
+    @Override
+    protected void saveResult() throws IOException {
+        linksFile = Files.createTempFile(spillDirectory, SPILL_FILE_PREFIX, ".links");
+        filteredFile = Files.createTempFile(spillDirectory, SPILL_FILE_PREFIX, ".filtered");
+        try (ExternalPairSorter references = new ExternalPairSorter(spillDirectory, sorterMemory);
+             MappedFile links = new MappedFile(linksFile, Math.max(1L, (long) linesCount * LINK_ENTRY_SIZE))) {
+            try (ExternalPairSorter pairs = emailPairs) {
+                emailPairs = null;
+                findRepeats(pairs, references);
+            }
+            replayLines(references, links);
+            writeUsers(links);
+        }
+    }
+
+    /**
+     * Найти повторные вхождения email и добавить в сортировку по строкам ссылки на первые строки email.
+     * Email серии с одинаковым 64-битным хешем различаются по второму хешу, обычно в серии один email.
+     */
+    static void findRepeats(ExternalPairSorter pairs, ExternalPairSorter references) throws IOException {
+        try (ExternalPairSorter.PairCursor cursor = pairs.sorted()) {
+            IntArrayList secondHashes = new IntArrayList();
+            IntArrayList firstLines = new IntArrayList();
+            IntArrayList previousLines = new IntArrayList();
+            long hash = 0;
+            while (cursor.next()) {
+                if (secondHashes.isEmpty() || cursor.key() != hash) {
+                    hash = cursor.key();
+                    secondHashes.clear();
+                    firstLines.clear();
+                    previousLines.clear();
+                }
+                int secondHash = (int) (cursor.value() >>> Integer.SIZE);
+                int line = (int) cursor.value();
+                int email = 0;
+                while (email < secondHashes.size() && secondHashes.get(email) != secondHash)
+                    email++;
+                if (email == secondHashes.size()) {
+                    secondHashes.add(secondHash);
+                    firstLines.add(line);
+                    previousLines.add(line);
+                } else if (line != previousLines.get(email)) {
+                    references.add(((long) line << Integer.SIZE) | firstLines.get(email), hash);
+                    previousLines.set(email, line);
+                }
+            }
+        }
+    }
+
+    /**
+     * Пройти строки по порядку: склеить пользователей, на первые строки email которых ссылается строка,
+     * удалить из строки повторные вхождения email и добавить строку в список пользователя
+     */
+    private void replayLines(ExternalPairSorter references, MappedFile links) throws IOException {
+        try (DataInputStream in = new DataInputStream(
+                new BufferedInputStream(Files.newInputStream(linesFile), SPILL_BUFFER_SIZE));
+             DataOutputStream out = open(filteredFile);
+             ExternalPairSorter.PairCursor cursor = references.sorted()) {
+            ByteArrayOutputStream record = new ByteArrayOutputStream();
+            DataOutputStream recordOut = new DataOutputStream(record);
+            IntArrayList crossingRoots = new IntArrayList();
+            boolean hasReference = cursor.next();
+            long[] repeatHashes = new long[16];
+            long offset = 0;
+            for (int line = 0; line < linesCount; line++) {
+                crossingRoots.clear();
+                int repeatsCount = 0;
+                for (; hasReference && (int) (cursor.key() >>> Integer.SIZE) == line; hasReference = cursor.next()) {
+                    if (repeatsCount == repeatHashes.length)
+                        repeatHashes = Arrays.copyOf(repeatHashes, repeatsCount << 1);
+                    repeatHashes[repeatsCount++] = cursor.value();
+                    int root = find(links, (int) cursor.key());
+                    if (!crossingRoots.contains(root))
+                        crossingRoots.add(root);
+                }
+                Arrays.sort(repeatHashes, 0, repeatsCount);
+
+                record.reset();
+                writeString(recordOut, readString(in));
+                int emailsCount = in.readInt();
+                byte[][] emails = new byte[emailsCount][];
+                int kept = 0;
+                for (int i = 0; i < emailsCount; i++) {
+                    long hash = in.readLong();
+                    byte[] email = readBytes(in);
+                    if (repeatsCount == 0 || Arrays.binarySearch(repeatHashes, 0, repeatsCount, hash) < 0)
+                        emails[kept++] = email;
+                }
+                recordOut.writeInt(kept);
+                for (int i = 0; i < kept; i++) {
+                    recordOut.writeInt(emails[i].length);
+                    recordOut.write(emails[i]);
+                }
+                out.writeInt(record.size());
+                record.writeTo(out);
+
+                long position = linkPosition(line);
+                links.putInt(position + LINK_PARENT, line);
+                links.putInt(position + LINK_HEAD, NO_LINE);
+                links.putInt(position + LINK_TAIL, NO_LINE);
+                links.putInt(position + LINK_NEXT, NO_LINE);
+                links.putLong(position + LINK_OFFSET, offset);
+                offset += Integer.BYTES + record.size();
+                mergeLine(links, line, crossingRoots, kept > 0);
+            }
+        }
+    }
+
+    /**
+     * Склеить пользователей в пользователя с наименьшим номером первой строки так же, как UserMigration:
+     * к его списку присоединяются списки остальных пользователей по возрастанию номеров, затем строка
+     *
+     * @param crossingRoots первые строки пользователей, с которыми пересекается строка
+     * @param hasEmails     в строке остались email, встреченные впервые
+     */
+    private void mergeLine(MappedFile links, int line, IntArrayList crossingRoots, boolean hasEmails) {
+        int target = line;
+        if (crossingRoots.isEmpty()) {
+            actualUsersCount++;
+        } else {
+            crossingRoots.sort();
+            target = crossingRoots.get(0);
+            for (int i = 1; i < crossingRoots.size(); i++) {
+                int absorbed = crossingRoots.get(i);
+                appendList(links, target, getLink(links, absorbed, LINK_HEAD), getLink(links, absorbed, LINK_TAIL));
+                setLink(links, absorbed, LINK_PARENT, target);
+                actualUsersCount--;
+            }
+            setLink(links, line, LINK_PARENT, target);
+        }
+        if (hasEmails)
+            appendList(links, target, line, line);
+    }
+
+    /**
+     * Присоединить список строк к концу списка пользователя
+     */
+    private static void appendList(MappedFile links, int root, int head, int tail) {
+        if (getLink(links, root, LINK_HEAD) == NO_LINE)
+            setLink(links, root, LINK_HEAD, head);
+        else
+            setLink(links, getLink(links, root, LINK_TAIL), LINK_NEXT, head);
+        setLink(links, root, LINK_TAIL, tail);
+    }
+
+    /**
+     * Найти корень множества с сокращением пути вдвое
+     */
+    private static int find(MappedFile links, int line) {
+        int parent = getLink(links, line, LINK_PARENT);
+        while (parent != line) {
+            int grandParent = getLink(links, parent, LINK_PARENT);
+            setLink(links, line, LINK_PARENT, grandParent);
+            line = grandParent;
+            parent = getLink(links, line, LINK_PARENT);
+        }
+        return line;
+    }
+
+    /**
+     * Вывести пользователей в порядке первых строк, строки пользователя - в порядке его списка
+     */
+    private void writeUsers(MappedFile links) throws IOException {
+        UserWriter writer = ioService.getUserWriter();
+        try (RecordReader reader = new RecordReader(filteredFile)) {
+            for (int root = 0; root < linesCount; root++) {
+                if (getLink(links, root, LINK_PARENT) != root)
+                    continue;
+                int line = getLink(links, root, LINK_HEAD);
+                for (; line != NO_LINE; line = getLink(links, line, LINK_NEXT)) {
+                    ByteBuffer record = reader.read(links.getLong(linkPosition(line) + LINK_OFFSET));
+                    String name = getString(record);
+                    if (line == root)
+                        writer.startUser(name);
+                    for (int emails = record.getInt(); emails > 0; emails--)
+                        writer.writeEmail(getString(record));
+                }
+                writer.endUser();
+            }
+        }
+        writer.flush();
+    }
+
+    /**
+     * 64-битный хеш ключа email: FNV-1a по символам и перемешивание битов финализатором MurmurHash3
+     */
+    static long hash(String key) {
+        long hash = 0xCBF29CE484222325L;
+        for (int i = 0; i < key.length(); i++) {
+            hash ^= key.charAt(i);
+            hash *= 0x100000001B3L;
+        }
+        hash ^= hash >>> 33;
+        hash *= 0xFF51AFD7ED558CCDL;
+        hash ^= hash >>> 33;
+        hash *= 0xC4CEB9FE1A85EC53L;
+        hash ^= hash >>> 33;
+        return hash;
+    }
+
+    /**
+     * Второй 32-битный хеш ключа email: FNV-1a с 32-битными константами и финализатор MurmurHash3
+     */
+    static int secondHash(String key) {
+        int hash = 0x811C9DC5;
+        for (int i = 0; i < key.length(); i++) {
+            hash ^= key.charAt(i);
+            hash *= 0x01000193;
+        }
+        hash ^= hash >>> 16;
+        hash *= 0x85EBCA6B;
+        hash ^= hash >>> 13;
+        hash *= 0xC2B2AE35;
+        hash ^= hash >>> 16;
+        return hash;
+    }
+
+    private static long linkPosition(int line) {
+        return (long) line * LINK_ENTRY_SIZE;
+    }
+
+    private static int getLink(MappedFile links, int line, int field) {
+        return links.getInt(linkPosition(line) + field);
+    }
+
+    private static void setLink(MappedFile links, int line, int field, int value) {
+        links.putInt(linkPosition(line) + field, value);
+    }
+
+    private static void writeString(DataOutput out, String str) throws IOException {
+        byte[] bytes = str.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    private static String readString(DataInput in) throws IOException {
+        return new String(readBytes(in), StandardCharsets.UTF_8);
+    }
+
+    private static byte[] readBytes(DataInput in) throws IOException {
+        byte[] bytes = new byte[in.readInt()];
+        in.readFully(bytes);
+        return bytes;
+    }
+
+    private static String getString(ByteBuffer record) {
+        int length = record.getInt();
+        String str = new String(record.array(), record.arrayOffset() + record.position(), length, StandardCharsets.UTF_8);
+        record.position(record.position() + length);
+        return str;
+    }
+
+    private static DataOutputStream open(Path file) throws IOException {
+        return new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(file), SPILL_BUFFER_SIZE));
+    }
+
+    private void deleteSpillFiles() {
+        ExternalPairSorter pairs = emailPairs;
+        emailPairs = null;
+        try {
+            try {
+                for (Path file : new Path[]{linesFile, filteredFile, linksFile}) {
+                    if (file != null)
+                        Files.deleteIfExists(file);
+                }
+            } finally {
+                if (pairs != null)
+                    pairs.close();
+            }
+        } catch (IOException e) {
+            log.warn("Can't delete spill files in {}", spillDirectory, e);
+        }
+    }
+
+    /**
+     * Чтение записей строк по смещению через окно файла: записи, читаемые по возрастанию смещений,
+     * берутся из уже прочитанного окна
+     */
+    private static class RecordReader implements Closeable {
+        private final FileChannel channel;
+        private ByteBuffer window = ByteBuffer.allocate(SPILL_BUFFER_SIZE);
+        private long windowOffset;
+
+        private RecordReader(Path file) throws IOException {
+            this.channel = FileChannel.open(file, StandardOpenOption.READ);
+            window.limit(0);
+        }
+
+        /**
+         * Прочитать запись
+         *
+         * @param offset смещение записи
+         * @return возвращает буфер, позиция и предел которого ограничивают запись
+         */
+        private ByteBuffer read(long offset) throws IOException {
+            load(offset, Integer.BYTES);
+            int length = window.getInt((int) (offset - windowOffset));
+            load(offset, Integer.BYTES + length);
+            int start = (int) (offset - windowOffset) + Integer.BYTES;
+            ByteBuffer record = window.duplicate();
+            record.limit(start + length).position(start);
+            return record;
+        }
+
+        private void load(long offset, int length) throws IOException {
+            if (offset >= windowOffset && offset + length <= windowOffset + window.limit())
+                return;
+            if (length > window.capacity())
+                window = ByteBuffer.allocate(Integer.highestOneBit(length) << 1);
+            window.clear();
+            windowOffset = offset;
+            while (window.position() < length && channel.read(window, offset + window.position()) >= 0) {
+                // чтение до заполнения окна или конца файла
+            }
+            window.flip();
+            if (window.limit() < length)
+                throw new EOFException("Unexpected end of spill file");
+        }
+
+        @Override
+        public void close() throws IOException {
+            channel.close();
+        }
+    }
+}
@@ -14,6 +14,36 @@ public interface IOService extends AutoCloseable {
      */
     String read() throws IOException;
 
+    /**
+     * Метод чтения строки без копирования, если реализация это поддерживает.
+     * Возвращаемый объект может переиспользоваться и действителен только до следующего чтения.
+     *
+     * @return возвращает прочитанную строку или null в конце данных
+     * @throws IOException выбрасывает исключение в случае ошибок ввода/вывода
+     */
+    default CharSequence readLine() throws IOException {
+        return read();
+    }
+
+    /**
+     * Получить смещение в байтах начала следующей строки входных данных, если реализация это поддерживает
+     *
+     * @return возвращает смещение или -1, если смещение неизвестно
+     */
+    default long getPosition() {
+        return -1;
+    }
+
+    /**
+     * Продолжить чтение со строки, начинающейся с заданного смещения
+     *
+     * @param position смещение в байтах, ранее полученное из getPosition
+     * @throws IOException выбрасывает исключение, если реализация не поддерживает смену позиции чтения
+     */
+    default void seek(long position) throws IOException {
+        throw new IOException("Seek is not supported by " + getClass().getSimpleName());
+    }
+
     /**
      * Метод вывода данных
      *
@@ -21,6 +51,16 @@ public interface IOService extends AutoCloseable {
      */
     void write(String message);
 
+    /**
+     * Получить вывод объединенных пользователей. По умолчанию строка каждого пользователя передается в write.
+     *
+     * @return возвращает вывод пользователей
+     * @throws IOException выбрасывает исключение в случае ошибок ввода/вывода
+     */
+    default UserWriter getUserWriter() throws IOException {
+        return new StringUserWriter(this);
+    }
+
     /**
      * Закрытие потоков
      */
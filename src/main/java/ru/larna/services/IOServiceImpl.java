@@ -1,37 +1,89 @@
 package ru.larna.services;
 
 import lombok.extern.slf4j.Slf4j;
+import ru.larna.util.parsers.DelimiterIndex;
 
 import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
 
 /**
- * Сервис ввода/вывода
+ * Сервис ввода/вывода.
+ * Входные байты читаются в буфер, конец строки ищется по 8 байт за раз (DelimiterIndex.indexOfLineEnd),
+ * строка декодируется из UTF-8. Концом строки считается \n, \r или \r\n, как в BufferedReader.readLine.
+ * Буфер расширяется, если строка в него не помещается.
  */
 @Slf4j
 public class IOServiceImpl implements IOService {
+    private static final int BUFFER_SIZE = 1 << 16;
     /**
      * Поток чтения
      */
-    private final BufferedReader in;
+    private final InputStream in;
     /**
      * Поток записи
      */
     private final PrintStream out;
+    /**
+     * Исходный поток записи, в него пишет пакетный вывод пользователей
+     */
+    private final OutputStream output;
+    /**
+     * Буфер чтения: непрочитанные строки в диапазоне [position, limit)
+     */
+    private byte[] bytes = new byte[BUFFER_SIZE];
+    private ByteBuffer buffer = ByteBuffer.wrap(bytes);
+    private int position;
+    private int limit;
+    private boolean endOfStream;
+    /**
+     * Предыдущая строка завершилась \r, следующий \n относится к ней
+     */
+    private boolean skipLineFeed;
 
     public IOServiceImpl(InputStream in, OutputStream out) {
-        this.in = new BufferedReader(new InputStreamReader(in));
+        this.in = in;
         this.out = new PrintStream(out);
+        this.output = out;
     }
 
     /**
      * Метод чтения данных
      *
-     * @return возвращает прочитанную строку
+     * @return возвращает прочитанную строку или null в конце потока
      * @throws IOException выбрасывает исключение в случае ошибки ввода/вывода
      */
     @Override
     public String read() throws IOException {
-        return in.readLine();
+        int scanned = 0;
+        while (true) {
+            if (skipLineFeed) {
+                if (position == limit && !endOfStream) {
+                    fill();
+                    continue;
+                }
+                if (position < limit && bytes[position] == '\n')
+                    position++;
+                skipLineFeed = false;
+            }
+            int end = DelimiterIndex.indexOfLineEnd(buffer, position + scanned, limit);
+            if (end < limit) {
+                String line = new String(bytes, position, end - position, StandardCharsets.UTF_8);
+                skipLineFeed = bytes[end] == '\r';
+                position = end + 1;
+                return line;
+            }
+            if (endOfStream) {
+                if (position == limit)
+                    return null;
+                String line = new String(bytes, position, limit - position, StandardCharsets.UTF_8);
+                position = limit;
+                return line;
+            }
+            scanned = limit - position;
+            fill();
+        }
     }
 
     /**
@@ -44,6 +96,18 @@ public class IOServiceImpl implements IOService {
         this.out.println(message);
     }
 
+    /**
+     * Пакетный вывод пользователей через буфер, минуя PrintStream
+     *
+     * @return возвращает вывод пользователей
+     * @throws IOException выбрасывает исключение в случае ошибки ввода/вывода
+     */
+    @Override
+    public UserWriter getUserWriter() throws IOException {
+        this.out.flush();
+        return BufferedUserWriter.of(output);
+    }
+
     /**
      * Закрытие потоков
      */
@@ -56,4 +120,24 @@ public class IOServiceImpl implements IOService {
             log.error("Close error", e);
         }
     }
+
+    /**
+     * Сдвинуть непрочитанные байты в начало буфера, при необходимости расширить буфер, и дочитать поток
+     */
+    private void fill() throws IOException {
+        if (position > 0) {
+            System.arraycopy(bytes, position, bytes, 0, limit - position);
+            limit -= position;
+            position = 0;
+        }
+        if (limit == bytes.length) {
+            bytes = Arrays.copyOf(bytes, bytes.length << 1);
+            buffer = ByteBuffer.wrap(bytes);
+        }
+        int count = in.read(bytes, limit, bytes.length - limit);
+        if (count < 0)
+            endOfStream = true;
+        else
+            limit += count;
+    }
 }
@@ -0,0 +1,124 @@
+package ru.larna.services;
+
+import lombok.extern.slf4j.Slf4j;
+import ru.larna.model.Email;
+import ru.larna.model.User;
+import ru.larna.util.parsers.UserParser;
+import ru.larna.util.structures.IntArrayList;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Path;
+
+/**
+ * Сервис инкрементального слияния пользователей.
+ * Состояние слияния хранится между запусками в постоянном индексе на диске (см. ClusterIndex), входные данные
+ * содержат только новые строки, которые сливаются с уже известными пользователями по тем же правилам, что и
+ * в UnionFindUserMigration. Выводятся только пользователи, новые или измененные новыми строками, в порядке
+ * их появления. Время работы зависит от объема новых строк, а не от объема накопленной истории.
+ * Изменения индекса фиксируются после вывода результата. В случае ошибки, а также если процесс прерван до записи
+ * журнала commit, при следующем открытии индекс находится в состоянии прежнего запуска.
+ */
+@Slf4j
+public class IncrementalUserMigration extends AbstractUserMigration {
+    /**
+     * Каталог индекса
+     */
+    private final Path indexDirectory;
+    private ClusterIndex index;
+    private int actualUsersCount;
+
+    public IncrementalUserMigration(IOService ioService, UserParser userParser, Path indexDirectory) {
+        this(ioService, userParser, new SequentialUserSource(), indexDirectory);
+    }
+
+    public IncrementalUserMigration(IOService ioService, UserParser userParser, UserSource userSource,
+                                    Path indexDirectory) {
+        super(ioService, userParser, userSource);
+        this.indexDirectory = indexDirectory;
+    }
+
+    /**
+     * Получить кол-во актуальных пользователей
+     *
+     * @return возвращает кол-во уникальных пользователей в индексе с учетом новых строк
+     */
+    @Override
+    public Integer getActualUsersCount() {
+        return actualUsersCount;
+    }
+
+    /**
+     * Метод миграции/ слияния пользователей, незафиксированные изменения индекса отменяются по завершении
+     */
+    @Override
+    public void migrate() {
+        try {
+            super.migrate();
+        } finally {
+            closeIndex();
+        }
+    }
+
+    /**
+     * Открыть индекс и произвести слияние новых строк с ним
+     *
+     * @throws IOException в случае IO ошибки выбрасывает исключение
+     */
+    @Override
+    protected void merge() throws IOException {
+        index = ClusterIndex.open(indexDirectory);
+        actualUsersCount = index.getActualCount();
+        try {
+            super.merge();
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+    }
+
+    @Override
+    protected void mergeUser(User user) {
+        try {
+            index.startUser();
+            for (Email email : user.getEmails())
+                index.addEmail(email.getEmail());
+            index.finishUser(user.getName());
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Вывести новых и измененных пользователей и зафиксировать изменения индекса
+     *
+     * @throws IOException в случае IO ошибки выбрасывает исключение
+     */
+    @Override
+    protected void saveResult() throws IOException {
+        IntArrayList changed = index.getChangedClusters();
+        UserWriter writer = ioService.getUserWriter();
+        for (int i = 0; i < changed.size(); i++) {
+            int ordinal = changed.get(i);
+            writer.startUser(index.getName(ordinal));
+            index.writeEmails(ordinal, writer);
+            writer.endUser();
+        }
+        writer.flush();
+        index.commit();
+        actualUsersCount = index.getActualCount();
+        log.debug("Incremental migration: {} users changed, {} users in index", changed.size(), actualUsersCount);
+    }
+
+    private void closeIndex() {
+        if (index == null)
+            return;
+        try {
+            index.rollback();
+            index.close();
+        } catch (IOException e) {
+            log.error("Close index error", e);
+        } finally {
+            index = null;
+        }
+    }
+}
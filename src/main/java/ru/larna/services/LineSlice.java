@@ -0,0 +1,84 @@
+package ru.larna.services;
+
+import ru.larna.util.parsers.ByteSequence;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Строка входных данных в виде участка буфера (смещение и длина) без копирования байтов.
+ * Символы читаются из буфера по одному байту, поэтому представление корректно для ASCII, формата входных данных.
+ * toString декодирует участок из UTF-8.
+ * Объект может переиспользоваться источником строк и действителен только до чтения следующей строки.
+ */
+public class LineSlice implements ByteSequence {
+    private ByteBuffer buffer;
+    private int offset;
+    private int length;
+
+    public LineSlice() {
+    }
+
+    public LineSlice(ByteBuffer buffer, int offset, int length) {
+        set(buffer, offset, length);
+    }
+
+    /**
+     * Указать участок буфера
+     *
+     * @param buffer буфер
+     * @param offset смещение строки в буфере
+     * @param length длина строки в байтах
+     */
+    public void set(ByteBuffer buffer, int offset, int length) {
+        this.buffer = buffer;
+        this.offset = offset;
+        this.length = length;
+    }
+
+    @Override
+    public ByteBuffer getBuffer() {
+        return buffer;
+    }
+
+    @Override
+    public int getOffset() {
+        return offset;
+    }
+
+    /**
+     * Получить байт строки
+     *
+     * @param index индекс байта в строке
+     * @return возвращает байт
+     */
+    public byte byteAt(int index) {
+        return buffer.get(offset + index);
+    }
+
+    @Override
+    public int length() {
+        return length;
+    }
+
+    @Override
+    public char charAt(int index) {
+        if (index < 0 || index >= length)
+            throw new IndexOutOfBoundsException("Index " + index + " out of bounds for length " + length);
+        return (char) (buffer.get(offset + index) & 0xFF);
+    }
+
+    @Override
+    public CharSequence subSequence(int start, int end) {
+        if (start < 0 || end > length || start > end)
+            throw new IndexOutOfBoundsException("Range [" + start + ", " + end + ") out of bounds for length " + length);
+        return new LineSlice(buffer, offset + start, end - start);
+    }
+
+    @Override
+    public String toString() {
+        byte[] bytes = new byte[length];
+        buffer.duplicate().position(offset).get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+}
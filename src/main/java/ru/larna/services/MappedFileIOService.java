@@ -0,0 +1,196 @@
+package ru.larna.services;
+
+import lombok.extern.slf4j.Slf4j;
+import ru.larna.util.parsers.DelimiterIndex;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Сервис ввода/вывода, читающий входной файл, отображенный в память (FileChannel.map).
+ * Строки выдаются участками отображенного буфера (LineSlice) без копирования в String, поэтому парсер,
+ * поддерживающий CharSequence, разбирает строку прямо в буфере.
+ * Файл отображается окнами ограниченного размера, поэтому размер файла не ограничен 2 Гб,
+ * строка, пересекающая границу окна, целиком попадает в следующее окно.
+ * Концом строки считается \n, \r или \r\n, как в BufferedReader.readLine. Конец строки ищется по 8 байт за раз
+ * (DelimiterIndex.indexOfLineEnd).
+ */
+@Slf4j
+public class MappedFileIOService implements IOService {
+    public static final int DEFAULT_WINDOW_SIZE = 1 << 30;
+
+    private final FileChannel channel;
+    private final long fileSize;
+    /**
+     * Размер окна отображения
+     */
+    private final int windowSize;
+    /**
+     * Поток записи
+     */
+    private final PrintStream out;
+    /**
+     * Исходный поток записи, в него пишет пакетный вывод пользователей
+     */
+    private final OutputStream output;
+    /**
+     * Текущее окно и смещение его начала в файле
+     */
+    private MappedByteBuffer window;
+    private long windowStart;
+    /**
+     * Позиция чтения в файле
+     */
+    private long position;
+    /**
+     * Переиспользуемый участок буфера последней прочитанной строки
+     */
+    private final LineSlice slice = new LineSlice();
+
+    public MappedFileIOService(Path input, OutputStream out) throws IOException {
+        this(input, out, DEFAULT_WINDOW_SIZE);
+    }
+
+    public MappedFileIOService(Path input, OutputStream out, int windowSize) throws IOException {
+        if (windowSize < 1)
+            throw new IllegalArgumentException("Window size must be positive");
+        this.channel = FileChannel.open(input, StandardOpenOption.READ);
+        this.fileSize = channel.size();
+        this.windowSize = windowSize;
+        this.out = new PrintStream(out);
+        this.output = out;
+    }
+
+    /**
+     * Метод чтения данных
+     *
+     * @return возвращает прочитанную строку или null в конце файла
+     * @throws IOException выбрасывает исключение в случае ошибки ввода/вывода
+     */
+    @Override
+    public String read() throws IOException {
+        CharSequence line = readLine();
+        return line == null ? null : line.toString();
+    }
+
+    /**
+     * Метод чтения строки без копирования
+     *
+     * @return возвращает участок буфера, действительный до следующего чтения, или null в конце файла
+     * @throws IOException выбрасывает исключение в случае ошибки ввода/вывода или строки длиннее окна отображения
+     */
+    @Override
+    public CharSequence readLine() throws IOException {
+        if (position >= fileSize)
+            return null;
+        if (window == null || position >= windowStart + window.limit())
+            map(position);
+
+        int begin = (int) (position - windowStart);
+        int end = findLineEnd(begin);
+        if (end == window.limit() && windowStart + end < fileSize && begin > 0) {
+            map(position);
+            begin = 0;
+            end = findLineEnd(begin);
+        }
+        if (end == window.limit() && windowStart + end < fileSize)
+            throw new IOException("Line at offset " + position + " does not fit into window of " + windowSize + " bytes");
+
+        slice.set(window, begin, end - begin);
+        position = windowStart + end;
+        if (end < window.limit()) {
+            position++;
+            if (window.get(end) == '\r' && position < fileSize && byteAt(position) == '\n')
+                position++;
+        }
+        return slice;
+    }
+
+    /**
+     * Получить смещение начала следующей строки в файле
+     *
+     * @return возвращает смещение в байтах
+     */
+    @Override
+    public long getPosition() {
+        return position;
+    }
+
+    /**
+     * Продолжить чтение с заданного смещения, окно отображения переставляется при следующем чтении
+     *
+     * @param position смещение начала строки в байтах
+     * @throws IOException выбрасывает исключение, если смещение за пределами файла
+     */
+    @Override
+    public void seek(long position) throws IOException {
+        if (position < 0 || position > fileSize)
+            throw new IOException("Position " + position + " is out of file of " + fileSize + " bytes");
+        this.position = position;
+        if (window != null && (position < windowStart || position >= windowStart + window.limit()))
+            window = null;
+    }
+
+    /**
+     * Метод вывода данных
+     *
+     * @param message выводимая строка
+     */
+    @Override
+    public void write(String message) {
+        this.out.println(message);
+    }
+
+    /**
+     * Пакетный вывод пользователей через буфер, минуя PrintStream
+     *
+     * @return возвращает вывод пользователей
+     * @throws IOException выбрасывает исключение в случае ошибки ввода/вывода
+     */
+    @Override
+    public UserWriter getUserWriter() throws IOException {
+        this.out.flush();
+        return BufferedUserWriter.of(output);
+    }
+
+    /**
+     * Закрытие файла и потока записи
+     */
+    @Override
+    public void close() {
+        try {
+            window = null;
+            this.channel.close();
+        } catch (IOException e) {
+            log.error("Close error", e);
+        }
+        this.out.close();
+    }
+
+    private int findLineEnd(int begin) {
+        return DelimiterIndex.indexOfLineEnd(window, begin, window.limit());
+    }
+
+    /**
+     * Получить байт файла, не меняя текущее окно, если байт находится за его пределами
+     */
+    private byte byteAt(long offset) throws IOException {
+        if (offset < windowStart + window.limit())
+            return window.get((int) (offset - windowStart));
+        ByteBuffer buffer = ByteBuffer.allocate(1);
+        channel.read(buffer, offset);
+        return buffer.get(0);
+    }
+
+    private void map(long start) throws IOException {
+        long size = Math.min(windowSize, fileSize - start);
+        window = channel.map(FileChannel.MapMode.READ_ONLY, start, size);
+        windowStart = start;
+    }
+}
@@ -0,0 +1,71 @@
+package ru.larna.services;
+
+import ru.larna.util.metrics.MigrationMetrics;
+
+import java.io.IOException;
+
+/**
+ * Сервис ввода/вывода, учитывающий в метриках прочитанные строки, байты и время чтения.
+ * Если сервис сообщает смещение строк (getPosition), кол-во байтов точное, иначе оно оценивается
+ * кол-вом символов строки и одним символом конца строки.
+ */
+public class MeteredIOService implements IOService {
+    private final IOService ioService;
+    private final MigrationMetrics metrics;
+
+    public MeteredIOService(IOService ioService, MigrationMetrics metrics) {
+        this.ioService = ioService;
+        this.metrics = metrics;
+    }
+
+    @Override
+    public String read() throws IOException {
+        long position = ioService.getPosition();
+        long start = System.nanoTime();
+        String line = ioService.read();
+        record(line, position, start);
+        return line;
+    }
+
+    @Override
+    public CharSequence readLine() throws IOException {
+        long position = ioService.getPosition();
+        long start = System.nanoTime();
+        CharSequence line = ioService.readLine();
+        record(line, position, start);
+        return line;
+    }
+
+    @Override
+    public long getPosition() {
+        return ioService.getPosition();
+    }
+
+    @Override
+    public void seek(long position) throws IOException {
+        ioService.seek(position);
+    }
+
+    @Override
+    public void write(String message) {
+        ioService.write(message);
+    }
+
+    @Override
+    public UserWriter getUserWriter() throws IOException {
+        return ioService.getUserWriter();
+    }
+
+    @Override
+    public void close() {
+        ioService.close();
+    }
+
+    private void record(CharSequence line, long position, long start) {
+        long nanos = System.nanoTime() - start;
+        if (line == null)
+            return;
+        long bytes = position >= 0 ? ioService.getPosition() - position : line.length() + 1;
+        metrics.recordRead(bytes, nanos);
+    }
+}
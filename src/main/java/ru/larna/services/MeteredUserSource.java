@@ -0,0 +1,30 @@
+package ru.larna.services;
+
+import ru.larna.model.User;
+import ru.larna.util.metrics.MigrationMetrics;
+import ru.larna.util.parsers.UserParser;
+
+import java.io.IOException;
+import java.util.function.Consumer;
+
+/**
+ * Источник пользователей, учитывающий в метриках кол-во и время операций слияния
+ */
+public class MeteredUserSource implements UserSource {
+    private final UserSource userSource;
+    private final MigrationMetrics metrics;
+
+    public MeteredUserSource(UserSource userSource, MigrationMetrics metrics) {
+        this.userSource = userSource;
+        this.metrics = metrics;
+    }
+
+    @Override
+    public void readUsers(IOService ioService, UserParser parser, Consumer<User> consumer) throws IOException {
+        userSource.readUsers(ioService, parser, user -> {
+            long start = System.nanoTime();
+            consumer.accept(user);
+            metrics.recordMerge(System.nanoTime() - start);
+        });
+    }
+}
@@ -0,0 +1,18 @@
+package ru.larna.services;
+
+/**
+ * Интерфейс процесса миграции/слияния пользователей.
+ */
+public interface Migration {
+    /**
+     * Метод миграции/ слияния пользователей
+     */
+    void migrate();
+
+    /**
+     * Получить кол-во актуальных пользователей
+     *
+     * @return возвращает кол-во обнаруженных уникальных пользователей
+     */
+    Integer getActualUsersCount();
+}
@@ -0,0 +1,196 @@
+package ru.larna.services;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.zip.GZIPInputStream;
+
+/**
+ * Сервис ввода/вывода, читающий входные данные из нескольких файлов (шардов), в том числе сжатых gzip (.gz).
+ * Шарды распаковываются и читаются пулом потоков параллельно, каждый шард - в свою ограниченную очередь пакетов
+ * строк, а read выдает строки шардов строго в порядке списка файлов. Поэтому результат слияния такой же,
+ * как для файлов, склеенных последовательно, а скорость распаковки растет с кол-вом шардов и ядер.
+ * Очереди ограничены, поэтому объем памяти не зависит от размера шардов: поток, опередивший слияние,
+ * приостанавливается. Шарды назначаются потокам в порядке списка, поэтому текущий шард всегда читается.
+ * <p>
+ * Шард завершается концом файла или пустой строкой, входные данные завершаются после последнего шарда.
+ */
+@Slf4j
+public class MultiFileIOService implements IOService {
+    public static final int DEFAULT_BATCH_SIZE = 1024;
+    private static final int BATCHES_PER_SHARD = 4;
+    private static final int READ_BUFFER_SIZE = 1 << 16;
+    private static final String GZIP_SUFFIX = ".gz";
+    private static final String[] UNSUPPORTED_SUFFIXES = {".zst", ".zstd"};
+
+    private final List<BlockingQueue<Batch>> shards;
+    private final ExecutorService readers;
+    private final PrintStream out;
+    private final OutputStream output;
+    private int shard;
+    private Iterator<String> batch;
+
+    public MultiFileIOService(List<Path> files, OutputStream out, int threads) throws IOException {
+        this(files, out, threads, DEFAULT_BATCH_SIZE);
+    }
+
+    /**
+     * @param files     входные файлы в порядке чтения
+     * @param out       поток вывода
+     * @param threads   кол-во потоков распаковки и чтения
+     * @param batchSize кол-во строк в пакете
+     * @throws IOException если формат сжатия файла не поддерживается
+     */
+    public MultiFileIOService(List<Path> files, OutputStream out, int threads, int batchSize) throws IOException {
+        if (threads < 1 || batchSize < 1)
+            throw new IllegalArgumentException("Threads and batch size must be positive");
+        for (Path file : files)
+            checkFormat(file);
+        this.shards = new ArrayList<>(files.size());
+        this.readers = Executors.newFixedThreadPool(threads, daemonThreadFactory());
+        this.out = new PrintStream(out);
+        this.output = out;
+        for (Path file : files) {
+            BlockingQueue<Batch> queue = new ArrayBlockingQueue<>(BATCHES_PER_SHARD);
+            shards.add(queue);
+            readers.execute(() -> readShard(file, queue, batchSize));
+        }
+    }
+
+    /**
+     * Прочитать следующую строку: строки шардов выдаются в порядке списка файлов
+     *
+     * @return возвращает строку или null после последнего шарда
+     * @throws IOException в случае ошибки чтения или распаковки шарда
+     */
+    @Override
+    public String read() throws IOException {
+        while (batch == null || !batch.hasNext()) {
+            if (shard == shards.size())
+                return null;
+            Batch next = take(shards.get(shard));
+            if (next.error != null)
+                throw next.error;
+            if (next.lines.isEmpty())
+                shard++;
+            batch = next.lines.iterator();
+        }
+        return batch.next();
+    }
+
+    @Override
+    public void write(String message) {
+        this.out.println(message);
+    }
+
+    /**
+     * Пакетный вывод пользователей через буфер, минуя PrintStream
+     *
+     * @return возвращает вывод пользователей
+     * @throws IOException выбрасывает исключение в случае ошибки ввода/вывода
+     */
+    @Override
+    public UserWriter getUserWriter() throws IOException {
+        this.out.flush();
+        return BufferedUserWriter.of(output);
+    }
+
+    /**
+     * Остановка чтения шардов и закрытие потока записи
+     */
+    @Override
+    public void close() {
+        readers.shutdownNow();
+        this.out.close();
+    }
+
+    /**
+     * Прочитать шард пакетами строк, выполняется в потоке пула. Последний пакет шарда пустой,
+     * ошибка чтения передается пакетом с ошибкой.
+     */
+    private static void readShard(Path file, BlockingQueue<Batch> queue, int batchSize) {
+        try {
+            try (BufferedReader in = new BufferedReader(new InputStreamReader(open(file), StandardCharsets.UTF_8),
+                    READ_BUFFER_SIZE)) {
+                List<String> lines = new ArrayList<>(batchSize);
+                String line = in.readLine();
+                while (!UserSource.isStopHandle(line)) {
+                    lines.add(line);
+                    if (lines.size() == batchSize) {
+                        queue.put(new Batch(lines, null));
+                        lines = new ArrayList<>(batchSize);
+                    }
+                    line = in.readLine();
+                }
+                if (!lines.isEmpty())
+                    queue.put(new Batch(lines, null));
+                queue.put(new Batch(List.of(), null));
+            } catch (IOException e) {
+                queue.put(new Batch(List.of(), new IOException("Read shard error - " + file, e)));
+            }
+        } catch (InterruptedException e) {
+            // сервис закрыт, дальнейшее чтение не требуется
+        }
+    }
+
+    private static InputStream open(Path file) throws IOException {
+        InputStream in = Files.newInputStream(file);
+        try {
+            return isGzip(file) ? new GZIPInputStream(in, READ_BUFFER_SIZE) : in;
+        } catch (IOException e) {
+            in.close();
+            throw e;
+        }
+    }
+
+    private static boolean isGzip(Path file) {
+        return file.getFileName().toString().endsWith(GZIP_SUFFIX);
+    }
+
+    private static void checkFormat(Path file) throws IOException {
+        String name = file.getFileName().toString();
+        for (String suffix : UNSUPPORTED_SUFFIXES) {
+            if (name.endsWith(suffix))
+                throw new IOException("Unsupported compression format, use gzip or plain text - " + file);
+        }
+    }
+
+    private static Batch take(BlockingQueue<Batch> queue) throws IOException {
+        try {
+            return queue.take();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Reading shards interrupted");
+        }
+    }
+
+    private static ThreadFactory daemonThreadFactory() {
+        AtomicInteger counter = new AtomicInteger();
+        return runnable -> {
+            Thread thread = new Thread(runnable, "shard-reader-" + counter.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        };
+    }
+
+    /**
+     * Пакет строк шарда: пустой пакет завершает шард, пакет с ошибкой - ошибка чтения шарда
+     */
+    private static class Batch {
+        private final List<String> lines;
+        private final IOException error;
+
+        private Batch(List<String> lines, IOException error) {
+            this.lines = lines;
+            this.error = error;
+        }
+    }
+}
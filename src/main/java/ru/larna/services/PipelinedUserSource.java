@@ -0,0 +1,147 @@
+package ru.larna.services;
+
+import ru.larna.model.User;
+import ru.larna.util.parsers.UserParser;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+
+/**
+ * Конвейерный источник пользователей.
+ * Поток чтения собирает строки из IOService в пакеты, пул потоков разбирает пакеты парсером параллельно,
+ * а этап слияния в потоке вызывающего кода получает разобранные пакеты строго в порядке их чтения.
+ * Поэтому результат слияния совпадает с последовательной обработкой, а скорость разбора растет с кол-вом ядер.
+ * Кол-во пакетов в обработке ограничено, поэтому чтение приостанавливается, если слияние не успевает.
+ * Парсер вызывается из нескольких потоков одновременно и должен быть потокобезопасным.
+ */
+public class PipelinedUserSource implements UserSource {
+    public static final int DEFAULT_BATCH_SIZE = 1024;
+    /**
+     * Кол-во пакетов в обработке на один поток разбора
+     */
+    private static final int BATCHES_PER_THREAD = 4;
+    /**
+     * Признак окончания входных данных
+     */
+    private static final Future<List<User>> END_OF_INPUT = CompletableFuture.completedFuture(List.of());
+
+    /**
+     * Кол-во потоков разбора
+     */
+    private final int threads;
+    /**
+     * Кол-во строк в пакете
+     */
+    private final int batchSize;
+
+    public PipelinedUserSource(int threads) {
+        this(threads, DEFAULT_BATCH_SIZE);
+    }
+
+    public PipelinedUserSource(int threads, int batchSize) {
+        if (threads < 1 || batchSize < 1)
+            throw new IllegalArgumentException("Threads and batch size must be positive");
+        this.threads = threads;
+        this.batchSize = batchSize;
+    }
+
+    @Override
+    public void readUsers(IOService ioService, UserParser parser, Consumer<User> consumer) throws IOException {
+        ExecutorService workers = Executors.newFixedThreadPool(threads, daemonThreadFactory("user-parser-"));
+        BlockingQueue<Future<List<User>>> batches = new ArrayBlockingQueue<>(threads * BATCHES_PER_THREAD);
+        Thread reader = new Thread(() -> readBatches(ioService, parser, workers, batches), "user-reader");
+        reader.setDaemon(true);
+        reader.start();
+        try {
+            Future<List<User>> batch = batches.take();
+            while (batch != END_OF_INPUT) {
+                getUsers(batch).forEach(consumer);
+                batch = batches.take();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Reading users interrupted");
+        } finally {
+            reader.interrupt();
+            workers.shutdownNow();
+        }
+    }
+
+    /**
+     * Чтение строк пакетами и передача пакетов на разбор, выполняется в потоке чтения.
+     * Ошибка чтения, в том числе непроверяемое исключение, передается этапу слияния в виде пакета, завершенного
+     * с ошибкой, иначе этап слияния ожидал бы следующий пакет бесконечно.
+     */
+    private void readBatches(IOService ioService, UserParser parser, ExecutorService workers,
+                             BlockingQueue<Future<List<User>>> batches) {
+        try {
+            try {
+                List<String> lines = new ArrayList<>(batchSize);
+                String str = ioService.read();
+                while (!UserSource.isStopHandle(str)) {
+                    lines.add(str);
+                    if (lines.size() == batchSize) {
+                        batches.put(submit(lines, parser, workers));
+                        lines = new ArrayList<>(batchSize);
+                    }
+                    str = ioService.read();
+                }
+                if (!lines.isEmpty())
+                    batches.put(submit(lines, parser, workers));
+                batches.put(END_OF_INPUT);
+            } catch (RejectedExecutionException e) {
+                throw e;
+            } catch (IOException | RuntimeException e) {
+                batches.put(CompletableFuture.failedFuture(e));
+            }
+        } catch (InterruptedException | RejectedExecutionException e) {
+            // этап слияния завершился досрочно, дальнейшее чтение не требуется
+        }
+    }
+
+    private Future<List<User>> submit(List<String> lines, UserParser parser, ExecutorService workers) {
+        return workers.submit(() -> {
+            List<User> users = new ArrayList<>(lines.size());
+            for (String line : lines)
+                users.add(parser.parse(line));
+            return users;
+        });
+    }
+
+    /**
+     * Дождаться разбора пакета
+     *
+     * @param batch пакет
+     * @return возвращает разобранных пользователей
+     * @throws IOException          в случае ошибки чтения
+     * @throws InterruptedException в случае прерывания потока
+     */
+    private List<User> getUsers(Future<List<User>> batch) throws IOException, InterruptedException {
+        try {
+            return batch.get();
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof IOException)
+                throw (IOException) cause;
+            if (cause instanceof RuntimeException)
+                throw (RuntimeException) cause;
+            if (cause instanceof Error)
+                throw (Error) cause;
+            throw new IllegalStateException(cause);
+        }
+    }
+
+    private static ThreadFactory daemonThreadFactory(String prefix) {
+        AtomicInteger counter = new AtomicInteger();
+        return runnable -> {
+            Thread thread = new Thread(runnable, prefix + counter.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        };
+    }
+}
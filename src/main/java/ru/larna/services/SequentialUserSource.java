@@ -0,0 +1,23 @@
+package ru.larna.services;
+
+import ru.larna.model.User;
+import ru.larna.util.parsers.UserParser;
+
+import java.io.IOException;
+import java.util.function.Consumer;
+
+/**
+ * Последовательный источник пользователей: чтение, разбор и слияние выполняются в одном потоке.
+ * Строки читаются через IOService.readLine, поэтому при чтении из отображенного в память файла
+ * парсер разбирает строку прямо в буфере.
+ */
+public class SequentialUserSource implements UserSource {
+    @Override
+    public void readUsers(IOService ioService, UserParser parser, Consumer<User> consumer) throws IOException {
+        CharSequence str = ioService.readLine();
+        while (!UserSource.isStopHandle(str)) {
+            consumer.accept(parser.parse(str));
+            str = ioService.readLine();
+        }
+    }
+}
@@ -0,0 +1,324 @@
+package ru.larna.services;
+
+import lombok.extern.slf4j.Slf4j;
+import ru.larna.model.Email;
+import ru.larna.model.User;
+import ru.larna.util.parsers.UserParser;
+import ru.larna.util.parsers.UserWrongFormatException;
+import ru.larna.util.structures.DisjointSet;
+import ru.larna.util.structures.EmailDictionary;
+import ru.larna.util.structures.IntArrayList;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveTask;
+
+/**
+ * Сервис параллельного слияния пользователей.
+ * Входные строки делятся на порции (шарды), для каждой порции в ForkJoinPool параллельно строятся локальные кластеры
+ * email: собственный словарь email и лес непересекающихся множеств. Затем результаты соседних порций попарно
+ * объединяются (редукция), при этом email, встретившиеся в обеих порциях, склеивают соответствующие кластеры.
+ * Для каждого кластера хранится номер первой строки и имя пользователя из нее, поэтому, как и в UserMigration,
+ * имя берется у первого встреченного пользователя и пользователи выводятся в порядке появления.
+ * Email пользователя выводятся в порядке их первого появления во входных данных. Этот порядок не зависит от
+ * разбиения на порции, но может отличаться от порядка UserMigration, который зависит от истории слияний: например,
+ * для строк u1 -> a; u2 -> c; u3 -> b, a; u4 -> c, b режим default выводит u1 -> a, b, c, а этот режим - u1 -> a, c, b.
+ * <p>
+ * Порция хранит строки только до их разбора. Кол-во порций, ожидающих разбора, ограничено, поэтому чтение
+ * приостанавливается, если разбор не успевает, и в памяти не накапливаются строки всего входа.
+ */
+@Slf4j
+public class ShardedUserMigration implements Migration {
+    public static final int DEFAULT_CHUNK_SIZE = 1 << 14;
+    /**
+     * Кол-во порций, ожидающих разбора, на один поток
+     */
+    private static final int PENDING_SHARDS_PER_THREAD = 2;
+    /**
+     * Сервис ввода/вывода
+     */
+    private final IOService ioService;
+    /**
+     * Парсер строки пользователя, вызывается из нескольких потоков
+     */
+    private final UserParser userParser;
+    /**
+     * Кол-во потоков
+     */
+    private final int threads;
+    /**
+     * Кол-во строк в порции
+     */
+    private final int chunkSize;
+    private int actualUsersCount;
+
+    public ShardedUserMigration(IOService ioService, UserParser userParser, int threads) {
+        this(ioService, userParser, threads, DEFAULT_CHUNK_SIZE);
+    }
+
+    public ShardedUserMigration(IOService ioService, UserParser userParser, int threads, int chunkSize) {
+        if (threads < 1 || chunkSize < 1)
+            throw new IllegalArgumentException("Threads and chunk size must be positive");
+        this.ioService = ioService;
+        this.userParser = userParser;
+        this.threads = threads;
+        this.chunkSize = chunkSize;
+    }
+
+    /**
+     * Получить кол-во актуальных пользователей
+     *
+     * @return возвращает кол-во обнаруженных уникальных пользователей
+     */
+    @Override
+    public Integer getActualUsersCount() {
+        return actualUsersCount;
+    }
+
+    /**
+     * Метод миграции/ слияния пользователей
+     */
+    @Override
+    public void migrate() {
+        ForkJoinPool pool = new ForkJoinPool(threads);
+        try {
+            List<ForkJoinTask<ShardClusters>> shards = readShards(pool);
+            ShardClusters result = pool.invoke(new ReduceTask(shards, 0, shards.size()));
+            saveResult(result);
+        } catch (IOException e) {
+            log.error("Migration IOError", e);
+        } catch (UserWrongFormatException e) {
+            log.error("Migration wrong format", e);
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+
+    /**
+     * Прочитать строки порциями, каждая порция сразу передается в пул для построения локальных кластеров.
+     * Если разбора ожидают threads * PENDING_SHARDS_PER_THREAD порций, чтение ждет завершения самой ранней из них.
+     *
+     * @param pool пул потоков
+     * @return возвращает задачи построения кластеров порций в порядке следования порций
+     * @throws IOException в случае IO ошибки выбрасывает исключение
+     */
+    private List<ForkJoinTask<ShardClusters>> readShards(ForkJoinPool pool) throws IOException {
+        List<ForkJoinTask<ShardClusters>> shards = new ArrayList<>();
+        List<String> lines = new ArrayList<>(chunkSize);
+        int maxPending = threads * PENDING_SHARDS_PER_THREAD;
+        int firstPending = 0;
+        int firstLine = 0;
+        String str = ioService.read();
+        while (!UserSource.isStopHandle(str)) {
+            lines.add(str);
+            if (lines.size() == chunkSize) {
+                for (; shards.size() - firstPending >= maxPending; firstPending++)
+                    shards.get(firstPending).join();
+                shards.add(pool.submit(new ShardTask(lines, firstLine)));
+                firstLine += lines.size();
+                lines = new ArrayList<>(chunkSize);
+            }
+            str = ioService.read();
+        }
+        if (!lines.isEmpty() || shards.isEmpty())
+            shards.add(pool.submit(new ShardTask(lines, firstLine)));
+        return shards;
+    }
+
+    /**
+     * Сохранить/Вывести результат: email группируются по кластерам в порядке идентификаторов,
+     * т.е. в порядке первого появления, кластеры выводятся в порядке номеров их первых строк
+     *
+     * @param result объединенные кластеры всех порций
+     * @throws IOException в случае ошибки вывода
+     */
+    private void saveResult(ShardClusters result) throws IOException {
+        EmailDictionary dictionary = result.dictionary;
+        int emailsCount = dictionary.size();
+        int[] roots = new int[emailsCount];
+        int[] clusterOfRoot = new int[emailsCount];
+        IntArrayList clusterRoots = new IntArrayList();
+        for (int emailId = 0; emailId < emailsCount; emailId++) {
+            int root = result.sets.find(emailId);
+            roots[emailId] = root;
+            if (root == emailId)
+                clusterRoots.add(root);
+        }
+
+        long[] order = new long[clusterRoots.size()];
+        for (int i = 0; i < order.length; i++) {
+            int root = clusterRoots.get(i);
+            order[i] = ((long) result.firstLine.get(root) << 32) | root;
+        }
+        Arrays.sort(order);
+
+        int[] start = new int[order.length + 1];
+        for (int i = 0; i < order.length; i++)
+            clusterOfRoot[(int) order[i]] = i;
+        for (int emailId = 0; emailId < emailsCount; emailId++)
+            start[clusterOfRoot[roots[emailId]] + 1]++;
+        for (int i = 0; i < order.length; i++)
+            start[i + 1] += start[i];
+        int[] position = Arrays.copyOf(start, order.length);
+        int[] emails = new int[emailsCount];
+        for (int emailId = 0; emailId < emailsCount; emailId++)
+            emails[position[clusterOfRoot[roots[emailId]]]++] = emailId;
+
+        UserWriter writer = ioService.getUserWriter();
+        for (int i = 0; i < order.length; i++) {
+            writer.startUser(result.names.get((int) order[i]));
+            for (int j = start[i]; j < start[i + 1]; j++)
+                writer.writeEmail(dictionary, emails[j]);
+            writer.endUser();
+        }
+        writer.flush();
+        actualUsersCount = order.length;
+    }
+
+    /**
+     * Кластеры email диапазона строк. Идентификаторы email назначаются в порядке первого появления в диапазоне,
+     * для каждого корня леса хранится номер первой строки кластера и имя пользователя из нее.
+     */
+    private static class ShardClusters {
+        private final EmailDictionary dictionary = new EmailDictionary();
+        private final DisjointSet sets = new DisjointSet();
+        /**
+         * Номер первой строки кластера по корню леса
+         */
+        private final IntArrayList firstLine = new IntArrayList();
+        /**
+         * Имя пользователя первой строки кластера по корню леса
+         */
+        private final List<String> names = new ArrayList<>();
+
+        /**
+         * Получить идентификатор email, новому email назначается отдельный кластер без строк
+         */
+        private int addEmail(int emailId) {
+            if (emailId == sets.size()) {
+                sets.makeSet();
+                firstLine.add(Integer.MAX_VALUE);
+                names.add(null);
+            }
+            return emailId;
+        }
+
+        /**
+         * Склеить кластеры двух email, объединенный кластер получает первую строку и имя кластера,
+         * встреченного раньше
+         */
+        private int union(int first, int second) {
+            int firstRoot = sets.find(first);
+            int secondRoot = sets.find(second);
+            if (firstRoot == secondRoot)
+                return firstRoot;
+            int earlier = firstLine.get(firstRoot) <= firstLine.get(secondRoot) ? firstRoot : secondRoot;
+            int line = firstLine.get(earlier);
+            String name = names.get(earlier);
+            names.set(firstRoot, null);
+            names.set(secondRoot, null);
+            int root = sets.union(firstRoot, secondRoot);
+            firstLine.set(root, line);
+            names.set(root, name);
+            return root;
+        }
+
+        /**
+         * Учесть строку пользователя
+         */
+        private void addUser(int line, User user) {
+            int root = -1;
+            for (Email email : user.getEmails()) {
+                int emailId = addEmail(dictionary.intern(email.getEmail()));
+                root = root < 0 ? sets.find(emailId) : union(root, emailId);
+            }
+            if (root >= 0 && line < firstLine.get(root)) {
+                firstLine.set(root, line);
+                names.set(root, user.getName());
+            }
+        }
+
+        /**
+         * Присоединить кластеры следующего диапазона строк
+         *
+         * @param next кластеры диапазона, следующего за текущим
+         */
+        private void append(ShardClusters next) {
+            int count = next.dictionary.size();
+            int[] mapping = new int[count];
+            for (int emailId = 0; emailId < count; emailId++)
+                mapping[emailId] = addEmail(dictionary.intern(next.dictionary, emailId));
+
+            for (int emailId = 0; emailId < count; emailId++) {
+                int nextRoot = next.sets.find(emailId);
+                if (nextRoot != emailId)
+                    continue;
+                int root = sets.find(mapping[emailId]);
+                int line = next.firstLine.get(emailId);
+                if (line < firstLine.get(root)) {
+                    firstLine.set(root, line);
+                    names.set(root, next.names.get(emailId));
+                }
+            }
+            for (int emailId = 0; emailId < count; emailId++) {
+                int nextRoot = next.sets.find(emailId);
+                if (nextRoot != emailId)
+                    union(mapping[emailId], mapping[nextRoot]);
+            }
+        }
+    }
+
+    /**
+     * Построение кластеров порции строк. Строки освобождаются после разбора, задача остается в списке порций
+     * до редукции.
+     */
+    private class ShardTask extends RecursiveTask<ShardClusters> {
+        private List<String> lines;
+        private final int firstLine;
+
+        private ShardTask(List<String> lines, int firstLine) {
+            this.lines = lines;
+            this.firstLine = firstLine;
+        }
+
+        @Override
+        protected ShardClusters compute() {
+            ShardClusters clusters = new ShardClusters();
+            for (int i = 0; i < lines.size(); i++)
+                clusters.addUser(firstLine + i, userParser.parse(lines.get(i)));
+            lines = null;
+            return clusters;
+        }
+    }
+
+    /**
+     * Попарное объединение кластеров соседних порций
+     */
+    private static class ReduceTask extends RecursiveTask<ShardClusters> {
+        private final List<ForkJoinTask<ShardClusters>> shards;
+        private final int from;
+        private final int to;
+
+        private ReduceTask(List<ForkJoinTask<ShardClusters>> shards, int from, int to) {
+            this.shards = shards;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected ShardClusters compute() {
+            if (to - from == 1)
+                return shards.get(from).join();
+            int middle = (from + to) >>> 1;
+            ReduceTask right = new ReduceTask(shards, middle, to);
+            right.fork();
+            ShardClusters left = new ReduceTask(shards, from, middle).compute();
+            left.append(right.join());
+            return left;
+        }
+    }
+}
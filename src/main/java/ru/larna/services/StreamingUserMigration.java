@@ -0,0 +1,307 @@
+package ru.larna.services;
+
+import lombok.extern.slf4j.Slf4j;
+import ru.larna.model.Email;
+import ru.larna.model.User;
+import ru.larna.util.parsers.UserParser;
+import ru.larna.util.parsers.UserWrongFormatException;
+import ru.larna.util.structures.EmailDictionary;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Flow;
+import java.util.concurrent.SubmissionPublisher;
+
+/**
+ * Потоковое слияние пользователей: строки принимаются подписчиком Flow.Subscriber по мере поступления
+ * и сразу сливаются (см. EmailClusters), поэтому слияние начинается до получения всех входных данных.
+ * Строки запрашиваются у издателя порциями (requestSize), новая порция запрашивается после обработки половины
+ * предыдущей, поэтому издатель не может передать больше строк, чем успевает обработать слияние.
+ * Входные данные, приходящие кусками байтов (например, из сокета), принимает подписчик getChunkSubscriber,
+ * который собирает из кусков строки в UTF-8.
+ * <p>
+ * Пустая строка, как и в остальных режимах, завершает входные данные: подписка отменяется, слияние завершается.
+ * Некорректная строка отменяет подписку и завершает слияние с ошибкой.
+ * Текущее кол-во пользователей и пользователя, которому принадлежит email, можно запросить из любого потока
+ * в любой момент, в том числе во время слияния.
+ * <p>
+ * migrate запускает слияние как пакетную задачу: строки из IOService публикуются через SubmissionPublisher,
+ * после завершения входных данных результат выводится так же, как в UnionFindUserMigration.
+ */
+@Slf4j
+public class StreamingUserMigration implements Migration, Flow.Subscriber<String> {
+    public static final int DEFAULT_REQUEST_SIZE = 1024;
+    /**
+     * Кол-во кусков байтов, запрашиваемых у издателя заранее
+     */
+    private static final int CHUNKS_IN_FLIGHT = 4;
+
+    private final IOService ioService;
+    private final UserParser userParser;
+    /**
+     * Размер порции строк, запрашиваемой у издателя
+     */
+    private final int requestSize;
+    /**
+     * Кластеры email пользователей
+     */
+    private final EmailClusters clusters;
+    /**
+     * Имена пользователей по порядковому номеру кластера
+     */
+    private final List<String> names;
+    /**
+     * Завершение входных данных: успешное по пустой строке или onComplete, с ошибкой - по некорректной строке
+     * или onError
+     */
+    private final CompletableFuture<Void> completion;
+    private Flow.Subscription subscription;
+    private int receivedSinceRequest;
+    private long processedLines;
+
+    public StreamingUserMigration(IOService ioService, UserParser userParser) {
+        this(ioService, userParser, DEFAULT_REQUEST_SIZE);
+    }
+
+    public StreamingUserMigration(IOService ioService, UserParser userParser, int requestSize) {
+        if (requestSize < 2)
+            throw new IllegalArgumentException("Request size must be at least 2");
+        this.ioService = ioService;
+        this.userParser = userParser;
+        this.requestSize = requestSize;
+        this.clusters = new EmailClusters();
+        this.names = new ArrayList<>();
+        this.completion = new CompletableFuture<>();
+    }
+
+    /**
+     * Метод миграции/ слияния пользователей: строки IOService публикуются в этот подписчик,
+     * после завершения входных данных выводится результат
+     */
+    @Override
+    public void migrate() {
+        try (SubmissionPublisher<String> publisher = new SubmissionPublisher<>()) {
+            publisher.subscribe(this);
+            for (String line = ioService.read(); !completion.isDone(); line = ioService.read()) {
+                publisher.submit(line == null ? "" : line);
+                if (UserSource.isStopHandle(line))
+                    break;
+            }
+        } catch (IOException e) {
+            log.error("Migration IOError", e);
+            return;
+        }
+
+        try {
+            completion.join();
+            saveResult(ioService.getUserWriter());
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof UserWrongFormatException)
+                log.error("Migration wrong format", e.getCause());
+            else
+                log.error("Migration error", e.getCause());
+        } catch (IOException e) {
+            log.error("Migration IOError", e);
+        }
+    }
+
+    @Override
+    public void onSubscribe(Flow.Subscription subscription) {
+        if (this.subscription != null) {
+            subscription.cancel();
+            return;
+        }
+        this.subscription = subscription;
+        subscription.request(requestSize);
+    }
+
+    /**
+     * Слить очередную строку и запросить следующую порцию, если обработана половина текущей
+     *
+     * @param line строка пользователя
+     */
+    @Override
+    public void onNext(String line) {
+        if (!acceptLine(line))
+            return;
+        if (++receivedSinceRequest == requestSize / 2) {
+            receivedSinceRequest = 0;
+            subscription.request(requestSize / 2);
+        }
+    }
+
+    @Override
+    public void onError(Throwable throwable) {
+        completion.completeExceptionally(throwable);
+    }
+
+    @Override
+    public void onComplete() {
+        completion.complete(null);
+    }
+
+    /**
+     * Получить подписчика для входных данных, приходящих кусками байтов в UTF-8. Строки собираются из кусков
+     * и сливаются по мере получения, концом строки считается \n или \r\n. Куски запрашиваются по мере обработки.
+     * Подписчик не должен использоваться одновременно с подпиской на строки.
+     *
+     * @return возвращает подписчика на куски байтов
+     */
+    public Flow.Subscriber<ByteBuffer> getChunkSubscriber() {
+        return new ChunkSubscriber();
+    }
+
+    /**
+     * Получить завершение входных данных
+     *
+     * @return возвращает future, завершаемый после пустой строки или onComplete, с ошибкой - после некорректной
+     * строки или onError
+     */
+    public CompletableFuture<Void> getCompletion() {
+        return completion;
+    }
+
+    /**
+     * Получить кол-во актуальных пользователей на текущий момент
+     *
+     * @return возвращает кол-во уникальных пользователей среди обработанных строк
+     */
+    @Override
+    public synchronized Integer getActualUsersCount() {
+        return clusters.getActualCount();
+    }
+
+    /**
+     * Получить кол-во обработанных строк
+     *
+     * @return возвращает кол-во слитых строк
+     */
+    public synchronized long getProcessedLines() {
+        return processedLines;
+    }
+
+    /**
+     * Найти пользователя, которому на текущий момент принадлежит email
+     *
+     * @param email адрес
+     * @return возвращает объединенного пользователя или null, если email еще не встречался
+     */
+    public synchronized User findUser(CharSequence email) {
+        EmailDictionary dictionary = clusters.getEmailDictionary();
+        int emailId = dictionary.find(email);
+        if (emailId == EmailDictionary.NOT_FOUND)
+            return null;
+        int ordinal = clusters.getOrdinal(emailId);
+        Set<Email> emails = new LinkedHashSet<>();
+        for (int id = clusters.getHead(ordinal); id != EmailClusters.NO_EMAIL; id = clusters.getNextEmail(id))
+            emails.add(new Email(dictionary.get(id)));
+        return User.builder().name(names.get(ordinal)).emails(emails).build();
+    }
+
+    /**
+     * Вывести текущий результат слияния
+     *
+     * @param writer вывод пользователей
+     * @throws IOException в случае ошибки вывода
+     */
+    public synchronized void saveResult(UserWriter writer) throws IOException {
+        for (int ordinal = 0; ordinal < clusters.getClustersCount(); ordinal++) {
+            if (clusters.isAbsorbed(ordinal))
+                continue;
+            writer.startUser(names.get(ordinal));
+            clusters.writeEmails(ordinal, writer);
+            writer.endUser();
+        }
+        writer.flush();
+    }
+
+    /**
+     * Учесть строку: пустая строка завершает входные данные, некорректная - завершает их с ошибкой
+     *
+     * @param line строка пользователя
+     * @return true - строка учтена и прием строк продолжается, false - прием строк завершен
+     */
+    private boolean acceptLine(CharSequence line) {
+        if (completion.isDone())
+            return false;
+        if (UserSource.isStopHandle(line)) {
+            subscription.cancel();
+            completion.complete(null);
+            return false;
+        }
+        try {
+            mergeUser(userParser.parse(line));
+            return true;
+        } catch (UserWrongFormatException e) {
+            subscription.cancel();
+            completion.completeExceptionally(e);
+            return false;
+        }
+    }
+
+    private synchronized void mergeUser(User user) {
+        clusters.startUser();
+        for (Email email : user.getEmails())
+            clusters.addEmail(email.getEmail());
+        if (clusters.finishUser() == names.size())
+            names.add(user.getName());
+        processedLines++;
+    }
+
+    /**
+     * Подписчик на куски байтов: незавершенная строка в конце куска накапливается до получения ее конца
+     */
+    private class ChunkSubscriber implements Flow.Subscriber<ByteBuffer> {
+        private byte[] partialLine = new byte[256];
+        private int partialLength;
+
+        @Override
+        public void onSubscribe(Flow.Subscription subscription) {
+            if (StreamingUserMigration.this.subscription != null) {
+                subscription.cancel();
+                return;
+            }
+            StreamingUserMigration.this.subscription = subscription;
+            subscription.request(CHUNKS_IN_FLIGHT);
+        }
+
+        @Override
+        public void onNext(ByteBuffer chunk) {
+            while (chunk.hasRemaining()) {
+                byte b = chunk.get();
+                if (b != '\n') {
+                    append(b);
+                    continue;
+                }
+                int length = partialLength > 0 && partialLine[partialLength - 1] == '\r' ? partialLength - 1 : partialLength;
+                partialLength = 0;
+                if (!acceptLine(new String(partialLine, 0, length, StandardCharsets.UTF_8)))
+                    return;
+            }
+            if (!completion.isDone())
+                subscription.request(1);
+        }
+
+        @Override
+        public void onError(Throwable throwable) {
+            completion.completeExceptionally(throwable);
+        }
+
+        @Override
+        public void onComplete() {
+            if (partialLength > 0)
+                acceptLine(new String(partialLine, 0, partialLength, StandardCharsets.UTF_8));
+            completion.complete(null);
+        }
+
+        private void append(byte b) {
+            if (partialLength == partialLine.length)
+                partialLine = Arrays.copyOf(partialLine, partialLength << 1);
+            partialLine[partialLength++] = b;
+        }
+    }
+}
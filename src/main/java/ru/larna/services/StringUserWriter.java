@@ -0,0 +1,49 @@
+package ru.larna.services;
+
+import ru.larna.util.structures.EmailDictionary;
+
+/**
+ * Вывод пользователей по умолчанию: строка пользователя собирается в StringBuilder и передается в IOService.write
+ */
+class StringUserWriter implements UserWriter {
+    private final IOService ioService;
+    private final StringBuilder sb = new StringBuilder();
+    private boolean firstEmail;
+
+    StringUserWriter(IOService ioService) {
+        this.ioService = ioService;
+    }
+
+    @Override
+    public void startUser(String name) {
+        sb.setLength(0);
+        sb.append(name).append(" -> ");
+        firstEmail = true;
+    }
+
+    @Override
+    public void writeEmail(EmailDictionary dictionary, int emailId) {
+        if (!firstEmail)
+            sb.append(", ");
+        sb.append(dictionary.get(emailId));
+        firstEmail = false;
+    }
+
+    @Override
+    public void writeEmail(CharSequence email) {
+        if (!firstEmail)
+            sb.append(", ");
+        sb.append(email);
+        firstEmail = false;
+    }
+
+    @Override
+    public void endUser() {
+        ioService.write(sb.toString());
+    }
+
+    @Override
+    public void flush() {
+        // строки передаются в IOService сразу
+    }
+}
@@ -0,0 +1,150 @@
+package ru.larna.services;
+
+import lombok.extern.slf4j.Slf4j;
+import ru.larna.model.User;
+import ru.larna.util.parsers.EmailWrongFormatException;
+import ru.larna.util.parsers.UserParser;
+import ru.larna.util.parsers.UserWrongFormatException;
+
+import java.io.BufferedWriter;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.Map;
+import java.util.function.Consumer;
+
+/**
+ * Источник пользователей, пропускающий некорректные строки вместо прекращения слияния.
+ * Некорректная строка записывается в файл отклоненных строк в формате: номер строки, причина и сама строка,
+ * разделенные табуляцией, после чего чтение продолжается. Причина - wrong-format (строка не соответствует формату)
+ * или wrong-email (некорректный email). Если кол-во отклоненных строк превышает допустимое, выбрасывается
+ * UserWrongFormatException и слияние прекращается так же, как без этого источника.
+ * <p>
+ * Пользователи читаются исходным источником, поэтому порядок слияния и распараллеливание разбора сохраняются.
+ * Парсер оборачивается так, что вместо исключения возвращает пользователя-метку без email, а этап слияния
+ * в порядке следования строк записывает метки в файл. Для корректных строк добавляется только проверка метки.
+ */
+@Slf4j
+public class TolerantUserSource implements UserSource {
+    public static final long UNLIMITED = Long.MAX_VALUE;
+    private static final String WRONG_FORMAT = "wrong-format";
+    private static final String WRONG_EMAIL = "wrong-email";
+
+    private final UserSource userSource;
+    private final Path rejectFile;
+    /**
+     * Допустимое кол-во отклоненных строк
+     */
+    private final long maxRejects;
+    private long rejectedCount;
+
+    public TolerantUserSource(UserSource userSource, Path rejectFile) {
+        this(userSource, rejectFile, UNLIMITED);
+    }
+
+    public TolerantUserSource(UserSource userSource, Path rejectFile, long maxRejects) {
+        if (maxRejects < 0)
+            throw new IllegalArgumentException("Max rejects can't be negative");
+        this.userSource = userSource;
+        this.rejectFile = rejectFile;
+        this.maxRejects = maxRejects;
+    }
+
+    /**
+     * Прочитать и разобрать всех пользователей, пропуская некорректные строки
+     *
+     * @throws IOException              в случае IO ошибки чтения или записи файла отклоненных строк
+     * @throws UserWrongFormatException в случае превышения допустимого кол-ва отклоненных строк
+     */
+    @Override
+    public void readUsers(IOService ioService, UserParser parser, Consumer<User> consumer) throws IOException {
+        Map<User, UserWrongFormatException> rejections = Collections.synchronizedMap(new IdentityHashMap<>());
+        try (Rejects rejects = new Rejects(Files.newBufferedWriter(rejectFile, StandardCharsets.UTF_8))) {
+            userSource.readUsers(ioService, tolerant(parser, rejections), user -> {
+                rejects.lineNumber++;
+                if (user.getEmails() != null)
+                    consumer.accept(user);
+                else
+                    rejects.reject(user.getName(), rejections.remove(user));
+            });
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        } finally {
+            if (rejectedCount > 0)
+                log.warn("Rejected {} lines, see {}", rejectedCount, rejectFile);
+        }
+    }
+
+    /**
+     * Получить кол-во строк, отклоненных при последнем чтении
+     *
+     * @return возвращает кол-во отклоненных строк
+     */
+    public long getRejectedCount() {
+        return rejectedCount;
+    }
+
+    /**
+     * Обернуть парсер: вместо исключения возвращается метка - пользователь без email, именем которого является
+     * копия строки (строка может быть участком буфера, который будет перезаписан), а исключение сохраняется
+     * для этапа слияния. Метки сравниваются по ссылке.
+     */
+    private static UserParser tolerant(UserParser parser, Map<User, UserWrongFormatException> rejections) {
+        return new UserParser() {
+            @Override
+            public User parse(String str) {
+                return parse((CharSequence) str);
+            }
+
+            @Override
+            public User parse(CharSequence str) {
+                try {
+                    return parser.parse(str);
+                } catch (UserWrongFormatException e) {
+                    User marker = User.builder().name(str.toString()).build();
+                    rejections.put(marker, e);
+                    return marker;
+                }
+            }
+        };
+    }
+
+    /**
+     * Запись отклоненных строк, вызывается на этапе слияния в порядке следования строк
+     */
+    private class Rejects implements Closeable {
+        private final BufferedWriter writer;
+        private long lineNumber;
+
+        private Rejects(BufferedWriter writer) {
+            this.writer = writer;
+            rejectedCount = 0;
+        }
+
+        private void reject(String line, UserWrongFormatException e) {
+            try {
+                writer.write(Long.toString(lineNumber));
+                writer.write('\t');
+                writer.write(e instanceof EmailWrongFormatException ? WRONG_EMAIL : WRONG_FORMAT);
+                writer.write('\t');
+                writer.write(line);
+                writer.newLine();
+            } catch (IOException ioe) {
+                throw new UncheckedIOException(ioe);
+            }
+            if (++rejectedCount > maxRejects)
+                throw new UserWrongFormatException("Too many rejected lines - " + rejectedCount
+                        + ", last at line " + lineNumber + ": " + e.getMessage());
+        }
+
+        @Override
+        public void close() throws IOException {
+            writer.close();
+        }
+    }
+}
@@ -0,0 +1,153 @@
+package ru.larna.services;
+
+import lombok.extern.slf4j.Slf4j;
+import ru.larna.model.Email;
+import ru.larna.model.User;
+import ru.larna.util.parsers.UserParser;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+/**
+ * Сервис слияния пользователей в два прохода для входных данных, не помещающихся в память.
+ * Первый проход читает входные данные и строит кластеры email (см. EmailClusters), в памяти хранятся только
+ * словарь email и массивы int идентификаторов. Имя пользователя, образовавшего новый кластер, сбрасывается
+ * во временный файл. Второй проход читает временный файл по порядку и выводит актуальные кластеры.
+ * Таким образом объем памяти зависит от кол-ва уникальных email, а не от объема входных данных.
+ * Результат совпадает с результатом UserMigration.
+ */
+@Slf4j
+public class TwoPassUserMigration extends AbstractUserMigration {
+    private static final String SPILL_FILE_PREFIX = "migration-names-";
+    private static final String SPILL_FILE_SUFFIX = ".spill";
+    private static final int SPILL_BUFFER_SIZE = 1 << 16;
+    /**
+     * Каталог для временного файла
+     */
+    private final Path spillDirectory;
+    /**
+     * Кластеры email пользователей
+     */
+    private final EmailClusters clusters;
+    /**
+     * Временный файл с именами пользователей
+     */
+    private Path spillFile;
+    /**
+     * Поток записи во временный файл на время первого прохода
+     */
+    private DataOutputStream spill;
+
+    public TwoPassUserMigration(IOService ioService, UserParser userParser, Path spillDirectory) {
+        this(ioService, userParser, new SequentialUserSource(), spillDirectory);
+    }
+
+    public TwoPassUserMigration(IOService ioService, UserParser userParser, UserSource userSource,
+                                Path spillDirectory) {
+        super(ioService, userParser, userSource);
+        this.spillDirectory = spillDirectory;
+        this.clusters = new EmailClusters();
+    }
+
+    /**
+     * Получить кол-во актуальных пользователей
+     *
+     * @return возвращает кол-во обнаруженных уникальных пользователей
+     */
+    @Override
+    public Integer getActualUsersCount() {
+        return clusters.getActualCount();
+    }
+
+    /**
+     * Метод миграции/ слияния пользователей, временный файл удаляется по завершении
+     */
+    @Override
+    public void migrate() {
+        try {
+            super.migrate();
+        } finally {
+            deleteSpillFile();
+        }
+    }
+
+    /**
+     * Первый проход: произвести слияние email пользователей, имена новых пользователей сбросить во временный файл
+     *
+     * @throws IOException в случае IO ошибки выбрасывает исключение
+     */
+    @Override
+    protected void merge() throws IOException {
+        spillFile = Files.createTempFile(spillDirectory, SPILL_FILE_PREFIX, SPILL_FILE_SUFFIX);
+        try (DataOutputStream out = new DataOutputStream(
+                new BufferedOutputStream(Files.newOutputStream(spillFile), SPILL_BUFFER_SIZE))) {
+            spill = out;
+            super.merge();
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        } finally {
+            spill = null;
+        }
+    }
+
+    @Override
+    protected void mergeUser(User user) {
+        int clustersCount = clusters.getClustersCount();
+        clusters.startUser();
+        for (Email email : user.getEmails())
+            clusters.addEmail(email.getEmail());
+        if (clusters.finishUser() == clustersCount) {
+            try {
+                writeName(spill, user.getName());
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+    }
+
+    /**
+     * Второй проход: прочитать имена пользователей из временного файла и вывести актуальных пользователей
+     *
+     * @throws IOException в случае IO ошибки выбрасывает исключение
+     */
+    @Override
+    protected void saveResult() throws IOException {
+        try (DataInputStream in = new DataInputStream(
+                new BufferedInputStream(Files.newInputStream(spillFile), SPILL_BUFFER_SIZE))) {
+            UserWriter writer = ioService.getUserWriter();
+            for (int ordinal = 0; ordinal < clusters.getClustersCount(); ordinal++) {
+                String name = readName(in);
+                if (clusters.isAbsorbed(ordinal))
+                    continue;
+                writer.startUser(name);
+                clusters.writeEmails(ordinal, writer);
+                writer.endUser();
+            }
+            writer.flush();
+        }
+    }
+
+    private void writeName(DataOutput spill, String name) throws IOException {
+        byte[] bytes = name.getBytes(StandardCharsets.UTF_8);
+        spill.writeInt(bytes.length);
+        spill.write(bytes);
+    }
+
+    private String readName(DataInput spill) throws IOException {
+        byte[] bytes = new byte[spill.readInt()];
+        spill.readFully(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private void deleteSpillFile() {
+        if (spillFile == null)
+            return;
+        try {
+            Files.deleteIfExists(spillFile);
+        } catch (IOException e) {
+            log.warn("Can't delete spill file {}", spillFile, e);
+        }
+    }
+}
@@ -0,0 +1,79 @@
+package ru.larna.services;
+
+import ru.larna.model.Email;
+import ru.larna.model.User;
+import ru.larna.util.parsers.UserParser;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Сервис слияния пользователей на основе системы непересекающихся множеств (см. EmailClusters).
+ * Email поглощаемых пользователей не переназначаются повторно, а списки email склеиваются за константное время.
+ * Результат совпадает с результатом UserMigration: имя берется у первого встреченного пользователя,
+ * порядок следования пользователей и их email сохраняется.
+ */
+public class UnionFindUserMigration extends AbstractUserMigration {
+    /**
+     * Кластеры email пользователей
+     */
+    private final EmailClusters clusters;
+    /**
+     * Имена пользователей по порядковому номеру кластера
+     */
+    private final List<String> names;
+
+    public UnionFindUserMigration(IOService ioService, UserParser userParser) {
+        this(ioService, userParser, new SequentialUserSource());
+    }
+
+    public UnionFindUserMigration(IOService ioService, UserParser userParser, UserSource userSource) {
+        super(ioService, userParser, userSource);
+        this.clusters = new EmailClusters();
+        this.names = new ArrayList<>();
+    }
+
+    /**
+     * Получить кол-во актуальных пользователей
+     *
+     * @return возвращает кол-во обнаруженных уникальных пользователей
+     */
+    @Override
+    public Integer getActualUsersCount() {
+        return clusters.getActualCount();
+    }
+
+    /**
+     * Учесть пользователя. Все пользователи, с которыми у него есть общие email, склеиваются в порядке их появления
+     * в пользователя, встреченного первым, после чего к нему добавляются новые email.
+     *
+     * @param user пользователь
+     */
+    @Override
+    protected void mergeUser(User user) {
+        clusters.startUser();
+        for (Email email : user.getEmails())
+            clusters.addEmail(email.getEmail());
+        if (clusters.finishUser() == names.size())
+            names.add(user.getName());
+    }
+
+    /**
+     * Сохранить/Вывести результат
+     *
+     * @throws IOException в случае IO ошибки выбрасывает исключение
+     */
+    @Override
+    protected void saveResult() throws IOException {
+        UserWriter writer = ioService.getUserWriter();
+        for (int ordinal = 0; ordinal < clusters.getClustersCount(); ordinal++) {
+            if (clusters.isAbsorbed(ordinal))
+                continue;
+            writer.startUser(names.get(ordinal));
+            clusters.writeEmails(ordinal, writer);
+            writer.endUser();
+        }
+        writer.flush();
+    }
+}
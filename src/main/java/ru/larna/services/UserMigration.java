@@ -4,42 +4,192 @@ import lombok.extern.slf4j.Slf4j;
 import ru.larna.model.Email;
 import ru.larna.model.User;
 import ru.larna.util.parsers.UserParser;
-import ru.larna.util.parsers.UserWrongFormatException;
+import ru.larna.util.structures.EmailDictionary;
+import ru.larna.util.structures.IntArrayList;
 
-import java.io.IOException;
-import java.util.*;
-import java.util.stream.Collectors;
+import java.io.*;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.Arrays;
+import java.util.Set;
 
 /**
  * Сервис слияния пользователей.
  * Если 2 разных пользователя имеют одинаковые email, то они учитываются как один пользователь с объединенным списком
  * email, для такого пользователя будет взято имя первого пользователя для которого обнаружатся общие email,
  * остальные имена будут отброшены. Порядок следования пользователей сохраняется.
+ * Email хранятся в словаре EmailDictionary, слияние выполняется над идентификаторами email, строки адресов
+ * восстанавливаются только при выводе результата.
+ * <p>
+ * Пользователи хранятся в примитивных массивах (struct of arrays) по порядковому номеру пользователя: идентификатор
+ * имени в словаре имен, голова и хвост односвязного списка email пользователя, а для каждого email - следующий email
+ * того же пользователя. Порядковый номер задает порядок вывода. При слиянии списки поглощенных пользователей
+ * присоединяются к хвосту актуального пользователя за O(1), а сами поглощенные пользователи перенаправляются
+ * на актуального (лес перенаправлений со сжатием путей), поэтому владельцы их email не переписываются.
+ * <p>
+ * Слияние выполняется по ключу email (Email.getKey), например по каноническому виду адреса. Если ключ отличается
+ * от написания адреса, выводится написание, встреченное первым для этого ключа.
+ * <p>
+ * Для каждого пользователя учитывается кол-во его email, размер крупнейшего пользователя доступен во время слияния.
+ * Если задана защита ClusterGuard, общие email (список исключений и email с большой степенью) не участвуют
+ * в слиянии, см. ClusterGuard. Каждая встреча исключенного email добавляется в список email пользователя своей
+ * строки отдельным узлом вне владельцев email, при выводе повторы email у одного пользователя пропускаются.
+ * <p>
+ * Словарь email может использовать предварительный фильтр Блума: для email, встреченного впервые, фильтр отвечает
+ * "точно нет" без поиска в хеш-таблице словаря. Доля ложных ответов фильтра задается при создании.
+ * <p>
+ * Если задан файл снимка, каждые checkpointInterval строк состояние слияния (словарь email, владельцы email,
+ * пользователи и смещение следующей строки во входных данных) сохраняется в двоичный снимок. Снимок пишется
+ * во временный файл и переименовывается, поэтому при аварийном завершении остается предыдущий целый снимок.
+ * Следующий запуск восстанавливает состояние из снимка и продолжает чтение с сохраненного смещения, не разбирая
+ * обработанные строки повторно. После вывода результата снимок удаляется. Смещение строки известно только
+ * при последовательном чтении файла, например через MappedFileIOService.
  */
 @Slf4j
-public class UserMigration {
+public class UserMigration extends AbstractUserMigration {
+    public static final int DEFAULT_CHECKPOINT_INTERVAL = 1_000_000;
+    public static final double NO_PREFILTER = 0;
     /**
-     * Сервис ввода/вывода
+     * По умолчанию фильтр словаря email выключен
      */
-    private final IOService ioService;
+    public static final double DEFAULT_PREFILTER_FALSE_POSITIVE_RATE = NO_PREFILTER;
+    private static final int SNAPSHOT_MAGIC = 0x4C524E53;
+    private static final int SNAPSHOT_VERSION = 5;
+    private static final int SNAPSHOT_BUFFER_SIZE = 1 << 20;
+    private static final int NO_EMAIL = -1;
+    private static final int NO_USER = -1;
     /**
-     * Парсер строки пользователя
+     * Узлы исключенных email в списках email пользователей имеют отрицательные номера: FIRST_DETACHED_NODE - индекс
      */
-    private final UserParser userParser;
+    private static final int FIRST_DETACHED_NODE = -2;
+
+    /**
+     * Словарь уже встреченных ключей email.
+     */
+    private final EmailDictionary emailDictionary;
+    /**
+     * Первое написание email по идентификатору ключа. Создается при первом email, ключ которого отличается
+     * от написания, до этого написания совпадают с ключами.
+     */
+    private EmailDictionary spellings;
+    /**
+     * Порядковый номер пользователя, которому email был назначен при добавлении, для каждого идентификатора email,
+     * NO_USER - у email нет владельца (исключенный email). Актуальный владелец находится через перенаправления
+     * userParents.
+     */
+    private final IntArrayList emailOwners;
+    /**
+     * Следующий email того же пользователя для каждого идентификатора email, NO_EMAIL - последний email.
+     */
+    private final IntArrayList nextEmails;
+    /**
+     * Идентификатор email и следующий узел списка для каждого узла исключенного email
+     */
+    private final IntArrayList detachedEmails;
+    private final IntArrayList detachedNext;
+    /**
+     * Словарь имен пользователей
+     */
+    private final EmailDictionary names;
+    /**
+     * Идентификатор имени в словаре имен по порядковому номеру пользователя
+     */
+    private final IntArrayList nameIds;
+    /**
+     * Первый и последний email пользователя по порядковому номеру, NO_EMAIL - у пользователя нет email
+     */
+    private final IntArrayList heads;
+    private final IntArrayList tails;
+    /**
+     * Пользователь, в которого был слит пользователь, по порядковому номеру. У актуального пользователя - он сам.
+     */
+    private final IntArrayList userParents;
+    /**
+     * Кол-во участвующих в слиянии email пользователя по порядковому номеру, у поглощенного пользователя - 0
+     */
+    private final IntArrayList clusterSizes;
+    private int largestClusterSize;
+    /**
+     * Защита от гигантского пользователя, null - все email участвуют в слиянии
+     */
+    private final ClusterGuard clusterGuard;
+    /**
+     * Порядковые номера актуальных пользователей, с email которых пересекается текущая строка
+     */
+    private final IntArrayList crossingUsers;
+    /**
+     * Идентификаторы email текущей обрабатываемой строки, у исключенных из слияния email - ~идентификатор
+     */
+    private final IntArrayList lineEmailIds;
+    /**
+     * Кол-во актуальных пользователей
+     */
+    private int actualCount;
+    /**
+     * Файл снимка состояния, null - снимки не сохраняются
+     */
+    private final Path snapshotFile;
     /**
-     * Map для хранения уже встреченных email.
+     * Кол-во строк между сохранениями снимка
      */
-    private final Map<Email, Long> emailsMap;
+    private final int checkpointInterval;
     /**
-     * Set актуальных пользователей.
+     * Кол-во обработанных строк, включая восстановленные из снимка
      */
-    private final Map<Long, User> userMap;
+    private long processedLines;
+    private int linesSinceCheckpoint;
 
     public UserMigration(IOService ioService, UserParser userParser) {
-        this.ioService = ioService;
-        this.userParser = userParser;
-        this.emailsMap = new HashMap<>();
-        this.userMap = new LinkedHashMap<>();
+        this(ioService, userParser, new SequentialUserSource());
+    }
+
+    public UserMigration(IOService ioService, UserParser userParser, UserSource userSource) {
+        this(ioService, userParser, userSource, null, DEFAULT_CHECKPOINT_INTERVAL);
+    }
+
+    public UserMigration(IOService ioService, UserParser userParser, UserSource userSource,
+                         Path snapshotFile, int checkpointInterval) {
+        this(ioService, userParser, userSource, snapshotFile, checkpointInterval,
+                DEFAULT_PREFILTER_FALSE_POSITIVE_RATE);
+    }
+
+    public UserMigration(IOService ioService, UserParser userParser, UserSource userSource,
+                         Path snapshotFile, int checkpointInterval, double prefilterFalsePositiveRate) {
+        this(ioService, userParser, userSource, snapshotFile, checkpointInterval, prefilterFalsePositiveRate, null);
+    }
+
+    /**
+     * @param ioService                  сервис ввода/вывода
+     * @param userParser                 парсер строки пользователя
+     * @param userSource                 источник пользователей
+     * @param snapshotFile               файл снимка состояния, null - снимки не сохраняются
+     * @param checkpointInterval         кол-во строк между сохранениями снимка
+     * @param prefilterFalsePositiveRate доля ложных ответов фильтра словаря email, NO_PREFILTER - без фильтра
+     * @param clusterGuard               защита от гигантского пользователя, null - без защиты
+     */
+    public UserMigration(IOService ioService, UserParser userParser, UserSource userSource,
+                         Path snapshotFile, int checkpointInterval, double prefilterFalsePositiveRate,
+                         ClusterGuard clusterGuard) {
+        super(ioService, userParser, userSource);
+        if (checkpointInterval < 1)
+            throw new IllegalArgumentException("Checkpoint interval must be positive");
+        this.emailDictionary = new EmailDictionary(EmailDictionary.DEFAULT_CAPACITY, prefilterFalsePositiveRate);
+        this.emailOwners = new IntArrayList();
+        this.nextEmails = new IntArrayList();
+        this.detachedEmails = new IntArrayList();
+        this.detachedNext = new IntArrayList();
+        this.names = new EmailDictionary(EmailDictionary.DEFAULT_CAPACITY, 0, false);
+        this.nameIds = new IntArrayList();
+        this.heads = new IntArrayList();
+        this.tails = new IntArrayList();
+        this.userParents = new IntArrayList();
+        this.clusterSizes = new IntArrayList();
+        this.clusterGuard = clusterGuard;
+        this.crossingUsers = new IntArrayList();
+        this.lineEmailIds = new IntArrayList();
+        this.snapshotFile = snapshotFile;
+        this.checkpointInterval = checkpointInterval;
     }
 
     /**
@@ -47,46 +197,83 @@ public class UserMigration {
      *
      * @return возвращает кол-во обнаруженных уникальных пользователей
      */
+    @Override
     public Integer getActualUsersCount() {
-        return userMap.size();
+        return actualCount;
+    }
+
+    /**
+     * Получить размер крупнейшего пользователя
+     *
+     * @return возвращает кол-во email крупнейшего из обнаруженных пользователей
+     */
+    public int getLargestClusterSize() {
+        return largestClusterSize;
+    }
+
+    /**
+     * Получить заполненность хеш-таблицы словаря email
+     *
+     * @return возвращает отношение кол-ва email к размеру хеш-таблицы
+     */
+    public double getEmailDictionaryLoadFactor() {
+        return emailDictionary.loadFactor();
     }
 
     /**
-     * Метод миграции/ слияния пользователей
+     * Получить наблюдаемую долю ложных ответов фильтра словаря email
+     *
+     * @return возвращает долю ложных ответов среди поисков новых email, NaN - фильтр не используется
      */
-    public void migrate() {
+    public double getEmailPrefilterFalsePositiveRate() {
+        return emailDictionary.getPrefilterFalsePositiveRate();
+    }
+
+    /**
+     * Произвести слияние, восстановив состояние из снимка, если он есть
+     *
+     * @throws IOException в случае IO ошибки, ошибки чтения или записи снимка выбрасывает исключение
+     */
+    @Override
+    protected void merge() throws IOException {
+        if (snapshotFile == null) {
+            super.merge();
+            return;
+        }
+        if (ioService.getPosition() < 0)
+            throw new IOException("Snapshots require input with known line offsets, use an input file");
+        if (Files.exists(snapshotFile))
+            restoreSnapshot();
         try {
-            merge();
-            saveResult();
-        } catch (IOException e) {
-            log.error("Migration IOError", e);
-        } catch (UserWrongFormatException e) {
-            log.error("Migration wrong format", e);
+            super.merge();
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
         }
     }
 
     /**
-     * Произвести слияние данных о пользователях
+     * Учесть пользователя: зарегистрировать нового или слить с пользователями, имеющими общие email
      *
-     * @throws IOException в случае IO ошибки выбрасывает исключение
+     * @param user пользователь
      */
-    private void merge() throws IOException {
-        long counter = 0;
-        String str;
-        boolean isExit;
-        do {
-            str = ioService.read();
-            isExit = isStopHandle(str);
-
-            if (!isExit) {
-                User checkedUser = userParser.parse(str);
-                List<Email> existsEmailsList = this.getAllCrossingEmails(checkedUser.getEmails());
-                if (existsEmailsList == null || existsEmailsList.isEmpty())
-                    addNewUser(checkedUser, ++counter);
-                else
-                    mergeUserWithExistsEmails(checkedUser, existsEmailsList);
+    @Override
+    protected void mergeUser(User user) {
+        IntArrayList emailIds = toEmailIds(user.getEmails());
+        findCrossingUsers(emailIds);
+        if (crossingUsers.isEmpty())
+            addNewUser(user.getName(), emailIds);
+        else
+            mergeUserWithExistsEmails(emailIds);
+
+        processedLines++;
+        if (snapshotFile != null && ++linesSinceCheckpoint == checkpointInterval) {
+            try {
+                writeSnapshot();
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
             }
-        } while (!isExit);
+            linesSinceCheckpoint = 0;
+        }
     }
 
     /**
@@ -94,75 +281,290 @@ public class UserMigration {
      *
      * @throws IOException в случае IO ошибки выбрасывает исключение
      */
-    private void saveResult() throws IOException {
-        userMap.values().forEach(user -> ioService.write(user.toString()));
+    @Override
+    protected void saveResult() throws IOException {
+        UserWriter writer = ioService.getUserWriter();
+        EmailDictionary dictionary = spellings != null ? spellings : emailDictionary;
+        int[] writtenBy = detachedEmails.isEmpty() ? null : new int[emailDictionary.size()];
+        if (writtenBy != null)
+            Arrays.fill(writtenBy, NO_USER);
+        for (int userId = 0; userId < heads.size(); userId++) {
+            if (userParents.get(userId) != userId)
+                continue;
+            writer.startUser(names.get(nameIds.get(userId)));
+            for (int node = heads.get(userId); node != NO_EMAIL; node = nextNode(node)) {
+                int emailId = node >= 0 ? node : detachedEmails.get(FIRST_DETACHED_NODE - node);
+                if (writtenBy != null) {
+                    if (writtenBy[emailId] == userId)
+                        continue;
+                    writtenBy[emailId] = userId;
+                }
+                writer.writeEmail(dictionary, emailId);
+            }
+            writer.endUser();
+        }
+        writer.flush();
+        if (clusterGuard != null)
+            clusterGuard.report(dictionary, largestClusterSize);
+        if (snapshotFile != null)
+            Files.deleteIfExists(snapshotFile);
+    }
+
+    /**
+     * Сохранить снимок состояния слияния. Снимок сначала пишется во временный файл, который после
+     * сброса на диск заменяет прежний снимок.
+     *
+     * @throws IOException в случае ошибки записи снимка
+     */
+    private void writeSnapshot() throws IOException {
+        Path tempFile = snapshotFile.resolveSibling(snapshotFile.getFileName() + ".tmp");
+        try (FileOutputStream file = new FileOutputStream(tempFile.toFile());
+             DataOutputStream out = new DataOutputStream(new BufferedOutputStream(file, SNAPSHOT_BUFFER_SIZE))) {
+            out.writeInt(SNAPSHOT_MAGIC);
+            out.writeInt(SNAPSHOT_VERSION);
+            out.writeLong(ioService.getPosition());
+            out.writeLong(processedLines);
+            out.writeInt(actualCount);
+            emailDictionary.writeTo(out);
+            out.writeBoolean(spellings != null);
+            if (spellings != null)
+                spellings.writeTo(out);
+            emailOwners.writeTo(out);
+            nextEmails.writeTo(out);
+            detachedEmails.writeTo(out);
+            detachedNext.writeTo(out);
+            names.writeTo(out);
+            nameIds.writeTo(out);
+            heads.writeTo(out);
+            tails.writeTo(out);
+            userParents.writeTo(out);
+            clusterSizes.writeTo(out);
+            out.writeInt(largestClusterSize);
+            out.writeBoolean(clusterGuard != null);
+            if (clusterGuard != null)
+                clusterGuard.writeTo(out);
+            out.flush();
+            file.getFD().sync();
+        }
+        Files.move(tempFile, snapshotFile, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        log.debug("Snapshot saved: {} lines, {} users", processedLines, actualCount);
     }
 
     /**
-     * Регистрация нового пользователя
+     * Восстановить состояние слияния из снимка и продолжить чтение со строки, следующей за сохраненной
      *
-     * @param user   - пользователь
-     * @param userId - назначенный пользователю на время обработки идентификатор.
+     * @throws IOException в случае ошибки чтения или некорректного снимка
      */
-    private void addNewUser(User user, Long userId) {
-        user.getEmails().forEach(email -> emailsMap.put(email, userId));
-        userMap.put(userId, user);
+    private void restoreSnapshot() throws IOException {
+        try (DataInputStream in = new DataInputStream(
+                new BufferedInputStream(Files.newInputStream(snapshotFile), SNAPSHOT_BUFFER_SIZE))) {
+            if (in.readInt() != SNAPSHOT_MAGIC || in.readInt() != SNAPSHOT_VERSION)
+                throw new IOException("Wrong snapshot file - " + snapshotFile);
+            long position = in.readLong();
+            processedLines = in.readLong();
+            actualCount = in.readInt();
+            emailDictionary.readFrom(in);
+            spellings = null;
+            if (in.readBoolean()) {
+                spellings = new EmailDictionary();
+                spellings.readFrom(in);
+            }
+            emailOwners.readFrom(in);
+            nextEmails.readFrom(in);
+            detachedEmails.readFrom(in);
+            detachedNext.readFrom(in);
+            names.readFrom(in);
+            nameIds.readFrom(in);
+            heads.readFrom(in);
+            tails.readFrom(in);
+            userParents.readFrom(in);
+            clusterSizes.readFrom(in);
+            largestClusterSize = in.readInt();
+            if (in.readBoolean() != (clusterGuard != null))
+                throw new IOException("Snapshot was saved with a different cluster guard setting - " + snapshotFile);
+            if (clusterGuard != null)
+                clusterGuard.readFrom(in);
+            ioService.seek(position);
+            log.debug("Snapshot restored: {} lines, {} users, input offset {}", processedLines, actualCount, position);
+        }
     }
 
     /**
-     * Найти список email которые совпадают с уже учтенными
+     * Получить идентификаторы email пользователя, новые email добавляются в словарь.
+     * Email, исключенные защитой от гигантского пользователя, записываются как ~идентификатор.
      *
      * @param emails set of emails
-     * @return возвращает список объектов Email из переданного аргумента emails, для которых есть совпадения
-     * с уже учтенными email
+     * @return возвращает список идентификаторов email в порядке следования email
+     */
+    private IntArrayList toEmailIds(Set<Email> emails) {
+        lineEmailIds.clear();
+        for (Email email : emails) {
+            int count = emailDictionary.size();
+            int emailId = emailDictionary.intern(email.getKey());
+            if (emailId == count && (spellings != null || !email.getKey().equals(email.getEmail())))
+                addSpelling(email.getEmail());
+            if (clusterGuard == null || clusterGuard.countOccurrence(emailId, email.getKey()))
+                lineEmailIds.add(emailId);
+            else
+                lineEmailIds.add(~emailId);
+        }
+        return lineEmailIds;
+    }
+
+    /**
+     * Запомнить написание нового email. Написание отличается от написаний остальных email, поэтому получает
+     * тот же идентификатор, что и ключ.
+     *
+     * @param email написание email
      */
-    private List<Email> getAllCrossingEmails(Set<Email> emails) {
-        return emails.stream()
-                .filter(emailsMap::containsKey)
-                .collect(Collectors.toList());
+    private void addSpelling(String email) {
+        if (spellings == null) {
+            spellings = new EmailDictionary(emailDictionary.size());
+            for (int id = 0; id < emailDictionary.size() - 1; id++)
+                spellings.intern(emailDictionary, id);
+        }
+        spellings.intern(email);
+    }
+
+    /**
+     * Регистрация нового пользователя
+     *
+     * @param name     - имя пользователя
+     * @param emailIds - идентификаторы email пользователя
+     */
+    private void addNewUser(String name, IntArrayList emailIds) {
+        int userId = heads.size();
+        nameIds.add(names.intern(name));
+        heads.add(NO_EMAIL);
+        tails.add(NO_EMAIL);
+        userParents.add(userId);
+        clusterSizes.add(0);
+        actualCount++;
+        appendNewEmails(emailIds, userId);
+    }
+
+    /**
+     * Найти актуальных пользователей, которым уже принадлежат email, результат - в crossingUsers
+     * по возрастанию порядкового номера
+     *
+     * @param emailIds идентификаторы email
+     */
+    private void findCrossingUsers(IntArrayList emailIds) {
+        crossingUsers.clear();
+        for (int i = 0; i < emailIds.size(); i++) {
+            int emailId = emailIds.get(i);
+            if (emailId >= 0 && isKnownEmail(emailId)) {
+                int userId = findUser(emailOwners.get(emailId));
+                if (!crossingUsers.contains(userId))
+                    crossingUsers.add(userId);
+            }
+        }
+        crossingUsers.sort();
     }
 
     /**
      * Слияние пользователей для которых найдены пересечения в email. Email в списке пользователя не дублируются.
-     * В качестве актуального пользователя берется первый обработанный пользователь, его поиск выполняется на основании
-     * списка пересекающихся email и в него будет производиться операция слияния всех email для всех остальных копий
-     * этого пользователя. Копии пользователя будут удалены.
+     * В качестве актуального пользователя берется первый обработанный пользователь, к его списку email
+     * присоединяются списки email остальных копий в порядке их обработки, а затем новые email строки.
+     * Копии пользователя перенаправляются на актуального пользователя.
      *
-     * @param user        новый пользователь
-     * @param crossEmails список email, для которых найдены пересечения email нового пользователя с уже имеющимися
+     * @param emailIds идентификаторы email нового пользователя
      */
-    private void mergeUserWithExistsEmails(User user, List<Email> crossEmails) {
-        TreeSet<Long> usersIdList = crossEmails.stream().map(emailsMap::get).collect(Collectors.toCollection(TreeSet::new));
+    private void mergeUserWithExistsEmails(IntArrayList emailIds) {
+        int mergedUserId = crossingUsers.get(0);
+        for (int i = 1; i < crossingUsers.size(); i++) {
+            int userId = crossingUsers.get(i);
+            setNextNode(tails.get(mergedUserId), heads.get(userId));
+            tails.set(mergedUserId, tails.get(userId));
+            heads.set(userId, NO_EMAIL);
+            tails.set(userId, NO_EMAIL);
+            userParents.set(userId, mergedUserId);
+            clusterSizes.set(mergedUserId, clusterSizes.get(mergedUserId) + clusterSizes.get(userId));
+            clusterSizes.set(userId, 0);
+            actualCount--;
+        }
+        appendNewEmails(emailIds, mergedUserId);
+    }
 
-        final Long mergedUserId = usersIdList.first();
-        usersIdList.stream()
-                .skip(1)
-                .forEach(userId -> {
-                    User existUser = userMap.get(userId);
-                    userMap.remove(userId);
-                    assignEmailsToUser(existUser.getEmails(), mergedUserId);
-                });
-        assignEmailsToUser(user.getEmails(), mergedUserId);
+    /**
+     * Добавить пользователю email, встреченные впервые, и учесть новый размер пользователя. Учтенные email
+     * уже находятся в списке одного из слитых пользователей и пропускаются. Исключенные из слияния email
+     * добавляются отдельными узлами без владельца.
+     *
+     * @param emailIds идентификаторы email
+     * @param userId   порядковый номер пользователя
+     */
+    private void appendNewEmails(IntArrayList emailIds, int userId) {
+        for (int i = 0; i < emailIds.size(); i++) {
+            int emailId = emailIds.get(i);
+            if (emailId < 0) {
+                detachedEmails.add(~emailId);
+                detachedNext.add(NO_EMAIL);
+                appendNode(userId, FIRST_DETACHED_NODE - (detachedEmails.size() - 1));
+                continue;
+            }
+            if (isKnownEmail(emailId))
+                continue;
+            while (emailOwners.size() <= emailId) {
+                emailOwners.add(NO_USER);
+                nextEmails.add(NO_EMAIL);
+            }
+            emailOwners.set(emailId, userId);
+            appendNode(userId, emailId);
+            clusterSizes.set(userId, clusterSizes.get(userId) + 1);
+        }
+        largestClusterSize = Math.max(largestClusterSize, clusterSizes.get(userId));
     }
 
     /**
-     * Назначить пользователю email'ы
+     * Добавить узел в конец списка email пользователя
      *
-     * @param emails set of emails
-     * @param userId назначенный для пользователя идентификатор
+     * @param userId порядковый номер пользователя
+     * @param node   идентификатор email или узел исключенного email
      */
-    private void assignEmailsToUser(Set<Email> emails, Long userId) {
-        emails.forEach(email -> emailsMap.put(email, userId));
-        userMap.get(userId).getEmails().addAll(emails);
+    private void appendNode(int userId, int node) {
+        if (heads.get(userId) == NO_EMAIL)
+            heads.set(userId, node);
+        else
+            setNextNode(tails.get(userId), node);
+        tails.set(userId, node);
+    }
+
+    private int nextNode(int node) {
+        return node >= 0 ? nextEmails.get(node) : detachedNext.get(FIRST_DETACHED_NODE - node);
+    }
+
+    private void setNextNode(int node, int next) {
+        if (node >= 0)
+            nextEmails.set(node, next);
+        else
+            detachedNext.set(FIRST_DETACHED_NODE - node, next);
+    }
+
+    /**
+     * Найти актуального пользователя, в которого был слит пользователь. Пути перенаправлений сокращаются вдвое.
+     *
+     * @param userId порядковый номер пользователя
+     * @return возвращает порядковый номер актуального пользователя
+     */
+    private int findUser(int userId) {
+        while (userParents.get(userId) != userId) {
+            int parent = userParents.get(userParents.get(userId));
+            userParents.set(userId, parent);
+            userId = parent;
+        }
+        return userId;
     }
 
     /**
-     * Проверка: Следует ли прекратить обработку?
+     * Проверка: Принадлежит ли email какому-либо пользователю?
+     * Новые email получают идентификаторы по порядку, поэтому у email, встреченного впервые, идентификатор не меньше
+     * размера массива владельцев. Владельца нет и у исключенного из слияния email.
      *
-     * @param str проверяемая строка
-     * @return возвращает true - получена пустая строка, false - получили не пустую строку
+     * @param emailId идентификатор email
+     * @return возвращает true - email уже учтен, false - email встречен впервые или исключен из слияния
      */
-    private Boolean isStopHandle(String str) {
-        return str == null || str.isEmpty();
+    private boolean isKnownEmail(int emailId) {
+        return emailId < emailOwners.size() && emailOwners.get(emailId) != NO_USER;
     }
 }
@@ -0,0 +1,36 @@
+package ru.larna.services;
+
+import ru.larna.model.User;
+import ru.larna.util.parsers.UserParser;
+import ru.larna.util.parsers.UserWrongFormatException;
+
+import java.io.IOException;
+import java.util.function.Consumer;
+
+/**
+ * Источник пользователей: читает строки через IOService до пустой строки, разбирает их парсером
+ * и передает пользователей на слияние строго в порядке следования строк.
+ */
+public interface UserSource {
+    /**
+     * Прочитать и разобрать всех пользователей
+     *
+     * @param ioService сервис ввода/вывода
+     * @param parser    парсер строки пользователя
+     * @param consumer  этап слияния, вызывается в потоке вызывающего кода в порядке следования строк
+     * @throws IOException              в случае IO ошибки выбрасывает исключение
+     * @throws UserWrongFormatException в случае некорректной строки выбрасывает исключение, пользователи,
+     *                                  следующие за некорректной строкой, на слияние не передаются
+     */
+    void readUsers(IOService ioService, UserParser parser, Consumer<User> consumer) throws IOException;
+
+    /**
+     * Проверка: Следует ли прекратить обработку?
+     *
+     * @param str проверяемая строка
+     * @return возвращает true - получена пустая строка, false - получили не пустую строку
+     */
+    static boolean isStopHandle(CharSequence str) {
+        return str == null || str.length() == 0;
+    }
+}
@@ -0,0 +1,51 @@
+package ru.larna.services;
+
+import ru.larna.util.structures.EmailDictionary;
+
+import java.io.IOException;
+
+/**
+ * Вывод объединенных пользователей в формате name -> email1, email2.
+ * Пользователь выводится в три шага: startUser, writeEmail для каждого email, endUser.
+ * После вывода всех пользователей вызывается flush.
+ */
+public interface UserWriter {
+    /**
+     * Начать вывод пользователя
+     *
+     * @param name имя пользователя
+     * @throws IOException в случае ошибки вывода
+     */
+    void startUser(String name) throws IOException;
+
+    /**
+     * Вывести очередной email пользователя
+     *
+     * @param dictionary словарь email
+     * @param emailId    идентификатор email в словаре
+     * @throws IOException в случае ошибки вывода
+     */
+    void writeEmail(EmailDictionary dictionary, int emailId) throws IOException;
+
+    /**
+     * Вывести очередной email пользователя
+     *
+     * @param email адрес
+     * @throws IOException в случае ошибки вывода
+     */
+    void writeEmail(CharSequence email) throws IOException;
+
+    /**
+     * Завершить вывод пользователя
+     *
+     * @throws IOException в случае ошибки вывода
+     */
+    void endUser() throws IOException;
+
+    /**
+     * Передать накопленный вывод получателю
+     *
+     * @throws IOException в случае ошибки вывода
+     */
+    void flush() throws IOException;
+}
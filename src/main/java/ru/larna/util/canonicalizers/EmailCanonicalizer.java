@@ -0,0 +1,133 @@
+package ru.larna.util.canonicalizers;
+
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Канонизация email: домен приводится к нижнему регистру, к адресам доменов, для которых задано правило
+ * провайдера (ProviderRule), применяется это правило. Адрес с доменом в нижнем регистре без правила
+ * возвращается без изменений и без создания объектов.
+ * <p>
+ * Результат обработки домена (канонический домен и правило) хранится в кэше ограниченного размера
+ * с прямым отображением: ячейка выбирается по хешу домена в исходном написании, при коллизии прежняя запись
+ * вытесняется. Поэтому часто встречающиеся домены обрабатываются один раз, а объем кэша не зависит от кол-ва
+ * доменов во входных данных. Записи кэша неизменяемы, поэтому канонизатор используется несколькими потоками
+ * без блокировок.
+ */
+public class EmailCanonicalizer {
+    public static final int DEFAULT_CACHE_SIZE = 4096;
+
+    /**
+     * Правила провайдеров по домену в нижнем регистре
+     */
+    private final Map<String, ProviderRule> rules;
+    private final DomainForm[] cache;
+    private final int mask;
+
+    public EmailCanonicalizer(Collection<ProviderRule> rules) {
+        this(rules, DEFAULT_CACHE_SIZE);
+    }
+
+    public EmailCanonicalizer(Collection<ProviderRule> rules, int cacheSize) {
+        if (cacheSize < 1)
+            throw new IllegalArgumentException("Cache size must be positive");
+        this.rules = new HashMap<>();
+        rules.forEach(rule -> this.rules.put(rule.getDomain().toLowerCase(Locale.ROOT), rule));
+        int size = Integer.highestOneBit(cacheSize);
+        this.cache = new DomainForm[size < cacheSize ? size << 1 : size];
+        this.mask = cache.length - 1;
+    }
+
+    /**
+     * Получить правила по умолчанию: адреса gmail.com и googlemail.com сравниваются без учета регистра, точек
+     * и метки после '+', googlemail.com заменяется на gmail.com
+     *
+     * @return возвращает правила провайдеров
+     */
+    public static List<ProviderRule> defaultRules() {
+        return List.of(
+                ProviderRule.builder().domain("gmail.com")
+                        .stripDots(true).stripPlusTag(true).lowercaseLocalPart(true).build(),
+                ProviderRule.builder().domain("googlemail.com").canonicalDomain("gmail.com")
+                        .stripDots(true).stripPlusTag(true).lowercaseLocalPart(true).build());
+    }
+
+    /**
+     * Получить канонический вид адреса
+     *
+     * @param email адрес
+     * @return возвращает канонический вид адреса или тот же объект, если адрес уже канонический
+     */
+    public String canonicalize(String email) {
+        int at = email.lastIndexOf('@');
+        if (at <= 0)
+            return email;
+        DomainForm form = domainForm(email, at + 1);
+        ProviderRule rule = form.rule;
+        if (rule == null && form.canonical)
+            return email;
+
+        StringBuilder sb = new StringBuilder(email.length());
+        for (int i = 0; i < at; i++) {
+            char c = email.charAt(i);
+            if (rule != null) {
+                if (rule.isStripPlusTag() && c == '+')
+                    break;
+                if (rule.isStripDots() && c == '.')
+                    continue;
+                if (rule.isLowercaseLocalPart() && c >= 'A' && c <= 'Z')
+                    c += 'a' - 'A';
+            }
+            sb.append(c);
+        }
+        return sb.append('@').append(form.canonicalDomain).toString();
+    }
+
+    private DomainForm domainForm(String email, int begin) {
+        int hash = 0;
+        for (int i = begin, length = email.length(); i < length; i++)
+            hash = 31 * hash + email.charAt(i);
+        int slot = (hash ^ (hash >>> 16)) & mask;
+
+        DomainForm form = cache[slot];
+        if (form != null && form.hash == hash && form.matches(email, begin))
+            return form;
+
+        String domain = email.substring(begin);
+        String lowercase = domain.toLowerCase(Locale.ROOT);
+        ProviderRule rule = rules.get(lowercase);
+        String canonicalDomain = rule != null && rule.getCanonicalDomain() != null ? rule.getCanonicalDomain() : lowercase;
+        form = new DomainForm(domain, hash, canonicalDomain, rule);
+        cache[slot] = form;
+        return form;
+    }
+
+    /**
+     * Запись кэша: домен в исходном написании, его канонический вид и правило провайдера
+     */
+    private static final class DomainForm {
+        private final String domain;
+        private final int hash;
+        private final String canonicalDomain;
+        private final ProviderRule rule;
+        /**
+         * Домен в исходном написании совпадает с каноническим
+         */
+        private final boolean canonical;
+
+        private DomainForm(String domain, int hash, String canonicalDomain, ProviderRule rule) {
+            this.domain = domain;
+            this.hash = hash;
+            this.canonicalDomain = canonicalDomain;
+            this.rule = rule;
+            this.canonical = domain.equals(canonicalDomain);
+        }
+
+        private boolean matches(String email, int begin) {
+            return email.length() - begin == domain.length() && email.startsWith(domain, begin);
+        }
+    }
+}
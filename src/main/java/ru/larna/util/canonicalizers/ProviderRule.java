@@ -0,0 +1,32 @@
+package ru.larna.util.canonicalizers;
+
+import lombok.Builder;
+import lombok.Value;
+
+/**
+ * Правило канонизации адресов почтового провайдера
+ */
+@Value
+@Builder
+public class ProviderRule {
+    /**
+     * Домен провайдера в нижнем регистре
+     */
+    private final String domain;
+    /**
+     * Канонический домен, например gmail.com для googlemail.com. null - домен не заменяется
+     */
+    private final String canonicalDomain;
+    /**
+     * Удалять точки из локальной части: f.o.o@gmail.com - foo@gmail.com
+     */
+    private final boolean stripDots;
+    /**
+     * Отбрасывать метку после '+' в локальной части: foo+tag@gmail.com - foo@gmail.com
+     */
+    private final boolean stripPlusTag;
+    /**
+     * Приводить локальную часть к нижнему регистру
+     */
+    private final boolean lowercaseLocalPart;
+}
@@ -0,0 +1,63 @@
+package ru.larna.util.generator;
+
+import lombok.Builder;
+import lombok.Value;
+
+/**
+ * Параметры генерации фейковых данных.
+ * Строки принадлежат кластерам (будущим объединенным пользователям), размер кластера в строках выбирается
+ * по распределению Ципфа: P(n) ~ 1 / n^zipfExponent, n от 1 до maxClusterSize.
+ * Внутри кластера строки связаны общими email в цепочки длиной chainLength, начало каждой цепочки связано
+ * с первой строкой кластера: chainLength = 1 дает звезду, chainLength >= maxClusterSize - одну длинную цепочку.
+ */
+@Value
+@Builder(toBuilder = true)
+public class FakeDataSettings {
+    /**
+     * Кол-во строк
+     */
+    private final long usersCount;
+    /**
+     * Начальное значение генератора случайных чисел, одинаковые параметры дают одинаковые данные
+     */
+    @Builder.Default
+    private final long seed = 42;
+    /**
+     * Минимальное и максимальное кол-во email в строке
+     */
+    @Builder.Default
+    private final int minEmailsPerUser = 1;
+    @Builder.Default
+    private final int maxEmailsPerUser = 3;
+    /**
+     * Показатель распределения Ципфа размеров кластеров, 0 - равномерное распределение
+     */
+    @Builder.Default
+    private final double zipfExponent = 1.5;
+    /**
+     * Максимальный размер кластера в строках
+     */
+    @Builder.Default
+    private final int maxClusterSize = 1000;
+    /**
+     * Длина цепочки строк, последовательно связанных общими email
+     */
+    @Builder.Default
+    private final int chainLength = 1;
+    /**
+     * Выводить строки цепочки сначала нечетные, затем четные: нечетные строки образуют отдельных пользователей,
+     * а каждая четная строка склеивает двух из них, что дает максимум слияний
+     */
+    @Builder.Default
+    private final boolean interleaveChains = false;
+    /**
+     * Доля некорректных строк от 0 до 1
+     */
+    @Builder.Default
+    private final double invalidLineShare = 0;
+    /**
+     * Кол-во одновременно заполняемых кластеров, строки которых перемешиваются между собой
+     */
+    @Builder.Default
+    private final int openClusters = 1024;
+}
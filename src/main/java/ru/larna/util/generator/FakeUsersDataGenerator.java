@@ -3,49 +3,132 @@ package ru.larna.util.generator;
 import lombok.extern.slf4j.Slf4j;
 import ru.larna.services.IOService;
 
-import java.util.Collections;
-import java.util.List;
 import java.util.Random;
-import java.util.stream.Collectors;
-import java.util.stream.IntStream;
 
 /**
- * Генерация фейковых данных
+ * Потоковая генерация фейковых данных.
+ * Строки выводятся сразу по мере генерации, в памяти хранится только пул одновременно заполняемых кластеров,
+ * поэтому объем памяти не зависит от кол-ва строк. Все случайные величины берутся из одного генератора
+ * с заданным начальным значением, поэтому данные воспроизводимы.
+ * <p>
+ * Строка выбирает случайный открытый кластер из пула, когда все строки кластера выведены, на его место
+ * открывается новый кластер с размером из распределения Ципфа. Email строки p кластера k:
+ * e{k}_r - общий email первой строки кластера и начал цепочек,
+ * e{k}_{p} - email, связывающий строки p-1 и p одной цепочки,
+ * e{k}_{p}_{i} - собственные email строки, которыми строка дополняется до нужного кол-ва email.
+ *
+ * @see FakeDataSettings
  */
 @Slf4j
 public class FakeUsersDataGenerator {
-    private final Integer usersCount;
+    private static final int DOMAINS_COUNT = 16;
+    private static final int ROOT = -1;
+    private static final int NO_INDEX = -1;
+    private static final String[] INVALID_LINES = {
+            "user -> ",
+            "user name -> email@gmail.com",
+            "user -> email@gmail",
+            "user -> email@gmail.com email2@gmail.com",
+            "-> email@gmail.com"
+    };
+
+    private final FakeDataSettings settings;
     private final IOService ioService;
+    private final Random random;
+    private final ZipfSampler clusterSizes;
+    /**
+     * Пул открытых кластеров: номер кластера, размер в строках и кол-во выведенных строк
+     */
+    private final long[] clusterIds;
+    private final int[] clusterSizesInLines;
+    private final int[] emittedLines;
+    private long nextClusterId;
+    private final StringBuilder sb = new StringBuilder();
 
     public FakeUsersDataGenerator(Integer usersCount, IOService ioService) {
-        this.usersCount = usersCount;
+        this(FakeDataSettings.builder().usersCount(usersCount).build(), ioService);
+    }
+
+    public FakeUsersDataGenerator(FakeDataSettings settings, IOService ioService) {
+        if (settings.getMinEmailsPerUser() < 1 || settings.getMaxEmailsPerUser() < settings.getMinEmailsPerUser()
+                || settings.getChainLength() < 1 || settings.getOpenClusters() < 1)
+            throw new IllegalArgumentException("Wrong fake data settings - " + settings);
+        this.settings = settings;
         this.ioService = ioService;
+        this.random = new Random(settings.getSeed());
+        this.clusterSizes = new ZipfSampler(random, settings.getMaxClusterSize(), settings.getZipfExponent());
+        this.clusterIds = new long[settings.getOpenClusters()];
+        this.clusterSizesInLines = new int[settings.getOpenClusters()];
+        this.emittedLines = new int[settings.getOpenClusters()];
+        for (int slot = 0; slot < clusterIds.length; slot++)
+            openCluster(slot);
     }
 
     /**
      * Метод генерации фейковых данных
      */
     public void generate() {
-        //формирую список пользователей с неповторяющимися email
-        final int actualUsersCount = (int) Math.round(usersCount * 0.75);
-        final List<String> users = IntStream.rangeClosed(0, actualUsersCount)
-                .mapToObj(userIndex -> {
-                    return "user_" + userIndex + " -> email_" + userIndex + "@gmail.com, email_0" +
-                            userIndex + "@gmail.com, email_00" + userIndex + "@gmail.com";
-                })
-                .collect(Collectors.toList());
-        //формирую список пользователей у которых email будут повторяться
-        final int fakeDataCount = (int) Math.round(usersCount * 0.25);
-        final List<String> fakeUsers = IntStream.rangeClosed(0, fakeDataCount)
-                .mapToObj(userIndex -> {
-                    Random random = new Random();
-                    int secondEmail = random.nextInt(usersCount);
-
-                    return "user_" + userIndex + " -> email_" + userIndex + "@gmail.com, email_" +
-                            secondEmail + "@gmail.com, email_0" + userIndex + "@gmail.com";
-                }).collect(Collectors.toList());
-        users.addAll(fakeUsers);
-        Collections.shuffle(users);
-        users.stream().forEach(userString -> ioService.write(userString));
+        for (long line = 0; line < settings.getUsersCount(); line++) {
+            if (random.nextDouble() < settings.getInvalidLineShare()) {
+                ioService.write(INVALID_LINES[random.nextInt(INVALID_LINES.length)]);
+                continue;
+            }
+            int slot = random.nextInt(clusterIds.length);
+            int position = position(emittedLines[slot]++, clusterSizesInLines[slot]);
+            ioService.write(userLine(clusterIds[slot], position, clusterSizesInLines[slot]));
+            if (emittedLines[slot] == clusterSizesInLines[slot])
+                openCluster(slot);
+        }
+        log.info("Generated {} lines, {} clusters opened", settings.getUsersCount(), nextClusterId);
+    }
+
+    private void openCluster(int slot) {
+        clusterIds[slot] = nextClusterId++;
+        clusterSizesInLines[slot] = clusterSizes.sample();
+        emittedLines[slot] = 0;
+    }
+
+    /**
+     * Позиция строки в кластере по порядковому номеру вывода. При перемешивании цепочек сначала выводятся
+     * нечетные позиции, затем четные.
+     */
+    private int position(int emitted, int size) {
+        if (!settings.isInterleaveChains())
+            return emitted;
+        int odd = size / 2;
+        return emitted < odd ? 2 * emitted + 1 : 2 * (emitted - odd);
+    }
+
+    private String userLine(long cluster, int position, int size) {
+        int chainLength = settings.getChainLength();
+        sb.setLength(0);
+        sb.append("user_").append(cluster).append('_').append(position).append(" -> ");
+        int emails = 0;
+        if (position % chainLength == 0)
+            emails = appendEmail(cluster, ROOT, NO_INDEX, emails);
+        else
+            emails = appendEmail(cluster, position, NO_INDEX, emails);
+        if (position + 1 < size && (position + 1) % chainLength != 0)
+            emails = appendEmail(cluster, position + 1, NO_INDEX, emails);
+
+        int min = settings.getMinEmailsPerUser();
+        int target = min + random.nextInt(settings.getMaxEmailsPerUser() - min + 1);
+        for (int i = 0; emails < target; i++)
+            emails = appendEmail(cluster, position, i, emails);
+        return sb.toString();
+    }
+
+    private int appendEmail(long cluster, int position, int index, int emails) {
+        if (emails > 0)
+            sb.append(", ");
+        sb.append('e').append(cluster).append('_');
+        if (position == ROOT)
+            sb.append('r');
+        else
+            sb.append(position);
+        if (index != NO_INDEX)
+            sb.append('_').append(index);
+        sb.append("@domain").append(cluster % DOMAINS_COUNT).append(".com");
+        return emails + 1;
     }
 }
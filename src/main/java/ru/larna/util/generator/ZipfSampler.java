@@ -0,0 +1,83 @@
+package ru.larna.util.generator;
+
+import java.util.Random;
+
+/**
+ * Выборка целых чисел от 1 до n с вероятностями P(k) ~ 1 / k^exponent.
+ * Используется метод rejection-inversion (W. Hörmann, G. Derflinger), выборка выполняется за O(1)
+ * без таблиц, поэтому n может быть сколь угодно большим.
+ */
+public class ZipfSampler {
+    private final Random random;
+    private final int n;
+    private final double exponent;
+    private final double hIntegralX1;
+    private final double hIntegralN;
+    private final double s;
+
+    public ZipfSampler(Random random, int n, double exponent) {
+        if (n < 1 || exponent < 0)
+            throw new IllegalArgumentException("Zipf sampler requires n >= 1 and exponent >= 0");
+        this.random = random;
+        this.n = n;
+        this.exponent = exponent;
+        this.hIntegralX1 = hIntegral(1.5) - 1;
+        this.hIntegralN = hIntegral(n + 0.5);
+        this.s = 2 - hIntegralInverse(hIntegral(2.5) - h(2));
+    }
+
+    /**
+     * Получить очередное значение
+     *
+     * @return возвращает число от 1 до n
+     */
+    public int sample() {
+        if (exponent == 0)
+            return 1 + random.nextInt(n);
+        while (true) {
+            double u = hIntegralN + random.nextDouble() * (hIntegralX1 - hIntegralN);
+            double x = hIntegralInverse(u);
+            int k = (int) (x + 0.5);
+            if (k < 1)
+                k = 1;
+            else if (k > n)
+                k = n;
+            if (k - x <= s || u >= hIntegral(k + 0.5) - h(k))
+                return k;
+        }
+    }
+
+    private double h(double x) {
+        return Math.exp(-exponent * Math.log(x));
+    }
+
+    private double hIntegral(double x) {
+        double logX = Math.log(x);
+        return helper2((1 - exponent) * logX) * logX;
+    }
+
+    private double hIntegralInverse(double x) {
+        double t = x * (1 - exponent);
+        if (t < -1)
+            t = -1;
+        return Math.exp(helper1(t) * x);
+    }
+
+    /**
+     * log(1 + x) / x с учетом малых x
+     */
+    private static double helper1(double x) {
+        if (Math.abs(x) > 1e-8)
+            return Math.log1p(x) / x;
+        return 1 - x * (0.5 - x * (1.0 / 3 - 0.25 * x));
+    }
+
+    /**
+     * (exp(x) - 1) / x с учетом малых x
+     */
+    private static double helper2(double x) {
+        if (Math.abs(x) > 1e-8)
+            return Math.expm1(x) / x;
+        return 1 + x * 0.5 * (1 + x / 3 * (1 + 0.25 * x));
+    }
+}
@@ -0,0 +1,77 @@
+package ru.larna.util.metrics;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Гистограмма задержек с интервалами по степеням двойки наносекунд: интервал b содержит значения
+ * от 2^(b-1) до 2^b - 1. Запись выполняется без блокировок из любого кол-ва потоков, процентили
+ * оцениваются сверху границей интервала, т.е. с точностью до 2 раз.
+ */
+public class LatencyHistogram {
+    private static final int BUCKETS = 64;
+
+    private final LongAdder[] counts = new LongAdder[BUCKETS];
+    private final LongAdder totalNanos = new LongAdder();
+
+    public LatencyHistogram() {
+        for (int i = 0; i < BUCKETS; i++)
+            counts[i] = new LongAdder();
+    }
+
+    /**
+     * Учесть задержку
+     *
+     * @param nanos задержка в наносекундах
+     */
+    public void record(long nanos) {
+        long value = Math.max(nanos, 0);
+        counts[BUCKETS - Long.numberOfLeadingZeros(value)].increment();
+        totalNanos.add(value);
+    }
+
+    /**
+     * Получить кол-во учтенных задержек
+     *
+     * @return возвращает кол-во задержек
+     */
+    public long getCount() {
+        long count = 0;
+        for (LongAdder bucket : counts)
+            count += bucket.sum();
+        return count;
+    }
+
+    /**
+     * Получить среднюю задержку
+     *
+     * @return возвращает среднюю задержку в наносекундах или 0, если задержек не было
+     */
+    public double getMeanNanos() {
+        long count = getCount();
+        return count == 0 ? 0 : (double) totalNanos.sum() / count;
+    }
+
+    /**
+     * Получить оценку процентиля сверху
+     *
+     * @param percentile процентиль от 0 до 100
+     * @return возвращает верхнюю границу интервала, содержащего процентиль, в наносекундах или 0,
+     * если задержек не было
+     */
+    public long getPercentileNanos(double percentile) {
+        long[] snapshot = new long[BUCKETS];
+        long count = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            snapshot[i] = counts[i].sum();
+            count += snapshot[i];
+        }
+        long rank = (long) Math.ceil(count * percentile / 100);
+        long seen = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            seen += snapshot[i];
+            if (seen >= rank && seen > 0)
+                return i == 0 ? 0 : (1L << i) - 1;
+        }
+        return 0;
+    }
+}
@@ -0,0 +1,245 @@
+package ru.larna.util.metrics;
+
+import lombok.extern.slf4j.Slf4j;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
+import java.util.Locale;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.DoubleSupplier;
+import java.util.function.IntSupplier;
+
+/**
+ * Метрики процесса слияния: счетчики строк, байтов, ошибок разбора и проверки email, операций слияния,
+ * гистограммы задержек этапов чтения, разбора и слияния, а также текущие значения кол-ва пользователей,
+ * заполненности словаря email и доли ложных ответов его фильтра, получаемые у процесса слияния при запросе.
+ * Счетчики обновляются без блокировок из любых потоков, в том числе из потоков разбора конвейерного режима.
+ * Метрики публикуются в JMX (ru.larna:type=MigrationMetrics) и выводятся строкой прогресса (см. ProgressReporter).
+ */
+@Slf4j
+public class MigrationMetrics implements MigrationMetricsMBean {
+    public static final String OBJECT_NAME = "ru.larna:type=MigrationMetrics";
+    private static final double NANOS_PER_MICRO = 1_000;
+    private static final double NANOS_PER_SECOND = 1_000_000_000;
+
+    private final long startNanos = System.nanoTime();
+    private final LongAdder linesRead = new LongAdder();
+    private final LongAdder bytesRead = new LongAdder();
+    private final LongAdder parseFailures = new LongAdder();
+    private final LongAdder validationFailures = new LongAdder();
+    private final LongAdder mergeOperations = new LongAdder();
+    private final LatencyHistogram readLatency = new LatencyHistogram();
+    private final LatencyHistogram parseLatency = new LatencyHistogram();
+    private final LatencyHistogram mergeLatency = new LatencyHistogram();
+    private volatile IntSupplier clustersCount = () -> 0;
+    private volatile IntSupplier largestClusterSize = () -> 0;
+    private volatile DoubleSupplier emailDictionaryLoadFactor = () -> Double.NaN;
+    private volatile DoubleSupplier emailPrefilterFalsePositiveRate = () -> Double.NaN;
+
+    /**
+     * Учесть прочитанную строку
+     *
+     * @param bytes кол-во байтов строки вместе с концом строки
+     * @param nanos время чтения
+     */
+    public void recordRead(long bytes, long nanos) {
+        linesRead.increment();
+        bytesRead.add(bytes);
+        readLatency.record(nanos);
+    }
+
+    /**
+     * Учесть разбор строки
+     *
+     * @param nanos время разбора
+     */
+    public void recordParse(long nanos) {
+        parseLatency.record(nanos);
+    }
+
+    public void recordParseFailure() {
+        parseFailures.increment();
+    }
+
+    public void recordValidationFailure() {
+        validationFailures.increment();
+    }
+
+    /**
+     * Учесть слияние пользователя
+     *
+     * @param nanos время слияния
+     */
+    public void recordMerge(long nanos) {
+        mergeOperations.increment();
+        mergeLatency.record(nanos);
+    }
+
+    /**
+     * Задать источник текущего кол-ва пользователей. Вызывается из потока чтения метрик во время слияния,
+     * поэтому может возвращать немного устаревшее значение.
+     *
+     * @param clustersCount источник кол-ва пользователей
+     */
+    public void setClustersCount(IntSupplier clustersCount) {
+        this.clustersCount = clustersCount;
+    }
+
+    /**
+     * Задать источник кол-ва email крупнейшего пользователя
+     *
+     * @param largestClusterSize источник размера крупнейшего пользователя
+     */
+    public void setLargestClusterSize(IntSupplier largestClusterSize) {
+        this.largestClusterSize = largestClusterSize;
+    }
+
+    /**
+     * Задать источник текущей заполненности словаря email
+     *
+     * @param emailDictionaryLoadFactor источник заполненности
+     */
+    public void setEmailDictionaryLoadFactor(DoubleSupplier emailDictionaryLoadFactor) {
+        this.emailDictionaryLoadFactor = emailDictionaryLoadFactor;
+    }
+
+    /**
+     * Задать источник наблюдаемой доли ложных ответов фильтра словаря email
+     *
+     * @param emailPrefilterFalsePositiveRate источник доли ложных ответов
+     */
+    public void setEmailPrefilterFalsePositiveRate(DoubleSupplier emailPrefilterFalsePositiveRate) {
+        this.emailPrefilterFalsePositiveRate = emailPrefilterFalsePositiveRate;
+    }
+
+    @Override
+    public long getLinesRead() {
+        return linesRead.sum();
+    }
+
+    @Override
+    public long getBytesRead() {
+        return bytesRead.sum();
+    }
+
+    @Override
+    public double getLinesPerSecond() {
+        double seconds = getElapsedSeconds();
+        return seconds > 0 ? getLinesRead() / seconds : 0;
+    }
+
+    @Override
+    public long getParseFailures() {
+        return parseFailures.sum();
+    }
+
+    @Override
+    public long getValidationFailures() {
+        return validationFailures.sum();
+    }
+
+    @Override
+    public long getMergeOperations() {
+        return mergeOperations.sum();
+    }
+
+    @Override
+    public int getClustersCount() {
+        return clustersCount.getAsInt();
+    }
+
+    @Override
+    public int getLargestClusterSize() {
+        return largestClusterSize.getAsInt();
+    }
+
+    @Override
+    public double getEmailDictionaryLoadFactor() {
+        return emailDictionaryLoadFactor.getAsDouble();
+    }
+
+    @Override
+    public double getEmailPrefilterFalsePositiveRate() {
+        return emailPrefilterFalsePositiveRate.getAsDouble();
+    }
+
+    @Override
+    public double getReadLatencyMeanMicros() {
+        return readLatency.getMeanNanos() / NANOS_PER_MICRO;
+    }
+
+    @Override
+    public double getReadLatencyP99Micros() {
+        return readLatency.getPercentileNanos(99) / NANOS_PER_MICRO;
+    }
+
+    @Override
+    public double getParseLatencyMeanMicros() {
+        return parseLatency.getMeanNanos() / NANOS_PER_MICRO;
+    }
+
+    @Override
+    public double getParseLatencyP99Micros() {
+        return parseLatency.getPercentileNanos(99) / NANOS_PER_MICRO;
+    }
+
+    @Override
+    public double getMergeLatencyMeanMicros() {
+        return mergeLatency.getMeanNanos() / NANOS_PER_MICRO;
+    }
+
+    @Override
+    public double getMergeLatencyP99Micros() {
+        return mergeLatency.getPercentileNanos(99) / NANOS_PER_MICRO;
+    }
+
+    public double getElapsedSeconds() {
+        return (System.nanoTime() - startNanos) / NANOS_PER_SECOND;
+    }
+
+    /**
+     * Сформировать строку прогресса
+     *
+     * @return возвращает строку с основными метриками
+     */
+    public String formatProgress() {
+        return String.format(Locale.ROOT,
+                "[progress] %.1f s, lines %d (%.0f/s), %.1f MB, failures %d parse / %d email, merges %d, "
+                        + "users %d, largest %d, dictionary load %.2f, prefilter fp %.4f, p99 us: read %.1f, parse %.1f, merge %.1f",
+                getElapsedSeconds(), getLinesRead(), getLinesPerSecond(), getBytesRead() / 1e6,
+                getParseFailures(), getValidationFailures(), getMergeOperations(),
+                getClustersCount(), getLargestClusterSize(), getEmailDictionaryLoadFactor(), getEmailPrefilterFalsePositiveRate(),
+                getReadLatencyP99Micros(), getParseLatencyP99Micros(), getMergeLatencyP99Micros());
+    }
+
+    /**
+     * Опубликовать метрики в JMX, заменив ранее опубликованные. Ошибка публикации не прерывает слияние.
+     */
+    public void register() {
+        try {
+            MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+            ObjectName name = new ObjectName(OBJECT_NAME);
+            if (server.isRegistered(name))
+                server.unregisterMBean(name);
+            server.registerMBean(this, name);
+        } catch (JMException e) {
+            log.warn("Register metrics MBean error", e);
+        }
+    }
+
+    /**
+     * Снять публикацию метрик в JMX
+     */
+    public void unregister() {
+        try {
+            MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+            ObjectName name = new ObjectName(OBJECT_NAME);
+            if (server.isRegistered(name))
+                server.unregisterMBean(name);
+        } catch (JMException e) {
+            log.warn("Unregister metrics MBean error", e);
+        }
+    }
+}
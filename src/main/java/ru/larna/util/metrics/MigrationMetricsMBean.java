@@ -0,0 +1,38 @@
+package ru.larna.util.metrics;
+
+/**
+ * JMX интерфейс метрик процесса слияния
+ */
+public interface MigrationMetricsMBean {
+    long getLinesRead();
+
+    long getBytesRead();
+
+    double getLinesPerSecond();
+
+    long getParseFailures();
+
+    long getValidationFailures();
+
+    long getMergeOperations();
+
+    int getClustersCount();
+
+    int getLargestClusterSize();
+
+    double getEmailDictionaryLoadFactor();
+
+    double getEmailPrefilterFalsePositiveRate();
+
+    double getReadLatencyMeanMicros();
+
+    double getReadLatencyP99Micros();
+
+    double getParseLatencyMeanMicros();
+
+    double getParseLatencyP99Micros();
+
+    double getMergeLatencyMeanMicros();
+
+    double getMergeLatencyP99Micros();
+}
@@ -0,0 +1,39 @@
+package ru.larna.util.metrics;
+
+import java.io.PrintStream;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Периодический вывод строки прогресса метрик в поток (обычно stderr, чтобы не смешивать с результатом).
+ * Вывод выполняется отдельным фоновым потоком, при закрытии выводится итоговая строка.
+ */
+public class ProgressReporter implements AutoCloseable {
+    private final MigrationMetrics metrics;
+    private final PrintStream out;
+    private final ScheduledExecutorService scheduler;
+
+    public ProgressReporter(MigrationMetrics metrics, PrintStream out, int intervalSeconds) {
+        if (intervalSeconds < 1)
+            throw new IllegalArgumentException("Progress interval must be positive");
+        this.metrics = metrics;
+        this.out = out;
+        this.scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "progress-reporter");
+            thread.setDaemon(true);
+            return thread;
+        });
+        scheduler.scheduleAtFixedRate(this::report, intervalSeconds, intervalSeconds, TimeUnit.SECONDS);
+    }
+
+    @Override
+    public void close() {
+        scheduler.shutdownNow();
+        report();
+    }
+
+    private void report() {
+        out.println(metrics.formatProgress());
+    }
+}
@@ -0,0 +1,23 @@
+package ru.larna.util.parsers;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Строка, символы которой - байты участка буфера (по одному байту на символ).
+ * Позволяет парсеру обрабатывать байты строки напрямую, например искать разделители по 8 байт за раз.
+ */
+public interface ByteSequence extends CharSequence {
+    /**
+     * Получить буфер, содержащий строку
+     *
+     * @return возвращает буфер
+     */
+    ByteBuffer getBuffer();
+
+    /**
+     * Получить смещение строки в буфере
+     *
+     * @return возвращает смещение первого байта строки
+     */
+    int getOffset();
+}
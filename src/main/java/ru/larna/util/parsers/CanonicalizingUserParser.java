@@ -0,0 +1,44 @@
+package ru.larna.util.parsers;
+
+import ru.larna.model.Email;
+import ru.larna.model.User;
+import ru.larna.util.canonicalizers.EmailCanonicalizer;
+
+import java.util.LinkedHashSet;
+import java.util.Set;
+
+/**
+ * Парсер, дополняющий результат другого парсера каноническим видом email (см. EmailCanonicalizer).
+ * Каждый email получает канонический вид в качестве ключа, исходное написание сохраняется.
+ * Адреса пользователя, совпадающие после канонизации, учитываются один раз в написании, встреченном первым.
+ * Потокобезопасен, если потокобезопасен исходный парсер.
+ */
+public class CanonicalizingUserParser implements UserParser {
+    private final UserParser parser;
+    private final EmailCanonicalizer canonicalizer;
+
+    public CanonicalizingUserParser(UserParser parser, EmailCanonicalizer canonicalizer) {
+        this.parser = parser;
+        this.canonicalizer = canonicalizer;
+    }
+
+    @Override
+    public User parse(String str) throws UserWrongFormatException {
+        return canonicalize(parser.parse(str));
+    }
+
+    @Override
+    public User parse(CharSequence str) throws UserWrongFormatException {
+        return canonicalize(parser.parse(str));
+    }
+
+    private User canonicalize(User user) {
+        Set<Email> emails = new LinkedHashSet<>();
+        for (Email email : user.getEmails())
+            emails.add(new Email(email.getEmail(), canonicalizer.canonicalize(email.getEmail())));
+        return User.builder()
+                .name(user.getName())
+                .emails(emails)
+                .build();
+    }
+}
@@ -0,0 +1,164 @@
+package ru.larna.util.parsers;
+
+import ru.larna.util.structures.IntArrayList;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+/**
+ * Поиск разделителей во входных байтах по 8 байт за раз (SWAR, SIMD within a register): из буфера читается long,
+ * и совпадения со всеми байтами слова вычисляются несколькими арифметическими операциями без ветвлений.
+ * Вычисление точное, переносы между байтами не возникают, поэтому позиция первого совпадения в слове берется
+ * по старшему установленному биту маски.
+ * <p>
+ * indexOfLineEnd находит конец строки (\n или \r). scan строит индекс разделителей участка: позицию первой '>'
+ * (конец стрелки ->), позиции всех запятых и всех '@', по которым парсер выделяет имя, email и их локальные части
+ * и домены без посимвольного поиска.
+ * Объект индекса переиспользуется и не потокобезопасен.
+ */
+public class DelimiterIndex {
+    private static final long ONES = 0x0101010101010101L;
+    private static final long LOW_BITS = 0x7F7F7F7F7F7F7F7FL;
+    private static final long NEW_LINE = ONES * '\n';
+    private static final long CARRIAGE_RETURN = ONES * '\r';
+    private static final long ARROW_END = ONES * '>';
+    private static final long COMMA = ONES * ',';
+    private static final long AT = ONES * '@';
+
+    private final IntArrayList commas = new IntArrayList();
+    private final IntArrayList ats = new IntArrayList();
+    private int arrow;
+
+    /**
+     * Найти конец строки
+     *
+     * @param buffer буфер
+     * @param from   начало поиска
+     * @param limit  конец участка поиска
+     * @return возвращает позицию первого \n или \r, limit - если конца строки нет
+     */
+    public static int indexOfLineEnd(ByteBuffer buffer, int from, int limit) {
+        boolean littleEndian = buffer.order() == ByteOrder.LITTLE_ENDIAN;
+        int position = from;
+        for (; position <= limit - Long.BYTES; position += Long.BYTES) {
+            long word = word(buffer, position, littleEndian);
+            long mask = matches(word, NEW_LINE) | matches(word, CARRIAGE_RETURN);
+            if (mask != 0)
+                return position + (Long.numberOfLeadingZeros(mask) >>> 3);
+        }
+        for (; position < limit; position++) {
+            byte b = buffer.get(position);
+            if (b == '\n' || b == '\r')
+                return position;
+        }
+        return limit;
+    }
+
+    /**
+     * Построить индекс разделителей участка буфера
+     *
+     * @param buffer буфер
+     * @param from   начало участка
+     * @param limit  конец участка
+     */
+    public void scan(ByteBuffer buffer, int from, int limit) {
+        boolean littleEndian = buffer.order() == ByteOrder.LITTLE_ENDIAN;
+        commas.clear();
+        ats.clear();
+        arrow = -1;
+        int position = from;
+        for (; position <= limit - Long.BYTES; position += Long.BYTES) {
+            long word = word(buffer, position, littleEndian);
+            if (arrow < 0) {
+                long mask = matches(word, ARROW_END);
+                if (mask != 0)
+                    arrow = position + (Long.numberOfLeadingZeros(mask) >>> 3);
+            }
+            addMatches(commas, matches(word, COMMA), position);
+            addMatches(ats, matches(word, AT), position);
+        }
+        for (; position < limit; position++) {
+            byte b = buffer.get(position);
+            if (b == ',')
+                commas.add(position);
+            else if (b == '@')
+                ats.add(position);
+            else if (b == '>' && arrow < 0)
+                arrow = position;
+        }
+    }
+
+    /**
+     * Получить позицию первой '>' участка
+     *
+     * @return возвращает позицию в буфере или -1, если '>' нет
+     */
+    public int getArrow() {
+        return arrow;
+    }
+
+    /**
+     * Получить кол-во запятых участка
+     *
+     * @return возвращает кол-во запятых
+     */
+    public int getCommasCount() {
+        return commas.size();
+    }
+
+    /**
+     * Получить позицию запятой
+     *
+     * @param index порядковый номер запятой в участке
+     * @return возвращает позицию в буфере
+     */
+    public int getComma(int index) {
+        return commas.get(index);
+    }
+
+    /**
+     * Получить кол-во '@' участка
+     *
+     * @return возвращает кол-во '@'
+     */
+    public int getAtsCount() {
+        return ats.size();
+    }
+
+    /**
+     * Получить позицию '@'
+     *
+     * @param index порядковый номер '@' в участке
+     * @return возвращает позицию в буфере
+     */
+    public int getAt(int index) {
+        return ats.get(index);
+    }
+
+    /**
+     * Добавить позиции всех совпадений маски слова в порядке возрастания
+     */
+    private static void addMatches(IntArrayList positions, long mask, int position) {
+        while (mask != 0) {
+            int zeros = Long.numberOfLeadingZeros(mask);
+            positions.add(position + (zeros >>> 3));
+            mask ^= Long.MIN_VALUE >>> zeros;
+        }
+    }
+
+    /**
+     * Прочитать 8 байт так, что первый байт в памяти - старший байт слова
+     */
+    private static long word(ByteBuffer buffer, int position, boolean littleEndian) {
+        long word = buffer.getLong(position);
+        return littleEndian ? Long.reverseBytes(word) : word;
+    }
+
+    /**
+     * Маска совпадений: старший бит байта маски установлен, если байт слова равен байту образца
+     */
+    private static long matches(long word, long pattern) {
+        long x = word ^ pattern;
+        return ~(((x & LOW_BITS) + LOW_BITS) | x | LOW_BITS);
+    }
+}
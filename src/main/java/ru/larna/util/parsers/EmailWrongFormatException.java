@@ -0,0 +1,11 @@
+package ru.larna.util.parsers;
+
+/**
+ * Исключение сигнализирующее о том, что строка пользователя имеет верный формат, но содержит email,
+ * не прошедший проверку EmailValidator
+ */
+public class EmailWrongFormatException extends UserWrongFormatException {
+    public EmailWrongFormatException(String message) {
+        super(message);
+    }
+}
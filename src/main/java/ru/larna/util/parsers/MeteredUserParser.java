@@ -0,0 +1,39 @@
+package ru.larna.util.parsers;
+
+import ru.larna.model.User;
+import ru.larna.util.metrics.MigrationMetrics;
+
+/**
+ * Парсер, учитывающий в метриках время разбора строк, ошибки формата строки и ошибки проверки email.
+ * Потокобезопасен, если потокобезопасен исходный парсер.
+ */
+public class MeteredUserParser implements UserParser {
+    private final UserParser parser;
+    private final MigrationMetrics metrics;
+
+    public MeteredUserParser(UserParser parser, MigrationMetrics metrics) {
+        this.parser = parser;
+        this.metrics = metrics;
+    }
+
+    @Override
+    public User parse(String str) throws UserWrongFormatException {
+        return parse((CharSequence) str);
+    }
+
+    @Override
+    public User parse(CharSequence str) throws UserWrongFormatException {
+        long start = System.nanoTime();
+        try {
+            return parser.parse(str);
+        } catch (EmailWrongFormatException e) {
+            metrics.recordValidationFailure();
+            throw e;
+        } catch (UserWrongFormatException e) {
+            metrics.recordParseFailure();
+            throw e;
+        } finally {
+            metrics.recordParse(System.nanoTime() - start);
+        }
+    }
+}
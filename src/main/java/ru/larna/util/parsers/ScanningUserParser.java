@@ -0,0 +1,200 @@
+package ru.larna.util.parsers;
+
+import ru.larna.model.Email;
+import ru.larna.model.User;
+import ru.larna.util.validators.EmailValidator;
+
+import java.util.LinkedHashSet;
+import java.util.Set;
+
+/**
+ * Класс ScanningUserParser. Разбирает полученную строку в объект User за один проход по строке,
+ * без регулярных выражений и промежуточных массивов строк. Строка может быть передана любым CharSequence,
+ * например участком отображенного в память файла, копируются только имя и email.
+ * Принимает и отклоняет в точности те же строки, что и UserParserImpl:
+ * строка без пробельных символов по краям должна соответствовать ^(\w+)\s*->\s*(([a-z0-9_\.-@]+\s*\,{0,1}\s*)+)$,
+ * а каждый email, полученный разбиением группы email по \s*,\s*, должен проходить проверку EmailValidator.
+ * С расширенными email, как и UserParserImpl, в группе email допустимы также заглавные буквы и '+'.
+ * Выбрасывает исключение UserWrongFormatException в случае обнаружения некорректных входных значений
+ */
+public class ScanningUserParser implements UserParser {
+    private final EmailValidator emailValidator;
+    private final boolean relaxedEmails;
+
+    public ScanningUserParser() {
+        this(false);
+    }
+
+    /**
+     * @param relaxedEmails допускать в email заглавные буквы и '+', используется перед канонизацией email
+     */
+    public ScanningUserParser(boolean relaxedEmails) {
+        this.emailValidator = relaxedEmails ? EmailValidator.getRelaxedInstance() : EmailValidator.getInstance();
+        this.relaxedEmails = relaxedEmails;
+    }
+
+    /**
+     * Разбирает строку
+     *
+     * @param str строка в формате user1 -> xxx@ya.ru, foo@gmail.com, lol@mail.ru
+     * @return объект User
+     * @throws UserWrongFormatException выбрасывает исключение в случае некорректных данных
+     *                                  (нет пользователя, использованы некорректные символы в имени пользователя, нет email,
+     *                                  email разделены не запятыми, а например: пробелами, некорректный формат email или
+     *                                  используются некорректные для email символы)
+     */
+    @Override
+    public User parse(String str) throws UserWrongFormatException {
+        return parse((CharSequence) str);
+    }
+
+    /**
+     * Разбирает строку без копирования
+     *
+     * @param str строка в формате user1 -> xxx@ya.ru, foo@gmail.com, lol@mail.ru
+     * @return объект User
+     * @throws UserWrongFormatException выбрасывает исключение в случае некорректных данных
+     */
+    @Override
+    public User parse(CharSequence str) throws UserWrongFormatException {
+        if (str == null || str.length() == 0)
+            throw new IllegalArgumentException("String argument can't to be NULL or empty");
+
+        int begin = 0;
+        int end = str.length();
+        while (begin < end && Character.isWhitespace(str.charAt(begin)))
+            begin++;
+        while (end > begin && Character.isWhitespace(str.charAt(end - 1)))
+            end--;
+
+        int position = begin;
+        while (position < end && isWordChar(str.charAt(position)))
+            position++;
+        final int nameEnd = position;
+        if (nameEnd == begin)
+            throw wrongFormat(str);
+
+        position = skipSpaces(str, position, end);
+        if (position + 1 >= end || str.charAt(position) != '-' || str.charAt(position + 1) != '>')
+            throw wrongFormat(str);
+        final int emailsBegin = skipSpaces(str, position + 2, end);
+        if (!isEmailsGroup(str, emailsBegin, end, relaxedEmails))
+            throw wrongFormat(str);
+
+        return User.builder()
+                .name(str.subSequence(begin, nameEnd).toString())
+                .emails(parseEmails(str, emailsBegin, end))
+                .build();
+    }
+
+    /**
+     * Разбирает подстроку email'ов, разделенных запятыми. Пробельные символы вокруг запятых отбрасываются,
+     * пустой email после завершающей запятой пропускается.
+     *
+     * @param str   строка
+     * @param begin начало подстроки email
+     * @param end   конец подстроки email
+     * @return список объектов Email
+     */
+    private Set<Email> parseEmails(CharSequence str, int begin, int end) {
+        if (!isAllEmailsValid(str, begin, end))
+            throw new EmailWrongFormatException("Wrong emails - " + str.subSequence(begin, end));
+
+        Set<Email> emails = new LinkedHashSet<>();
+        int emailBegin = begin;
+        while (emailBegin < end) {
+            int comma = indexOfComma(str, emailBegin, end);
+            emails.add(new Email(str.subSequence(emailBegin, trimEnd(str, emailBegin, comma)).toString()));
+            emailBegin = skipSpaces(str, comma + 1, end);
+        }
+        return emails;
+    }
+
+    /**
+     * Проверяет все ли email в подстроке валидны
+     *
+     * @param str   строка
+     * @param begin начало подстроки email
+     * @param end   конец подстроки email
+     * @return true - если все валидны, false в противном случае
+     */
+    private boolean isAllEmailsValid(CharSequence str, int begin, int end) {
+        int emailBegin = begin;
+        while (emailBegin < end) {
+            int comma = indexOfComma(str, emailBegin, end);
+            if (!emailValidator.isValid(str, emailBegin, trimEnd(str, emailBegin, comma)))
+                return false;
+            emailBegin = skipSpaces(str, comma + 1, end);
+        }
+        return true;
+    }
+
+    /**
+     * Проверяет подстроку на соответствие группе email: ([a-z0-9_\.-@]+\s*\,{0,1}\s*)+
+     * т.е. непустые последовательности допустимых символов, между которыми пробельные символы и не более одной запятой
+     */
+    private static boolean isEmailsGroup(CharSequence str, int begin, int end, boolean relaxedEmails) {
+        int position = begin;
+        do {
+            int tokenBegin = position;
+            while (position < end && isEmailGroupChar(str.charAt(position), relaxedEmails))
+                position++;
+            if (position == tokenBegin)
+                return false;
+            position = skipSpaces(str, position, end);
+            if (position < end && str.charAt(position) == ',')
+                position = skipSpaces(str, position + 1, end);
+        } while (position < end);
+        return true;
+    }
+
+    private static int indexOfComma(CharSequence str, int begin, int end) {
+        int position = begin;
+        while (position < end && str.charAt(position) != ',')
+            position++;
+        return position;
+    }
+
+    private static int trimEnd(CharSequence str, int begin, int end) {
+        while (end > begin && isSpace(str.charAt(end - 1)))
+            end--;
+        return end;
+    }
+
+    private static int skipSpaces(CharSequence str, int position, int end) {
+        while (position < end && isSpace(str.charAt(position)))
+            position++;
+        return position;
+    }
+
+    /**
+     * Символ класса \s
+     */
+    static boolean isSpace(char c) {
+        return c == ' ' || c == '\t' || c == '\n' || c == '\u000B' || c == '\f' || c == '\r';
+    }
+
+    /**
+     * Символ класса \w
+     */
+    static boolean isWordChar(char c) {
+        return isLetter(c) || (c >= '0' && c <= '9') || c == '_';
+    }
+
+    /**
+     * Символ класса [a-z0-9_\.-@], где \.-@ - диапазон от '.' до '@', включающий цифры и символы /:;<=>?,
+     * для расширенных email - класса [a-zA-Z0-9_\.-@+]
+     */
+    static boolean isEmailGroupChar(char c, boolean relaxedEmails) {
+        return (c >= 'a' && c <= 'z') || (c >= '.' && c <= '@') || c == '_'
+                || (relaxedEmails && ((c >= 'A' && c <= 'Z') || c == '+'));
+    }
+
+    private static boolean isLetter(char c) {
+        return (c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z');
+    }
+
+    static UserWrongFormatException wrongFormat(CharSequence str) {
+        return new UserWrongFormatException("Wrong format - " + str);
+    }
+}
@@ -0,0 +1,204 @@
+package ru.larna.util.parsers;
+
+import ru.larna.model.Email;
+import ru.larna.model.User;
+import ru.larna.util.validators.EmailValidator;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.LinkedHashSet;
+import java.util.Set;
+
+import static ru.larna.util.parsers.ScanningUserParser.*;
+
+/**
+ * Класс SwarUserParser. Разбирает строку по индексу разделителей (DelimiterIndex): стрелка, запятые и '@'
+ * находятся поиском по 8 байт за раз, после чего имя и каждый email проверяются один раз в своих границах,
+ * без повторного посимвольного поиска запятых и '@' между локальной частью и доменом. Сканируются строки, переданные участком буфера (ByteSequence,
+ * например строки отображенного в память файла): участок копируется в байтовый буфер парсера одной операцией,
+ * имя и email создаются из байтов буфера. Строки String разбираются ScanningUserParser: посимвольное копирование
+ * строки в байты обходится дороже, чем экономит сканирование по 8 байт.
+ * Принимает и отклоняет в точности те же строки, что и ScanningUserParser и UserParserImpl, в том числе
+ * с расширенными email.
+ * Буферы и индекс хранятся отдельно для каждого потока, поэтому парсер можно использовать из нескольких потоков.
+ */
+public class SwarUserParser implements UserParser {
+    private static final int INITIAL_BUFFER_SIZE = 256;
+
+    private final EmailValidator emailValidator;
+    private final ScanningUserParser scanningParser;
+    private final boolean relaxedEmails;
+    private final ThreadLocal<State> state = ThreadLocal.withInitial(State::new);
+
+    public SwarUserParser() {
+        this(false);
+    }
+
+    /**
+     * @param relaxedEmails допускать в email заглавные буквы и '+', используется перед канонизацией email
+     */
+    public SwarUserParser(boolean relaxedEmails) {
+        this.emailValidator = relaxedEmails ? EmailValidator.getRelaxedInstance() : EmailValidator.getInstance();
+        this.scanningParser = new ScanningUserParser(relaxedEmails);
+        this.relaxedEmails = relaxedEmails;
+    }
+
+    /**
+     * Разбирает строку
+     *
+     * @param str строка в формате user1 -> xxx@ya.ru, foo@gmail.com, lol@mail.ru
+     * @return объект User
+     * @throws UserWrongFormatException выбрасывает исключение в случае некорректных данных
+     */
+    @Override
+    public User parse(String str) throws UserWrongFormatException {
+        return parse((CharSequence) str);
+    }
+
+    /**
+     * Разбирает строку: участок буфера - по индексу разделителей, остальные строки - ScanningUserParser
+     *
+     * @param str строка в формате user1 -> xxx@ya.ru, foo@gmail.com, lol@mail.ru
+     * @return объект User
+     * @throws UserWrongFormatException выбрасывает исключение в случае некорректных данных
+     */
+    @Override
+    public User parse(CharSequence str) throws UserWrongFormatException {
+        if (str == null || str.length() == 0)
+            throw new IllegalArgumentException("String argument can't to be NULL or empty");
+
+        if (!(str instanceof ByteSequence))
+            return scanningParser.parse(str);
+        State state = this.state.get();
+        state.load((ByteSequence) str);
+        byte[] bytes = state.bytes;
+
+        int begin = 0;
+        int end = str.length();
+        while (begin < end && Character.isWhitespace(charAt(bytes, begin)))
+            begin++;
+        while (end > begin && Character.isWhitespace(charAt(bytes, end - 1)))
+            end--;
+
+        DelimiterIndex index = state.index;
+        index.scan(state.buffer, begin, end);
+        int arrow = index.getArrow();
+        if (arrow < 0)
+            throw wrongFormat(str);
+
+        int position = begin;
+        while (position < arrow && isWordChar(charAt(bytes, position)))
+            position++;
+        final int nameEnd = position;
+        position = skipSpaces(bytes, position, arrow);
+        if (nameEnd == begin || position != arrow - 1 || bytes[position] != '-')
+            throw wrongFormat(str);
+
+        final int emailsBegin = skipSpaces(bytes, arrow + 1, end);
+        int firstComma = 0;
+        while (firstComma < index.getCommasCount() && index.getComma(firstComma) < emailsBegin)
+            firstComma++;
+        if (!isEmailsGroup(bytes, emailsBegin, end, index, firstComma, relaxedEmails))
+            throw wrongFormat(str);
+
+        Set<Email> emails = parseEmails(bytes, emailsBegin, end, index, firstComma);
+        if (emails == null)
+            throw new EmailWrongFormatException("Wrong emails - " + str.subSequence(emailsBegin, end));
+        return User.builder()
+                .name(new String(bytes, begin, nameEnd - begin, StandardCharsets.ISO_8859_1))
+                .emails(emails)
+                .build();
+    }
+
+    /**
+     * Проверяет группу email: участки между запятыми без пробельных символов по краям состоят из символов
+     * [a-z0-9_\.-@] (для расширенных email - [a-zA-Z0-9_\.-@+]) и пробельных символов и не пусты, кроме участка
+     * после завершающей запятой. Это эквивалентно регулярному выражению ([a-z0-9_\.-@]+\s*\,{0,1}\s*)+
+     */
+    private static boolean isEmailsGroup(byte[] bytes, int begin, int end, DelimiterIndex index, int firstComma,
+                                         boolean relaxedEmails) {
+        int segmentBegin = begin;
+        for (int comma = firstComma; ; comma++) {
+            boolean last = comma == index.getCommasCount();
+            int segmentEnd = last ? end : index.getComma(comma);
+            int from = skipSpaces(bytes, segmentBegin, segmentEnd);
+            if (from == segmentEnd && !(last && comma > firstComma))
+                return false;
+            for (int i = from; i < segmentEnd; i++) {
+                char c = charAt(bytes, i);
+                if (!isEmailGroupChar(c, relaxedEmails) && !isSpace(c))
+                    return false;
+            }
+            if (last)
+                return true;
+            segmentBegin = segmentEnd + 1;
+        }
+    }
+
+    /**
+     * Разбирает группу email по запятым индекса, пустой email после завершающей запятой пропускается
+     *
+     * @return возвращает email или null, если какой-либо email некорректен
+     */
+    private Set<Email> parseEmails(byte[] bytes, int begin, int end, DelimiterIndex index, int firstComma) {
+        Set<Email> emails = new LinkedHashSet<>();
+        int segmentBegin = begin;
+        int atIndex = 0;
+        for (int comma = firstComma; comma <= index.getCommasCount(); comma++) {
+            int segmentEnd = comma == index.getCommasCount() ? end : index.getComma(comma);
+            int from = skipSpaces(bytes, segmentBegin, segmentEnd);
+            int to = trimEnd(bytes, from, segmentEnd);
+            if (from < to) {
+                while (atIndex < index.getAtsCount() && index.getAt(atIndex) < from)
+                    atIndex++;
+                int at = atIndex < index.getAtsCount() && index.getAt(atIndex) < to ? index.getAt(atIndex) : -1;
+                if (!emailValidator.isValid(bytes, from, to - from, at))
+                    return null;
+                emails.add(new Email(new String(bytes, from, to - from, StandardCharsets.ISO_8859_1)));
+            }
+            segmentBegin = segmentEnd + 1;
+        }
+        return emails;
+    }
+
+    private static int skipSpaces(byte[] bytes, int position, int end) {
+        while (position < end && isSpace(charAt(bytes, position)))
+            position++;
+        return position;
+    }
+
+    private static int trimEnd(byte[] bytes, int begin, int end) {
+        while (end > begin && isSpace(charAt(bytes, end - 1)))
+            end--;
+        return end;
+    }
+
+    /**
+     * Символ строки: байт без знака, как LineSlice.charAt
+     */
+    private static char charAt(byte[] bytes, int index) {
+        return (char) (bytes[index] & 0xFF);
+    }
+
+    /**
+     * Буфер строки и индекс разделителей потока
+     */
+    private static class State {
+        private final DelimiterIndex index = new DelimiterIndex();
+        private byte[] bytes = new byte[INITIAL_BUFFER_SIZE];
+        private ByteBuffer buffer = ByteBuffer.wrap(bytes);
+
+        /**
+         * Скопировать строку в буфер одной операцией
+         */
+        private void load(ByteSequence str) {
+            int length = str.length();
+            if (length > bytes.length) {
+                bytes = Arrays.copyOf(bytes, Math.max(length, bytes.length << 1));
+                buffer = ByteBuffer.wrap(bytes);
+            }
+            str.getBuffer().duplicate().position(str.getOffset()).get(bytes, 0, length);
+        }
+    }
+}
@@ -10,4 +10,16 @@ import ru.larna.model.User;
  */
 public interface UserParser {
     User parse(String str) throws UserWrongFormatException;
+
+    /**
+     * Разбирает строку, переданную в виде CharSequence, например участком буфера без копирования.
+     * По умолчанию строка копируется в String.
+     *
+     * @param str строка пользователя
+     * @return объект User
+     * @throws UserWrongFormatException в случае некорректных данных
+     */
+    default User parse(CharSequence str) throws UserWrongFormatException {
+        return parse(str == null ? null : str.toString());
+    }
 }
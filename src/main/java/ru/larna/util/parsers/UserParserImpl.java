@@ -15,6 +15,7 @@ import java.util.stream.Collectors;
  * Класс UserParserImpl. Разбирает полученную строку в объект User.
  * Ожидает строку в формате: user1 -> xxx@ya.ru, foo@gmail.com, lol@mail.ru
  * Выбрасывает исключение UserWrongFormatException в случае обнаружения некорректных входных значений
+ * Парсер с расширенными email для последующей канонизации допускает в email также заглавные буквы и '+'.
  */
 public class UserParserImpl implements UserParser {
     /**
@@ -27,10 +28,24 @@ public class UserParserImpl implements UserParser {
      * $                                - окончание строки
      */
     private static final String USER_INFORMATION_PATTERN = "^(\\w+)\\s*->\\s*(([a-z0-9_\\.-@]+\\s*\\,{0,1}\\s*)+)$";
+    /**
+     * Регулярное выражение для расширенных email: в группах email допустимы также заглавные буквы и '+'
+     */
+    private static final String RELAXED_USER_INFORMATION_PATTERN =
+            "^(\\w+)\\s*->\\s*(([a-zA-Z0-9_\\.-@+]+\\s*\\,{0,1}\\s*)+)$";
     private final EmailValidator emailValidator;
+    private final String userInformationPattern;
 
     public UserParserImpl() {
-        emailValidator = EmailValidator.getInstance();
+        this(false);
+    }
+
+    /**
+     * @param relaxedEmails допускать в email заглавные буквы и '+', используется перед канонизацией email
+     */
+    public UserParserImpl(boolean relaxedEmails) {
+        emailValidator = relaxedEmails ? EmailValidator.getRelaxedInstance() : EmailValidator.getInstance();
+        userInformationPattern = relaxedEmails ? RELAXED_USER_INFORMATION_PATTERN : USER_INFORMATION_PATTERN;
     }
 
     /**
@@ -48,7 +63,7 @@ public class UserParserImpl implements UserParser {
         if (str == null || str.isEmpty())
             throw new IllegalArgumentException("String argument can't to be NULL or empty");
 
-        Pattern p = Pattern.compile(USER_INFORMATION_PATTERN);
+        Pattern p = Pattern.compile(userInformationPattern);
         Matcher matcher = p.matcher(str.strip());
         if (!matcher.matches())
             throw new UserWrongFormatException("Wrong format - " + str);
@@ -70,7 +85,7 @@ public class UserParserImpl implements UserParser {
     private Set<Email> parseEmails(String emails) {
         String[] emailArray = emails.split("\\s*,\\s*");
         if (!isAllEmailsValid(emailArray))
-            throw new UserWrongFormatException("Wrong emails - " + emails);
+            throw new EmailWrongFormatException("Wrong emails - " + emails);
 
         return Arrays.stream(emailArray)
                 .map(Email::new)
@@ -0,0 +1,113 @@
+package ru.larna.util.structures;
+
+/**
+ * Блочный фильтр Блума по 32-битному хешу ключа. Биты фильтра разбиты на блоки по 512 бит (8 long, одна строка
+ * кэша процессора), все биты ключа устанавливаются в одном блоке, выбранном по хешу. Поэтому проверка ключа
+ * читает одну строку кэша, а не k случайных.
+ * <p>
+ * Ответ false означает, что ключ точно не добавлялся, ответ true - что ключ, возможно, добавлялся. Доля ложных
+ * ответов true не превышает заданную при кол-ве ключей не больше expectedCount. Ключи, хеши которых совпадают,
+ * неразличимы, поэтому доля ложных ответов не может быть меньше кол-ва ключей / 2^32.
+ */
+public class BlockedBloomFilter {
+    private static final int BLOCK_BITS = 512;
+    private static final int BLOCK_LONGS = BLOCK_BITS / Long.SIZE;
+    private static final int MAX_HASH_FUNCTIONS = 16;
+    /**
+     * Запас бит на ключ: ключи распределяются по блокам неравномерно, поэтому блочному фильтру нужно больше бит,
+     * чем обычному фильтру Блума с той же долей ложных ответов
+     */
+    private static final double BLOCKING_OVERHEAD = 1.2;
+    private static final int MAX_BLOCKS = (Integer.MAX_VALUE - 8) / BLOCK_LONGS;
+
+    private final long[] bits;
+    private final int blocks;
+    private final int hashFunctions;
+    private final double falsePositiveRate;
+
+    /**
+     * @param expectedCount     ожидаемое кол-во ключей
+     * @param falsePositiveRate допустимая доля ложных ответов true, от 0 до 1
+     */
+    public BlockedBloomFilter(int expectedCount, double falsePositiveRate) {
+        if (!(falsePositiveRate > 0 && falsePositiveRate < 1))
+            throw new IllegalArgumentException("False positive rate must be between 0 and 1 - " + falsePositiveRate);
+        double bitsPerKey = -Math.log(falsePositiveRate) / (Math.log(2) * Math.log(2)) * BLOCKING_OVERHEAD;
+        long blocksCount = (long) Math.ceil(Math.max(expectedCount, 1) * bitsPerKey / BLOCK_BITS);
+        this.blocks = (int) Math.max(1, Math.min(MAX_BLOCKS, blocksCount));
+        this.bits = new long[blocks * BLOCK_LONGS];
+        this.hashFunctions = (int) Math.max(1, Math.min(MAX_HASH_FUNCTIONS,
+                Math.round(bitsPerKey / BLOCKING_OVERHEAD * Math.log(2))));
+        this.falsePositiveRate = falsePositiveRate;
+    }
+
+    /**
+     * Добавить ключ
+     *
+     * @param hash хеш ключа
+     */
+    public void put(int hash) {
+        long h = mix(hash);
+        int block = block(h) * BLOCK_LONGS;
+        int position = (int) h;
+        int step = (int) (h >>> 23) | 1;
+        for (int i = 0; i < hashFunctions; i++, position += step)
+            bits[block + ((position >>> 6) & (BLOCK_LONGS - 1))] |= 1L << position;
+    }
+
+    /**
+     * Проверить, мог ли ключ быть добавлен
+     *
+     * @param hash хеш ключа
+     * @return возвращает false - ключ точно не добавлялся, true - ключ, возможно, добавлялся
+     */
+    public boolean mightContain(int hash) {
+        long h = mix(hash);
+        int block = block(h) * BLOCK_LONGS;
+        int position = (int) h;
+        int step = (int) (h >>> 23) | 1;
+        for (int i = 0; i < hashFunctions; i++, position += step) {
+            if ((bits[block + ((position >>> 6) & (BLOCK_LONGS - 1))] & 1L << position) == 0)
+                return false;
+        }
+        return true;
+    }
+
+    public double getFalsePositiveRate() {
+        return falsePositiveRate;
+    }
+
+    public int getHashFunctions() {
+        return hashFunctions;
+    }
+
+    /**
+     * Получить размер фильтра
+     *
+     * @return возвращает размер фильтра в байтах
+     */
+    public long sizeInBytes() {
+        return (long) bits.length * Long.BYTES;
+    }
+
+    /**
+     * Выбрать блок по старшим 32 битам хеша умножением, без деления по модулю
+     */
+    private int block(long h) {
+        return (int) (((h >>> 32) * blocks) >>> 32);
+    }
+
+    /**
+     * Расширение 32-битного хеша до 64 бит (финализатор MurmurHash3 64), чтобы выбор блока и битов в блоке
+     * не зависел от младших битов, по которым словарь выбирает ячейку хеш-таблицы
+     */
+    private static long mix(int hash) {
+        long h = (hash & 0xFFFFFFFFL) * 0x9E3779B97F4A7C15L;
+        h ^= h >>> 33;
+        h *= 0xff51afd7ed558ccdL;
+        h ^= h >>> 33;
+        h *= 0xc4ceb9fe1a85ec53L;
+        h ^= h >>> 33;
+        return h;
+    }
+}
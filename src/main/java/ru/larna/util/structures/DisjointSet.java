@@ -0,0 +1,112 @@
+package ru.larna.util.structures;
+
+import java.util.Arrays;
+
+/**
+ * Система непересекающихся множеств (лес непересекающихся множеств).
+ * Элементы нумеруются подряд начиная с 0 в порядке добавления.
+ * Поиск корня выполняется со сжатием путей, объединение - по размеру множеств,
+ * поэтому амортизированная стоимость операций близка к константе.
+ */
+public class DisjointSet {
+    private static final int DEFAULT_CAPACITY = 16;
+    /**
+     * Родитель каждого элемента, для корня - сам элемент
+     */
+    private int[] parent;
+    /**
+     * Размер множества, актуален только для корней
+     */
+    private int[] size;
+    /**
+     * Кол-во элементов
+     */
+    private int count;
+
+    public DisjointSet() {
+        this(DEFAULT_CAPACITY);
+    }
+
+    public DisjointSet(int capacity) {
+        this.parent = new int[Math.max(capacity, 1)];
+        this.size = new int[Math.max(capacity, 1)];
+    }
+
+    /**
+     * Добавить новый элемент в виде отдельного множества
+     *
+     * @return возвращает номер добавленного элемента
+     */
+    public int makeSet() {
+        if (count == parent.length) {
+            int newCapacity = parent.length << 1;
+            parent = Arrays.copyOf(parent, newCapacity);
+            size = Arrays.copyOf(size, newCapacity);
+        }
+        parent[count] = count;
+        size[count] = 1;
+        return count++;
+    }
+
+    /**
+     * Найти корень множества, которому принадлежит элемент. Все элементы пройденного пути
+     * перевешиваются непосредственно на корень.
+     *
+     * @param element номер элемента
+     * @return возвращает номер корневого элемента множества
+     */
+    public int find(int element) {
+        int root = element;
+        while (parent[root] != root)
+            root = parent[root];
+
+        while (parent[element] != root) {
+            int next = parent[element];
+            parent[element] = root;
+            element = next;
+        }
+        return root;
+    }
+
+    /**
+     * Объединить множества, которым принадлежат элементы. Меньшее множество подвешивается к большему.
+     *
+     * @param first  элемент первого множества
+     * @param second элемент второго множества
+     * @return возвращает корень объединенного множества
+     */
+    public int union(int first, int second) {
+        int firstRoot = find(first);
+        int secondRoot = find(second);
+        if (firstRoot == secondRoot)
+            return firstRoot;
+
+        if (size[firstRoot] < size[secondRoot]) {
+            int tmp = firstRoot;
+            firstRoot = secondRoot;
+            secondRoot = tmp;
+        }
+        parent[secondRoot] = firstRoot;
+        size[firstRoot] += size[secondRoot];
+        return firstRoot;
+    }
+
+    /**
+     * Получить размер множества, которому принадлежит элемент
+     *
+     * @param element номер элемента
+     * @return возвращает кол-во элементов в множестве
+     */
+    public int setSize(int element) {
+        return size[find(element)];
+    }
+
+    /**
+     * Получить кол-во элементов
+     *
+     * @return возвращает кол-во добавленных элементов
+     */
+    public int size() {
+        return count;
+    }
+}
@@ -0,0 +1,696 @@
+package ru.larna.util.structures;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ * Словарь email: каждому уникальному адресу назначается плотный идентификатор 0, 1, 2...
+ * в порядке добавления.
+ * Байты всех адресов хранятся подряд в одном расширяемом массиве (арене), поиск выполняется по хеш-таблице
+ * с открытой адресацией и линейным пробированием, которая хранит примитивные int идентификаторы.
+ * Поэтому на один адрес не создается ни одного объекта, а накладные расходы составляют несколько int.
+ * Адреса ожидаются в ASCII (другие символы хранятся в UTF-8), общий объем адресов ограничен 2 Гб.
+ * <p>
+ * Домены адресов по умолчанию хранятся один раз во вложенном словаре доменов: запись адреса в арене состоит
+ * из номера домена (varint, номер + 1, 0 - адрес без @) и локальной части до последнего @. На данных, где
+ * миллионы адресов приходятся на несколько тысяч доменов, это сокращает арену примерно вдвое. Хеш, сравнение
+ * и вывод работают с исходным видом адреса, который собирается из локальной части и домена на лету.
+ * <p>
+ * Перед хеш-таблицей может стоять предварительный фильтр (BlockedBloomFilter) по хешам адресов. Если фильтр
+ * отвечает, что адреса точно нет, поиск не читает хеши и байты адресов в цепочке пробирования, а добавление
+ * только находит свободную ячейку. Это сокращает промахи кэша, когда большинство адресов встречается впервые.
+ * Фильтр перестраивается по сохраненным хешам при расширении хеш-таблицы.
+ */
+public class EmailDictionary {
+    /**
+     * Идентификатор отсутствующего адреса
+     */
+    public static final int NOT_FOUND = -1;
+    public static final int DEFAULT_CAPACITY = 1024;
+    private static final int AVERAGE_EMAIL_LENGTH = 24;
+    /**
+     * Максимальная заполненность хеш-таблицы
+     */
+    private static final double MAX_LOAD_FACTOR = 0.5;
+    private static final int DOMAINS_CAPACITY = 64;
+    private static final int MAX_VARINT_LENGTH = 5;
+    private static final byte AT = '@';
+
+    /**
+     * Записи всех адресов: номер домена и локальная часть или, без словаря доменов, байты адреса
+     */
+    private byte[] arena;
+    private int arenaSize;
+    /**
+     * Смещение адреса в арене по идентификатору, offsets[id + 1] - конец адреса
+     */
+    private int[] offsets;
+    /**
+     * Хеш адреса по идентификатору, чтобы не пересчитывать его при расширении таблицы
+     */
+    private int[] hashes;
+    /**
+     * Хеш-таблица: идентификатор + 1, 0 - пустая ячейка
+     */
+    private int[] table;
+    private int mask;
+    private int count;
+    /**
+     * Допустимая доля ложных ответов предварительного фильтра, 0 - фильтр не используется
+     */
+    private final double prefilterFalsePositiveRate;
+    private BlockedBloomFilter prefilter;
+    /**
+     * Кол-во ответов фильтра "адреса точно нет" и ложных ответов "адрес, возможно, есть"
+     */
+    private long prefilterRejects;
+    private long prefilterFalsePositives;
+    /**
+     * Словарь доменов, null - адреса хранятся целиком
+     */
+    private final EmailDictionary domains;
+    /**
+     * Буфер адреса при добавлении из другого словаря
+     */
+    private byte[] scratch;
+
+    public EmailDictionary() {
+        this(DEFAULT_CAPACITY);
+    }
+
+    public EmailDictionary(int expectedEmailsCount) {
+        this(expectedEmailsCount, 0);
+    }
+
+    /**
+     * @param expectedEmailsCount        ожидаемое кол-во адресов
+     * @param prefilterFalsePositiveRate допустимая доля ложных ответов предварительного фильтра,
+     *                                   0 - фильтр не используется
+     */
+    public EmailDictionary(int expectedEmailsCount, double prefilterFalsePositiveRate) {
+        this(expectedEmailsCount, prefilterFalsePositiveRate, true);
+    }
+
+    /**
+     * @param expectedEmailsCount        ожидаемое кол-во адресов
+     * @param prefilterFalsePositiveRate допустимая доля ложных ответов предварительного фильтра,
+     *                                   0 - фильтр не используется
+     * @param splitDomains               true - домены хранятся в словаре доменов, false - строки хранятся целиком,
+     *                                   например для строк без @
+     */
+    public EmailDictionary(int expectedEmailsCount, double prefilterFalsePositiveRate, boolean splitDomains) {
+        if (prefilterFalsePositiveRate < 0 || prefilterFalsePositiveRate >= 1)
+            throw new IllegalArgumentException("Prefilter false positive rate must be in [0, 1) - "
+                    + prefilterFalsePositiveRate);
+        this.prefilterFalsePositiveRate = prefilterFalsePositiveRate;
+        int capacity = Math.max(expectedEmailsCount, 16);
+        this.arena = new byte[capacity * AVERAGE_EMAIL_LENGTH];
+        this.offsets = new int[capacity + 1];
+        this.hashes = new int[capacity];
+        this.table = new int[tableSizeFor(capacity)];
+        this.mask = table.length - 1;
+        this.prefilter = createPrefilter();
+        this.domains = splitDomains ? new EmailDictionary(DOMAINS_CAPACITY, 0, false) : null;
+    }
+
+    /**
+     * Получить идентификатор адреса, добавив адрес в словарь, если его еще нет
+     *
+     * @param email адрес
+     * @return возвращает идентификатор адреса
+     */
+    public int intern(CharSequence email) {
+        if (!isAscii(email))
+            return intern(utf8(email));
+
+        int hash = hash(email);
+        int slot = hash & mask;
+        if (mightContain(hash)) {
+            for (int id = table[slot] - 1; id >= 0; id = table[slot] - 1) {
+                if (hashes[id] == hash && equalsAt(id, email))
+                    return id;
+                slot = (slot + 1) & mask;
+            }
+            countFalsePositive();
+        } else
+            slot = freeSlot(slot);
+
+        int length = email.length();
+        int at = domains != null ? lastIndexOfAt(email) : -1;
+        int code = at >= 0 ? domains.intern(email.subSequence(at + 1, length)) + 1 : 0;
+        int localLength = at >= 0 ? at : length;
+        ensureArenaCapacity(MAX_VARINT_LENGTH + localLength);
+        int position = domains != null ? putVarint(arenaSize, code) : arenaSize;
+        for (int i = 0; i < localLength; i++)
+            arena[position + i] = (byte) email.charAt(i);
+        return add(hash, slot, position - arenaSize + localLength);
+    }
+
+    /**
+     * Получить идентификатор адреса, добавив адрес в словарь, если его еще нет
+     *
+     * @param bytes  массив, содержащий адрес
+     * @param offset смещение адреса в массиве
+     * @param length длина адреса в байтах
+     * @return возвращает идентификатор адреса
+     */
+    public int intern(byte[] bytes, int offset, int length) {
+        int hash = hash(bytes, offset, length);
+        int slot = hash & mask;
+        if (mightContain(hash)) {
+            for (int id = table[slot] - 1; id >= 0; id = table[slot] - 1) {
+                if (hashes[id] == hash && equalsAt(id, bytes, offset, length))
+                    return id;
+                slot = (slot + 1) & mask;
+            }
+            countFalsePositive();
+        } else
+            slot = freeSlot(slot);
+
+        int at = domains != null ? lastIndexOfAt(bytes, offset, length) : -1;
+        int code = at >= 0 ? domains.intern(bytes, offset + at + 1, length - at - 1) + 1 : 0;
+        int localLength = at >= 0 ? at : length;
+        ensureArenaCapacity(MAX_VARINT_LENGTH + localLength);
+        int position = domains != null ? putVarint(arenaSize, code) : arenaSize;
+        System.arraycopy(bytes, offset, arena, position, localLength);
+        return add(hash, slot, position - arenaSize + localLength);
+    }
+
+    /**
+     * Получить идентификатор адреса из другого словаря, добавив адрес в словарь, если его еще нет
+     *
+     * @param source словарь, содержащий адрес
+     * @param id     идентификатор адреса в словаре source
+     * @return возвращает идентификатор адреса в этом словаре
+     */
+    public int intern(EmailDictionary source, int id) {
+        source.checkId(id);
+        if (source.domains == null)
+            return intern(source.arena, source.offsets[id], source.offsets[id + 1] - source.offsets[id]);
+        int length = source.length(id);
+        if (scratch == null || scratch.length < length)
+            scratch = new byte[Math.max(length, AVERAGE_EMAIL_LENGTH * 2)];
+        source.copyTo(id, scratch);
+        return intern(scratch, 0, length);
+    }
+
+    /**
+     * Найти идентификатор адреса
+     *
+     * @param email адрес
+     * @return возвращает идентификатор адреса или NOT_FOUND, если адреса нет в словаре
+     */
+    public int find(CharSequence email) {
+        if (!isAscii(email)) {
+            byte[] bytes = utf8(email);
+            return find(bytes, 0, bytes.length);
+        }
+
+        int hash = hash(email);
+        if (!mightContain(hash))
+            return NOT_FOUND;
+        int slot = hash & mask;
+        for (int id = table[slot] - 1; id >= 0; id = table[slot] - 1) {
+            if (hashes[id] == hash && equalsAt(id, email))
+                return id;
+            slot = (slot + 1) & mask;
+        }
+        countFalsePositive();
+        return NOT_FOUND;
+    }
+
+    /**
+     * Найти идентификатор адреса
+     *
+     * @param bytes  массив, содержащий адрес
+     * @param offset смещение адреса в массиве
+     * @param length длина адреса в байтах
+     * @return возвращает идентификатор адреса или NOT_FOUND, если адреса нет в словаре
+     */
+    public int find(byte[] bytes, int offset, int length) {
+        int hash = hash(bytes, offset, length);
+        if (!mightContain(hash))
+            return NOT_FOUND;
+        int slot = hash & mask;
+        for (int id = table[slot] - 1; id >= 0; id = table[slot] - 1) {
+            if (hashes[id] == hash && equalsAt(id, bytes, offset, length))
+                return id;
+            slot = (slot + 1) & mask;
+        }
+        countFalsePositive();
+        return NOT_FOUND;
+    }
+
+    /**
+     * Получить адрес по идентификатору
+     *
+     * @param id идентификатор адреса
+     * @return возвращает строку адреса
+     */
+    public String get(int id) {
+        checkId(id);
+        if (domains == null)
+            return new String(arena, offsets[id], offsets[id + 1] - offsets[id], StandardCharsets.UTF_8);
+        byte[] bytes = new byte[length(id)];
+        copyTo(id, bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Получить длину адреса в байтах
+     *
+     * @param id идентификатор адреса
+     * @return возвращает длину адреса в байтах
+     */
+    public int length(int id) {
+        checkId(id);
+        if (domains == null)
+            return offsets[id + 1] - offsets[id];
+        int code = readVarint(offsets[id]);
+        int localLength = offsets[id + 1] - offsets[id] - varintLength(code);
+        return code == 0 ? localLength : localLength + 1 + domains.length(code - 1);
+    }
+
+    /**
+     * Скопировать байты адреса в буфер без создания строки. Копируется столько байтов, сколько помещается в буфер.
+     *
+     * @param id     идентификатор адреса
+     * @param from   смещение внутри адреса, с которого начинается копирование
+     * @param buffer буфер
+     * @return возвращает кол-во скопированных байтов
+     */
+    public int writeTo(int id, int from, ByteBuffer buffer) {
+        checkId(id);
+        if (domains == null) {
+            int count = Math.min(offsets[id + 1] - offsets[id] - from, buffer.remaining());
+            buffer.put(arena, offsets[id] + from, count);
+            return count;
+        }
+        int code = readVarint(offsets[id]);
+        int local = offsets[id] + varintLength(code);
+        int localLength = offsets[id + 1] - local;
+        int count = 0;
+        if (from < localLength) {
+            count = Math.min(localLength - from, buffer.remaining());
+            buffer.put(arena, local + from, count);
+            from += count;
+        }
+        if (code == 0 || !buffer.hasRemaining())
+            return count;
+        if (from == localLength) {
+            buffer.put(AT);
+            count++;
+            from++;
+        }
+        return count + domains.writeTo(code - 1, from - localLength - 1, buffer);
+    }
+
+    /**
+     * Получить кол-во адресов в словаре
+     *
+     * @return возвращает кол-во адресов
+     */
+    public int size() {
+        return count;
+    }
+
+    /**
+     * Получить заполненность хеш-таблицы
+     *
+     * @return возвращает отношение кол-ва адресов к размеру хеш-таблицы
+     */
+    public double loadFactor() {
+        return (double) count / table.length;
+    }
+
+    /**
+     * Получить кол-во доменов в словаре доменов
+     *
+     * @return возвращает кол-во доменов, 0 - адреса хранятся целиком
+     */
+    public int domainsCount() {
+        return domains == null ? 0 : domains.size();
+    }
+
+    /**
+     * Получить объем записей адресов в арене
+     *
+     * @return возвращает кол-во байтов записей адресов и доменов
+     */
+    public long arenaSize() {
+        return arenaSize + (domains == null ? 0 : domains.arenaSize);
+    }
+
+    /**
+     * Проверить, используется ли предварительный фильтр
+     *
+     * @return возвращает true - фильтр используется
+     */
+    public boolean hasPrefilter() {
+        return prefilter != null;
+    }
+
+    /**
+     * Получить кол-во поисков отсутствующих адресов, на которые фильтр ответил "адреса точно нет"
+     *
+     * @return возвращает кол-во поисков, не затронувших хеш-таблицу
+     */
+    public long getPrefilterRejects() {
+        return prefilterRejects;
+    }
+
+    /**
+     * Получить кол-во поисков отсутствующих адресов, на которые фильтр ответил "адрес, возможно, есть"
+     *
+     * @return возвращает кол-во ложных ответов фильтра
+     */
+    public long getPrefilterFalsePositives() {
+        return prefilterFalsePositives;
+    }
+
+    /**
+     * Получить наблюдаемую долю ложных ответов фильтра среди поисков отсутствующих адресов
+     *
+     * @return возвращает долю ложных ответов, NaN - фильтр не используется или отсутствующие адреса не искались
+     */
+    public double getPrefilterFalsePositiveRate() {
+        long absent = prefilterRejects + prefilterFalsePositives;
+        return prefilter == null || absent == 0 ? Double.NaN : (double) prefilterFalsePositives / absent;
+    }
+
+    /**
+     * Сохранить словарь: кол-во адресов, арену и смещения адресов, затем словарь доменов. Хеши и хеш-таблица
+     * не сохраняются, они восстанавливаются при чтении.
+     *
+     * @param out поток записи
+     * @throws IOException в случае ошибки записи
+     */
+    public void writeTo(DataOutput out) throws IOException {
+        out.writeInt(count);
+        out.writeInt(arenaSize);
+        out.write(arena, 0, arenaSize);
+        for (int id = 0; id <= count; id++)
+            out.writeInt(offsets[id]);
+        if (domains != null)
+            domains.writeTo(out);
+    }
+
+    /**
+     * Заменить содержимое словаря данными, сохраненными writeTo. Идентификаторы адресов сохраняются.
+     *
+     * @param in поток чтения
+     * @throws IOException в случае ошибки чтения или некорректных данных
+     */
+    public void readFrom(DataInput in) throws IOException {
+        int newCount = in.readInt();
+        int newArenaSize = in.readInt();
+        if (newCount < 0 || newArenaSize < 0)
+            throw new IOException("Wrong email dictionary header: count " + newCount + ", arena size " + newArenaSize);
+        byte[] newArena = new byte[Math.max(newArenaSize, 16)];
+        in.readFully(newArena, 0, newArenaSize);
+        int[] newOffsets = new int[Math.max(newCount, 16) + 1];
+        for (int id = 0; id <= newCount; id++)
+            newOffsets[id] = in.readInt();
+        if (domains != null)
+            domains.readFrom(in);
+
+        arena = newArena;
+        arenaSize = newArenaSize;
+        offsets = newOffsets;
+        count = newCount;
+        hashes = new int[newOffsets.length - 1];
+        for (int id = 0; id < count; id++)
+            hashes[id] = hashAt(id);
+        rehash(tableSizeFor(count));
+    }
+
+    private int add(int hash, int slot, int length) {
+        if (count == hashes.length) {
+            hashes = Arrays.copyOf(hashes, count << 1);
+            offsets = Arrays.copyOf(offsets, (count << 1) + 1);
+        }
+        int id = count++;
+        hashes[id] = hash;
+        offsets[id] = arenaSize;
+        arenaSize += length;
+        offsets[id + 1] = arenaSize;
+        table[slot] = id + 1;
+        if (prefilter != null)
+            prefilter.put(hash);
+
+        if (count > table.length * MAX_LOAD_FACTOR)
+            rehash(table.length << 1);
+        return id;
+    }
+
+    private void rehash(int tableSize) {
+        int[] newTable = new int[tableSize];
+        int newMask = newTable.length - 1;
+        for (int id = 0; id < count; id++) {
+            int slot = hashes[id] & newMask;
+            while (newTable[slot] != 0)
+                slot = (slot + 1) & newMask;
+            newTable[slot] = id + 1;
+        }
+        table = newTable;
+        mask = newMask;
+        prefilter = createPrefilter();
+    }
+
+    /**
+     * Создать предварительный фильтр на емкость хеш-таблицы и добавить в него хеши всех адресов
+     */
+    private BlockedBloomFilter createPrefilter() {
+        if (prefilterFalsePositiveRate == 0)
+            return null;
+        BlockedBloomFilter filter = new BlockedBloomFilter((int) (table.length * MAX_LOAD_FACTOR),
+                prefilterFalsePositiveRate);
+        for (int id = 0; id < count; id++)
+            filter.put(hashes[id]);
+        return filter;
+    }
+
+    private boolean mightContain(int hash) {
+        if (prefilter == null || prefilter.mightContain(hash))
+            return true;
+        prefilterRejects++;
+        return false;
+    }
+
+    private void countFalsePositive() {
+        if (prefilter != null)
+            prefilterFalsePositives++;
+    }
+
+    /**
+     * Найти свободную ячейку для адреса, которого точно нет в словаре: читается только хеш-таблица
+     */
+    private int freeSlot(int slot) {
+        while (table[slot] != 0)
+            slot = (slot + 1) & mask;
+        return slot;
+    }
+
+    private void ensureArenaCapacity(int length) {
+        long required = (long) arenaSize + length;
+        if (required <= arena.length)
+            return;
+        if (required > Integer.MAX_VALUE - 8)
+            throw new IllegalStateException("Email dictionary overflow, arena size " + arenaSize);
+        long newCapacity = Math.max((long) arena.length << 1, required);
+        arena = Arrays.copyOf(arena, (int) Math.min(newCapacity, Integer.MAX_VALUE - 8));
+    }
+
+    private boolean equalsAt(int id, CharSequence email) {
+        int offset = offsets[id];
+        int length = email.length();
+        if (domains == null)
+            return offsets[id + 1] - offset == length && regionMatches(offset, email, 0, length);
+        int code = readVarint(offset);
+        offset += varintLength(code);
+        int localLength = offsets[id + 1] - offset;
+        if (code == 0)
+            return localLength == length && regionMatches(offset, email, 0, length);
+        int domainLength = length - localLength - 1;
+        return domainLength >= 0 && domains.offsets[code] - domains.offsets[code - 1] == domainLength
+                && email.charAt(localLength) == AT
+                && regionMatches(offset, email, 0, localLength)
+                && domains.regionMatches(domains.offsets[code - 1], email, localLength + 1, domainLength);
+    }
+
+    private boolean equalsAt(int id, byte[] bytes, int offset, int length) {
+        int start = offsets[id];
+        if (domains == null)
+            return offsets[id + 1] - start == length && regionMatches(start, bytes, offset, length);
+        int code = readVarint(start);
+        start += varintLength(code);
+        int localLength = offsets[id + 1] - start;
+        if (code == 0)
+            return localLength == length && regionMatches(start, bytes, offset, length);
+        int domainLength = length - localLength - 1;
+        return domainLength >= 0 && domains.offsets[code] - domains.offsets[code - 1] == domainLength
+                && bytes[offset + localLength] == AT
+                && regionMatches(start, bytes, offset, localLength)
+                && domains.regionMatches(domains.offsets[code - 1], bytes, offset + localLength + 1, domainLength);
+    }
+
+    private boolean regionMatches(int start, CharSequence email, int from, int length) {
+        for (int i = 0; i < length; i++) {
+            if (arena[start + i] != (byte) email.charAt(from + i))
+                return false;
+        }
+        return true;
+    }
+
+    private boolean regionMatches(int start, byte[] bytes, int offset, int length) {
+        for (int i = 0; i < length; i++) {
+            if (arena[start + i] != bytes[offset + i])
+                return false;
+        }
+        return true;
+    }
+
+    /**
+     * Скопировать исходный вид адреса в массив
+     */
+    private void copyTo(int id, byte[] bytes) {
+        int code = readVarint(offsets[id]);
+        int local = offsets[id] + varintLength(code);
+        int localLength = offsets[id + 1] - local;
+        System.arraycopy(arena, local, bytes, 0, localLength);
+        if (code == 0)
+            return;
+        bytes[localLength] = AT;
+        int domain = domains.offsets[code - 1];
+        System.arraycopy(domains.arena, domain, bytes, localLength + 1, domains.offsets[code] - domain);
+    }
+
+    /**
+     * Хеш исходного вида адреса по его записи
+     */
+    private int hashAt(int id) {
+        if (domains == null)
+            return hash(arena, offsets[id], offsets[id + 1] - offsets[id]);
+        int code = readVarint(offsets[id]);
+        int local = offsets[id] + varintLength(code);
+        int h = accumulate(0, arena, local, offsets[id + 1] - local);
+        if (code > 0) {
+            h = 31 * h + AT;
+            int domain = domains.offsets[code - 1];
+            h = accumulate(h, domains.arena, domain, domains.offsets[code] - domain);
+        }
+        return mix(h);
+    }
+
+    private int putVarint(int position, int value) {
+        while ((value & ~0x7F) != 0) {
+            arena[position++] = (byte) ((value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        arena[position++] = (byte) value;
+        return position;
+    }
+
+    private int readVarint(int position) {
+        int value = 0;
+        for (int shift = 0; ; shift += 7) {
+            byte b = arena[position++];
+            value |= (b & 0x7F) << shift;
+            if (b >= 0)
+                return value;
+        }
+    }
+
+    private static int varintLength(int value) {
+        int length = 1;
+        while ((value & ~0x7F) != 0) {
+            value >>>= 7;
+            length++;
+        }
+        return length;
+    }
+
+    private static int lastIndexOfAt(CharSequence email) {
+        for (int i = email.length() - 1; i >= 0; i--) {
+            if (email.charAt(i) == AT)
+                return i;
+        }
+        return -1;
+    }
+
+    private static int lastIndexOfAt(byte[] bytes, int offset, int length) {
+        for (int i = length - 1; i >= 0; i--) {
+            if (bytes[offset + i] == AT)
+                return i;
+        }
+        return -1;
+    }
+
+    private void checkId(int id) {
+        if (id < 0 || id >= count)
+            throw new IndexOutOfBoundsException("Email id " + id + " out of bounds for size " + count);
+    }
+
+    private int intern(byte[] bytes) {
+        return intern(bytes, 0, bytes.length);
+    }
+
+    private static boolean isAscii(CharSequence email) {
+        for (int i = 0, length = email.length(); i < length; i++) {
+            if (email.charAt(i) >= 0x80)
+                return false;
+        }
+        return true;
+    }
+
+    private static byte[] utf8(CharSequence email) {
+        return email.toString().getBytes(StandardCharsets.UTF_8);
+    }
+
+    private static int hash(CharSequence email) {
+        int h = 0;
+        for (int i = 0, length = email.length(); i < length; i++)
+            h = 31 * h + (byte) email.charAt(i);
+        return mix(h);
+    }
+
+    /**
+     * Хеш адреса, заданного байтами, совпадает с хешем, который использует словарь
+     *
+     * @param bytes  массив, содержащий адрес
+     * @param offset смещение адреса в массиве
+     * @param length длина адреса в байтах
+     * @return возвращает хеш адреса
+     */
+    public static int hash(byte[] bytes, int offset, int length) {
+        return mix(accumulate(0, bytes, offset, length));
+    }
+
+    private static int accumulate(int h, byte[] bytes, int offset, int length) {
+        for (int i = 0; i < length; i++)
+            h = 31 * h + bytes[offset + i];
+        return h;
+    }
+
+    /**
+     * Перемешивание битов хеша (финализатор MurmurHash3), чтобы младшие биты, по которым выбирается ячейка,
+     * зависели от всех символов адреса
+     */
+    private static int mix(int h) {
+        h ^= h >>> 16;
+        h *= 0x85ebca6b;
+        h ^= h >>> 13;
+        h *= 0xc2b2ae35;
+        h ^= h >>> 16;
+        return h;
+    }
+
+    private static int tableSizeFor(int capacity) {
+        int size = Integer.highestOneBit(Math.max((int) (capacity / MAX_LOAD_FACTOR), 16) - 1) << 1;
+        return Math.max(size, 16);
+    }
+}
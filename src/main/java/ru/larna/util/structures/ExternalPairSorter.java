@@ -0,0 +1,324 @@
+package ru.larna.util.structures;
+
+import java.io.*;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.PriorityQueue;
+
+/**
+ * Внешняя сортировка пар (long ключ, long значение) по ключу при ограниченной памяти.
+ * Пары накапливаются в массивах, которые растут до размера, заданного ограничением памяти. Заполненные массивы сортируются
+ * поразрядной сортировкой (LSD radix sort по 8 бит, разряды с одинаковым значением у всех ключей пропускаются)
+ * и сбрасываются на диск упорядоченными сериями. Серии сливаются k-путевым слиянием, если серий больше, чем можно
+ * слить за раз, выполняются промежуточные слияния. Если все пары поместились в память, диск не используется.
+ * <p>
+ * Ключи сравниваются как беззнаковые числа. Сортировка устойчива: пары с равными ключами выдаются в порядке
+ * добавления. Объект используется для одной сортировки, временные файлы удаляются при close.
+ */
+public class ExternalPairSorter implements Closeable {
+    /**
+     * Размер пары в массивах сортировки: ключ и значение, плюс вспомогательные массивы того же размера
+     */
+    private static final int BYTES_PER_PAIR = 4 * Long.BYTES;
+    private static final int RUN_BUFFER_SIZE = 1 << 16;
+    private static final int MIN_CAPACITY = 1024;
+    private static final int INITIAL_CAPACITY = 1 << 12;
+    private static final int MAX_FAN_IN = 256;
+    private static final String RUN_FILE_PREFIX = "migration-run-";
+    private static final String RUN_FILE_SUFFIX = ".spill";
+
+    private final Path directory;
+    /**
+     * Максимальное кол-во пар в памяти
+     */
+    private final int capacity;
+    private final int fanIn;
+    private final List<Path> runs = new ArrayList<>();
+    private long[] keys;
+    private long[] values;
+    private long[] keysBuffer;
+    private long[] valuesBuffer;
+    private int size;
+    private long count;
+
+    /**
+     * @param directory   каталог временных файлов серий
+     * @param memoryLimit объем памяти в байтах на массивы сортировки и буферы слияния
+     */
+    public ExternalPairSorter(Path directory, long memoryLimit) {
+        this.directory = directory;
+        this.capacity = (int) Math.max(MIN_CAPACITY, Math.min(Integer.MAX_VALUE - 8, memoryLimit / BYTES_PER_PAIR));
+        this.fanIn = (int) Math.max(2, Math.min(MAX_FAN_IN, memoryLimit / RUN_BUFFER_SIZE));
+        this.keys = new long[Math.min(capacity, INITIAL_CAPACITY)];
+        this.values = new long[keys.length];
+    }
+
+    /**
+     * Добавить пару
+     *
+     * @param key   ключ
+     * @param value значение
+     * @throws IOException в случае ошибки записи серии
+     */
+    public void add(long key, long value) throws IOException {
+        if (size == keys.length) {
+            if (size < capacity) {
+                keys = Arrays.copyOf(keys, (int) Math.min(capacity, 2L * size));
+                values = Arrays.copyOf(values, keys.length);
+            } else
+                spill();
+        }
+        keys[size] = key;
+        values[size] = value;
+        size++;
+        count++;
+    }
+
+    /**
+     * Получить кол-во добавленных пар
+     *
+     * @return возвращает кол-во пар
+     */
+    public long size() {
+        return count;
+    }
+
+    /**
+     * Завершить добавление и получить пары в порядке возрастания ключей. После вызова пары не добавляются.
+     *
+     * @return возвращает курсор по упорядоченным парам
+     * @throws IOException в случае ошибки записи или чтения серий
+     */
+    public PairCursor sorted() throws IOException {
+        if (runs.isEmpty()) {
+            sort();
+            return new ArrayCursor(keys, values, size);
+        }
+        if (size > 0)
+            spill();
+        keys = values = keysBuffer = valuesBuffer = null;
+        while (runs.size() > fanIn) {
+            List<Path> merged = new ArrayList<>();
+            for (int from = 0; from < runs.size(); from += fanIn)
+                merged.add(mergeToRun(runs.subList(from, Math.min(from + fanIn, runs.size()))));
+            runs.clear();
+            runs.addAll(merged);
+        }
+        return new MergeCursor(runs);
+    }
+
+    /**
+     * Удалить временные файлы серий
+     *
+     * @throws IOException в случае ошибки удаления
+     */
+    @Override
+    public void close() throws IOException {
+        for (Path run : runs)
+            Files.deleteIfExists(run);
+        runs.clear();
+    }
+
+    /**
+     * Отсортировать накопленные пары и сбросить их новой серией
+     */
+    private void spill() throws IOException {
+        sort();
+        Path run = Files.createTempFile(directory, RUN_FILE_PREFIX, RUN_FILE_SUFFIX);
+        runs.add(run);
+        try (DataOutputStream out = openRun(run)) {
+            for (int i = 0; i < size; i++) {
+                out.writeLong(keys[i]);
+                out.writeLong(values[i]);
+            }
+        }
+        size = 0;
+    }
+
+    /**
+     * Слить группу серий в одну новую серию, исходные серии удаляются
+     */
+    private Path mergeToRun(List<Path> group) throws IOException {
+        Path run = Files.createTempFile(directory, RUN_FILE_PREFIX, RUN_FILE_SUFFIX);
+        try (MergeCursor cursor = new MergeCursor(group); DataOutputStream out = openRun(run)) {
+            while (cursor.next()) {
+                out.writeLong(cursor.key());
+                out.writeLong(cursor.value());
+            }
+        }
+        for (Path path : group)
+            Files.deleteIfExists(path);
+        return run;
+    }
+
+    /**
+     * Устойчивая поразрядная сортировка накопленных пар по беззнаковому ключу
+     */
+    private void sort() {
+        if (size < 2)
+            return;
+        if (keysBuffer == null || keysBuffer.length != keys.length) {
+            keysBuffer = new long[keys.length];
+            valuesBuffer = new long[values.length];
+        }
+        int[] counts = new int[256];
+        for (int shift = 0; shift < Long.SIZE; shift += 8) {
+            Arrays.fill(counts, 0);
+            for (int i = 0; i < size; i++)
+                counts[(int) (keys[i] >>> shift) & 0xFF]++;
+            if (counts[(int) (keys[0] >>> shift) & 0xFF] == size)
+                continue;
+            for (int digit = 0, offset = 0; digit < counts.length; digit++) {
+                int digitCount = counts[digit];
+                counts[digit] = offset;
+                offset += digitCount;
+            }
+            for (int i = 0; i < size; i++) {
+                int position = counts[(int) (keys[i] >>> shift) & 0xFF]++;
+                keysBuffer[position] = keys[i];
+                valuesBuffer[position] = values[i];
+            }
+            long[] swap = keys;
+            keys = keysBuffer;
+            keysBuffer = swap;
+            swap = values;
+            values = valuesBuffer;
+            valuesBuffer = swap;
+        }
+    }
+
+    private static DataOutputStream openRun(Path run) throws IOException {
+        return new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(run), RUN_BUFFER_SIZE));
+    }
+
+    /**
+     * Курсор по упорядоченным парам
+     */
+    public interface PairCursor extends Closeable {
+        /**
+         * Перейти к следующей паре
+         *
+         * @return возвращает true - курсор на следующей паре, false - пары закончились
+         * @throws IOException в случае ошибки чтения серии
+         */
+        boolean next() throws IOException;
+
+        long key();
+
+        long value();
+
+        @Override
+        default void close() throws IOException {
+        }
+    }
+
+    private static class ArrayCursor implements PairCursor {
+        private final long[] keys;
+        private final long[] values;
+        private final int size;
+        private int index = -1;
+
+        private ArrayCursor(long[] keys, long[] values, int size) {
+            this.keys = keys;
+            this.values = values;
+            this.size = size;
+        }
+
+        @Override
+        public boolean next() {
+            return ++index < size;
+        }
+
+        @Override
+        public long key() {
+            return keys[index];
+        }
+
+        @Override
+        public long value() {
+            return values[index];
+        }
+    }
+
+    /**
+     * k-путевое слияние серий. При равных ключах первой выдается пара из более ранней серии,
+     * поэтому устойчивость сортировки сохраняется.
+     */
+    private static class MergeCursor implements PairCursor {
+        private final PriorityQueue<RunReader> queue;
+        private final List<RunReader> readers = new ArrayList<>();
+        private long key;
+        private long value;
+
+        private MergeCursor(List<Path> runs) throws IOException {
+            this.queue = new PriorityQueue<>(Math.max(1, runs.size()), (a, b) -> {
+                int compare = Long.compareUnsigned(a.key, b.key);
+                return compare != 0 ? compare : Integer.compare(a.index, b.index);
+            });
+            try {
+                for (Path run : runs) {
+                    RunReader reader = new RunReader(run, readers.size());
+                    readers.add(reader);
+                    if (reader.next())
+                        queue.add(reader);
+                }
+            } catch (IOException e) {
+                close();
+                throw e;
+            }
+        }
+
+        @Override
+        public boolean next() throws IOException {
+            RunReader reader = queue.poll();
+            if (reader == null)
+                return false;
+            key = reader.key;
+            value = reader.value;
+            if (reader.next())
+                queue.add(reader);
+            return true;
+        }
+
+        @Override
+        public long key() {
+            return key;
+        }
+
+        @Override
+        public long value() {
+            return value;
+        }
+
+        @Override
+        public void close() throws IOException {
+            for (RunReader reader : readers)
+                reader.in.close();
+        }
+    }
+
+    private static class RunReader {
+        private final DataInputStream in;
+        private final int index;
+        private long key;
+        private long value;
+
+        private RunReader(Path run, int index) throws IOException {
+            this.in = new DataInputStream(new BufferedInputStream(Files.newInputStream(run), RUN_BUFFER_SIZE));
+            this.index = index;
+        }
+
+        private boolean next() throws IOException {
+            try {
+                key = in.readLong();
+            } catch (EOFException e) {
+                return false;
+            }
+            value = in.readLong();
+            return true;
+        }
+    }
+}
@@ -0,0 +1,123 @@
+package ru.larna.util.structures;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.Arrays;
+
+/**
+ * Расширяемый массив примитивных int, без упаковки значений в Integer
+ */
+public class IntArrayList {
+    private static final int DEFAULT_CAPACITY = 16;
+    private int[] values;
+    private int size;
+
+    public IntArrayList() {
+        this(DEFAULT_CAPACITY);
+    }
+
+    public IntArrayList(int capacity) {
+        this.values = new int[Math.max(capacity, 1)];
+    }
+
+    /**
+     * Добавить значение в конец списка
+     *
+     * @param value значение
+     */
+    public void add(int value) {
+        if (size == values.length)
+            values = Arrays.copyOf(values, size << 1);
+        values[size++] = value;
+    }
+
+    /**
+     * Добавить все значения другого списка в конец списка
+     *
+     * @param other список значений
+     */
+    public void addAll(IntArrayList other) {
+        if (size + other.size > values.length)
+            values = Arrays.copyOf(values, Math.max(values.length << 1, size + other.size));
+        System.arraycopy(other.values, 0, values, size, other.size);
+        size += other.size;
+    }
+
+    public int get(int index) {
+        checkIndex(index);
+        return values[index];
+    }
+
+    public void set(int index, int value) {
+        checkIndex(index);
+        values[index] = value;
+    }
+
+    /**
+     * Проверить наличие значения в списке, поиск линейный
+     *
+     * @param value искомое значение
+     * @return true - если значение есть в списке, false - иначе
+     */
+    public boolean contains(int value) {
+        for (int i = 0; i < size; i++) {
+            if (values[i] == value)
+                return true;
+        }
+        return false;
+    }
+
+    /**
+     * Упорядочить значения по возрастанию
+     */
+    public void sort() {
+        Arrays.sort(values, 0, size);
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    public void clear() {
+        size = 0;
+    }
+
+    /**
+     * Сохранить список: размер и значения
+     *
+     * @param out поток записи
+     * @throws IOException в случае ошибки записи
+     */
+    public void writeTo(DataOutput out) throws IOException {
+        out.writeInt(size);
+        for (int i = 0; i < size; i++)
+            out.writeInt(values[i]);
+    }
+
+    /**
+     * Заменить содержимое списка данными, сохраненными writeTo
+     *
+     * @param in поток чтения
+     * @throws IOException в случае ошибки чтения или некорректных данных
+     */
+    public void readFrom(DataInput in) throws IOException {
+        int newSize = in.readInt();
+        if (newSize < 0)
+            throw new IOException("Wrong list size " + newSize);
+        if (newSize > values.length)
+            values = new int[newSize];
+        for (int i = 0; i < newSize; i++)
+            values[i] = in.readInt();
+        size = newSize;
+    }
+
+    private void checkIndex(int index) {
+        if (index < 0 || index >= size)
+            throw new IndexOutOfBoundsException("Index " + index + " out of bounds for length " + size);
+    }
+}
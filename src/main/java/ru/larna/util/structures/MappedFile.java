@@ -0,0 +1,115 @@
+package ru.larna.util.structures;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Файл, отображенный в память для чтения и записи, с доступом к byte, int и long по смещению.
+ * Файл отображается сегментами по 1 Гб, поэтому его размер не ограничен 2 Гб. Значения int и long должны быть
+ * выровнены по своему размеру, тогда они не пересекают границы сегментов.
+ * При расширении размер файла удваивается, переотображаются только последний и новые сегменты.
+ */
+public class MappedFile implements Closeable {
+    private static final int SEGMENT_SHIFT = 30;
+    private static final long SEGMENT_SIZE = 1L << SEGMENT_SHIFT;
+    private static final long SEGMENT_MASK = SEGMENT_SIZE - 1;
+    private static final long MIN_CAPACITY = 4096;
+
+    private final FileChannel channel;
+    private final List<MappedByteBuffer> segments = new ArrayList<>();
+    private long capacity;
+
+    /**
+     * Открыть файл, создав его, если он не существует
+     *
+     * @param path            путь к файлу
+     * @param initialCapacity начальный размер нового файла в байтах
+     * @throws IOException в случае ошибки открытия или отображения файла
+     */
+    public MappedFile(Path path, long initialCapacity) throws IOException {
+        this.channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        long size = channel.size();
+        map(size > 0 ? size : Math.max(initialCapacity, MIN_CAPACITY));
+    }
+
+    /**
+     * Получить размер отображенного файла
+     *
+     * @return возвращает размер в байтах
+     */
+    public long capacity() {
+        return capacity;
+    }
+
+    /**
+     * Расширить файл, если его размер меньше требуемого
+     *
+     * @param required требуемый размер в байтах
+     * @throws IOException в случае ошибки отображения файла
+     */
+    public void ensureCapacity(long required) throws IOException {
+        if (required > capacity)
+            map(Math.max(capacity << 1, required));
+    }
+
+    public byte getByte(long position) {
+        return segment(position).get(offset(position));
+    }
+
+    public void putByte(long position, byte value) {
+        segment(position).put(offset(position), value);
+    }
+
+    public int getInt(long position) {
+        return segment(position).getInt(offset(position));
+    }
+
+    public void putInt(long position, int value) {
+        segment(position).putInt(offset(position), value);
+    }
+
+    public long getLong(long position) {
+        return segment(position).getLong(offset(position));
+    }
+
+    public void putLong(long position, long value) {
+        segment(position).putLong(offset(position), value);
+    }
+
+    /**
+     * Записать измененные страницы на диск
+     */
+    public void force() {
+        segments.forEach(MappedByteBuffer::force);
+    }
+
+    @Override
+    public void close() throws IOException {
+        force();
+        segments.clear();
+        channel.close();
+    }
+
+    private MappedByteBuffer segment(long position) {
+        return segments.get((int) (position >>> SEGMENT_SHIFT));
+    }
+
+    private static int offset(long position) {
+        return (int) (position & SEGMENT_MASK);
+    }
+
+    private void map(long newCapacity) throws IOException {
+        int first = segments.isEmpty() ? 0 : segments.size() - 1;
+        while (segments.size() > first)
+            segments.remove(segments.size() - 1);
+        for (long start = first * SEGMENT_SIZE; start < newCapacity; start += SEGMENT_SIZE)
+            segments.add(channel.map(FileChannel.MapMode.READ_WRITE, start, Math.min(SEGMENT_SIZE, newCapacity - start)));
+        capacity = newCapacity;
+    }
+}
@@ -1,29 +1,72 @@
 package ru.larna.util.validators;
 
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
-
 /**
- * Класс для проверки email
+ * Класс для проверки email.
+ * Проверяет соответствие email регулярному выражению ^([a-z0-9_\.-]+)@([a-z0-9_\.-]+)\.([a-z\.]{2,6})$
+ * без учета регистра, но без регулярных выражений: за один проход по адресу, переданному CharSequence
+ * или диапазоном байтов. Проверка не создает объектов, валидатор не имеет состояния, поэтому один экземпляр
+ * используется всеми потоками.
+ * Как и $ в регулярном выражении, проверка допускает один завершающий символ конца строки
+ * (\n, \r\n, \r, U+0085, U+2028, U+2029).
+ * Расширенный валидатор (getRelaxedInstance) для адресов до канонизации допускает также '+' в локальной части,
+ * например foo+tag@gmail.com.
  */
 public class EmailValidator implements Validator {
     /**
-     * Регулярное выражение для проверки email
+     * Минимальная и максимальная длина домена верхнего уровня
+     */
+    private static final int MIN_TOP_DOMAIN_LENGTH = 2;
+    private static final int MAX_TOP_DOMAIN_LENGTH = 6;
+    /**
+     * Классы ASCII символов: EMAIL_CHAR - [a-z0-9_\.-], TOP_DOMAIN_CHAR - [a-z\.] без учета регистра,
+     * TAG_CHAR - '+', допустимый в локальной части расширенным валидатором
      */
-    private static final String EMAIL_PATTERN = "^([a-z0-9_\\.-]+)@([a-z0-9_\\.-]+)\\.([a-z\\.]{2,6})$";
-    private final Pattern pattern;
+    private static final byte EMAIL_CHAR = 1;
+    private static final byte TOP_DOMAIN_CHAR = 2;
+    private static final byte TAG_CHAR = 4;
+    private static final byte[] CHAR_CLASSES = new byte[128];
 
-    private EmailValidator() {
-        this.pattern = Pattern.compile(EMAIL_PATTERN, Pattern.CASE_INSENSITIVE);
+    private static final EmailValidator INSTANCE = new EmailValidator(EMAIL_CHAR);
+    private static final EmailValidator RELAXED_INSTANCE = new EmailValidator((byte) (EMAIL_CHAR | TAG_CHAR));
+
+    static {
+        for (char c = 'a'; c <= 'z'; c++) {
+            CHAR_CLASSES[c] = EMAIL_CHAR | TOP_DOMAIN_CHAR;
+            CHAR_CLASSES[Character.toUpperCase(c)] = EMAIL_CHAR | TOP_DOMAIN_CHAR;
+        }
+        for (char c = '0'; c <= '9'; c++)
+            CHAR_CLASSES[c] = EMAIL_CHAR;
+        CHAR_CLASSES['_'] = EMAIL_CHAR;
+        CHAR_CLASSES['-'] = EMAIL_CHAR;
+        CHAR_CLASSES['.'] = EMAIL_CHAR | TOP_DOMAIN_CHAR;
+        CHAR_CLASSES['+'] = TAG_CHAR;
+    }
+
+    /**
+     * Классы символов, допустимых в локальной части адреса
+     */
+    private final byte localPartChars;
+
+    private EmailValidator(byte localPartChars) {
+        this.localPartChars = localPartChars;
     }
 
     /**
      * Получить экземпляр класса EmailValidator
      *
-     * @return возвращает новый объект валидатора
+     * @return возвращает общий для всех потоков объект валидатора
      */
     public static EmailValidator getInstance() {
-        return new EmailValidator();
+        return INSTANCE;
+    }
+
+    /**
+     * Получить экземпляр расширенного валидатора, допускающего '+' в локальной части
+     *
+     * @return возвращает общий для всех потоков объект валидатора
+     */
+    public static EmailValidator getRelaxedInstance() {
+        return RELAXED_INSTANCE;
     }
 
     /**
@@ -33,11 +76,152 @@ public class EmailValidator implements Validator {
      * @return true - если email валидный, false - иначе
      */
     public Boolean validate(Object o) {
-        if (o != null && o instanceof String) {
-            String email = (String) o;
-            Matcher matcher = pattern.matcher(email);
-            return matcher.find();
+        return o instanceof CharSequence && isValid((CharSequence) o);
+    }
+
+    /**
+     * Проверить валидность email
+     *
+     * @param email адрес
+     * @return true - если email валидный, false - иначе
+     */
+    public boolean isValid(CharSequence email) {
+        int end = email.length();
+        if (end > 0) {
+            char last = email.charAt(end - 1);
+            if (last == '\n' && end > 1 && email.charAt(end - 2) == '\r')
+                end -= 2;
+            else if (last == '\n' || last == '\r' || last == '\u0085' || last == '\u2028' || last == '\u2029')
+                end--;
+        }
+        return isValid(email, 0, end);
+    }
+
+    /**
+     * Проверить валидность email, заданного частью строки, символы конца строки не допускаются
+     *
+     * @param str   строка, содержащая адрес
+     * @param begin начало адреса
+     * @param end   конец адреса
+     * @return true - если email валидный, false - иначе
+     */
+    public boolean isValid(CharSequence str, int begin, int end) {
+        int at = begin;
+        while (at < end && is(str.charAt(at), localPartChars))
+            at++;
+        if (at == begin || at == end || str.charAt(at) != '@')
+            return false;
+
+        int topDomainBegin = end;
+        for (int i = end - 1; i > at; i--) {
+            char c = str.charAt(i);
+            if (!is(c, EMAIL_CHAR))
+                return false;
+            if (topDomainBegin == i + 1 && is(c, TOP_DOMAIN_CHAR))
+                topDomainBegin = i;
+        }
+
+        for (int dot = firstDot(at, topDomainBegin, end); dot <= end - MIN_TOP_DOMAIN_LENGTH - 1; dot++) {
+            if (str.charAt(dot) == '.')
+                return true;
+        }
+        return false;
+    }
+
+    /**
+     * Проверить валидность email, заданного байтами в ASCII или UTF-8. Завершающий символ конца строки допускается.
+     *
+     * @param bytes  массив, содержащий адрес
+     * @param offset смещение адреса в массиве
+     * @param length длина адреса в байтах
+     * @return true - если email валидный, false - иначе
+     */
+    public boolean isValid(byte[] bytes, int offset, int length) {
+        int begin = offset;
+        int end = offset + length - lineTerminatorLength(bytes, offset, length);
+
+        int at = begin;
+        while (at < end && is(bytes[at], localPartChars))
+            at++;
+        if (at == begin || at == end || bytes[at] != '@')
+            return false;
+        return isValidDomain(bytes, at, end);
+    }
+
+    /**
+     * Проверить валидность email, заданного байтами в ASCII или UTF-8, по известной позиции первого '@',
+     * без поиска '@'. Завершающий символ конца строки допускается.
+     *
+     * @param bytes  массив, содержащий адрес
+     * @param offset смещение адреса в массиве
+     * @param length длина адреса в байтах
+     * @param at     позиция первого '@' адреса в массиве, -1 - если '@' нет
+     * @return true - если email валидный, false - иначе
+     */
+    public boolean isValid(byte[] bytes, int offset, int length, int at) {
+        int end = offset + length - lineTerminatorLength(bytes, offset, length);
+        if (at <= offset || at >= end)
+            return false;
+        for (int i = offset; i < at; i++) {
+            if (!is(bytes[i], localPartChars))
+                return false;
+        }
+        return isValidDomain(bytes, at, end);
+    }
+
+    /**
+     * Проверить домен адреса: символы после '@' и домен верхнего уровня
+     */
+    private static boolean isValidDomain(byte[] bytes, int at, int end) {
+        int topDomainBegin = end;
+        for (int i = end - 1; i > at; i--) {
+            byte b = bytes[i];
+            if (!is(b, EMAIL_CHAR))
+                return false;
+            if (topDomainBegin == i + 1 && is(b, TOP_DOMAIN_CHAR))
+                topDomainBegin = i;
+        }
+
+        for (int dot = firstDot(at, topDomainBegin, end); dot <= end - MIN_TOP_DOMAIN_LENGTH - 1; dot++) {
+            if (bytes[dot] == '.')
+                return true;
         }
         return false;
     }
+
+    /**
+     * Первая возможная позиция точки перед доменом верхнего уровня: после непустого домена, не дальше
+     * максимальной длины домена верхнего уровня от конца и не раньше начала завершающих символов [a-z\.]
+     */
+    private static int firstDot(int at, int topDomainBegin, int end) {
+        return Math.max(Math.max(at + 2, topDomainBegin - 1), end - MAX_TOP_DOMAIN_LENGTH - 1);
+    }
+
+    /**
+     * Длина завершающего символа конца строки в UTF-8: \n, \r\n, \r, U+0085 (C2 85), U+2028 и U+2029 (E2 80 A8/A9)
+     */
+    private static int lineTerminatorLength(byte[] bytes, int offset, int length) {
+        if (length == 0)
+            return 0;
+        int last = offset + length - 1;
+        byte b = bytes[last];
+        if (b == '\n')
+            return length > 1 && bytes[last - 1] == '\r' ? 2 : 1;
+        if (b == '\r')
+            return 1;
+        if (b == (byte) 0x85 && length > 1 && bytes[last - 1] == (byte) 0xC2)
+            return 2;
+        if ((b == (byte) 0xA8 || b == (byte) 0xA9) && length > 2
+                && bytes[last - 1] == (byte) 0x80 && bytes[last - 2] == (byte) 0xE2)
+            return 3;
+        return 0;
+    }
+
+    private static boolean is(char c, byte charClass) {
+        return c < 128 && (CHAR_CLASSES[c] & charClass) != 0;
+    }
+
+    private static boolean is(byte b, byte charClass) {
+        return b >= 0 && (CHAR_CLASSES[b] & charClass) != 0;
+    }
 }
@@ -0,0 +1,115 @@
+package ru.larna.commands;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+@DisplayName("Класс MigrationCommand")
+class MigrationCommandTest {
+    private static final String INPUT = "user1 -> a@x.ru, b@x.ru\n" +
+            "user2 -> c@x.ru\n" +
+            "user3 -> b@x.ru, d@x.ru\n\n";
+    private static final String EXPECTED = "user1 -> a@x.ru, b@x.ru, d@x.ru\n" +
+            "user2 -> c@x.ru\n";
+
+    @DisplayName("Со снимками состояния stdout должен содержать только результат")
+    @Test
+    public void shouldWriteOnlyResultWithSnapshots(@TempDir Path directory) throws IOException {
+        Path input = writeInput(directory, INPUT);
+
+        assertEquals(EXPECTED, execute("--input=" + input, "--snapshot=" + directory.resolve("migration.snapshot"),
+                "--checkpoint-lines=1"));
+    }
+
+    @DisplayName("В режиме incremental stdout должен содержать только результат")
+    @Test
+    public void shouldWriteOnlyResultInIncrementalMode(@TempDir Path directory) throws IOException {
+        Path input = writeInput(directory, INPUT);
+
+        assertEquals(EXPECTED, execute("--mode=incremental", "--input=" + input,
+                "--index-dir=" + directory.resolve("index")));
+    }
+
+    @DisplayName("С пропуском некорректных строк stdout должен содержать только результат")
+    @Test
+    public void shouldWriteOnlyResultWithRejectFile(@TempDir Path directory) throws IOException {
+        Path input = writeInput(directory, INPUT.replace("user2 -> c@x.ru", "user2 c@x.ru"));
+        Path rejectFile = directory.resolve("rejects.txt");
+
+        assertEquals("user1 -> a@x.ru, b@x.ru, d@x.ru\n", execute("--input=" + input, "--reject-file=" + rejectFile));
+        assertEquals(1, Files.readAllLines(rejectFile).size());
+    }
+
+    @DisplayName("С исключением общих email stdout должен содержать все строки с исключенными email и только результат")
+    @Test
+    public void shouldKeepExcludedEmailsInResult(@TempDir Path directory) throws IOException {
+        Path input = writeInput(directory, "a -> x@y.ru, noreply@y.ru\n" +
+                "b -> noreply@y.ru\n" +
+                "c -> z@y.ru, noreply@q.ru\n" +
+                "d -> z@y.ru\n\n");
+        String expected = "a -> x@y.ru, noreply@y.ru\n" +
+                "b -> noreply@y.ru\n" +
+                "c -> z@y.ru, noreply@q.ru\n";
+
+        assertEquals(expected, execute("--input=" + input, "--stop-email=noreply@", "--max-email-degree=2"));
+    }
+
+    @DisplayName("С канонизацией email должны сливаться адреса, отличающиеся регистром и меткой после '+'")
+    @ParameterizedTest
+    @ValueSource(strings = {"regex", "scanner", "swar"})
+    public void shouldMergeCanonicalEmails(String parser, @TempDir Path directory) throws IOException {
+        Path input = writeInput(directory, "user1 -> Foo@Gmail.com\n" +
+                "user2 -> foo@gmail.com, b@x.ru\n" +
+                "user3 -> f.o.o+tag@gmail.com, c@x.ru\n\n");
+
+        assertEquals("user1 -> Foo@Gmail.com, b@x.ru, c@x.ru\n",
+                execute("--parser=" + parser, "--input=" + input, "--canonicalize"));
+    }
+
+    @DisplayName("Снимки состояния должны отклоняться вне режима default и с конвейерным разбором")
+    @Test
+    public void shouldRejectSnapshotOutsideDefaultMode() {
+        assertThrows(IllegalArgumentException.class,
+                () -> MigrationOptions.parse("--mode=union-find", "--snapshot=migration.snapshot"));
+        assertThrows(IllegalArgumentException.class,
+                () -> MigrationOptions.parse("--pipeline", "--snapshot=migration.snapshot"));
+    }
+
+    @DisplayName("Фильтр словаря email должен отклоняться вне режима default")
+    @Test
+    public void shouldRejectEmailPrefilterOutsideDefaultMode() {
+        assertThrows(IllegalArgumentException.class,
+                () -> MigrationOptions.parse("--mode=sharded", "--email-prefilter=0.01"));
+    }
+
+    /**
+     * Выполнить команду слияния, перехватив стандартный вывод
+     */
+    private static String execute(String... args) {
+        PrintStream stdout = System.out;
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        System.setOut(new PrintStream(out, true, StandardCharsets.UTF_8));
+        try {
+            MigrationCommand.getInstance(MigrationOptions.parse(args)).execute();
+        } finally {
+            System.setOut(stdout);
+        }
+        return out.toString(StandardCharsets.UTF_8);
+    }
+
+    private static Path writeInput(Path directory, String input) throws IOException {
+        return Files.writeString(directory.resolve("input.txt"), input);
+    }
+}
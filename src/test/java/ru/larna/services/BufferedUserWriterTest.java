@@ -0,0 +1,73 @@
+package ru.larna.services;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+import ru.larna.util.structures.EmailDictionary;
+
+import java.io.ByteArrayOutputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+@DisplayName("Класс BufferedUserWriter")
+class BufferedUserWriterTest {
+    private static final List<String> EMAILS = List.of("a@b.ru", "very.long.address@example.com", "c@d.ru");
+
+    @TempDir
+    Path tempDir;
+
+    @DisplayName("Должен выводить то же, что и PrintStream.println, при любом размере буфера")
+    @ParameterizedTest
+    @ValueSource(ints = {1, 3, 8, 1024})
+    public void shouldWriteSameAsPrintln(int bufferSize) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        UserWriter writer = new BufferedUserWriter(Channels.newChannel(out), ByteBuffer.allocate(bufferSize));
+        writeUsers(writer);
+
+        assertEquals(expected(), out.toString(StandardCharsets.UTF_8));
+    }
+
+    @DisplayName("Должен выводить в файл через FileChannel")
+    @Test
+    public void shouldWriteToFileChannel() throws IOException {
+        Path file = tempDir.resolve("out.txt");
+        try (FileOutputStream out = new FileOutputStream(file.toFile())) {
+            writeUsers(BufferedUserWriter.of(out));
+        }
+
+        assertEquals(expected(), Files.readString(file));
+    }
+
+    private static void writeUsers(UserWriter writer) throws IOException {
+        EmailDictionary dictionary = new EmailDictionary();
+        EMAILS.forEach(dictionary::intern);
+        writer.startUser("user1");
+        writer.writeEmail(dictionary, 0);
+        writer.writeEmail(dictionary, 1);
+        writer.endUser();
+        writer.startUser("пользователь");
+        writer.writeEmail(dictionary, 2);
+        writer.endUser();
+        writer.flush();
+    }
+
+    private static String expected() {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try (PrintStream print = new PrintStream(out, true, StandardCharsets.UTF_8)) {
+            print.println("user1 -> a@b.ru, very.long.address@example.com");
+            print.println("пользователь -> c@d.ru");
+        }
+        return out.toString(StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,54 @@
+package ru.larna.services;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+@DisplayName("Класс ClusterGuard")
+class ClusterGuardTest {
+    private static final String INPUT = "user1 -> a@x.ru, noreply@x.ru\n" +
+            "user2 -> b@x.ru, noreply@y.ru\n" +
+            "user3 -> c@x.ru, test@x.ru\n" +
+            "user4 -> d@x.ru, test@x.ru\n" +
+            "user5 -> e@x.ru, test@x.ru\n" +
+            "user6 -> noreply@x.ru\n" +
+            "user7 -> f@x.ru, a@x.ru\n" +
+            "user8 -> f@x.ru, noreply@x.ru\n\n";
+
+    @DisplayName("Не должен сливать пользователей по email из списка исключений и по email с большой степенью, "
+            + "но должен сохранять эти email и строки в результате")
+    @Test
+    public void shouldExcludeSharedEmails(@TempDir Path directory) throws IOException {
+        Path reportFile = directory.resolve("report.txt");
+        String expected = "user1 -> a@x.ru, noreply@x.ru, f@x.ru\n" +
+                "user2 -> b@x.ru, noreply@y.ru\n" +
+                "user3 -> c@x.ru, test@x.ru, d@x.ru\n" +
+                "user5 -> e@x.ru, test@x.ru\n" +
+                "user6 -> noreply@x.ru\n";
+
+        assertEquals(expected, MigrationTestData.migrate(INPUT, (io, parser) -> new UserMigration(io, parser,
+                new SequentialUserSource(), null, UserMigration.DEFAULT_CHECKPOINT_INTERVAL,
+                UserMigration.NO_PREFILTER, new ClusterGuard(List.of("noreply@"), 2, reportFile))));
+        assertEquals(List.of("noreply@x.ru\t3\tstop-list", "noreply@y.ru\t1\tstop-list", "test@x.ru\t3\tfan-out"),
+                Files.readAllLines(reportFile));
+    }
+
+    @DisplayName("Без общих email результат не должен отличаться")
+    @Test
+    public void shouldNotChangeResultWithoutSharedEmails() {
+        String input = MigrationTestData.randomInput(new Random(7), 5000, 4000);
+
+        assertEquals(MigrationTestData.migrate(input, UserMigration::new), MigrationTestData.migrate(input,
+                (io, parser) -> new UserMigration(io, parser, new SequentialUserSource(), null,
+                        UserMigration.DEFAULT_CHECKPOINT_INTERVAL, UserMigration.NO_PREFILTER,
+                        new ClusterGuard(List.of("noreply@"), ClusterGuard.UNLIMITED_DEGREE, null))));
+    }
+}
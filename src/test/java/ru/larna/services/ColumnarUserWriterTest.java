@@ -0,0 +1,96 @@
+package ru.larna.services;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import ru.larna.util.parsers.UserParserImpl;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@DisplayName("Классы ColumnarUserWriter и ColumnarUserReader")
+class ColumnarUserWriterTest {
+    @DisplayName("Преобразование колоночного файла в текст должно давать текстовый вывод слияния")
+    @Test
+    public void shouldConvertToSameText(@TempDir Path directory) throws IOException {
+        String input = MigrationTestData.randomInput(new Random(21), 5000, 4000);
+        Path file = directory.resolve("result.bin");
+        try (IOService io = new ColumnarIOService(new IOServiceImpl(
+                new ByteArrayInputStream(input.getBytes(StandardCharsets.UTF_8)), new ByteArrayOutputStream()), file)) {
+            new UserMigration(io, new UserParserImpl(), new SequentialUserSource()).migrate();
+        }
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        ColumnarUserReader.toText(file, out);
+        assertAll(() -> assertEquals(MigrationTestData.migrate(input, UserMigration::new), out.toString(StandardCharsets.UTF_8)),
+                () -> assertEquals(List.of(file), listFiles(directory)));
+    }
+
+    @DisplayName("Курсор должен обходить пользователей по порядку и по номеру")
+    @Test
+    public void shouldIterateClusters(@TempDir Path directory) throws IOException {
+        Path file = directory.resolve("result.bin");
+        String longEmail = "a".repeat(300) + "@x.ru";
+        try (ColumnarUserWriter writer = new ColumnarUserWriter(file)) {
+            writer.startUser("user1");
+            writer.writeEmail("a@x.ru");
+            writer.writeEmail(longEmail);
+            writer.endUser();
+            writer.startUser("пользователь");
+            writer.writeEmail("b@x.ru");
+            writer.endUser();
+            writer.flush();
+        }
+
+        try (ColumnarUserReader reader = new ColumnarUserReader(file)) {
+            assertAll(() -> assertEquals(2, reader.getClustersCount()),
+                    () -> assertEquals(3, reader.getEmailsCount()));
+
+            assertTrue(reader.next());
+            assertEquals("user1", reader.getName().toString());
+            assertEquals(List.of("a@x.ru", longEmail), emails(reader));
+            assertTrue(reader.next());
+            assertEquals("пользователь", reader.getName().toString());
+            assertEquals(List.of("b@x.ru"), emails(reader));
+            assertFalse(reader.next());
+
+            reader.seek(0);
+            assertEquals("user1", reader.getName().toString());
+            assertThrows(IndexOutOfBoundsException.class, () -> reader.seek(2));
+        }
+    }
+
+    @DisplayName("Незавершенный файл не должен читаться")
+    @Test
+    public void shouldRejectUnfinishedFile(@TempDir Path directory) throws IOException {
+        Path file = directory.resolve("result.bin");
+        try (ColumnarUserWriter writer = new ColumnarUserWriter(file)) {
+            writer.startUser("user1");
+            writer.writeEmail("a@x.ru");
+        }
+
+        assertThrows(IOException.class, () -> new ColumnarUserReader(file));
+    }
+
+    private static List<String> emails(ColumnarUserReader reader) {
+        List<String> emails = new ArrayList<>();
+        while (reader.nextEmail())
+            emails.add(reader.getEmail().toString());
+        return emails;
+    }
+
+    private static List<Path> listFiles(Path directory) throws IOException {
+        try (var files = Files.list(directory)) {
+            return List.of(files.toArray(Path[]::new));
+        }
+    }
+}
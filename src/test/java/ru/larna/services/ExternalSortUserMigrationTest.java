@@ -0,0 +1,89 @@
+package ru.larna.services;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ArgumentsSource;
+import org.junit.jupiter.params.provider.ValueSource;
+import ru.larna.util.structures.ExternalPairSorter;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+@DisplayName("Класс ExternalSortUserMigration")
+class ExternalSortUserMigrationTest {
+    @TempDir
+    Path spillDirectory;
+
+    @DisplayName("Должен корректно определять дубликаты пользователей по повторяющимся у них email и производить слияние")
+    @ParameterizedTest
+    @ArgumentsSource(FakeDataArgumentProvider.class)
+    public void shouldCorrectMigrateUsers(FakeDataArgumentProvider.FakeDataArgument arg) throws IOException {
+        String input = String.join("\n", arg.getFakeData()) + "\n\n";
+
+        String actual = MigrationTestData.migrate(input,
+                (io, parser) -> new ExternalSortUserMigration(io, parser, spillDirectory));
+
+        try (Stream<Path> spillFiles = Files.list(spillDirectory)) {
+            Assertions.assertAll(() -> assertEquals(arg.getExpected().size(), actual.lines().count()),
+                    () -> assertEquals(MigrationTestData.migrate(input, UserMigration::new), actual),
+                    () -> assertEquals(0, spillFiles.count()));
+        }
+    }
+
+    @DisplayName("Со сбросом серий на диск должен выводить тот же результат, что и UserMigration")
+    @ParameterizedTest
+    @ValueSource(ints = {5, 17})
+    public void shouldProduceSameUsersWithSpilledRuns(int seed) throws IOException {
+        String input = MigrationTestData.randomInput(new Random(seed), 20_000, 15_000);
+
+        String actual = MigrationTestData.migrate(input, (io, parser) -> new ExternalSortUserMigration(io, parser,
+                new SequentialUserSource(), spillDirectory, 1));
+
+        try (Stream<Path> spillFiles = Files.list(spillDirectory)) {
+            Assertions.assertAll(() -> assertEquals(MigrationTestData.migrate(input, UserMigration::new), actual),
+                    () -> assertEquals(0, spillFiles.count()));
+        }
+    }
+
+    @DisplayName("Не должен считать повтором email с тем же 64-битным хешем, но другим вторым хешем")
+    @Test
+    public void shouldSeparateEmailsWithSameHash() throws IOException {
+        List<String> references = new ArrayList<>();
+        try (ExternalPairSorter pairs = new ExternalPairSorter(spillDirectory, 1 << 16);
+             ExternalPairSorter repeats = new ExternalPairSorter(spillDirectory, 1 << 16)) {
+            pairs.add(7, (1L << Integer.SIZE) | 0);
+            pairs.add(7, (2L << Integer.SIZE) | 1);
+            pairs.add(7, (1L << Integer.SIZE) | 2);
+            pairs.add(7, (2L << Integer.SIZE) | 3);
+            ExternalSortUserMigration.findRepeats(pairs, repeats);
+            try (ExternalPairSorter.PairCursor cursor = repeats.sorted()) {
+                while (cursor.next())
+                    references.add((cursor.key() >>> Integer.SIZE) + " -> " + (int) cursor.key());
+            }
+        }
+
+        assertEquals(List.of("2 -> 0", "3 -> 1"), references);
+    }
+
+    @DisplayName("Должен выводить email пользователя в порядке слияния, как UserMigration")
+    @Test
+    public void shouldKeepMergeOrderOfEmails() {
+        String input = "u1 -> a@x.ru\n" +
+                "u2 -> c@x.ru\n" +
+                "u3 -> b@x.ru, a@x.ru\n" +
+                "u4 -> c@x.ru, b@x.ru\n\n";
+
+        assertEquals("u1 -> a@x.ru, b@x.ru, c@x.ru\n", MigrationTestData.migrate(input,
+                (io, parser) -> new ExternalSortUserMigration(io, parser, spillDirectory)));
+    }
+}
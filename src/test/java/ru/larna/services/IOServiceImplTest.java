@@ -0,0 +1,40 @@
+package ru.larna.services;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+@DisplayName("Класс IOServiceImpl")
+class IOServiceImplTest {
+    @DisplayName("Должен делить поток на строки так же, как BufferedReader, в том числе при чтении малыми порциями")
+    @Test
+    public void shouldSplitLinesLikeBufferedReader() throws IOException {
+        String content = "user1 -> a@b.ru\r\nuser2 -> c@d.ru\nuser3 -> e@f.ru\r\rлол\n\n" + "x".repeat(200_000)
+                + "\r\nlast line";
+        List<String> expected = new ArrayList<>();
+        try (BufferedReader reader = new BufferedReader(new StringReader(content))) {
+            for (String line = reader.readLine(); line != null; line = reader.readLine())
+                expected.add(line);
+        }
+
+        InputStream in = new ByteArrayInputStream(content.getBytes(StandardCharsets.UTF_8)) {
+            @Override
+            public synchronized int read(byte[] b, int off, int len) {
+                return super.read(b, off, Math.min(len, 7));
+            }
+        };
+        List<String> actual = new ArrayList<>();
+        IOService ioService = new IOServiceImpl(in, new ByteArrayOutputStream());
+        for (String line = ioService.read(); line != null; line = ioService.read())
+            actual.add(line);
+        ioService.close();
+
+        assertEquals(expected, actual);
+    }
+}
@@ -0,0 +1,132 @@
+package ru.larna.services;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+@DisplayName("Класс IncrementalUserMigration")
+class IncrementalUserMigrationTest {
+    @TempDir
+    Path indexDirectory;
+
+    @DisplayName("Первый запуск на пустом индексе должен давать тот же результат, что и UnionFindUserMigration")
+    @Test
+    public void shouldMigrateLikeUnionFindOnEmptyIndex() {
+        String input = MigrationTestData.randomInput(new Random(3), 5000, 4000);
+
+        assertEquals(MigrationTestData.migrate(input, UnionFindUserMigration::new), migrateDelta(input));
+    }
+
+    @DisplayName("Слияние порциями должно приводить к тому же результату, что и слияние всех строк сразу")
+    @ParameterizedTest
+    @ValueSource(ints = {2, 5, 20})
+    public void shouldMergeDeltasLikeFullMigration(int deltasCount) {
+        String input = MigrationTestData.randomInput(new Random(deltasCount), 40_000, 60_000);
+        List<String> lines = input.lines().filter(line -> !line.isEmpty()).collect(Collectors.toList());
+
+        Map<String, String> users = new HashMap<>();
+        int deltaSize = (lines.size() + deltasCount - 1) / deltasCount;
+        for (int from = 0; from < lines.size(); from += deltaSize) {
+            String delta = String.join("\n", lines.subList(from, Math.min(lines.size(), from + deltaSize))) + "\n\n";
+            apply(users, migrateDelta(delta));
+        }
+
+        Map<String, String> expected = new HashMap<>();
+        apply(expected, MigrationTestData.migrate(input, UnionFindUserMigration::new));
+        expected.forEach((name, line) -> assertEquals(line, users.get(name)));
+    }
+
+    @DisplayName("Порция с некорректной строкой не должна изменять индекс")
+    @Test
+    public void shouldRollbackDeltaWithWrongLine() {
+        List<String> lines = MigrationTestData.randomInput(new Random(11), 50_000, 60_000).lines()
+                .filter(line -> !line.isEmpty()).collect(Collectors.toList());
+        String history = String.join("\n", lines.subList(0, 1000)) + "\n\n";
+        String delta = String.join("\n", lines.subList(1000, lines.size())) + "\n\n";
+
+        String expected = migrateDelta(history) + migrateDelta(delta);
+        deleteIndex();
+        String wrongDelta = delta.replace("user_49000 -> ", "user_49000 ->> ");
+
+        String actual = migrateDelta(history);
+        assertEquals("", migrateDelta(wrongDelta));
+        actual += migrateDelta(delta);
+        assertEquals(expected, actual);
+    }
+
+    @DisplayName("Прерванный без commit запуск не должен изменять индекс")
+    @Test
+    public void shouldIgnoreInterruptedRun() throws IOException {
+        List<String> lines = MigrationTestData.randomInput(new Random(13), 50_000, 60_000).lines()
+                .filter(line -> !line.isEmpty()).collect(Collectors.toList());
+        String history = String.join("\n", lines.subList(0, 20_000)) + "\n\n";
+        String delta = String.join("\n", lines.subList(20_000, lines.size())) + "\n\n";
+
+        String expected = migrateDelta(history) + migrateDelta(delta);
+        deleteIndex();
+
+        String actual = migrateDelta(history);
+        try (ClusterIndex index = ClusterIndex.open(indexDirectory)) {
+            merge(index, lines.subList(20_000, lines.size()));
+        }
+        actual += migrateDelta(delta);
+        assertEquals(expected, actual);
+    }
+
+    @DisplayName("Commit, прерванный после записи журнала, должен завершаться при открытии индекса")
+    @Test
+    public void shouldReplayInterruptedCommit() throws IOException {
+        List<String> lines = MigrationTestData.randomInput(new Random(17), 50_000, 60_000).lines()
+                .filter(line -> !line.isEmpty()).collect(Collectors.toList());
+        String history = String.join("\n", lines.subList(0, 20_000)) + "\n\n";
+        String delta = String.join("\n", lines.subList(20_000, 35_000)) + "\n\n";
+        String tail = String.join("\n", lines.subList(35_000, lines.size())) + "\n\n";
+
+        migrateDelta(history);
+        migrateDelta(delta);
+        String expected = migrateDelta(tail);
+        deleteIndex();
+
+        migrateDelta(history);
+        try (ClusterIndex index = ClusterIndex.open(indexDirectory)) {
+            merge(index, lines.subList(20_000, 35_000));
+            index.writeJournal();
+        }
+        assertEquals(expected, migrateDelta(tail));
+    }
+
+    private static void merge(ClusterIndex index, List<String> lines) throws IOException {
+        for (String line : lines) {
+            int separator = line.indexOf(" -> ");
+            index.startUser();
+            for (String email : line.substring(separator + 4).split(", "))
+                index.addEmail(email);
+            index.finishUser(line.substring(0, separator));
+        }
+    }
+
+    private String migrateDelta(String input) {
+        return MigrationTestData.migrate(input, (io, parser) -> new IncrementalUserMigration(io, parser, indexDirectory));
+    }
+
+    private void deleteIndex() {
+        Arrays.stream(indexDirectory.toFile().listFiles()).forEach(file -> assertEquals(true, file.delete()));
+    }
+
+    private static void apply(Map<String, String> users, String output) {
+        output.lines().forEach(line -> users.put(line.substring(0, line.indexOf(" -> ")), line));
+    }
+}
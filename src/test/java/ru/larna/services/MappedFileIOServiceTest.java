@@ -0,0 +1,74 @@
+package ru.larna.services;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+import ru.larna.util.parsers.ScanningUserParser;
+
+import java.io.BufferedReader;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.StringReader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+@DisplayName("Класс MappedFileIOService")
+class MappedFileIOServiceTest {
+    @TempDir
+    Path tempDir;
+
+    @DisplayName("Должен делить файл на строки так же, как BufferedReader, независимо от размера окна отображения")
+    @ParameterizedTest
+    @ValueSource(ints = {16, 17, 64, MappedFileIOService.DEFAULT_WINDOW_SIZE})
+    public void shouldSplitLinesLikeBufferedReader(int windowSize) throws IOException {
+        String content = "user1 -> a@b.ru\r\nuser2 -> c@d.ru\nuser3 -> e@f.ru\r\rлол\n\nlast line";
+        Path file = Files.writeString(tempDir.resolve("input.txt"), content);
+
+        List<String> expected = new ArrayList<>();
+        try (BufferedReader reader = new BufferedReader(new StringReader(content))) {
+            for (String line = reader.readLine(); line != null; line = reader.readLine())
+                expected.add(line);
+        }
+
+        List<String> actual = new ArrayList<>();
+        try (MappedFileIOService ioService = new MappedFileIOService(file, new ByteArrayOutputStream(), windowSize)) {
+            for (CharSequence line = ioService.readLine(); line != null; line = ioService.readLine())
+                actual.add(line.toString());
+        }
+        assertEquals(expected, actual);
+    }
+
+    @DisplayName("Должен выбрасывать исключение, если строка не помещается в окно отображения")
+    @Test
+    public void shouldThrowOnLineLongerThanWindow() throws IOException {
+        Path file = Files.writeString(tempDir.resolve("input.txt"), "user1 -> a@b.ru\nuser2 -> looooooong@b.ru\n");
+
+        try (MappedFileIOService ioService = new MappedFileIOService(file, new ByteArrayOutputStream(), 20)) {
+            assertEquals("user1 -> a@b.ru", ioService.read());
+            assertThrows(IOException.class, ioService::readLine);
+        }
+    }
+
+    @DisplayName("Должен давать тот же результат слияния, что и чтение потока, при разборе строк без копирования")
+    @Test
+    public void shouldMigrateSameAsStreamInput() throws IOException {
+        String input = MigrationTestData.randomInput(new Random(7), 3000, 2500);
+        Path file = Files.writeString(tempDir.resolve("input.txt"), input);
+        String expected = MigrationTestData.migrate(input, UserMigration::new);
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try (MappedFileIOService ioService = new MappedFileIOService(file, out, 4096)) {
+            new UserMigration(ioService, new ScanningUserParser()).migrate();
+        }
+        assertEquals(expected, out.toString(StandardCharsets.UTF_8));
+    }
+}
@@ -0,0 +1,41 @@
+package ru.larna.services;
+
+import ru.larna.util.parsers.UserParser;
+import ru.larna.util.parsers.UserParserImpl;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Random;
+import java.util.function.BiFunction;
+
+/**
+ * Генерация входных данных и запуск миграции на них для сравнения алгоритмов слияния
+ */
+final class MigrationTestData {
+    private MigrationTestData() {
+    }
+
+    static String randomInput(Random random, int usersCount, int emailsCount) {
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < usersCount; i++) {
+            sb.append("user_").append(i).append(" -> ");
+            int count = 1 + random.nextInt(4);
+            for (int j = 0; j < count; j++) {
+                if (j > 0)
+                    sb.append(", ");
+                sb.append("email_").append(random.nextInt(emailsCount)).append("@gmail.com");
+            }
+            sb.append('\n');
+        }
+        return sb.append('\n').toString();
+    }
+
+    static String migrate(String input, BiFunction<IOService, UserParser, Migration> migrationFactory) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try (IOService io = new IOServiceImpl(new ByteArrayInputStream(input.getBytes(StandardCharsets.UTF_8)), out)) {
+            migrationFactory.apply(io, new UserParserImpl()).migrate();
+        }
+        return out.toString(StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,84 @@
+package ru.larna.services;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+import ru.larna.util.parsers.UserParserImpl;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.stream.Collectors;
+import java.util.zip.GZIPOutputStream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+@DisplayName("Класс MultiFileIOService")
+class MultiFileIOServiceTest {
+    @TempDir
+    Path tempDir;
+
+    @DisplayName("Должен выдавать строки шардов в порядке списка файлов независимо от кол-ва потоков")
+    @ParameterizedTest
+    @ValueSource(ints = {1, 3, 8})
+    public void shouldMigrateShardsLikeConcatenatedInput(int threads) throws IOException {
+        String input = MigrationTestData.randomInput(new Random(threads), 10_000, 8000);
+        List<String> lines = input.lines().filter(line -> !line.isEmpty()).collect(Collectors.toList());
+        List<Path> files = new ArrayList<>();
+        int shardSize = lines.size() / 7 + 1;
+        for (int from = 0, shard = 0; from < lines.size(); from += shardSize, shard++) {
+            String content = String.join("\n", lines.subList(from, Math.min(from + shardSize, lines.size()))) + "\n";
+            files.add(shard % 2 == 0 ? writeGzip("shard-" + shard + ".txt.gz", content)
+                    : Files.writeString(tempDir.resolve("shard-" + shard + ".txt"), content));
+        }
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try (IOService io = new MultiFileIOService(files, out, threads, 100)) {
+            new UserMigration(io, new UserParserImpl()).migrate();
+        }
+        assertEquals(MigrationTestData.migrate(input, UserMigration::new), out.toString(StandardCharsets.UTF_8));
+    }
+
+    @DisplayName("Шард должен завершаться пустой строкой")
+    @Test
+    public void shouldStopShardAtEmptyLine() throws IOException {
+        List<Path> files = List.of(writeGzip("a.gz", "user1 -> a@x.ru\n\nuser2 -> b@x.ru\n"),
+                Files.writeString(tempDir.resolve("b.txt"), "user3 -> c@x.ru"));
+
+        List<String> lines = new ArrayList<>();
+        try (IOService io = new MultiFileIOService(files, OutputStream.nullOutputStream(), 2)) {
+            for (String line = io.read(); line != null; line = io.read())
+                lines.add(line);
+        }
+        assertEquals(List.of("user1 -> a@x.ru", "user3 -> c@x.ru"), lines);
+    }
+
+    @DisplayName("Должен отклонять неподдерживаемый формат сжатия и передавать ошибку чтения шарда")
+    @Test
+    public void shouldFailOnUnsupportedOrBrokenShard() throws IOException {
+        Path zstd = Files.writeString(tempDir.resolve("a.zst"), "");
+        Path broken = Files.writeString(tempDir.resolve("b.gz"), "not gzip");
+
+        assertThrows(IOException.class, () -> new MultiFileIOService(List.of(zstd), OutputStream.nullOutputStream(), 1));
+        try (IOService io = new MultiFileIOService(List.of(broken), OutputStream.nullOutputStream(), 1)) {
+            assertThrows(IOException.class, io::read);
+        }
+    }
+
+    private Path writeGzip(String name, String content) throws IOException {
+        Path file = tempDir.resolve(name);
+        try (OutputStream out = new GZIPOutputStream(Files.newOutputStream(file))) {
+            out.write(content.getBytes(StandardCharsets.UTF_8));
+        }
+        return file;
+    }
+}
@@ -0,0 +1,56 @@
+package ru.larna.services;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+import ru.larna.util.parsers.UserParserImpl;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTimeoutPreemptively;
+import static org.mockito.BDDMockito.given;
+import static org.mockito.Mockito.mock;
+
+@DisplayName("Класс PipelinedUserSource")
+class PipelinedUserSourceTest {
+    @DisplayName("Должен выдавать тот же результат, что и последовательная обработка")
+    @ParameterizedTest
+    @ValueSource(ints = {1, 3, 8})
+    public void shouldProduceSameResultAsSequentialSource(int threads) {
+        String input = MigrationTestData.randomInput(new Random(threads), 5000, 4000);
+        String expected = MigrationTestData.migrate(input, UserMigration::new);
+
+        assertEquals(expected, MigrationTestData.migrate(input,
+                (io, parser) -> new UserMigration(io, parser, new PipelinedUserSource(threads, 7))));
+        assertEquals(expected, MigrationTestData.migrate(input,
+                (io, parser) -> new UnionFindUserMigration(io, parser, new PipelinedUserSource(threads, 64))));
+    }
+
+    @DisplayName("Не должен выводить результат, если встретилась некорректная строка")
+    @Test
+    public void shouldNotWriteResultOnWrongLine() {
+        String input = MigrationTestData.randomInput(new Random(1), 3000, 2000)
+                .replaceFirst("user_2000 -> ", "user_2000 ->> ");
+
+        assertEquals("", MigrationTestData.migrate(input,
+                (io, parser) -> new UserMigration(io, parser, new PipelinedUserSource(4, 16))));
+    }
+
+    @DisplayName("Должен завершаться ошибкой, а не зависать, если чтение выбросило непроверяемое исключение")
+    @Test
+    public void shouldFailOnUncheckedReadError() throws IOException {
+        IOService ioService = mock(IOService.class);
+        given(ioService.read()).willReturn("user1 -> a@x.ru").willThrow(new IllegalStateException("broken input"));
+
+        IllegalStateException e = assertTimeoutPreemptively(Duration.ofSeconds(10), () -> assertThrows(
+                IllegalStateException.class, () -> new PipelinedUserSource(2, 1).readUsers(ioService,
+                        new UserParserImpl(), user -> {
+                        })));
+        assertEquals("broken input", e.getMessage());
+    }
+}
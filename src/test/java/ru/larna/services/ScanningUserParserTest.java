@@ -0,0 +1,75 @@
+package ru.larna.services;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+import ru.larna.model.User;
+import ru.larna.util.parsers.ScanningUserParser;
+import ru.larna.util.parsers.UserParser;
+import ru.larna.util.parsers.UserParserImpl;
+import ru.larna.util.parsers.UserWrongFormatException;
+
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@DisplayName("Класс ScanningUserParser")
+class ScanningUserParserTest {
+    private static final String[] FRAGMENTS = {"user1", "u_2", "Ab9", " ", "  ", "\t", " ", "\u0085", "->", "-", ">",
+            ",", ", ", " ,", "@", ".", "..", "a", "z", "Z", "0", "_", "/", ":", "|", "ru", "com", "gmail",
+            "test@gmail.com", "x.y@mail.ru", "a@b.c", "a@b.museum", "a@b.abcdefg", "a@b_c.co.uk", "@b.com", "a@.com"};
+    private final UserParser parser = new ScanningUserParser();
+    private final UserParser regexParser = new UserParserImpl();
+
+    @DisplayName("Должен корректно парсить строку и возвращать объект пользователя")
+    @ParameterizedTest
+    @ValueSource(strings = {"user1 -> user1@mail.ru, test@gmail.com",
+            "user2 -> user2@mail.ru ,test2@gmail.com , sjdfhskh@vncjd.ru", " user3->a@b.ru,", "user4 -> a@b.ru, a@b.ru"})
+    public void shouldCorrectParseStringWithUserAndEmails(String str) {
+        User actual = parser.parse(str);
+        User expected = regexParser.parse(str);
+        assertAll(() -> assertEquals(expected, actual),
+                () -> assertEquals(expected.toString(), actual.toString()));
+    }
+
+    @DisplayName("Должен выбрасывать исключение если строка не валидная")
+    @ParameterizedTest
+    @ValueSource(strings = {" -> user1@mail.ru, test@gmail.com", "user1 -> ", "user user@gmail.com",
+            "user1 -> user@normal.com, user\\user@gmail.com", "user1 -> user@normal.com user@gmail.com",
+            "user1 -> a@b.ru,, c@d.ru", "user1 -> A@b.ru", "user1 -> a@b.abcdefg"})
+    public void shouldThrowExceptionIfUserIsEmpty(String str) {
+        UserWrongFormatException expected = assertThrows(UserWrongFormatException.class, () -> regexParser.parse(str));
+        UserWrongFormatException actual = assertThrows(UserWrongFormatException.class, () -> parser.parse(str));
+        assertEquals(expected.getMessage(), actual.getMessage());
+    }
+
+    @DisplayName("Должен принимать и отклонять те же строки, что и UserParserImpl")
+    @Test
+    public void shouldBehaveAsRegexParser() {
+        Random random = new Random(42);
+        for (int i = 0; i < 200_000; i++) {
+            String str = randomLine(random);
+            String expected = parseResult(regexParser, str);
+            assertEquals(expected, parseResult(parser, str), () -> "Line: '" + str + "'");
+        }
+    }
+
+    private static String randomLine(Random random) {
+        StringBuilder sb = new StringBuilder();
+        if (random.nextInt(4) > 0)
+            sb.append("user").append(random.nextInt(10)).append(" -> ");
+        int count = 1 + random.nextInt(8);
+        for (int i = 0; i < count; i++)
+            sb.append(FRAGMENTS[random.nextInt(FRAGMENTS.length)]);
+        return sb.toString();
+    }
+
+    private static String parseResult(UserParser parser, String str) {
+        try {
+            return parser.parse(str).toString();
+        } catch (RuntimeException e) {
+            return e.getClass().getSimpleName() + ": " + e.getMessage();
+        }
+    }
+}
@@ -0,0 +1,66 @@
+package ru.larna.services;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ArgumentsSource;
+import org.junit.jupiter.params.provider.CsvSource;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+@DisplayName("Класс ShardedUserMigration")
+class ShardedUserMigrationTest {
+    @DisplayName("Должен корректно определять дубликаты пользователей по повторяющимся у них email и производить слияние")
+    @ParameterizedTest
+    @ArgumentsSource(FakeDataArgumentProvider.class)
+    public void shouldCorrectMigrateUsers(FakeDataArgumentProvider.FakeDataArgument arg) {
+        String input = String.join("\n", arg.getFakeData()) + "\n\n";
+        String expected = String.join(System.lineSeparator(), arg.getExpected()) + System.lineSeparator();
+
+        assertEquals(normalize(expected),
+                normalize(MigrationTestData.migrate(input, (io, parser) -> new ShardedUserMigration(io, parser, 2, 1))));
+    }
+
+    @DisplayName("Должен выводить email пользователя в порядке их первого появления")
+    @Test
+    public void shouldWriteEmailsInOrderOfFirstAppearance() {
+        String input = "user_0 -> email_1@gmail.com, email_2@gmail.com\n" +
+                "user_1 -> email_3@gmail.com, email_4@gmail.com\n" +
+                "user_3 -> email_7@gmail.com, email_1@gmail.com\n" +
+                "user_5 -> email_2@gmail.com, email_3@gmail.com\n\n";
+        String expected = "user_0 -> email_1@gmail.com, email_2@gmail.com, email_3@gmail.com, email_4@gmail.com, " +
+                "email_7@gmail.com" + System.lineSeparator();
+
+        assertEquals(expected, MigrationTestData.migrate(input, (io, parser) -> new ShardedUserMigration(io, parser, 2, 2)));
+    }
+
+    @DisplayName("Должен находить тех же пользователей с теми же email, что и UserMigration")
+    @ParameterizedTest
+    @CsvSource({"1, 1, 5000", "4, 3, 100", "8, 5, 1"})
+    public void shouldFindSameUsersAsUserMigration(int threads, int seed, int chunkSize) {
+        String input = MigrationTestData.randomInput(new Random(seed), 3000, 2500);
+
+        assertEquals(normalize(MigrationTestData.migrate(input, UserMigration::new)),
+                normalize(MigrationTestData.migrate(input, (io, parser) -> new ShardedUserMigration(io, parser, threads, chunkSize))));
+    }
+
+    /**
+     * Представить результат в виде, не зависящем от порядка email пользователя
+     */
+    static List<String> normalize(String output) {
+        return output.lines()
+                .map(line -> {
+                    String[] parts = line.split(" -> ");
+                    Set<String> emails = new TreeSet<>(Arrays.asList(parts[1].split(", ")));
+                    return parts[0] + " -> " + emails;
+                })
+                .collect(Collectors.toList());
+    }
+}
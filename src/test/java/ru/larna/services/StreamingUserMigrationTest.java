@@ -0,0 +1,115 @@
+package ru.larna.services;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import ru.larna.model.Email;
+import ru.larna.util.parsers.UserParserImpl;
+import ru.larna.util.parsers.UserWrongFormatException;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Flow;
+import java.util.concurrent.SubmissionPublisher;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@DisplayName("Класс StreamingUserMigration")
+class StreamingUserMigrationTest {
+    @DisplayName("Должен давать тот же результат, что и UnionFindUserMigration")
+    @Test
+    public void shouldMigrateLikeUnionFind() {
+        String input = MigrationTestData.randomInput(new Random(13), 20_000, 15_000);
+
+        assertEquals(MigrationTestData.migrate(input, UnionFindUserMigration::new),
+                MigrationTestData.migrate(input, StreamingUserMigration::new));
+    }
+
+    @DisplayName("Должен запрашивать строки порциями и отвечать на запросы во время слияния")
+    @Test
+    public void shouldRequestLinesAndAnswerQueriesWhileMerging() {
+        StreamingUserMigration migration = new StreamingUserMigration(null, new UserParserImpl(), 4);
+        TestSubscription subscription = new TestSubscription();
+        migration.onSubscribe(subscription);
+        assertEquals(4, subscription.requested);
+
+        migration.onNext("user1 -> a@x.ru");
+        migration.onNext("user2 -> b@x.ru");
+        assertAll(() -> assertEquals(6, subscription.requested),
+                () -> assertEquals(2, migration.getActualUsersCount()),
+                () -> assertEquals("user2 -> b@x.ru", migration.findUser("b@x.ru").toString()),
+                () -> assertNull(migration.findUser("c@x.ru")));
+
+        migration.onNext("user3 -> c@x.ru, b@x.ru, a@x.ru");
+        assertAll(() -> assertEquals(1, migration.getActualUsersCount()),
+                () -> assertEquals(3, migration.getProcessedLines()),
+                () -> assertEquals(List.of("a@x.ru", "b@x.ru", "c@x.ru"), migration.findUser("c@x.ru").getEmails()
+                        .stream().map(Email::getEmail).collect(Collectors.toList())));
+
+        migration.onNext("");
+        assertAll(() -> assertTrue(subscription.cancelled),
+                () -> assertTrue(migration.getCompletion().isDone()));
+    }
+
+    @DisplayName("Некорректная строка должна отменять подписку и завершать слияние с ошибкой")
+    @Test
+    public void shouldFailOnWrongLine() {
+        StreamingUserMigration migration = new StreamingUserMigration(null, new UserParserImpl(), 4);
+        TestSubscription subscription = new TestSubscription();
+        migration.onSubscribe(subscription);
+
+        migration.onNext("user1 -> a@x.ru");
+        migration.onNext("user2 ->> b@x.ru");
+        migration.onNext("user3 -> c@x.ru");
+
+        ExecutionException e = assertThrows(ExecutionException.class, () -> migration.getCompletion().get());
+        assertAll(() -> assertTrue(e.getCause() instanceof UserWrongFormatException),
+                () -> assertTrue(subscription.cancelled),
+                () -> assertEquals(1, migration.getProcessedLines()));
+    }
+
+    @DisplayName("Должен собирать строки из кусков байтов, разрезанных в любом месте")
+    @Test
+    public void shouldMergeLinesFromChunks() throws Exception {
+        String input = MigrationTestData.randomInput(new Random(17), 3000, 2000).replace("\n", "\r\n");
+        StreamingUserMigration migration = new StreamingUserMigration(null, new UserParserImpl());
+
+        byte[] bytes = input.getBytes(StandardCharsets.UTF_8);
+        Random random = new Random(1);
+        try (SubmissionPublisher<ByteBuffer> publisher = new SubmissionPublisher<>()) {
+            publisher.subscribe(migration.getChunkSubscriber());
+            for (int from = 0; from < bytes.length && !migration.getCompletion().isDone(); ) {
+                int length = Math.min(1 + random.nextInt(100), bytes.length - from);
+                publisher.submit(ByteBuffer.wrap(bytes, from, length));
+                from += length;
+            }
+        }
+        migration.getCompletion().get(10, TimeUnit.SECONDS);
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        BufferedUserWriter writer = new BufferedUserWriter(Channels.newChannel(out), ByteBuffer.allocate(64));
+        migration.saveResult(writer);
+        assertEquals(MigrationTestData.migrate(input, UnionFindUserMigration::new), out.toString(StandardCharsets.UTF_8));
+    }
+
+    private static class TestSubscription implements Flow.Subscription {
+        private long requested;
+        private boolean cancelled;
+
+        @Override
+        public void request(long n) {
+            requested += n;
+        }
+
+        @Override
+        public void cancel() {
+            cancelled = true;
+        }
+    }
+}
@@ -0,0 +1,106 @@
+package ru.larna.services;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+import ru.larna.model.User;
+import ru.larna.util.parsers.*;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@DisplayName("Класс SwarUserParser")
+class SwarUserParserTest {
+    private static final String[] FRAGMENTS = {"user1", "u_2", "Ab9", " ", "  ", "\t", " ", "\u0085", "->", "-", ">",
+            ",", ", ", " ,", ",,", "@", ".", "..", "a", "z", "Z", "0", "_", "/", ":", "|", "ru", "com", "gmail",
+            "test@gmail.com", "x.y@mail.ru", "a@b.c", "a@b.museum", "a@b.abcdefg", "a@b_c.co.uk", "@b.com", "a@.com", "+", "Foo+x@Gmail.com",
+            "a@b+c.ru"};
+    private final UserParser parser = new SwarUserParser();
+    private final UserParser scanningParser = new ScanningUserParser();
+    private final UserParser regexParser = new UserParserImpl();
+
+    @DisplayName("Должен корректно парсить строку и участок буфера и возвращать объект пользователя")
+    @ParameterizedTest
+    @ValueSource(strings = {"user1 -> user1@mail.ru, test@gmail.com",
+            "user2 -> user2@mail.ru ,test2@gmail.com , sjdfhskh@vncjd.ru", " user3->a@b.ru,", "user4 -> a@b.ru, a@b.ru"})
+    public void shouldCorrectParseStringWithUserAndEmails(String str) {
+        User expected = regexParser.parse(str);
+        assertAll(() -> assertEquals(expected.toString(), parser.parse(str).toString()),
+                () -> assertEquals(expected.toString(), parser.parse(slice(str, ByteOrder.BIG_ENDIAN)).toString()));
+    }
+
+    @DisplayName("Должен принимать и отклонять те же строки, что и UserParserImpl и ScanningUserParser")
+    @ParameterizedTest
+    @ValueSource(booleans = {false, true})
+    public void shouldBehaveAsScanningParsers(boolean relaxedEmails) {
+        UserParser parser = new SwarUserParser(relaxedEmails);
+        UserParser scanningParser = new ScanningUserParser(relaxedEmails);
+        UserParser regexParser = new UserParserImpl(relaxedEmails);
+        Random random = new Random(42);
+        for (int i = 0; i < 200_000; i++) {
+            String str = randomLine(random);
+            LineSlice slice = slice(str, i % 2 == 0 ? ByteOrder.BIG_ENDIAN : ByteOrder.LITTLE_ENDIAN);
+            assertAll(() -> assertEquals(parseResult(regexParser, str), parseResult(parser, str), "Line: '" + str + "'"),
+                    () -> assertEquals(parseResult(scanningParser, slice), parseResult(parser, slice), "Line: '" + str + "'"));
+        }
+    }
+
+    @DisplayName("Должен находить конец строки, разделители и '@' по 8 байт так же, как посимвольный поиск")
+    @Test
+    public void shouldFindDelimiters() {
+        byte[] bytes = "user1 -> a@b.ru,c@d.ru , e@f.ru,\rnext line\n".getBytes(StandardCharsets.US_ASCII);
+        ByteBuffer buffer = ByteBuffer.wrap(bytes);
+        DelimiterIndex index = new DelimiterIndex();
+        index.scan(buffer, 0, bytes.length);
+
+        assertAll(() -> assertEquals(32, DelimiterIndex.indexOfLineEnd(buffer, 0, bytes.length)),
+                () -> assertEquals(bytes.length - 1, DelimiterIndex.indexOfLineEnd(buffer, 33, bytes.length)),
+                () -> assertEquals(20, DelimiterIndex.indexOfLineEnd(buffer, 0, 20)),
+                () -> assertEquals(7, index.getArrow()),
+                () -> assertEquals(3, index.getCommasCount()),
+                () -> assertEquals(15, index.getComma(0)),
+                () -> assertEquals(23, index.getComma(1)),
+                () -> assertEquals(31, index.getComma(2)),
+                () -> assertEquals(3, index.getAtsCount()),
+                () -> assertEquals(10, index.getAt(0)),
+                () -> assertEquals(17, index.getAt(1)),
+                () -> assertEquals(26, index.getAt(2)));
+    }
+
+    /**
+     * Строка в середине буфера, чтобы слова сканирования не совпадали с границами строки
+     */
+    private static LineSlice slice(String str, ByteOrder order) {
+        byte[] line = str.getBytes(StandardCharsets.UTF_8);
+        ByteBuffer buffer = ByteBuffer.allocate(line.length + 6).order(order);
+        buffer.put(3, (byte) '>');
+        buffer.put(4, (byte) ',');
+        buffer.position(5);
+        buffer.put(line);
+        buffer.put((byte) ',');
+        return new LineSlice(buffer, 5, line.length);
+    }
+
+    private static String randomLine(Random random) {
+        StringBuilder sb = new StringBuilder();
+        if (random.nextInt(4) > 0)
+            sb.append("user").append(random.nextInt(10)).append(" -> ");
+        int count = 1 + random.nextInt(8);
+        for (int i = 0; i < count; i++)
+            sb.append(FRAGMENTS[random.nextInt(FRAGMENTS.length)]);
+        return sb.toString();
+    }
+
+    private static String parseResult(UserParser parser, CharSequence str) {
+        try {
+            return parser.parse(str).toString();
+        } catch (RuntimeException e) {
+            return e.getClass().getSimpleName() + ": " + e.getMessage();
+        }
+    }
+}
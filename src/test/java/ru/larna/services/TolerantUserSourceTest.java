@@ -0,0 +1,59 @@
+package ru.larna.services;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+@DisplayName("Класс TolerantUserSource")
+class TolerantUserSourceTest {
+    private static final String INPUT = "user1 -> a@x.ru\n" +
+            "user2 b@x.ru\n" +
+            "user3 -> c@x.ru, a@x.ru\n" +
+            "user4 -> wrong@email\n" +
+            "user5 -> d@x.ru\n\n";
+
+    @DisplayName("Должен пропускать некорректные строки и записывать их с номером строки и причиной")
+    @Test
+    public void shouldSkipAndRejectWrongLines(@TempDir Path directory) throws IOException {
+        Path rejectFile = directory.resolve("rejects.txt");
+        String expected = "user1 -> a@x.ru, c@x.ru\nuser5 -> d@x.ru\n";
+        List<String> expectedRejects = List.of("2\twrong-format\tuser2 b@x.ru", "4\twrong-email\tuser4 -> wrong@email");
+
+        assertEquals(expected, MigrationTestData.migrate(INPUT, (io, parser) -> new UserMigration(io, parser,
+                new TolerantUserSource(new SequentialUserSource(), rejectFile))));
+        assertEquals(expectedRejects, Files.readAllLines(rejectFile));
+
+        assertEquals(expected, MigrationTestData.migrate(INPUT, (io, parser) -> new UnionFindUserMigration(io, parser,
+                new TolerantUserSource(new PipelinedUserSource(3, 2), rejectFile))));
+        assertEquals(expectedRejects, Files.readAllLines(rejectFile));
+    }
+
+    @DisplayName("Не должен выводить результат при превышении допустимого кол-ва отклоненных строк")
+    @Test
+    public void shouldAbortWhenRejectsExceedBudget(@TempDir Path directory) throws IOException {
+        Path rejectFile = directory.resolve("rejects.txt");
+
+        assertEquals("", MigrationTestData.migrate(INPUT, (io, parser) -> new UserMigration(io, parser,
+                new TolerantUserSource(new SequentialUserSource(), rejectFile, 1))));
+        assertEquals(2, Files.readAllLines(rejectFile).size());
+    }
+
+    @DisplayName("На корректных данных результат не должен отличаться, файл отклоненных строк - пустой")
+    @Test
+    public void shouldNotChangeResultOfCleanInput(@TempDir Path directory) throws IOException {
+        String input = MigrationTestData.randomInput(new Random(5), 5000, 4000);
+        Path rejectFile = directory.resolve("rejects.txt");
+
+        assertEquals(MigrationTestData.migrate(input, UserMigration::new), MigrationTestData.migrate(input,
+                (io, parser) -> new UserMigration(io, parser, new TolerantUserSource(new SequentialUserSource(), rejectFile, 0))));
+        assertEquals(0, Files.size(rejectFile));
+    }
+}
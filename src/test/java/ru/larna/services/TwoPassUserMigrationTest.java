@@ -0,0 +1,47 @@
+package ru.larna.services;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.io.TempDir;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ArgumentsSource;
+import org.junit.jupiter.params.provider.ValueSource;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Random;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+@DisplayName("Класс TwoPassUserMigration")
+class TwoPassUserMigrationTest {
+    @TempDir
+    Path spillDirectory;
+
+    @DisplayName("Должен корректно определять дубликаты пользователей по повторяющимся у них email и производить слияние")
+    @ParameterizedTest
+    @ArgumentsSource(FakeDataArgumentProvider.class)
+    public void shouldCorrectMigrateUsers(FakeDataArgumentProvider.FakeDataArgument arg) throws IOException {
+        String input = String.join("\n", arg.getFakeData()) + "\n\n";
+        String expected = String.join(System.lineSeparator(), arg.getExpected()) + System.lineSeparator();
+
+        String actual = MigrationTestData.migrate(input,
+                (io, parser) -> new TwoPassUserMigration(io, parser, spillDirectory));
+
+        try (Stream<Path> spillFiles = Files.list(spillDirectory)) {
+            Assertions.assertAll(() -> assertEquals(expected, actual),
+                    () -> assertEquals(0, spillFiles.count()));
+        }
+    }
+
+    @DisplayName("Должен выдавать тот же результат, что и UserMigration")
+    @ParameterizedTest
+    @ValueSource(ints = {3, 11})
+    public void shouldProduceSameResultAsUserMigration(int seed) {
+        String input = MigrationTestData.randomInput(new Random(seed), 2000, 1500);
+        assertEquals(MigrationTestData.migrate(input, UserMigration::new),
+                MigrationTestData.migrate(input, (io, parser) -> new TwoPassUserMigration(io, parser, spillDirectory)));
+    }
+}
@@ -0,0 +1,67 @@
+package ru.larna.services;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ArgumentsSource;
+import org.junit.jupiter.params.provider.ValueSource;
+import org.mockito.Answers;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import ru.larna.util.parsers.UserParser;
+import ru.larna.util.parsers.UserParserImpl;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.mockito.BDDMockito.given;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+
+@DisplayName("Класс UnionFindUserMigration")
+@ExtendWith(MockitoExtension.class)
+class UnionFindUserMigrationTest {
+    @Mock(answer = Answers.CALLS_REAL_METHODS)
+    private IOService ioService;
+    private UnionFindUserMigration userMigration;
+    private final UserParser parser = new UserParserImpl();
+
+    @BeforeEach
+    public void init() {
+        userMigration = new UnionFindUserMigration(ioService, parser);
+    }
+
+    @DisplayName("Должен корректно определять дубликаты пользователей по повторяющимся у них email и производить слияние")
+    @ParameterizedTest
+    @ArgumentsSource(FakeDataArgumentProvider.class)
+    public void shouldCorrectMigrateUsers(FakeDataArgumentProvider.FakeDataArgument arg) throws IOException {
+        List<String> fakeData = arg.getFakeData();
+        int[] readIndex = {0};
+        given(ioService.read()).willAnswer(invocation -> readIndex[0] < fakeData.size() ? fakeData.get(readIndex[0]++) : "");
+
+        final int expectedUsersCount = arg.getExpected().size();
+        userMigration.migrate();
+
+        ArgumentCaptor<String> argumentCaptor = ArgumentCaptor.forClass(String.class);
+        verify(ioService, times(expectedUsersCount)).write(argumentCaptor.capture());
+
+        Assertions.assertAll(() -> assertEquals(expectedUsersCount, userMigration.getActualUsersCount()),
+                () -> assertEquals(arg.getExpected(), argumentCaptor.getAllValues()));
+    }
+
+    @DisplayName("Должен выдавать тот же результат, что и UserMigration")
+    @ParameterizedTest
+    @ValueSource(ints = {1, 7, 42, 2021})
+    public void shouldProduceSameResultAsUserMigration(int seed) {
+        String input = MigrationTestData.randomInput(new Random(seed), 2000, 1500);
+        String expected = MigrationTestData.migrate(input, UserMigration::new);
+        Assertions.assertAll(() -> assertFalse(expected.isEmpty()),
+                () -> assertEquals(expected, MigrationTestData.migrate(input, UnionFindUserMigration::new)));
+    }
+}
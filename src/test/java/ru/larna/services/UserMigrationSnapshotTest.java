@@ -0,0 +1,60 @@
+package ru.larna.services;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import ru.larna.model.User;
+import ru.larna.util.parsers.UserParser;
+import ru.larna.util.parsers.UserParserImpl;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@DisplayName("Класс UserMigration со снимками состояния")
+class UserMigrationSnapshotTest {
+    @TempDir
+    Path tempDir;
+
+    @DisplayName("Запуск, продолженный из снимка, должен давать тот же результат без повторного разбора строк")
+    @Test
+    public void shouldResumeFromSnapshot() throws IOException {
+        String input = MigrationTestData.randomInput(new Random(5), 5000, 4000);
+        String expected = MigrationTestData.migrate(input, UserMigration::new);
+        Path snapshotFile = tempDir.resolve("migration.snapshot");
+
+        String brokenInput = input.replace("user_4500 -> email", "user_4500 -> email@");
+        assertEquals("", migrate(Files.writeString(tempDir.resolve("broken.txt"), brokenInput), snapshotFile, new AtomicInteger()));
+        assertTrue(Files.exists(snapshotFile));
+
+        AtomicInteger parsedLines = new AtomicInteger();
+        String actual = migrate(Files.writeString(tempDir.resolve("input.txt"), input), snapshotFile, parsedLines);
+
+        assertAll(() -> assertEquals(expected, actual),
+                () -> assertEquals(1000, parsedLines.get()),
+                () -> assertFalse(Files.exists(snapshotFile)));
+    }
+
+    private static String migrate(Path inputFile, Path snapshotFile, AtomicInteger parsedLines) throws IOException {
+        UserParser parser = new UserParser() {
+            private final UserParser delegate = new UserParserImpl();
+
+            @Override
+            public User parse(String str) {
+                parsedLines.incrementAndGet();
+                return delegate.parse(str);
+            }
+        };
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try (IOService io = new MappedFileIOService(inputFile, out)) {
+            new UserMigration(io, parser, new SequentialUserSource(), snapshotFile, 1000).migrate();
+        }
+        return out.toString(StandardCharsets.UTF_8);
+    }
+}
@@ -6,6 +6,7 @@ import org.junit.jupiter.api.DisplayName;
 import org.junit.jupiter.api.extension.ExtendWith;
 import org.junit.jupiter.params.ParameterizedTest;
 import org.junit.jupiter.params.provider.ArgumentsSource;
+import org.mockito.Answers;
 import org.mockito.ArgumentCaptor;
 import org.mockito.Mock;
 import org.mockito.invocation.InvocationOnMock;
@@ -30,7 +31,7 @@ import static org.mockito.Mockito.verify;
 @DisplayName("Класс UserMigration")
 @ExtendWith(MockitoExtension.class)
 class UserMigrationTest {
-    @Mock
+    @Mock(answer = Answers.CALLS_REAL_METHODS)
     private IOService ioService;
     private UserMigration userMigration;
     private final UserParser parser = new UserParserImpl();
@@ -0,0 +1,63 @@
+package ru.larna.utils.canonicalizers;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.CsvSource;
+import ru.larna.services.IOService;
+import ru.larna.services.IOServiceImpl;
+import ru.larna.services.UserMigration;
+import ru.larna.util.canonicalizers.EmailCanonicalizer;
+import ru.larna.util.parsers.CanonicalizingUserParser;
+import ru.larna.util.parsers.ScanningUserParser;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@DisplayName("Класс EmailCanonicalizer")
+class EmailCanonicalizerTest {
+    private final EmailCanonicalizer canonicalizer = new EmailCanonicalizer(EmailCanonicalizer.defaultRules(), 4);
+
+    @DisplayName("Должен приводить домен к нижнему регистру и применять правила провайдеров")
+    @ParameterizedTest
+    @CsvSource({"Foo@Mail.Ru, Foo@mail.ru",
+            "F.o.o+tag@GMail.com, foo@gmail.com",
+            "foo.bar@googlemail.com, foobar@gmail.com",
+            "foo.bar@yandex.ru, foo.bar@yandex.ru",
+            "foo, foo"})
+    public void shouldCanonicalize(String email, String expected) {
+        assertEquals(expected, canonicalizer.canonicalize(email));
+    }
+
+    @DisplayName("Должен возвращать канонический адрес без копирования при любом заполнении кэша")
+    @Test
+    public void shouldReturnCanonicalEmailAsIs() {
+        for (int i = 0; i < 100; i++) {
+            String email = "user" + i + "@domain" + i + ".ru";
+            assertSame(email, canonicalizer.canonicalize(email));
+            assertEquals("user" + i + "@domain" + i + ".ru", canonicalizer.canonicalize("user" + i + "@Domain" + i + ".RU"));
+        }
+    }
+
+    @DisplayName("Слияние должно выполняться по каноническому виду, а выводиться первое написание адреса")
+    @Test
+    public void shouldMergeByCanonicalForm() {
+        String input = "user1 -> foo.bar@gmail.com, a@mail.ru\n"
+                + "user2 -> b@mail.ru, foobar@googlemail.com\n"
+                + "user3 -> f.o.o.bar@gmail.com, c@yandex.ru\n"
+                + "user4 -> c.x@yandex.ru\n\n";
+        CanonicalizingUserParser parser = new CanonicalizingUserParser(new ScanningUserParser(),
+                new EmailCanonicalizer(EmailCanonicalizer.defaultRules()));
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try (IOService io = new IOServiceImpl(new ByteArrayInputStream(input.getBytes(StandardCharsets.UTF_8)), out)) {
+            new UserMigration(io, parser).migrate();
+        }
+        assertEquals(String.join(System.lineSeparator(),
+                "user1 -> foo.bar@gmail.com, a@mail.ru, b@mail.ru, c@yandex.ru",
+                "user4 -> c.x@yandex.ru", ""), out.toString(StandardCharsets.UTF_8));
+    }
+}
@@ -0,0 +1,99 @@
+package ru.larna.utils.generator;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.CsvSource;
+import ru.larna.services.IOService;
+import ru.larna.services.IOServiceImpl;
+import ru.larna.services.UserMigration;
+import ru.larna.util.generator.FakeDataSettings;
+import ru.larna.util.generator.FakeUsersDataGenerator;
+import ru.larna.util.generator.ZipfSampler;
+import ru.larna.util.parsers.UserParserImpl;
+import ru.larna.util.parsers.UserWrongFormatException;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@DisplayName("Класс FakeUsersDataGenerator")
+class FakeUsersDataGeneratorTest {
+    @DisplayName("Должен генерировать одинаковые данные для одинакового начального значения")
+    @Test
+    public void shouldBeReproducible() {
+        FakeDataSettings settings = FakeDataSettings.builder().usersCount(5000).zipfExponent(1.1).chainLength(3).build();
+
+        assertEquals(generate(settings), generate(settings));
+        assertNotEquals(generate(settings), generate(settings.toBuilder().seed(7).build()));
+    }
+
+    @DisplayName("Должен генерировать заданную долю некорректных строк, остальные строки корректны")
+    @Test
+    public void shouldGenerateInvalidLineShare() {
+        List<String> lines = generate(FakeDataSettings.builder().usersCount(20_000).invalidLineShare(0.1)
+                .minEmailsPerUser(2).maxEmailsPerUser(5).build());
+        UserParserImpl parser = new UserParserImpl();
+        long invalid = lines.stream().filter(line -> {
+            try {
+                int emails = parser.parse(line).getEmails().size();
+                assertTrue(emails >= 2 && emails <= 5, line);
+                return false;
+            } catch (UserWrongFormatException e) {
+                return true;
+            }
+        }).count();
+
+        assertEquals(20_000, lines.size());
+        assertEquals(0.1, invalid / 20_000.0, 0.01);
+    }
+
+    @DisplayName("Слияние должно давать по одному пользователю на кластер при любой форме кластеров")
+    @ParameterizedTest
+    @CsvSource({"0, 1, false", "1.5, 1, false", "1.5, 1000, false", "0.5, 4, false", "1.2, 1000, true"})
+    public void shouldMergeEachClusterIntoOneUser(double zipf, int chain, boolean interleave) {
+        FakeDataSettings settings = FakeDataSettings.builder().usersCount(20_000).zipfExponent(zipf).maxClusterSize(200)
+                .chainLength(chain).interleaveChains(interleave).openClusters(64).build();
+        List<String> lines = generate(settings);
+        long clusters = lines.stream().map(line -> line.substring(0, line.indexOf('_', 5))).distinct().count();
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        String input = String.join("\n", lines) + "\n\n";
+        try (IOService io = new IOServiceImpl(new ByteArrayInputStream(input.getBytes(StandardCharsets.UTF_8)), out)) {
+            UserMigration migration = new UserMigration(io, new UserParserImpl());
+            migration.migrate();
+            if (interleave)
+                assertTrue(migration.getActualUsersCount() >= clusters);
+            else
+                assertEquals(clusters, migration.getActualUsersCount().longValue());
+        }
+    }
+
+    @DisplayName("Распределение Ципфа должно давать частоты, обратно пропорциональные степени значения")
+    @Test
+    public void shouldSampleZipfDistribution() {
+        ZipfSampler sampler = new ZipfSampler(new Random(1), 1000, 1.5);
+        int[] frequencies = new int[1001];
+        for (int i = 0; i < 1_000_000; i++)
+            frequencies[sampler.sample()]++;
+
+        assertEquals(0, frequencies[0]);
+        assertEquals(Math.pow(2, 1.5), (double) frequencies[1] / frequencies[2], 0.1);
+        assertEquals(Math.pow(3, 1.5), (double) frequencies[1] / frequencies[3], 0.3);
+        assertTrue(Arrays.stream(frequencies, 100, 1001).sum() > 0);
+    }
+
+    private static List<String> generate(FakeDataSettings settings) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try (IOService io = new IOServiceImpl(new ByteArrayInputStream(new byte[0]), out)) {
+            new FakeUsersDataGenerator(settings, io).generate();
+        }
+        return out.toString(StandardCharsets.UTF_8).lines().collect(Collectors.toList());
+    }
+}
@@ -0,0 +1,63 @@
+package ru.larna.utils.metrics;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import ru.larna.services.*;
+import ru.larna.util.metrics.LatencyHistogram;
+import ru.larna.util.metrics.MigrationMetrics;
+import ru.larna.util.parsers.MeteredUserParser;
+import ru.larna.util.parsers.UserParserImpl;
+
+import javax.management.ObjectName;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.lang.management.ManagementFactory;
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@DisplayName("Класс MigrationMetrics")
+class MigrationMetricsTest {
+    @DisplayName("Гистограмма должна оценивать процентили сверху с точностью до 2 раз")
+    @Test
+    public void shouldEstimatePercentiles() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        for (int i = 1; i <= 1000; i++)
+            histogram.record(i);
+
+        assertAll(() -> assertEquals(1000, histogram.getCount()),
+                () -> assertEquals(500.5, histogram.getMeanNanos(), 1e-9),
+                () -> assertEquals(511, histogram.getPercentileNanos(50)),
+                () -> assertEquals(1023, histogram.getPercentileNanos(99)),
+                () -> assertEquals(0, new LatencyHistogram().getPercentileNanos(99)));
+    }
+
+    @DisplayName("Должен учитывать строки, байты, ошибки и слияния и публиковать их в JMX")
+    @Test
+    public void shouldCountMigrationStages() throws Exception {
+        String input = "user1 -> a@b.ru, c@d.ru\nuser2 -> c@d.ru\nuser3 -> e@f.ru\nuser4 -> wrong@email\n\n";
+        MigrationMetrics metrics = new MigrationMetrics();
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try (IOService io = new MeteredIOService(
+                new IOServiceImpl(new ByteArrayInputStream(input.getBytes(StandardCharsets.UTF_8)), out), metrics)) {
+            UserMigration migration = new UserMigration(io, new MeteredUserParser(new UserParserImpl(), metrics),
+                    new MeteredUserSource(new SequentialUserSource(), metrics));
+            metrics.setClustersCount(migration::getActualUsersCount);
+            migration.migrate();
+        }
+
+        metrics.register();
+        try {
+            ObjectName name = new ObjectName(MigrationMetrics.OBJECT_NAME);
+            assertAll(() -> assertEquals(4L, ManagementFactory.getPlatformMBeanServer().getAttribute(name, "LinesRead")),
+                    () -> assertEquals(input.length() - 1L, metrics.getBytesRead()),
+                    () -> assertEquals(0, metrics.getParseFailures()),
+                    () -> assertEquals(1, metrics.getValidationFailures()),
+                    () -> assertEquals(3, metrics.getMergeOperations()),
+                    () -> assertEquals(2, metrics.getClustersCount()),
+                    () -> assertTrue(metrics.formatProgress().contains("lines 4")));
+        } finally {
+            metrics.unregister();
+        }
+    }
+}
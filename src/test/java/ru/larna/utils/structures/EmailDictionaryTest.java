@@ -0,0 +1,101 @@
+package ru.larna.utils.structures;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import ru.larna.util.structures.EmailDictionary;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@DisplayName("Класс EmailDictionary")
+class EmailDictionaryTest {
+    @DisplayName("Должен назначать плотные идентификаторы в порядке добавления и возвращать тот же идентификатор для повторного адреса")
+    @Test
+    public void shouldAssignDenseIds() {
+        EmailDictionary dictionary = new EmailDictionary(16);
+        final int count = 10_000;
+        for (int i = 0; i < count; i++)
+            assertEquals(i, dictionary.intern("email_" + i + "@gmail.com"));
+        for (int i = 0; i < count; i++)
+            assertEquals(i, dictionary.intern("email_" + i + "@gmail.com"));
+
+        assertAll(() -> assertEquals(count, dictionary.size()),
+                () -> assertEquals("email_777@gmail.com", dictionary.get(777)),
+                () -> assertTrue(dictionary.loadFactor() <= 0.5));
+    }
+
+    @DisplayName("Должен одинаково находить адрес, переданный строкой и байтами")
+    @Test
+    public void shouldFindStringAndBytesEqually() {
+        EmailDictionary dictionary = new EmailDictionary();
+        int id = dictionary.intern("test@gmail.com");
+        byte[] bytes = "xxtest@gmail.comxx".getBytes(StandardCharsets.US_ASCII);
+
+        assertAll(() -> assertEquals(id, dictionary.find(bytes, 2, 14)),
+                () -> assertEquals(id, dictionary.intern(bytes, 2, 14)),
+                () -> assertEquals(EmailDictionary.NOT_FOUND, dictionary.find("test@gmail.co")),
+                () -> assertEquals(1, dictionary.size()));
+    }
+
+    @DisplayName("Должен с предварительным фильтром назначать те же идентификаторы и соблюдать долю ложных ответов фильтра")
+    @Test
+    public void shouldKeepIdsWithPrefilter() {
+        EmailDictionary dictionary = new EmailDictionary(16, 0.01);
+        final int count = 100_000;
+        for (int i = 0; i < count; i++)
+            assertEquals(i, dictionary.intern("email_" + i + "@gmail.com"));
+        for (int i = 0; i < count; i++)
+            assertEquals(i, dictionary.intern("email_" + i + "@gmail.com"));
+        for (int i = 0; i < count; i++)
+            assertEquals(EmailDictionary.NOT_FOUND, dictionary.find("other_" + i + "@gmail.com"));
+
+        assertAll(() -> assertTrue(dictionary.hasPrefilter()),
+                () -> assertEquals(count, dictionary.size()),
+                () -> assertTrue(dictionary.getPrefilterRejects() > 0),
+                () -> assertTrue(dictionary.getPrefilterFalsePositiveRate() < 0.02,
+                        "False positive rate " + dictionary.getPrefilterFalsePositiveRate()));
+    }
+
+    @DisplayName("Должен хранить домены один раз и восстанавливать исходный вид адреса")
+    @Test
+    public void shouldStoreDomainsOnce() throws IOException {
+        EmailDictionary dictionary = new EmailDictionary(16);
+        EmailDictionary plain = new EmailDictionary(16, 0, false);
+        final int count = 10_000;
+        for (int i = 0; i < count; i++) {
+            String email = "user" + i + "@domain" + i % 10 + ".com";
+            assertEquals(i, dictionary.intern(email));
+            plain.intern(email);
+        }
+        int noDomain = dictionary.intern("no-domain");
+        int manyAts = dictionary.intern("a@b@gmail.com");
+
+        ByteBuffer buffer = ByteBuffer.allocate(5);
+        ByteArrayOutputStream written = new ByteArrayOutputStream();
+        for (int from = 0; from < dictionary.length(777); buffer.clear()) {
+            from += dictionary.writeTo(777, from, buffer);
+            written.write(buffer.array(), 0, buffer.position());
+        }
+        ByteArrayOutputStream saved = new ByteArrayOutputStream();
+        dictionary.writeTo(new DataOutputStream(saved));
+        EmailDictionary restored = new EmailDictionary();
+        restored.readFrom(new DataInputStream(new ByteArrayInputStream(saved.toByteArray())));
+        byte[] bytes = "xuser5@domain5.comx".getBytes(StandardCharsets.US_ASCII);
+
+        assertAll(() -> assertEquals(11, dictionary.domainsCount()),
+                () -> assertTrue(dictionary.arenaSize() < plain.arenaSize() * 0.6),
+                () -> assertEquals("user777@domain7.com", dictionary.get(777)),
+                () -> assertEquals("user777@domain7.com", written.toString(StandardCharsets.US_ASCII)),
+                () -> assertEquals("no-domain", dictionary.get(noDomain)),
+                () -> assertEquals("a@b@gmail.com", dictionary.get(manyAts)),
+                () -> assertEquals(5, dictionary.find(bytes, 1, 17)),
+                () -> assertEquals(EmailDictionary.NOT_FOUND, dictionary.find("user5@domain6.com")),
+                () -> assertEquals(EmailDictionary.NOT_FOUND, dictionary.find("user5domain5.com")),
+                () -> assertEquals(777, restored.find("user777@domain7.com")),
+                () -> assertEquals(manyAts, restored.intern(dictionary, manyAts)),
+                () -> assertEquals(count + 2, restored.size()));
+    }
+}
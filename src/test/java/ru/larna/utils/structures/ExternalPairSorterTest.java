@@ -0,0 +1,54 @@
+package ru.larna.utils.structures;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.io.TempDir;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+import ru.larna.util.structures.ExternalPairSorter;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Random;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+@DisplayName("Класс ExternalPairSorter")
+class ExternalPairSorterTest {
+    @TempDir
+    Path directory;
+
+    @DisplayName("Должен устойчиво сортировать пары по беззнаковому ключу в памяти и со сбросом серий на диск")
+    @ParameterizedTest
+    @ValueSource(longs = {1, 1 << 16, 64L << 20})
+    public void shouldSortStably(long memoryLimit) throws IOException {
+        Random random = new Random(memoryLimit);
+        List<long[]> expected = new ArrayList<>();
+        List<long[]> actual = new ArrayList<>();
+        try (ExternalPairSorter sorter = new ExternalPairSorter(directory, memoryLimit)) {
+            for (int i = 0; i < 50_000; i++) {
+                long key = random.nextInt(3) == 0 ? random.nextLong() : random.nextInt(100);
+                sorter.add(key, i);
+                expected.add(new long[]{key, i});
+            }
+            try (ExternalPairSorter.PairCursor cursor = sorter.sorted()) {
+                while (cursor.next())
+                    actual.add(new long[]{cursor.key(), cursor.value()});
+            }
+        }
+        expected.sort(Comparator.comparing((long[] pair) -> pair[0], Long::compareUnsigned));
+
+        try (Stream<Path> runs = Files.list(directory)) {
+            assertEquals(0, runs.count());
+        }
+        assertEquals(expected.size(), actual.size());
+        for (int i = 0; i < expected.size(); i++) {
+            assertEquals(expected.get(i)[0], actual.get(i)[0]);
+            assertEquals(expected.get(i)[1], actual.get(i)[1]);
+        }
+    }
+}
@@ -1,13 +1,21 @@
 package ru.larna.utils.validators;
 
 import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
 import org.junit.jupiter.params.ParameterizedTest;
 import org.junit.jupiter.params.provider.ValueSource;
 import ru.larna.util.validators.EmailValidator;
 
+import java.nio.charset.StandardCharsets;
+import java.util.Random;
+import java.util.regex.Pattern;
+
 import static org.junit.jupiter.api.Assertions.*;
 @DisplayName("Класс EmailValidator")
 class EmailValidatorTest {
+    private static final Pattern EMAIL_PATTERN =
+            Pattern.compile("^([a-z0-9_\\.-]+)@([a-z0-9_\\.-]+)\\.([a-z\\.]{2,6})$", Pattern.CASE_INSENSITIVE);
+
     @DisplayName("Должен возвращать true в случае корректного email")
     @ParameterizedTest
     @ValueSource(strings = {"email@gmail.com", "email1@gmail.com","email_1@gmail.com","email_1@gmail_2.com","test@gmail.com"})
@@ -21,4 +29,28 @@ class EmailValidatorTest {
         assertEquals(false, EmailValidator.getInstance().validate(email));
     }
 
-}
\ No newline at end of file
+    @DisplayName("Должен принимать и отклонять те же строки и байты, что и регулярное выражение")
+    @Test
+    public void shouldValidateLikeRegex() {
+        EmailValidator validator = EmailValidator.getInstance();
+        String alphabet = "aZ9_.-@.x\n\r\u0085 |";
+        Random random = new Random(14);
+        for (int i = 0; i < 200_000; i++) {
+            StringBuilder sb = new StringBuilder(i % 3 == 0 ? "user@mail" : "");
+            for (int length = random.nextInt(12); length > 0; length--)
+                sb.append(alphabet.charAt(random.nextInt(alphabet.length())));
+            String email = sb.toString();
+            boolean expected = EMAIL_PATTERN.matcher(email).find();
+            byte[] bytes = ("<" + email + ">").getBytes(StandardCharsets.UTF_8);
+
+            assertEquals(expected, validator.isValid(email), email);
+            assertEquals(expected, validator.isValid(bytes, 1, bytes.length - 2), email);
+        }
+    }
+
+    @DisplayName("Должен возвращать один и тот же экземпляр")
+    @Test
+    public void shouldShareInstance() {
+        assertSame(EmailValidator.getInstance(), EmailValidator.getInstance());
+    }
+}